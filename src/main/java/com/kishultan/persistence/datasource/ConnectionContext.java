@@ -0,0 +1,219 @@
+package com.kishultan.persistence.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 连接上下文
+ *
+ * 以线程为单位把数据源绑定到一个连接（通常是事务连接）。所有执行路径获取连接时先查询这里：
+ * 已绑定时返回该连接的代理，代理的close()不会关闭底层连接，由绑定方负责提交、回滚和关闭；
+ * 未绑定时照常从数据源获取新连接。这样一个工作单元内的查询和写入共用同一个连接，
+ * 查询也能看到事务中尚未提交的修改。
+ *
+ * @author Portal Team
+ */
+public final class ConnectionContext {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionContext.class);
+
+    private static final ThreadLocal<Map<DataSource, Binding>> bindings = ThreadLocal.withInitial(IdentityHashMap::new);
+
+    private ConnectionContext() {
+    }
+
+    /**
+     * 把连接绑定到当前线程的数据源上
+     */
+    public static void bind(DataSource dataSource, Connection connection) {
+        if (dataSource == null || connection == null) {
+            throw new IllegalArgumentException("数据源和连接不能为空");
+        }
+        Binding previous = bindings.get().put(dataSource, new Binding(connection));
+        if (previous != null && previous.connection != connection) {
+            logger.warn("数据源在当前线程上已绑定其他连接，将被替换");
+        }
+    }
+
+    /**
+     * 解除当前线程上数据源的连接绑定，返回原绑定的连接
+     */
+    public static Connection unbind(DataSource dataSource) {
+        Map<DataSource, Binding> map = bindings.get();
+        Binding binding = map.remove(dataSource);
+        if (map.isEmpty()) {
+            bindings.remove();
+        }
+        return binding != null ? binding.connection : null;
+    }
+
+    /**
+     * 获取当前线程上数据源绑定的连接，未绑定时返回null
+     */
+    public static Connection getBoundConnection(DataSource dataSource) {
+        Binding binding = bindings.get().get(dataSource);
+        return binding != null ? binding.connection : null;
+    }
+
+    /**
+     * 当前线程上数据源是否绑定了连接
+     */
+    public static boolean isBound(DataSource dataSource) {
+        return bindings.get().containsKey(dataSource);
+    }
+
+    /**
+     * 获取连接：已绑定时返回不会被关闭的代理，否则从数据源获取新连接
+     */
+    public static Connection getConnection(DataSource dataSource) throws SQLException {
+        Binding binding = bindings.get().get(dataSource);
+        if (binding != null) {
+            return binding.proxy();
+        }
+        return dataSource.getConnection();
+    }
+
+    /**
+     * 以只读意图获取连接：已绑定时返回绑定连接的代理，否则按读写分离规则获取
+     */
+    public static Connection getReadConnection(DataSource dataSource) throws SQLException {
+        Binding binding = bindings.get().get(dataSource);
+        if (binding != null) {
+            return binding.proxy();
+        }
+        return DataSourceRoutingContext.getReadConnection(dataSource);
+    }
+
+    /**
+     * 注册事务提交后执行的回调
+     * 
+     * @return 数据源未绑定连接时返回false，调用方应立即执行
+     */
+    public static boolean registerAfterCommit(DataSource dataSource, Runnable action) {
+        Binding binding = bindings.get().get(dataSource);
+        if (binding == null) {
+            return false;
+        }
+        if (binding.afterCommit == null) {
+            binding.afterCommit = new ArrayList<>();
+        }
+        binding.afterCommit.add(action);
+        return true;
+    }
+    
+    /**
+     * 获取绑定在当前事务上的资源，未绑定时返回null
+     */
+    public static Object getResource(DataSource dataSource, Object key) {
+        Binding binding = bindings.get().get(dataSource);
+        return binding != null && binding.resources != null ? binding.resources.get(key) : null;
+    }
+    
+    /**
+     * 把资源绑定到当前事务上，事务提交或回滚后清除
+     */
+    public static void bindResource(DataSource dataSource, Object key, Object value) {
+        Binding binding = bindings.get().get(dataSource);
+        if (binding == null) {
+            throw new IllegalStateException("数据源在当前线程上未绑定连接");
+        }
+        if (binding.resources == null) {
+            binding.resources = new HashMap<>();
+        }
+        binding.resources.put(key, value);
+    }
+    
+    /**
+     * 事务提交后调用：执行提交回调并清除事务资源
+     * 
+     * @param connection 已提交的连接，与绑定连接不一致时忽略
+     */
+    public static void afterCommit(DataSource dataSource, Connection connection) {
+        Binding binding = bindings.get().get(dataSource);
+        if (binding == null || binding.connection != connection) {
+            return;
+        }
+        List<Runnable> actions = binding.afterCommit;
+        binding.afterCommit = null;
+        binding.resources = null;
+        if (actions == null) {
+            return;
+        }
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                logger.warn("事务提交回调执行失败: {}", e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * 事务回滚后调用：丢弃提交回调和事务资源
+     * 
+     * @param connection 已回滚的连接，与绑定连接不一致时忽略
+     */
+    public static void afterRollback(DataSource dataSource, Connection connection) {
+        Binding binding = bindings.get().get(dataSource);
+        if (binding != null && binding.connection == connection) {
+            binding.afterCommit = null;
+            binding.resources = null;
+        }
+    }
+
+    /**
+     * 绑定关系，代理按需创建并复用
+     */
+    private static final class Binding {
+        private final Connection connection;
+        private Connection proxy;
+        private List<Runnable> afterCommit;
+        private Map<Object, Object> resources;
+
+        Binding(Connection connection) {
+            this.connection = connection;
+        }
+
+        Connection proxy() {
+            if (proxy == null) {
+                proxy = createNonClosingProxy(connection);
+            }
+            return proxy;
+        }
+    }
+
+    private static Connection createNonClosingProxy(Connection connection) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "close":
+                    // 由绑定方关闭
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(ConnectionContext.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+}
@@ -175,8 +175,8 @@ public class DataSourceConfig {
             // Use a simple DataSource implementation that doesn't depend on any connection pool library
             // Users can provide their own connection pool by setting dscDataSourceClass
             ds = createSimpleDataSource(url, username, password, driver);
-            dscLogger.info("Created simple DataSource for: {}. " +
-                "For production use, consider using a connection pool library (e.g., HikariCP) " +
+            dscLogger.info("Created pooled DataSource for: {}. " +
+                "A different connection pool library (e.g., HikariCP) can be used " +
                 "by setting the data source class.", dataSourceName);
         } else {
             // Use the specified DataSource class
@@ -224,9 +224,10 @@ public class DataSourceConfig {
     }
     
     /**
-     * Create a simple DataSource implementation using DriverManager.
+     * Create a simple DataSource backed by the built-in connection pool.
      * This is a basic implementation that doesn't require any connection pool library.
-     * For production use, users should provide their own connection pool implementation.
+     * Pool settings (maxPoolSize, connectionTimeout, validationInterval, maxLifetime,
+     * leakDetectionThreshold, ...) can be supplied as data source properties.
      */
     private static DataSource createSimpleDataSource(final String url, final String username, 
                                                      final String password, final String driver) {
@@ -239,56 +240,7 @@ public class DataSourceConfig {
             }
         }
         
-        // Create a simple DataSource implementation
-        return new javax.sql.DataSource() {
-            @Override
-            public java.sql.Connection getConnection() throws java.sql.SQLException {
-                return getConnection(username, password);
-            }
-            
-            @Override
-            public java.sql.Connection getConnection(String user, String pass) throws java.sql.SQLException {
-                return java.sql.DriverManager.getConnection(url, user, pass);
-            }
-            
-            @Override
-            public java.io.PrintWriter getLogWriter() throws java.sql.SQLException {
-                return null;
-            }
-            
-            @Override
-            public void setLogWriter(java.io.PrintWriter out) throws java.sql.SQLException {
-                // Not supported
-            }
-            
-            @Override
-            public void setLoginTimeout(int seconds) throws java.sql.SQLException {
-                java.sql.DriverManager.setLoginTimeout(seconds);
-            }
-            
-            @Override
-            public int getLoginTimeout() throws java.sql.SQLException {
-                return java.sql.DriverManager.getLoginTimeout();
-            }
-            
-            @Override
-            public java.util.logging.Logger getParentLogger() throws java.sql.SQLFeatureNotSupportedException {
-                throw new java.sql.SQLFeatureNotSupportedException();
-            }
-            
-            @Override
-            public <T> T unwrap(Class<T> iface) throws java.sql.SQLException {
-                if (iface.isInstance(this)) {
-                    return iface.cast(this);
-                }
-                throw new java.sql.SQLException("DataSource is not a wrapper for " + iface.getName());
-            }
-            
-            @Override
-            public boolean isWrapperFor(Class<?> iface) throws java.sql.SQLException {
-                return iface.isInstance(this);
-            }
-        };
+        return new PooledDataSource(url, username, password);
     }
     
     /**
@@ -302,34 +254,50 @@ public class DataSourceConfig {
     /**
      * Sets a property on an object using reflection.
      * This method is extracted from ReflectionUtil to avoid dependency on the util package.
+     * The property is set through its setter so that the setter's validation applies;
+     * the field is written directly only when there is no setter.
      */
     private static void setProperty(Object obj, String propertyName, String propertyValue, boolean convertString) {
         try {
-            java.lang.reflect.Field field = obj.getClass().getDeclaredField(propertyName);
-            field.setAccessible(true);
-            
-            if (convertString) {
-                Class<?> fieldType = field.getType();
-                if (fieldType == String.class) {
-                    field.set(obj, propertyValue);
-                } else if (fieldType == int.class || fieldType == Integer.class) {
-                    field.set(obj, Integer.parseInt(propertyValue));
-                } else if (fieldType == long.class || fieldType == Long.class) {
-                    field.set(obj, Long.parseLong(propertyValue));
-                } else if (fieldType == boolean.class || fieldType == Boolean.class) {
-                    field.set(obj, Boolean.parseBoolean(propertyValue));
-                } else if (fieldType == double.class || fieldType == Double.class) {
-                    field.set(obj, Double.parseDouble(propertyValue));
-                } else if (fieldType == float.class || fieldType == Float.class) {
-                    field.set(obj, Float.parseFloat(propertyValue));
-                } else {
-                    field.set(obj, propertyValue);
+            String setterName = "set" + Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
+            for (java.lang.reflect.Method method : obj.getClass().getMethods()) {
+                if (method.getName().equals(setterName) && method.getParameterCount() == 1) {
+                    Class<?> type = method.getParameterTypes()[0];
+                    if (type == String.class || (convertString && isConvertible(type))) {
+                        method.invoke(obj, convertString ? convert(propertyValue, type) : propertyValue);
+                        return;
+                    }
                 }
-            } else {
-                field.set(obj, propertyValue);
             }
+
+            java.lang.reflect.Field field = obj.getClass().getDeclaredField(propertyName);
+            field.setAccessible(true);
+            field.set(obj, convertString ? convert(propertyValue, field.getType()) : propertyValue);
+        } catch (java.lang.reflect.InvocationTargetException e) {
+            dscLogger.warn("Error setting property " + propertyName + " on " + obj.getClass().getName(), e.getTargetException());
         } catch (Exception e) {
             dscLogger.warn("Error setting property " + propertyName + " on " + obj.getClass().getName(), e);
         }
     }
+
+    private static boolean isConvertible(Class<?> type) {
+        return type == int.class || type == Integer.class || type == long.class || type == Long.class
+            || type == boolean.class || type == Boolean.class || type == double.class || type == Double.class
+            || type == float.class || type == Float.class;
+    }
+
+    private static Object convert(String value, Class<?> type) {
+        if (type == int.class || type == Integer.class) {
+            return Integer.parseInt(value);
+        } else if (type == long.class || type == Long.class) {
+            return Long.parseLong(value);
+        } else if (type == boolean.class || type == Boolean.class) {
+            return Boolean.parseBoolean(value);
+        } else if (type == double.class || type == Double.class) {
+            return Double.parseDouble(value);
+        } else if (type == float.class || type == Float.class) {
+            return Float.parseFloat(value);
+        }
+        return value;
+    }
 } 
\ No newline at end of file
@@ -92,7 +92,8 @@ public class DataSourceManager {
         dsName = Optional.ofNullable(dsName).orElse(PersistenceDefaults.getDataSourceName());
 //        logger.debug("获取数据库连接: {}", dsName);
         DataSource dataSource = getDataSource(dsName);
-        Connection connection = dataSource.getConnection();
+        // 当前线程绑定了事务连接时复用该连接
+        Connection connection = ConnectionContext.getConnection(dataSource);
         logger.debug("数据库连接获取成功: {}", dsName);
         return connection;
     }
@@ -162,30 +163,55 @@ public class DataSourceManager {
     /**
      * 添加本地数据源
      * 
-     * 线程安全的方法，使用ConcurrentHashMap
+     * 线程安全的方法，使用ConcurrentHashMap；被替换的内置连接池会关闭
      */
     public static void addLocalDataSource(String name, DataSource dataSource) {
         DataSource oldDataSource = localDSTable.put(name, dataSource);
         if (oldDataSource != null) {
             logger.info("替换本地数据源: {}", name);
+            if (oldDataSource != dataSource) {
+                closePool(oldDataSource);
+            }
         } else {
             logger.info("添加本地数据源: {}", name);
         }
     }
     
+    /**
+     * 添加读写分离数据源
+     *
+     * 在一个逻辑名称下注册主库和从库，返回的路由数据源可继续配置选择策略和读己之写窗口
+     */
+    public static RoutingDataSource addRoutingDataSource(String name, DataSource primary, DataSource... replicas) {
+        RoutingDataSource routingDataSource = new RoutingDataSource(primary, replicas);
+        addLocalDataSource(name, routingDataSource);
+        logger.info("数据源 {} 启用读写分离，从库数量: {}", name, routingDataSource.getReplicaCount());
+        return routingDataSource;
+    }
+
     /**
      * 移除本地数据源
      * 
-     * 线程安全的方法，使用ConcurrentHashMap
+     * 线程安全的方法，使用ConcurrentHashMap；移除的内置连接池会关闭
      */
     public static void removeLocalDataSource(String name) {
         DataSource removed = localDSTable.remove(name);
         if (removed != null) {
             logger.info("移除本地数据源: {}", name);
+            closePool(removed);
         } else {
             logger.warn("尝试移除不存在的本地数据源: {}", name);
         }
     }
+
+    /**
+     * 关闭不再注册的内置连接池，仍以其他名称注册的不关闭；借出中的连接在归还时关闭
+     */
+    private static void closePool(DataSource dataSource) {
+        if (dataSource instanceof PooledDataSource && !localDSTable.containsValue(dataSource)) {
+            ((PooledDataSource) dataSource).close();
+        }
+    }
     
     /**
      * 添加数据源类型映射
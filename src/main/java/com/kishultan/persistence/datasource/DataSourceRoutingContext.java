@@ -0,0 +1,84 @@
+package com.kishultan.persistence.datasource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * 数据源路由上下文
+ *
+ * 以线程为单位记录当前操作的读写意图，供RoutingDataSource选择主库或从库。
+ * 事务状态以ConnectionContext中绑定的事务连接为准，事务结束解除绑定后自动失效。
+ * 普通数据源忽略这些标记，因此调用方无需关心底层是否开启了读写分离。
+ *
+ * @author Portal Team
+ */
+public final class DataSourceRoutingContext {
+
+    private static final ThreadLocal<int[]> readOnlyDepth = ThreadLocal.withInitial(() -> new int[1]);
+    private static final Object WRITE_RECORDED_KEY = new Object();
+
+    private DataSourceRoutingContext() {
+    }
+
+    /**
+     * 以只读意图获取连接，路由数据源会优先分配从库连接
+     */
+    public static Connection getReadConnection(DataSource dataSource) throws SQLException {
+        int[] depth = readOnlyDepth.get();
+        depth[0]++;
+        try {
+            return dataSource.getConnection();
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    /**
+     * 在只读意图下执行操作，操作内获取的连接优先路由到从库
+     */
+    public static <T> T readOnly(Supplier<T> action) {
+        int[] depth = readOnlyDepth.get();
+        depth[0]++;
+        try {
+            return action.get();
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    /**
+     * 当前线程是否处于只读意图
+     */
+    public static boolean isReadOnly() {
+        return readOnlyDepth.get()[0] > 0;
+    }
+
+    /**
+     * 当前线程是否在数据源上处于事务中，即绑定了事务连接
+     */
+    public static boolean isInTransaction(DataSource dataSource) {
+        return ConnectionContext.isBound(dataSource);
+    }
+
+    /**
+     * 记录当前线程对数据源的写入，路由数据源据此开启读己之写窗口
+     * 数据源绑定了事务时在提交后记录，回滚的写入不影响路由
+     */
+    public static void recordWrite(DataSource dataSource) {
+        if (!(dataSource instanceof RoutingDataSource)) {
+            return;
+        }
+        RoutingDataSource routing = (RoutingDataSource) dataSource;
+        if (routing.getReadYourWritesWindowMillis() <= 0) {
+            return;
+        }
+        if (!ConnectionContext.isBound(dataSource)) {
+            routing.recordWrite();
+        } else if (ConnectionContext.getResource(dataSource, WRITE_RECORDED_KEY) == null) {
+            ConnectionContext.bindResource(dataSource, WRITE_RECORDED_KEY, Boolean.TRUE);
+            ConnectionContext.registerAfterCommit(dataSource, routing::recordWrite);
+        }
+    }
+}
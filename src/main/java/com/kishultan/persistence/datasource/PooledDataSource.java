@@ -0,0 +1,692 @@
+package com.kishultan.persistence.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 轻量级连接池数据源
+ *
+ * DataSourceConfig在未指定数据源类时使用的内置连接池，不依赖第三方库：
+ * 空闲连接保存在无锁双端队列中（后进先出，优先复用最近归还的连接），
+ * 用信号量限制连接总数并支持获取超时；借出空闲较久的连接前做有效性校验，
+ * 超过最大生命周期的连接在归还或借出时关闭；可选的泄漏检测会在连接借出过久时输出借出位置。
+ * 归还时关闭借出期间未关闭的语句，回滚未提交的工作，并恢复被修改过的连接属性。
+ *
+ * 配置字段可以通过DataSourceConfig的数据源属性设置（maxPoolSize、connectionTimeout等），
+ * 连接池在第一次获取连接时按当时的配置初始化。
+ *
+ * @author Portal Team
+ */
+public class PooledDataSource implements DataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledDataSource.class);
+
+    private static final AtomicInteger poolCounter = new AtomicInteger();
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final String poolName;
+
+    // ==================== 配置（毫秒） ====================
+
+    private volatile int maxPoolSize = 10;
+    private volatile long connectionTimeout = 30000;
+    private volatile long validationInterval = 500;
+    private volatile int validationTimeoutSeconds = 5;
+    private volatile long maxLifetime = 1800000;
+    private volatile long leakDetectionThreshold = 0;
+    private volatile long housekeepingPeriod = 30000;
+
+    // ==================== 运行状态 ====================
+
+    private final ConcurrentLinkedDeque<PooledConnection> idleConnections = new ConcurrentLinkedDeque<>();
+    private final Map<PooledConnection, Boolean> borrowedConnections = new ConcurrentHashMap<>();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile Semaphore permits;
+    private volatile ScheduledExecutorService housekeeper;
+
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder destroyedCount = new LongAdder();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder validationFailureCount = new LongAdder();
+    private final LongAdder leakCount = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    public PooledDataSource(String url, String username, String password) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.poolName = "pool-" + poolCounter.incrementAndGet();
+    }
+
+    // ==================== 获取与归还 ====================
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed.get()) {
+            throw new SQLException("连接池已关闭: " + poolName);
+        }
+        Semaphore semaphore = initialize();
+
+        long start = System.nanoTime();
+        try {
+            if (!semaphore.tryAcquire(connectionTimeout, TimeUnit.MILLISECONDS)) {
+                timeoutCount.increment();
+                throw new SQLTransientConnectionException(poolName + " 获取连接超时（" + connectionTimeout
+                        + "ms），活动连接: " + borrowedConnections.size() + "/" + maxPoolSize);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("获取连接时被中断", e);
+        }
+        waitNanos.add(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled = takeIdleConnection();
+            if (pooled == null) {
+                pooled = createConnection();
+            }
+            pooled.onBorrow(leakDetectionThreshold > 0);
+            borrowedConnections.put(pooled, Boolean.TRUE);
+            borrowCount.increment();
+            return pooled.newProxy();
+        } catch (SQLException | RuntimeException e) {
+            semaphore.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 使用与配置不同的账号时不经过连接池
+     */
+    @Override
+    public Connection getConnection(String user, String pass) throws SQLException {
+        if (equals(user, username) && equals(pass, password)) {
+            return getConnection();
+        }
+        return DriverManager.getConnection(url, user, pass);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private PooledConnection takeIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            long now = System.nanoTime();
+            if (pooled.isExpired(now)) {
+                destroy(pooled, "超过最大生命周期");
+                continue;
+            }
+            if (now - pooled.lastReturnedAt >= TimeUnit.MILLISECONDS.toNanos(validationInterval)
+                    && !pooled.isValid()) {
+                validationFailureCount.increment();
+                destroy(pooled, "校验失败");
+                continue;
+            }
+            return pooled;
+        }
+        return null;
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, username, password);
+        PooledConnection pooled;
+        try {
+            pooled = new PooledConnection(physical);
+        } catch (SQLException | RuntimeException e) {
+            // 读取连接默认状态失败时关闭物理连接，不计入连接数
+            try {
+                physical.close();
+            } catch (SQLException closeError) {
+                e.addSuppressed(closeError);
+            }
+            throw e;
+        }
+        totalConnections.incrementAndGet();
+        createdCount.increment();
+        logger.debug("{} 创建物理连接，当前连接数: {}", poolName, totalConnections.get());
+        return pooled;
+    }
+
+    private void release(PooledConnection pooled) {
+        borrowedConnections.remove(pooled);
+        try {
+            if (closed.get() || pooled.isExpired(System.nanoTime()) || !pooled.reset()) {
+                destroy(pooled, closed.get() ? "连接池已关闭" : "归还时无法复用");
+            } else {
+                pooled.lastReturnedAt = System.nanoTime();
+                idleConnections.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(PooledConnection pooled, String reason) {
+        totalConnections.decrementAndGet();
+        destroyedCount.increment();
+        logger.debug("{} 关闭物理连接: {}", poolName, reason);
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            logger.debug("关闭物理连接失败: {}", e.getMessage());
+        }
+    }
+
+    // ==================== 初始化与维护 ====================
+
+    private Semaphore initialize() {
+        Semaphore semaphore = permits;
+        if (semaphore == null) {
+            synchronized (this) {
+                semaphore = permits;
+                if (semaphore == null) {
+                    semaphore = new Semaphore(Math.max(1, maxPoolSize), true);
+                    startHousekeeper();
+                    permits = semaphore;
+                    logger.info("{} 初始化连接池，最大连接数: {}, url: {}", poolName, maxPoolSize, url);
+                }
+            }
+        }
+        return semaphore;
+    }
+
+    private void startHousekeeper() {
+        long period = Math.max(10, housekeepingPeriod);
+        housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, poolName + "-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 关闭过期的空闲连接，并检查借出过久的连接
+     */
+    private void housekeep() {
+        try {
+            long now = System.nanoTime();
+            for (PooledConnection pooled : idleConnections) {
+                if (pooled.isExpired(now) && idleConnections.remove(pooled)) {
+                    destroy(pooled, "超过最大生命周期");
+                }
+            }
+
+            long threshold = leakDetectionThreshold;
+            if (threshold > 0) {
+                long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(threshold);
+                for (PooledConnection pooled : borrowedConnections.keySet()) {
+                    if (!pooled.leakReported && now - pooled.borrowedAt > thresholdNanos) {
+                        pooled.leakReported = true;
+                        leakCount.increment();
+                        logger.warn("{} 检测到可能的连接泄漏，连接已借出超过 {}ms，借出位置如下",
+                                poolName, threshold, pooled.borrowStack);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("{} 连接池维护任务失败", poolName, e);
+        }
+    }
+
+    /**
+     * 关闭连接池，空闲连接立即关闭，借出的连接在归还时关闭
+     */
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        ScheduledExecutorService executor = housekeeper;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            destroy(pooled, "连接池已关闭");
+        }
+        logger.info("{} 连接池已关闭", poolName);
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    // ==================== 统计 ====================
+
+    /**
+     * 获取连接池统计快照
+     */
+    public PoolMetrics getMetrics() {
+        Semaphore semaphore = permits;
+        return new PoolMetrics(poolName, maxPoolSize, totalConnections.get(), idleConnections.size(),
+                borrowedConnections.size(), semaphore != null ? semaphore.getQueueLength() : 0,
+                createdCount.sum(), destroyedCount.sum(), borrowCount.sum(), timeoutCount.sum(),
+                validationFailureCount.sum(), leakCount.sum(), waitNanos.sum());
+    }
+
+    /**
+     * 连接池统计快照
+     */
+    public static class PoolMetrics {
+        private final String poolName;
+        private final int maxPoolSize;
+        private final int totalConnections;
+        private final int idleConnections;
+        private final int activeConnections;
+        private final int pendingThreads;
+        private final long createdCount;
+        private final long destroyedCount;
+        private final long borrowCount;
+        private final long timeoutCount;
+        private final long validationFailureCount;
+        private final long leakCount;
+        private final long totalWaitNanos;
+
+        PoolMetrics(String poolName, int maxPoolSize, int totalConnections, int idleConnections,
+                    int activeConnections, int pendingThreads, long createdCount, long destroyedCount,
+                    long borrowCount, long timeoutCount, long validationFailureCount, long leakCount,
+                    long totalWaitNanos) {
+            this.poolName = poolName;
+            this.maxPoolSize = maxPoolSize;
+            this.totalConnections = totalConnections;
+            this.idleConnections = idleConnections;
+            this.activeConnections = activeConnections;
+            this.pendingThreads = pendingThreads;
+            this.createdCount = createdCount;
+            this.destroyedCount = destroyedCount;
+            this.borrowCount = borrowCount;
+            this.timeoutCount = timeoutCount;
+            this.validationFailureCount = validationFailureCount;
+            this.leakCount = leakCount;
+            this.totalWaitNanos = totalWaitNanos;
+        }
+
+        public String getPoolName() { return poolName; }
+        public int getMaxPoolSize() { return maxPoolSize; }
+        public int getTotalConnections() { return totalConnections; }
+        public int getIdleConnections() { return idleConnections; }
+        public int getActiveConnections() { return activeConnections; }
+        public int getPendingThreads() { return pendingThreads; }
+        public long getCreatedCount() { return createdCount; }
+        public long getDestroyedCount() { return destroyedCount; }
+        public long getBorrowCount() { return borrowCount; }
+        public long getTimeoutCount() { return timeoutCount; }
+        public long getValidationFailureCount() { return validationFailureCount; }
+        public long getLeakCount() { return leakCount; }
+
+        /**
+         * 平均获取等待时间（毫秒）
+         */
+        public double getAverageWaitMillis() {
+            return borrowCount == 0 ? 0 : totalWaitNanos / 1_000_000.0 / borrowCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("PoolMetrics{pool=%s, total=%d, idle=%d, active=%d, pending=%d, max=%d, " +
+                            "created=%d, destroyed=%d, borrows=%d, timeouts=%d, validationFailures=%d, leaks=%d, avgWait=%.3fms}",
+                    poolName, totalConnections, idleConnections, activeConnections, pendingThreads, maxPoolSize,
+                    createdCount, destroyedCount, borrowCount, timeoutCount, validationFailureCount, leakCount,
+                    getAverageWaitMillis());
+        }
+    }
+
+    // ==================== 配置访问 ====================
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * 设置最大连接数，需在第一次获取连接前设置
+     */
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public long getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public void setConnectionTimeout(long connectionTimeout) {
+        this.connectionTimeout = Math.max(0, connectionTimeout);
+    }
+
+    public long getValidationInterval() {
+        return validationInterval;
+    }
+
+    /**
+     * 设置借出校验间隔，空闲超过该时长的连接在借出前校验
+     */
+    public void setValidationInterval(long validationInterval) {
+        this.validationInterval = Math.max(0, validationInterval);
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = Math.max(0, validationTimeoutSeconds);
+    }
+
+    public long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    /**
+     * 设置连接最大生命周期，0表示不限制
+     */
+    public void setMaxLifetime(long maxLifetime) {
+        this.maxLifetime = Math.max(0, maxLifetime);
+    }
+
+    public long getLeakDetectionThreshold() {
+        return leakDetectionThreshold;
+    }
+
+    /**
+     * 设置泄漏检测阈值，0表示关闭
+     */
+    public void setLeakDetectionThreshold(long leakDetectionThreshold) {
+        this.leakDetectionThreshold = Math.max(0, leakDetectionThreshold);
+    }
+
+    public long getHousekeepingPeriod() {
+        return housekeepingPeriod;
+    }
+
+    /**
+     * 设置维护任务执行间隔，需在第一次获取连接前设置
+     */
+    public void setHousekeepingPeriod(long housekeepingPeriod) {
+        this.housekeepingPeriod = housekeepingPeriod;
+    }
+
+    // ==================== DataSource接口 ====================
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        // 不支持
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("DataSource is not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this);
+    }
+
+    // ==================== 池化连接 ====================
+
+    private static boolean isClosed(Statement statement) {
+        try {
+            return statement.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    /**
+     * 物理连接及其池内状态
+     */
+    private class PooledConnection {
+        final Connection physical;
+        final long createdAt = System.nanoTime();
+        final boolean defaultAutoCommit;
+        final boolean defaultReadOnly;
+        final int defaultIsolation;
+        // 驱动不支持时为null或-1，被修改后无法恢复，归还时关闭连接
+        final String defaultCatalog;
+        final String defaultSchema;
+        final int defaultNetworkTimeout;
+
+        volatile long lastReturnedAt = System.nanoTime();
+        volatile long borrowedAt;
+        volatile Throwable borrowStack;
+        volatile boolean leakReported;
+
+        // 借出期间被修改过的连接属性，归还时恢复
+        boolean autoCommitDirty;
+        boolean readOnlyDirty;
+        boolean isolationDirty;
+        boolean catalogDirty;
+        boolean schemaDirty;
+        boolean networkTimeoutDirty;
+
+        // 借出期间创建的语句，归还时关闭仍未关闭的
+        final List<Statement> statements = new ArrayList<>();
+
+        PooledConnection(Connection physical) throws SQLException {
+            this.physical = physical;
+            this.defaultAutoCommit = physical.getAutoCommit();
+            this.defaultReadOnly = physical.isReadOnly();
+            this.defaultIsolation = physical.getTransactionIsolation();
+            this.defaultCatalog = physical.getCatalog();
+            String schema;
+            int networkTimeout;
+            try {
+                schema = physical.getSchema();
+            } catch (SQLException | AbstractMethodError e) {
+                schema = null;
+            }
+            try {
+                networkTimeout = physical.getNetworkTimeout();
+            } catch (SQLException | AbstractMethodError e) {
+                networkTimeout = -1;
+            }
+            this.defaultSchema = schema;
+            this.defaultNetworkTimeout = networkTimeout;
+        }
+
+        boolean isExpired(long now) {
+            long lifetime = maxLifetime;
+            return lifetime > 0 && now - createdAt >= TimeUnit.MILLISECONDS.toNanos(lifetime);
+        }
+
+        boolean isValid() {
+            try {
+                return physical.isValid(validationTimeoutSeconds);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void onBorrow(boolean captureStack) {
+            borrowedAt = System.nanoTime();
+            borrowStack = captureStack ? new Exception("连接借出位置") : null;
+            leakReported = false;
+        }
+
+        synchronized void trackStatement(Statement statement) {
+            // 长时间借出的连接上已关闭的语句不再保留
+            if (statements.size() >= 64) {
+                statements.removeIf(PooledDataSource::isClosed);
+            }
+            statements.add(statement);
+        }
+
+        /**
+         * 关闭借出期间未关闭的语句
+         */
+        synchronized void closeStatements() {
+            for (Statement statement : statements) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    logger.debug("关闭语句失败: {}", e.getMessage());
+                }
+            }
+            statements.clear();
+        }
+
+        /**
+         * 关闭遗留的语句，回滚未提交的工作并恢复连接属性，失败时返回false
+         */
+        boolean reset() {
+            closeStatements();
+            try {
+                if (physical.isClosed()) {
+                    return false;
+                }
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                }
+                if (autoCommitDirty) {
+                    physical.setAutoCommit(defaultAutoCommit);
+                }
+                if (readOnlyDirty) {
+                    physical.setReadOnly(defaultReadOnly);
+                }
+                if (isolationDirty) {
+                    physical.setTransactionIsolation(defaultIsolation);
+                }
+                if (catalogDirty) {
+                    if (defaultCatalog == null) {
+                        return false;
+                    }
+                    physical.setCatalog(defaultCatalog);
+                }
+                if (schemaDirty) {
+                    if (defaultSchema == null) {
+                        return false;
+                    }
+                    physical.setSchema(defaultSchema);
+                }
+                if (networkTimeoutDirty) {
+                    if (defaultNetworkTimeout < 0) {
+                        return false;
+                    }
+                    physical.setNetworkTimeout(Runnable::run, defaultNetworkTimeout);
+                }
+                physical.clearWarnings();
+                autoCommitDirty = false;
+                readOnlyDirty = false;
+                isolationDirty = false;
+                catalogDirty = false;
+                schemaDirty = false;
+                networkTimeoutDirty = false;
+                return true;
+            } catch (SQLException e) {
+                logger.debug("重置连接失败: {}", e.getMessage());
+                return false;
+            }
+        }
+
+        /**
+         * 为本次借出创建代理，close()把连接归还连接池，重复关闭无效
+         */
+        Connection newProxy() {
+            AtomicBoolean returned = new AtomicBoolean(false);
+            InvocationHandler handler = (proxy, method, args) -> {
+                String name = method.getName();
+                switch (name) {
+                    case "close":
+                        if (returned.compareAndSet(false, true)) {
+                            release(this);
+                        }
+                        return null;
+                    case "isClosed":
+                        return returned.get() || physical.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return poolName + "-proxy@" + Integer.toHexString(System.identityHashCode(proxy));
+                    default:
+                        break;
+                }
+                if (returned.get()) {
+                    throw new SQLException("Connection is closed");
+                }
+                if ("setAutoCommit".equals(name)) {
+                    autoCommitDirty = true;
+                } else if ("setReadOnly".equals(name)) {
+                    readOnlyDirty = true;
+                } else if ("setTransactionIsolation".equals(name)) {
+                    isolationDirty = true;
+                } else if ("setCatalog".equals(name)) {
+                    catalogDirty = true;
+                } else if ("setSchema".equals(name)) {
+                    schemaDirty = true;
+                } else if ("setNetworkTimeout".equals(name)) {
+                    networkTimeoutDirty = true;
+                }
+                Object result;
+                try {
+                    result = method.invoke(physical, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
+                }
+                if (result instanceof Statement) {
+                    trackStatement((Statement) result);
+                }
+                return result;
+            };
+            return (Connection) Proxy.newProxyInstance(PooledDataSource.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, handler);
+        }
+    }
+}
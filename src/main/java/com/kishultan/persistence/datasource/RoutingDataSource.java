@@ -0,0 +1,327 @@
+package com.kishultan.persistence.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 读写分离路由数据源
+ *
+ * 在一个逻辑数据源名称下注册一个主库和若干从库：
+ * 只读意图（见DataSourceRoutingContext）的连接分配到从库，按最少在途连接或轮询选择；
+ * 写操作和事务内的连接固定使用主库。可选的读己之写窗口内，
+ * 同一线程在写入（事务中为提交）之后的读取也会路由到主库；写入由执行路径通过
+ * DataSourceRoutingContext.recordWrite记录，只获取主库连接不会开启窗口。
+ *
+ * 从库获取连接失败时会暂时摘除该从库，并依次尝试其他从库，最终回退到主库。
+ *
+ * @author Portal Team
+ */
+public class RoutingDataSource implements DataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoutingDataSource.class);
+
+    /**
+     * 从库选择策略
+     */
+    public enum ReplicaSelection {
+        LEAST_IN_FLIGHT,
+        ROUND_ROBIN
+    }
+
+    private final DataSource primary;
+    private final List<ReplicaNode> replicas;
+    private final AtomicInteger roundRobinCounter = new AtomicInteger();
+    private final ThreadLocal<long[]> lastWriteTime = ThreadLocal.withInitial(() -> new long[]{Long.MIN_VALUE});
+
+    private volatile ReplicaSelection replicaSelection = ReplicaSelection.LEAST_IN_FLIGHT;
+    private volatile long readYourWritesWindowMillis = 0;
+    private volatile long replicaRetryDelayMillis = 5000;
+
+    private final AtomicLong primaryConnections = new AtomicLong();
+    private final AtomicLong replicaConnections = new AtomicLong();
+    private final AtomicLong replicaFallbacks = new AtomicLong();
+
+    public RoutingDataSource(DataSource primary, DataSource... replicas) {
+        this(primary, replicas == null ? Collections.<DataSource>emptyList() : java.util.Arrays.asList(replicas));
+    }
+
+    public RoutingDataSource(DataSource primary, List<DataSource> replicas) {
+        if (primary == null) {
+            throw new IllegalArgumentException("主库数据源不能为空");
+        }
+        this.primary = primary;
+        List<ReplicaNode> nodes = new ArrayList<>();
+        if (replicas != null) {
+            for (DataSource replica : replicas) {
+                if (replica != null) {
+                    nodes.add(new ReplicaNode(replica));
+                }
+            }
+        }
+        this.replicas = Collections.unmodifiableList(nodes);
+    }
+
+    // ==================== 配置 ====================
+
+    public ReplicaSelection getReplicaSelection() {
+        return replicaSelection;
+    }
+
+    public void setReplicaSelection(ReplicaSelection replicaSelection) {
+        this.replicaSelection = replicaSelection;
+    }
+
+    public long getReadYourWritesWindowMillis() {
+        return readYourWritesWindowMillis;
+    }
+
+    /**
+     * 设置读己之写窗口，0表示关闭
+     */
+    public void setReadYourWritesWindowMillis(long readYourWritesWindowMillis) {
+        this.readYourWritesWindowMillis = Math.max(0, readYourWritesWindowMillis);
+    }
+
+    public long getReplicaRetryDelayMillis() {
+        return replicaRetryDelayMillis;
+    }
+
+    /**
+     * 设置故障从库的摘除时长
+     */
+    public void setReplicaRetryDelayMillis(long replicaRetryDelayMillis) {
+        this.replicaRetryDelayMillis = Math.max(0, replicaRetryDelayMillis);
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    // ==================== 路由 ====================
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (shouldUseReplica()) {
+            Connection connection = getReplicaConnection();
+            if (connection != null) {
+                return connection;
+            }
+            replicaFallbacks.incrementAndGet();
+            logger.debug("没有可用的从库，回退到主库");
+            primaryConnections.incrementAndGet();
+            return primary.getConnection();
+        }
+
+        primaryConnections.incrementAndGet();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        primaryConnections.incrementAndGet();
+        return primary.getConnection(username, password);
+    }
+
+    private boolean shouldUseReplica() {
+        if (replicas.isEmpty() || !DataSourceRoutingContext.isReadOnly() || DataSourceRoutingContext.isInTransaction(this)) {
+            return false;
+        }
+        long window = readYourWritesWindowMillis;
+        if (window > 0) {
+            long lastWrite = lastWriteTime.get()[0];
+            if (lastWrite != Long.MIN_VALUE
+                    && System.nanoTime() - lastWrite < TimeUnit.MILLISECONDS.toNanos(window)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Connection getReplicaConnection() {
+        int size = replicas.size();
+        int start = selectReplica();
+        long now = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            ReplicaNode node = replicas.get((start + i) % size);
+            if (!node.isAvailable(now)) {
+                continue;
+            }
+            node.inFlight.incrementAndGet();
+            try {
+                Connection connection = node.dataSource.getConnection();
+                replicaConnections.incrementAndGet();
+                return wrapReplicaConnection(connection, node);
+            } catch (SQLException | RuntimeException e) {
+                node.inFlight.decrementAndGet();
+                node.markUnavailable(now, replicaRetryDelayMillis);
+                logger.warn("从库获取连接失败，暂时摘除: {}", e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private int selectReplica() {
+        int size = replicas.size();
+        if (replicaSelection == ReplicaSelection.ROUND_ROBIN || size == 1) {
+            return (roundRobinCounter.getAndIncrement() & Integer.MAX_VALUE) % size;
+        }
+        // 最少在途连接，相同负载时从轮询位置开始以分散压力
+        int offset = (roundRobinCounter.getAndIncrement() & Integer.MAX_VALUE) % size;
+        long now = System.nanoTime();
+        int best = offset;
+        int bestLoad = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            int index = (offset + i) % size;
+            ReplicaNode node = replicas.get(index);
+            if (!node.isAvailable(now)) {
+                continue;
+            }
+            int load = node.inFlight.get();
+            if (load < bestLoad) {
+                bestLoad = load;
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    private Connection wrapReplicaConnection(Connection connection, ReplicaNode node) {
+        AtomicBoolean released = new AtomicBoolean(false);
+        InvocationHandler handler = (proxy, method, args) -> {
+            String name = method.getName();
+            if ("close".equals(name) && released.compareAndSet(false, true)) {
+                node.inFlight.decrementAndGet();
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(RoutingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+
+    /**
+     * 记录当前线程的一次写入，开启读己之写窗口
+     */
+    public void recordWrite() {
+        if (readYourWritesWindowMillis > 0) {
+            lastWriteTime.get()[0] = System.nanoTime();
+        }
+    }
+
+    /**
+     * 清除当前线程的写入记录
+     */
+    public void clearReadYourWrites() {
+        lastWriteTime.remove();
+    }
+
+    // ==================== 统计 ====================
+
+    public long getPrimaryConnectionCount() {
+        return primaryConnections.get();
+    }
+
+    public long getReplicaConnectionCount() {
+        return replicaConnections.get();
+    }
+
+    public long getReplicaFallbackCount() {
+        return replicaFallbacks.get();
+    }
+
+    /**
+     * 获取各从库当前在途连接数
+     */
+    public int[] getReplicaInFlight() {
+        int[] inFlight = new int[replicas.size()];
+        for (int i = 0; i < inFlight.length; i++) {
+            inFlight[i] = replicas.get(i).inFlight.get();
+        }
+        return inFlight;
+    }
+
+    // ==================== DataSource委托 ====================
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primary.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    /**
+     * 从库节点
+     */
+    private static class ReplicaNode {
+        private final DataSource dataSource;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile long unavailableUntil = Long.MIN_VALUE;
+
+        ReplicaNode(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        boolean isAvailable(long now) {
+            long until = unavailableUntil;
+            return until == Long.MIN_VALUE || now - until >= 0;
+        }
+
+        void markUnavailable(long now, long delayMillis) {
+            unavailableUntil = now + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        }
+    }
+}
@@ -1,14 +1,28 @@
 package com.kishultan.persistence.orm;
 
+import com.kishultan.persistence.datasource.ConnectionContext;
 import com.kishultan.persistence.orm.SimpleEntityQuery;
+import com.kishultan.persistence.orm.cache.EntityCacheManager;
+import com.kishultan.persistence.orm.cache.EntityCacheRegion;
+import com.kishultan.persistence.orm.query.cache.TableVersionTracker;
 import com.kishultan.persistence.orm.query.impl.StandardQueryBuilder;
+import com.kishultan.persistence.orm.query.utils.EntityUtils;
 import com.zaxxer.sansorm.OrmElf;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import java.lang.reflect.Field;
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -32,6 +46,9 @@ public class EntityManager {
     // 使用ThreadLocal确保每个线程有独立的事务上下文
     private static final ThreadLocal<EntityTransaction> currentTransactionHolder = new ThreadLocal<>();
     
+    // findByIds每条IN查询的最大参数个数
+    private static final int IN_CLAUSE_BATCH_SIZE = 500;
+    
     public EntityManager(EntityManagerFactory entityManagerFactory) {
         this.entityManagerFactory = entityManagerFactory;
         // 通过接口获取数据源信息，完全依赖抽象
@@ -72,11 +89,13 @@ public class EntityManager {
      */
     public <T> T save(T entity) {
         logger.debug("保存实体: {}", entity.getClass().getSimpleName());
-        return executeWithTransactionOrConnection(
+        T saved = executeWithTransactionOrConnection(
             () -> "保存实体",
             connection -> saveWithConnection(entity, connection),
             () -> saveWithConnection(entity, null)
         );
+        recordWrite(entity.getClass());
+        return saved;
     }
     
     /**
@@ -84,11 +103,18 @@ public class EntityManager {
      */
     public <T> List<T> saveAll(List<T> entities) {
         logger.debug("批量保存实体，数量: {}", entities.size());
-        return executeWithTransactionOrConnection(
+        List<T> saved = executeWithTransactionOrConnection(
             () -> "批量保存实体",
             connection -> saveAllWithConnection(entities, connection),
             () -> saveAllWithConnection(entities, null)
         );
+        Set<Class<?>> entityClasses = new HashSet<>();
+        for (T entity : entities) {
+            if (entityClasses.add(entity.getClass())) {
+                recordWrite(entity.getClass());
+            }
+        }
+        return saved;
     }
     
     /**
@@ -96,11 +122,14 @@ public class EntityManager {
      */
     public <T> T update(T entity) {
         logger.debug("更新实体: {}", entity.getClass().getSimpleName());
-        return executeWithTransactionOrConnection(
+        T updated = executeWithTransactionOrConnection(
             () -> "更新实体",
             connection -> updateWithConnection(entity, connection),
             () -> updateWithConnection(entity, null)
         );
+        recordWrite(entity.getClass());
+        evictEntityCache(entity);
+        return updated;
     }
     
     /**
@@ -119,6 +148,8 @@ public class EntityManager {
                 return null;
             }
         );
+        recordWrite(entity.getClass());
+        evictEntityCache(entity);
     }
     
     /**
@@ -137,14 +168,83 @@ public class EntityManager {
                 return null;
             }
         );
+        recordWrite(entityClass);
+        EntityCacheManager.evict(entityClass, dataSourceName, id);
     }
     
     /**
      * 根据ID查找实体
+     * 实体标注了@SecondLevelCache时优先从二级缓存读取
      */
     public <T> T findById(Class<T> entityClass, Object id) {
         logger.debug("根据ID查找实体: {} - {}", entityClass.getSimpleName(), id);
-        return findByIdWithConnection(entityClass, id, null);
+        EntityCacheRegion<T> region = getEntityCacheRegion(entityClass);
+        if (region == null || id == null) {
+            return findByIdWithConnection(entityClass, id, null);
+        }
+        T cached = region.get(dataSourceName, id);
+        if (cached != null) {
+            return cached;
+        }
+        TableVersionTracker.Snapshot tableVersions = region.snapshot();
+        T entity = findByIdWithConnection(entityClass, id, null);
+        region.put(dataSourceName, id, entity, tableVersions);
+        return entity;
+    }
+    
+    /**
+     * 根据多个ID查找实体
+     * 按ID顺序返回，不存在的ID跳过，重复的ID只返回一次；
+     * 实体标注了@SecondLevelCache时只从数据库加载缓存未命中的部分
+     */
+    public <T> List<T> findByIds(Class<T> entityClass, Collection<?> ids) {
+        logger.debug("根据多个ID查找实体: {} - {}", entityClass.getSimpleName(), ids);
+        List<T> result = new ArrayList<>();
+        if (ids == null || ids.isEmpty()) {
+            return result;
+        }
+        Field idField = EntityUtils.getPrimaryKeyFieldObject(entityClass);
+        if (idField == null) {
+            throw new RuntimeException("Entity has no @Id field: " + entityClass.getName());
+        }
+        EntityCacheRegion<T> region = getEntityCacheRegion(entityClass);
+        
+        // 主键统一按字符串比较，避免Integer和Long不相等
+        Map<String, T> found = new HashMap<>();
+        Map<String, Object> misses = new LinkedHashMap<>();
+        for (Object id : ids) {
+            String key = String.valueOf(id);
+            if (id == null || found.containsKey(key) || misses.containsKey(key)) {
+                continue;
+            }
+            T cached = region != null ? region.get(dataSourceName, id) : null;
+            if (cached != null) {
+                found.put(key, cached);
+            } else {
+                misses.put(key, id);
+            }
+        }
+        
+        if (!misses.isEmpty()) {
+            TableVersionTracker.Snapshot tableVersions = region != null ? region.snapshot() : null;
+            for (T entity : findByIdsWithConnection(entityClass, new ArrayList<>(misses.values()), null)) {
+                Object id = getFieldValue(idField, entity);
+                found.put(String.valueOf(id), entity);
+                if (region != null) {
+                    region.put(dataSourceName, id, entity, tableVersions);
+                }
+            }
+        }
+        
+        Set<String> added = new HashSet<>();
+        for (Object id : ids) {
+            String key = String.valueOf(id);
+            T entity = found.get(key);
+            if (entity != null && added.add(key)) {
+                result.add(entity);
+            }
+        }
+        return result;
     }
     
     /**
@@ -165,12 +265,28 @@ public class EntityManager {
     
     /**
      * 开始事务
+     * 
+     * @throws IllegalStateException 当前线程已有活动事务
      */
     public EntityTransaction beginTransaction() {
         logger.debug("开始事务");
+        EntityTransaction currentTransaction = getCurrentTransaction();
+        if (currentTransaction != null) {
+            if (currentTransaction.isActive()) {
+                throw new IllegalStateException("Transaction is already active");
+            }
+            // 已通过EntityTransaction直接提交或回滚的事务，归还其连接
+            clearCurrentTransaction();
+        }
         EntityTransaction transaction = entityManagerFactory.createTransaction();
         transaction.begin(); // 确保事务开始
         currentTransactionHolder.set(transaction);
+        // 绑定事务连接，查询构建器、SqlExecutor等执行路径复用同一连接，路由数据源固定使用主库；
+        // SansOrmEntityTransaction开始时已绑定，提交或回滚时解除
+        Connection connection = transaction.getConnection();
+        if (connection != null && ConnectionContext.getBoundConnection(dataSource) != connection) {
+            ConnectionContext.bind(dataSource, connection);
+        }
         return transaction;
     }
     
@@ -191,6 +307,9 @@ public class EntityManager {
             logger.warn("关闭EntityManager时发现活动事务，将回滚");
             currentTransaction.rollback();
         }
+        if (currentTransaction != null) {
+            releaseTransaction(currentTransaction);
+        }
         currentTransactionHolder.remove();
     }
     
@@ -209,13 +328,16 @@ public class EntityManager {
             Function<Connection, T> withTransaction,
             Supplier<T> withoutTransaction) {
         
+        // 事务已通过EntityTransaction直接提交或回滚时归还其连接，不再使用
         EntityTransaction currentTransaction = getCurrentTransaction();
-        if (currentTransaction != null && currentTransaction.isActive()) {
+        if (currentTransaction != null && !currentTransaction.isActive()) {
+            clearCurrentTransaction();
+        }
+        // 按数据源查找绑定的事务连接，避免使用其他数据源的事务
+        Connection connection = ConnectionContext.getBoundConnection(dataSource);
+        if (connection != null) {
             logger.debug("在事务中执行: {}", operationName.get());
-            Connection connection = currentTransaction.getConnection();
-            if (connection != null) {
-                return withTransaction.apply(connection);
-            }
+            return withTransaction.apply(connection);
         }
         
         logger.debug("非事务执行: {}", operationName.get());
@@ -309,7 +431,7 @@ public class EntityManager {
                 // 使用SansOrm的正确方法
                 return OrmElf.objectById(connection, entityClass, id);
             } else {
-                try (Connection conn = dataSource.getConnection()) {
+                try (Connection conn = ConnectionContext.getReadConnection(dataSource)) {
                     // 使用SansOrm的正确方法
                     return OrmElf.objectById(conn, entityClass, id);
                 }
@@ -320,12 +442,41 @@ public class EntityManager {
         }
     }
     
+    private <T> List<T> findByIdsWithConnection(Class<T> entityClass, List<Object> ids, Connection connection) {
+        String idColumn = EntityUtils.getPrimaryKeyField(entityClass);
+        try {
+            if (connection != null) {
+                return listByIds(connection, entityClass, idColumn, ids);
+            } else {
+                try (Connection conn = ConnectionContext.getReadConnection(dataSource)) {
+                    return listByIds(conn, entityClass, idColumn, ids);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("根据多个ID查找实体失败: {}", entityClass.getSimpleName(), e);
+            throw new RuntimeException("Failed to find entities by IDs", e);
+        }
+    }
+    
+    /**
+     * 分批执行IN查询，避免参数过多
+     */
+    private <T> List<T> listByIds(Connection connection, Class<T> entityClass, String idColumn, List<Object> ids) throws Exception {
+        List<T> entities = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_BATCH_SIZE) {
+            List<Object> batch = ids.subList(from, Math.min(ids.size(), from + IN_CLAUSE_BATCH_SIZE));
+            String clause = idColumn + " IN (" + String.join(",", Collections.nCopies(batch.size(), "?")) + ")";
+            entities.addAll(OrmElf.listFromClause(connection, entityClass, clause, batch.toArray()));
+        }
+        return entities;
+    }
+    
     private <T> List<T> findAllWithConnection(Class<T> entityClass, Connection connection) {
         try {
             if (connection != null) {
                 return OrmElf.listFromClause(connection, entityClass, "");
             } else {
-                try (Connection conn = dataSource.getConnection()) {
+                try (Connection conn = ConnectionContext.getReadConnection(dataSource)) {
                     return OrmElf.listFromClause(conn, entityClass, "");
                 }
             }
@@ -340,7 +491,7 @@ public class EntityManager {
             if (connection != null) {
                 return OrmElf.listFromClause(connection, Object.class, sql, params);
             } else {
-                try (Connection conn = dataSource.getConnection()) {
+                try (Connection conn = ConnectionContext.getConnection(dataSource)) {
                     return OrmElf.listFromClause(conn, Object.class, sql, params);
                 }
             }
@@ -389,7 +540,62 @@ public class EntityManager {
      * 线程安全的方法，使用ThreadLocal管理事务状态
      */
     private void clearCurrentTransaction() {
+        EntityTransaction currentTransaction = getCurrentTransaction();
         currentTransactionHolder.remove();
+        if (currentTransaction != null) {
+            releaseTransaction(currentTransaction);
+        }
+    }
+    
+    /**
+     * 记录实体表被修改，使依赖该表的查询缓存失效（事务中延迟到提交后）
+     */
+    private void recordWrite(Class<?> entityClass) {
+        TableVersionTracker.recordWrite(dataSource, EntityUtils.getTableName(entityClass));
+    }
+    
+    private <T> EntityCacheRegion<T> getEntityCacheRegion(Class<T> entityClass) {
+        EntityCacheRegion<T> region = EntityCacheManager.getRegion(entityClass);
+        // 当前事务中有未提交的写入时，既不读缓存也不写缓存
+        if (region == null || TableVersionTracker.hasPendingWrites(dataSource, Collections.singleton(region.getTableName()))) {
+            return null;
+        }
+        return region;
+    }
+    
+    /**
+     * 写入后移除二级缓存条目，下次读取时从数据库重新加载
+     * 不用调用方的实体刷新条目：并发更新时可能留下旧值，实体也可能包含数据库未保存的值
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void evictEntityCache(T entity) {
+        Class<T> entityClass = (Class<T>) entity.getClass();
+        EntityCacheRegion<T> region = EntityCacheManager.getRegion(entityClass);
+        Field idField = EntityUtils.getPrimaryKeyFieldObject(entityClass);
+        if (region == null || idField == null) {
+            return;
+        }
+        region.evict(dataSourceName, getFieldValue(idField, entity));
+    }
+    
+    private static Object getFieldValue(Field field, Object entity) {
+        try {
+            field.setAccessible(true);
+            return field.get(entity);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Failed to read field: " + field.getName(), e);
+        }
+    }
+    
+    /**
+     * 解除事务连接绑定并归还事务连接
+     */
+    private void releaseTransaction(EntityTransaction transaction) {
+        Connection connection = transaction.getConnection();
+        if (connection != null && ConnectionContext.getBoundConnection(dataSource) == connection) {
+            ConnectionContext.unbind(dataSource);
+        }
+        transaction.close();
     }
     
     /**
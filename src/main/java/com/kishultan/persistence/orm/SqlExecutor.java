@@ -1,6 +1,9 @@
 package com.kishultan.persistence.orm;
 
+import com.kishultan.persistence.config.PersistenceDefaults;
+import com.kishultan.persistence.datasource.ConnectionContext;
 import com.kishultan.persistence.datasource.DataSourceManager;
+import com.kishultan.persistence.orm.query.cache.TableVersionTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -89,6 +92,7 @@ public final class SqlExecutor {
             statement = connection.prepareStatement(sql);
             setParameters(statement, parameters);
             int result = statement.executeUpdate();
+            TableVersionTracker.recordSqlWrite(getDefaultDataSource(), sql);
             logger.debug("SQL 更新执行完成，影响行数: {}", result);
             return result;
         } catch (Exception e) {
@@ -158,9 +162,13 @@ public final class SqlExecutor {
         logger.debug("执行批量更新 SQL: {}，批次数量: {}", sql, batchParameters.size());
         Connection connection = null;
         PreparedStatement statement = null;
+        boolean ownTransaction = false;
         try {
             connection = DataSourceManager.getConnection();
-            connection.setAutoCommit(false);
+            ownTransaction = !isDefaultDataSourceBound();
+            if (ownTransaction) {
+                connection.setAutoCommit(false);
+            }
             statement = connection.prepareStatement(sql);
             
             for (Object[] parameters : batchParameters) {
@@ -169,12 +177,15 @@ public final class SqlExecutor {
             }
             
             int[] results = statement.executeBatch();
-            connection.commit();
+            if (ownTransaction) {
+                connection.commit();
+            }
+            TableVersionTracker.recordSqlWrite(getDefaultDataSource(), sql);
             logger.debug("批量更新执行完成，批次结果: {}", results);
             return results;
         } catch (Exception e) {
             try {
-                if (connection != null) {
+                if (connection != null && ownTransaction) {
                     connection.rollback();
                 }
             } catch (SQLException rollbackEx) {
@@ -184,7 +195,7 @@ public final class SqlExecutor {
             throw new RuntimeException("执行批量更新 SQL 时发生异常: " + sql, e);
         } finally {
             try {
-                if (connection != null) {
+                if (connection != null && ownTransaction) {
                     connection.setAutoCommit(true);
                 }
             } catch (SQLException e) {
@@ -205,18 +216,27 @@ public final class SqlExecutor {
     public static <V> V executeInTransaction(SqlFunction<V> functional) {
         logger.debug("在事务中执行 SQL 函数");
         Connection connection = null;
+        boolean ownTransaction = false;
         try {
             connection = DataSourceManager.getConnection();
-            connection.setAutoCommit(false);
+            // 已处于EntityManager事务中时加入外部事务，由外部事务提交或回滚
+            ownTransaction = !isDefaultDataSourceBound();
+            if (ownTransaction) {
+                connection.setAutoCommit(false);
+            }
             
             V result = functional.execute(connection);
             
-            connection.commit();
-            logger.debug("事务执行成功");
+            if (ownTransaction) {
+                connection.commit();
+                logger.debug("事务执行成功");
+            }
+            // 无法得知函数写入了哪些表，使所有查询缓存失效
+            TableVersionTracker.recordUnknownWrite(getDefaultDataSource());
             return result;
         } catch (Exception e) {
             try {
-                if (connection != null) {
+                if (connection != null && ownTransaction) {
                     connection.rollback();
                 }
             } catch (SQLException rollbackEx) {
@@ -226,7 +246,7 @@ public final class SqlExecutor {
             throw new RuntimeException("在事务中执行 SQL 函数时发生异常", e);
         } finally {
             try {
-                if (connection != null) {
+                if (connection != null && ownTransaction) {
                     connection.setAutoCommit(true);
                 }
             } catch (SQLException e) {
@@ -247,18 +267,27 @@ public final class SqlExecutor {
     public static <V> V executeInTransaction(SqlVarArgsFunction<V> functional, Object... args) {
         logger.debug("在事务中执行带参数的 SQL 函数，参数: {}", args);
         Connection connection = null;
+        boolean ownTransaction = false;
         try {
             connection = DataSourceManager.getConnection();
-            connection.setAutoCommit(false);
+            // 已处于EntityManager事务中时加入外部事务，由外部事务提交或回滚
+            ownTransaction = !isDefaultDataSourceBound();
+            if (ownTransaction) {
+                connection.setAutoCommit(false);
+            }
             
             V result = functional.execute(connection, args);
             
-            connection.commit();
-            logger.debug("事务执行成功");
+            if (ownTransaction) {
+                connection.commit();
+                logger.debug("事务执行成功");
+            }
+            // 无法得知函数写入了哪些表，使所有查询缓存失效
+            TableVersionTracker.recordUnknownWrite(getDefaultDataSource());
             return result;
         } catch (Exception e) {
             try {
-                if (connection != null) {
+                if (connection != null && ownTransaction) {
                     connection.rollback();
                 }
             } catch (SQLException rollbackEx) {
@@ -268,7 +297,7 @@ public final class SqlExecutor {
             throw new RuntimeException("在事务中执行带参数的 SQL 函数时发生异常", e);
         } finally {
             try {
-                if (connection != null) {
+                if (connection != null && ownTransaction) {
                     connection.setAutoCommit(true);
                 }
             } catch (SQLException e) {
@@ -309,6 +338,17 @@ public final class SqlExecutor {
     
     // 私有辅助方法
     
+    /**
+     * 默认数据源在当前线程上是否绑定了事务连接
+     */
+    private static boolean isDefaultDataSourceBound() {
+        return ConnectionContext.isBound(getDefaultDataSource());
+    }
+    
+    private static DataSource getDefaultDataSource() {
+        return DataSourceManager.getDataSource(PersistenceDefaults.getDataSourceName());
+    }
+    
     /**
      * 设置 PreparedStatement 参数
      */
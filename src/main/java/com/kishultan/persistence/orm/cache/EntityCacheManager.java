@@ -0,0 +1,131 @@
+package com.kishultan.persistence.orm.cache;
+
+import com.kishultan.persistence.orm.query.cache.ClusterInvalidation;
+import com.kishultan.persistence.orm.query.cache.InvalidationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 实体二级缓存管理器
+ *
+ * 按实体类懒加载缓存区域，只有标注了@SecondLevelCache的实体才有区域。
+ * 可通过系统属性persistence.entity-cache.enabled=false整体关闭。
+ * 其他节点通过集群失效总线通知的条目移除在这里分发到对应区域。
+ *
+ * @author Portal Team
+ */
+public final class EntityCacheManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntityCacheManager.class);
+
+    private static final String ENABLED_PROPERTY = "persistence.entity-cache.enabled";
+
+    private static final ConcurrentHashMap<Class<?>, Optional<EntityCacheRegion<?>>> regions = new ConcurrentHashMap<>();
+
+    static {
+        ClusterInvalidation.addLocalListener(new InvalidationListener() {
+            @Override
+            public void onEntitiesEvicted(String region, Set<String> keys) {
+                evictRemote(region, keys);
+            }
+        });
+    }
+
+    private EntityCacheManager() {
+    }
+
+    /**
+     * 获取实体类的缓存区域
+     *
+     * @return 缓存区域；实体未启用二级缓存时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> EntityCacheRegion<T> getRegion(Class<T> entityClass) {
+        if (entityClass == null || !isEnabled()) {
+            return null;
+        }
+        Optional<EntityCacheRegion<?>> region = regions.get(entityClass);
+        if (region == null) {
+            region = regions.computeIfAbsent(entityClass, EntityCacheManager::createRegion);
+        }
+        return (EntityCacheRegion<T>) region.orElse(null);
+    }
+
+    /**
+     * 移除单个实体的缓存
+     */
+    public static void evict(Class<?> entityClass, String dataSourceName, Object id) {
+        EntityCacheRegion<?> region = getRegion(entityClass);
+        if (region != null) {
+            region.evict(dataSourceName, id);
+        }
+    }
+
+    /**
+     * 移除其他节点通知的条目，只处理本节点已创建的区域
+     */
+    static void evictRemote(String entityClassName, Set<String> keys) {
+        for (EntityCacheRegion<?> region : getRegions()) {
+            if (region.getEntityClass().getName().equals(entityClassName)) {
+                region.evictLocal(keys);
+            }
+        }
+    }
+
+    /**
+     * 清空实体类的缓存区域
+     */
+    public static void evictAll(Class<?> entityClass) {
+        EntityCacheRegion<?> region = getRegion(entityClass);
+        if (region != null) {
+            region.clear();
+        }
+    }
+
+    /**
+     * 获取已创建的缓存区域
+     */
+    public static List<EntityCacheRegion<?>> getRegions() {
+        List<EntityCacheRegion<?>> result = new ArrayList<>();
+        for (Optional<EntityCacheRegion<?>> region : regions.values()) {
+            region.ifPresent(result::add);
+        }
+        return result;
+    }
+
+    public static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+    }
+
+    /**
+     * 清空并移除所有缓存区域（主要用于测试）
+     */
+    public static void reset() {
+        for (EntityCacheRegion<?> region : getRegions()) {
+            region.shutdown();
+        }
+        regions.clear();
+    }
+
+    private static Optional<EntityCacheRegion<?>> createRegion(Class<?> entityClass) {
+        SecondLevelCache settings = entityClass.getAnnotation(SecondLevelCache.class);
+        if (settings == null) {
+            return Optional.empty();
+        }
+        try {
+            EntityCacheRegion<?> region = new EntityCacheRegion<>(entityClass, settings);
+            logger.info("创建实体缓存区域: {}, ttl={}ms, maxSize={}",
+                entityClass.getSimpleName(), settings.ttl(), settings.maxSize());
+            return Optional.of(region);
+        } catch (RuntimeException e) {
+            logger.warn("实体{}无法启用二级缓存: {}", entityClass.getSimpleName(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.kishultan.persistence.orm.cache;
+
+import com.kishultan.persistence.orm.query.cache.CacheConfig;
+import com.kishultan.persistence.orm.query.cache.CacheStatistics;
+import com.kishultan.persistence.orm.query.cache.ClusterInvalidation;
+import com.kishultan.persistence.orm.query.cache.TableVersionTracker;
+import com.kishultan.persistence.orm.query.cache.impl.QueryCacheImpl;
+import com.kishultan.persistence.orm.query.cache.impl.WTinyLfuCacheStrategy;
+import com.kishultan.persistence.orm.query.utils.EntityUtils;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 实体缓存区域
+ *
+ * 一个实体类对应一个区域，以"数据源:主键"为键保存实体映射列的字段值数组（脱水形式），
+ * 不保存@Transient字段和关联字段。读取时每次重新创建实体实例，调用方修改返回的实体不会影响缓存；
+ * Date和基本类型数组字段会复制。映射列包含集合、Map或其他可变引用类型时实体不能启用二级缓存。
+ * 条目记录了实体表的版本，任何途径写入该表后条目自动失效。
+ * 安装了集群失效总线时，移除条目会通知其他节点移除同一条目。
+ *
+ * @author Portal Team
+ */
+public class EntityCacheRegion<T> {
+
+    private final Class<T> entityClass;
+    private final String tableName;
+    private final long ttl;
+    private final Constructor<T> constructor;
+    private final Field[] fields;
+    private final QueryCacheImpl cache;
+
+    EntityCacheRegion(Class<T> entityClass, SecondLevelCache settings) {
+        this.entityClass = entityClass;
+        this.tableName = EntityUtils.getTableName(entityClass);
+        this.ttl = settings.ttl();
+        try {
+            this.constructor = entityClass.getDeclaredConstructor();
+            this.constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Entity with @SecondLevelCache needs a no-arg constructor: "
+                + entityClass.getName(), e);
+        }
+        this.fields = collectFields(entityClass);
+
+        CacheConfig config = new CacheConfig(true, Math.max(1, settings.maxSize()), settings.ttl());
+        config.setEnableAsync(false);
+        this.cache = new QueryCacheImpl(config, new WTinyLfuCacheStrategy());
+    }
+
+    /**
+     * 获取缓存的实体，未命中返回null
+     */
+    public T get(String dataSourceName, Object id) {
+        Object[] state = cache.get(keyOf(dataSourceName, id), Object[].class);
+        return state != null ? hydrate(state) : null;
+    }
+
+    /**
+     * 记录实体表的当前版本，应在从数据库加载前调用
+     */
+    public TableVersionTracker.Snapshot snapshot() {
+        return TableVersionTracker.snapshot(Collections.singleton(tableName));
+    }
+
+    /**
+     * 缓存实体，加载期间实体表被修改时不缓存
+     */
+    public void put(String dataSourceName, Object id, T entity, TableVersionTracker.Snapshot tableVersions) {
+        if (id == null || entity == null) {
+            return;
+        }
+        cache.put(keyOf(dataSourceName, id), dehydrate(entity), ttl, tableVersions);
+    }
+
+    /**
+     * 移除单个实体，并通知其他节点
+     */
+    public void evict(String dataSourceName, Object id) {
+        if (id != null) {
+            String key = keyOf(dataSourceName, id);
+            cache.remove(key);
+            ClusterInvalidation.publishEntityEviction(entityClass.getName(), key);
+        }
+    }
+
+    /**
+     * 移除其他节点通知的条目，不再广播
+     */
+    void evictLocal(Collection<String> keys) {
+        for (String key : keys) {
+            cache.remove(key);
+        }
+    }
+
+    /**
+     * 清空区域
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public CacheStatistics getStatistics() {
+        return cache.getStatistics();
+    }
+
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    void shutdown() {
+        cache.clear();
+        cache.shutdown();
+    }
+
+    /**
+     * 主键统一转为字符串，Integer和Long类型的同一主键命中同一条目
+     */
+    private static String keyOf(String dataSourceName, Object id) {
+        return dataSourceName + ":" + id;
+    }
+
+    private Object[] dehydrate(T entity) {
+        Object[] state = new Object[fields.length];
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                state[i] = copyValue(fields[i].get(entity));
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Failed to dehydrate entity: " + entityClass.getName(), e);
+        }
+        return state;
+    }
+
+    private T hydrate(Object[] state) {
+        try {
+            T entity = constructor.newInstance();
+            for (int i = 0; i < fields.length; i++) {
+                fields[i].set(entity, copyValue(state[i]));
+            }
+            return entity;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to hydrate entity: " + entityClass.getName(), e);
+        }
+    }
+
+    /**
+     * 复制可变值，其余值（字符串、数字、枚举等）不可变，直接共享
+     */
+    private static Object copyValue(Object value) {
+        if (value instanceof Date) {
+            return ((Date) value).clone();
+        }
+        if (value != null && value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+            System.arraycopy(value, 0, copy, 0, length);
+            return copy;
+        }
+        return value;
+    }
+
+    /**
+     * 收集映射列对应的字段，跳过@Transient字段和关联字段
+     */
+    private static Field[] collectFields(Class<?> entityClass) {
+        List<Field> result = new ArrayList<>();
+        for (Class<?> type = entityClass; type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || Modifier.isTransient(modifiers)
+                        || field.isSynthetic() || EntityUtils.isTransientField(field)
+                        || EntityUtils.isAssociationField(field)) {
+                    continue;
+                }
+                if (!isCacheable(field.getType())) {
+                    throw new IllegalArgumentException("Entity with @SecondLevelCache has a mutable field: "
+                        + entityClass.getName() + "." + field.getName());
+                }
+                field.setAccessible(true);
+                result.add(field);
+            }
+        }
+        return result.toArray(new Field[0]);
+    }
+
+    /**
+     * 字段类型的值是否不可变或可以由copyValue复制
+     */
+    private static boolean isCacheable(Class<?> type) {
+        if (type.isArray()) {
+            return type.getComponentType().isPrimitive();
+        }
+        return type.isPrimitive() || type.isEnum() || type == String.class || type == Integer.class
+            || type == Long.class || type == Short.class || type == Byte.class || type == Double.class
+            || type == Float.class || type == Boolean.class || type == Character.class || type == BigDecimal.class
+            || type == BigInteger.class || type == UUID.class || Date.class.isAssignableFrom(type)
+            || type.getName().startsWith("java.time.");
+    }
+}
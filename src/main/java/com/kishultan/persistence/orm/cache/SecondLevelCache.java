@@ -0,0 +1,31 @@
+package com.kishultan.persistence.orm.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 二级缓存注解
+ *
+ * 标注在实体类上，EntityManager.findById/findByIds按(实体类, 主键)缓存该实体。
+ * 适合很少修改的参考数据，每个实体类一个缓存区域。
+ *
+ * @author Portal Team
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface SecondLevelCache {
+
+    /**
+     * 缓存条目存活时间（毫秒）
+     */
+    long ttl() default 300000;
+
+    /**
+     * 缓存区域最大条目数
+     */
+    int maxSize() default 1000;
+}
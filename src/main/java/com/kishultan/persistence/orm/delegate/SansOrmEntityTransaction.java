@@ -1,5 +1,6 @@
 package com.kishultan.persistence.orm.delegate;
 
+import com.kishultan.persistence.datasource.ConnectionContext;
 import com.kishultan.persistence.orm.EntityTransaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,7 +12,8 @@ import java.sql.SQLException;
 /**
  * SansOrm事务实现
  * 
- * 使用SansOrm进行轻量级的事务管理
+ * 使用SansOrm进行轻量级的事务管理。事务开始时把连接绑定到当前线程的数据源上，
+ * 提交、回滚或关闭时解除绑定，之后的操作不再使用已结束事务的连接
  * 
  * @author Portal Team
  */
@@ -30,12 +32,21 @@ public class SansOrmEntityTransaction implements EntityTransaction {
     
     /**
      * 开始事务
+     * 
+     * @throws IllegalStateException 事务已经开始
      */
     public void begin() {
+        if (isActive) {
+            throw new IllegalStateException("Transaction is already active");
+        }
+        if (connection != null) {
+            closeConnection();
+        }
         try {
             connection = dataSource.getConnection();
             connection.setAutoCommit(false);
             isActive = true;
+            ConnectionContext.bind(dataSource, connection);
             logger.info("事务开始");
         } catch (SQLException e) {
             logger.error("开始事务失败", e);
@@ -54,6 +65,8 @@ public class SansOrmEntityTransaction implements EntityTransaction {
             connection.commit();
             isActive = false;
             logger.info("事务提交成功");
+            ConnectionContext.afterCommit(dataSource, connection);
+            unbind();
         } catch (SQLException e) {
             logger.error("事务提交失败", e);
             throw new RuntimeException("Failed to commit transaction", e);
@@ -71,6 +84,8 @@ public class SansOrmEntityTransaction implements EntityTransaction {
             connection.rollback();
             isActive = false;
             logger.info("事务回滚成功");
+            ConnectionContext.afterRollback(dataSource, connection);
+            unbind();
         } catch (SQLException e) {
             logger.error("事务回滚失败", e);
             throw new RuntimeException("Failed to rollback transaction", e);
@@ -85,13 +100,28 @@ public class SansOrmEntityTransaction implements EntityTransaction {
         }
         
         if (connection != null) {
-            try {
-                connection.close();
-                logger.debug("事务连接已关闭");
-            } catch (SQLException e) {
-                logger.error("关闭事务连接失败", e);
-            }
+            unbind();
+            closeConnection();
+        }
+    }
+    
+    /**
+     * 解除当前线程上本事务连接的绑定
+     */
+    private void unbind() {
+        if (ConnectionContext.getBoundConnection(dataSource) == connection) {
+            ConnectionContext.unbind(dataSource);
+        }
+    }
+    
+    private void closeConnection() {
+        try {
+            connection.close();
+            logger.debug("事务连接已关闭");
+        } catch (SQLException e) {
+            logger.error("关闭事务连接失败", e);
         }
+        connection = null;
     }
     
     @Override
@@ -1,5 +1,9 @@
 package com.kishultan.persistence.orm.dialect;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
 /**
  * 数据库方言接口
  * 用于处理不同数据库的SQL语法差异
@@ -47,4 +51,31 @@ public interface DatabaseDialect {
      * @return 列名引号字符串
      */
     String getColumnNameQuote();
-} 
\ No newline at end of file
+
+    /**
+     * 开启流式读取前的连接级准备（在创建语句之前调用）
+     * @param connection 数据库连接
+     * @return 是否修改了连接状态，为true时读取结束后需要调用endStreaming恢复
+     */
+    default boolean beginStreaming(Connection connection) throws SQLException {
+        return false;
+    }
+    
+    /**
+     * 为流式读取配置语句
+     * @param connection 数据库连接
+     * @param statement 查询语句
+     * @param fetchSize 期望的每批读取行数
+     */
+    default void configureStreaming(Connection connection, Statement statement, int fetchSize) throws SQLException {
+        statement.setFetchSize(fetchSize);
+    }
+    
+    /**
+     * 流式读取结束后恢复beginStreaming修改的连接状态（在结果集和语句关闭之后调用）
+     * 只在beginStreaming返回true时调用
+     * @param connection 数据库连接
+     */
+    default void endStreaming(Connection connection) throws SQLException {
+    }
+}
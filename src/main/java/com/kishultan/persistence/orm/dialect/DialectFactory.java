@@ -1,5 +1,10 @@
 package com.kishultan.persistence.orm.dialect;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -10,6 +15,8 @@ import java.util.Map;
  */
 public class DialectFactory {
     
+    private static final Logger logger = LoggerFactory.getLogger(DialectFactory.class);
+    
     private static final Map<String, DatabaseDialect> DIALECTS = new HashMap<>();
     
     static {
@@ -32,6 +39,21 @@ public class DialectFactory {
         return dialect;
     }
     
+    /**
+     * 根据连接的数据库产品名称获取方言
+     * @param connection 数据库连接
+     * @return 数据库方言，无法识别时返回null
+     */
+    public static DatabaseDialect getDialect(Connection connection) {
+        try {
+            String productName = connection.getMetaData().getDatabaseProductName();
+            return productName != null ? DIALECTS.get(productName.toLowerCase()) : null;
+        } catch (SQLException e) {
+            logger.warn("获取数据库产品名称失败: {}", e.getMessage());
+            return null;
+        }
+    }
+    
     /**
      * 注册新的数据库方言
      * @param databaseType 数据库类型
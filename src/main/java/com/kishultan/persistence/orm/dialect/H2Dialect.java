@@ -1,5 +1,9 @@
 package com.kishultan.persistence.orm.dialect;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
 /**
  * H2数据库方言实现
  * 
@@ -56,4 +60,48 @@ public class H2Dialect implements DatabaseDialect {
     public String getColumnNameQuote() {
         return "\"";
     }
-} 
\ No newline at end of file
+
+    /**
+     * H2默认先物化整个结果，开启延迟查询执行后按需读取行
+     * 会话已经开启延迟执行时不做修改，结束时也不恢复
+     */
+    @Override
+    public boolean beginStreaming(Connection connection) throws SQLException {
+        if (isLazyQueryExecution(connection)) {
+            return false;
+        }
+        setLazyQueryExecution(connection, true);
+        return true;
+    }
+    
+    /**
+     * 恢复为开启流式读取前的关闭状态
+     */
+    @Override
+    public void endStreaming(Connection connection) throws SQLException {
+        setLazyQueryExecution(connection, false);
+    }
+    
+    /**
+     * 读取会话当前是否开启了延迟查询执行
+     * H2不通过SQL公开该设置，从嵌入式会话读取；无法读取时（如远程连接）按默认值false处理
+     */
+    private boolean isLazyQueryExecution(Connection connection) {
+        try {
+            Class<?> jdbcConnection = Class.forName("org.h2.jdbc.JdbcConnection");
+            if (!connection.isWrapperFor(jdbcConnection)) {
+                return false;
+            }
+            Object session = jdbcConnection.getMethod("getSession").invoke(connection.unwrap(jdbcConnection));
+            return Boolean.TRUE.equals(session.getClass().getMethod("isLazyQueryExecution").invoke(session));
+        } catch (ReflectiveOperationException | SQLException | LinkageError e) {
+            return false;
+        }
+    }
+    
+    private void setLazyQueryExecution(Connection connection, boolean lazy) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET LAZY_QUERY_EXECUTION " + (lazy ? "TRUE" : "FALSE"));
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.kishultan.persistence.orm.dialect;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
 /**
  * MySQL数据库方言实现
  * 
@@ -64,4 +68,23 @@ public class MySQLDialect implements DatabaseDialect {
     public String getColumnNameQuote() {
         return "`";
     }
-} 
\ No newline at end of file
+
+    /**
+     * MySQL驱动默认把整个结果集缓存在客户端：
+     * 连接URL开启了useCursorFetch时按fetchSize使用服务端游标，
+     * 否则使用Integer.MIN_VALUE进入逐行流式模式
+     */
+    @Override
+    public void configureStreaming(Connection connection, Statement statement, int fetchSize) throws SQLException {
+        if (isCursorFetchEnabled(connection)) {
+            statement.setFetchSize(fetchSize);
+        } else {
+            statement.setFetchSize(Integer.MIN_VALUE);
+        }
+    }
+    
+    private boolean isCursorFetchEnabled(Connection connection) throws SQLException {
+        String url = connection.getMetaData().getURL();
+        return url != null && url.toLowerCase().contains("usecursorfetch=true");
+    }
+}
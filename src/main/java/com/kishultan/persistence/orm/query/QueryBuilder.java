@@ -3,6 +3,7 @@ package com.kishultan.persistence.orm.query;
 import com.kishultan.persistence.orm.Columnable;
 import com.kishultan.persistence.orm.query.monitor.QueryPerformanceMonitor;
 import com.kishultan.persistence.orm.query.monitor.QueryMetrics;
+import com.kishultan.persistence.orm.query.cache.CachePolicy;
 import com.kishultan.persistence.orm.query.cache.QueryCache;
 import java.util.List;
 import java.util.function.Consumer;
@@ -50,6 +51,21 @@ public interface QueryBuilder<T> {
     
     // 分页支持
     QueryBuilder<T> limit(int offset, int size);
+
+    // 执行提示（fetchSize、maxRows、结果集类型）
+    QueryBuilder<T> fetchSize(int fetchSize);
+    QueryBuilder<T> maxRows(int maxRows);
+    QueryBuilder<T> readOnly(boolean readOnly);
+    QueryBuilder<T> forwardOnly(boolean forwardOnly);
+    QueryHints getQueryHints();
+
+    /**
+     * 逐行处理查询结果，不在内存中收集整个结果列表
+     * 配合fetchSize使用可实现恒定内存的大结果集读取；连接查询不做主键合并
+     *
+     * @param action 行处理回调
+     */
+    void findEach(Consumer<? super T> action);
     
     // 当前查询字段引用
     String selfField(Columnable<T, ?> fieldSelector);
@@ -67,6 +83,16 @@ public interface QueryBuilder<T> {
     // 缓存支持
     QueryCache getQueryCache();
     
+    /**
+     * 设置本查询的缓存策略，未设置时列表查询缓存5分钟、计数查询缓存1分钟，空结果缓存30秒；
+     * 实体标注了@CacheRegion时未设置策略的查询使用注解声明的区域和TTL
+     * 策略的region指向已创建的区域时结果缓存在该区域，使用CachePolicy.disabled()时本查询不读取也不存储缓存
+     *
+     * @param cachePolicy 缓存策略
+     */
+    QueryBuilder<T> cachePolicy(CachePolicy cachePolicy);
+    CachePolicy getCachePolicy();
+    
     // 自定义映射器支持
     QueryBuilder setRowMapper(RowMapper rowMapper);
     RowMapper<?> getRowMapper();
@@ -0,0 +1,108 @@
+package com.kishultan.persistence.orm.query;
+
+import java.sql.ResultSet;
+
+/**
+ * 查询执行提示
+ * 控制JDBC语句的fetchSize、maxRows、结果集类型和并发模式
+ *
+ * 当设置了fetchSize且结果集为只进、只读时，执行器会按数据库方言开启流式读取
+ * （MySQL逐行流式/游标读取，H2延迟查询执行），大结果集无需整体缓存在客户端
+ *
+ * @author Portal Team
+ */
+public class QueryHints {
+
+    private int fetchSize = 0;       // 0表示使用驱动默认值
+    private int maxRows = 0;         // 0表示不限制
+    private boolean readOnly = true;
+    private boolean forwardOnly = true;
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0) {
+            throw new IllegalArgumentException("fetchSize不能为负数: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    public void setMaxRows(int maxRows) {
+        if (maxRows < 0) {
+            throw new IllegalArgumentException("maxRows不能为负数: " + maxRows);
+        }
+        this.maxRows = maxRows;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    public boolean isForwardOnly() {
+        return forwardOnly;
+    }
+
+    public void setForwardOnly(boolean forwardOnly) {
+        this.forwardOnly = forwardOnly;
+    }
+
+    /**
+     * 是否需要按方言开启流式读取
+     */
+    public boolean isStreaming() {
+        return fetchSize > 0 && readOnly && forwardOnly;
+    }
+
+    /**
+     * 是否全部为默认值（无需额外配置语句）
+     */
+    public boolean isDefault() {
+        return fetchSize == 0 && maxRows == 0 && readOnly && forwardOnly;
+    }
+
+    /**
+     * 对应的JDBC结果集类型
+     */
+    public int getResultSetType() {
+        return forwardOnly ? ResultSet.TYPE_FORWARD_ONLY : ResultSet.TYPE_SCROLL_INSENSITIVE;
+    }
+
+    /**
+     * 对应的JDBC结果集并发模式
+     */
+    public int getResultSetConcurrency() {
+        return readOnly ? ResultSet.CONCUR_READ_ONLY : ResultSet.CONCUR_UPDATABLE;
+    }
+
+    /**
+     * 复制当前提示
+     */
+    public QueryHints copy() {
+        QueryHints copy = new QueryHints();
+        copy.fetchSize = this.fetchSize;
+        copy.maxRows = this.maxRows;
+        copy.readOnly = this.readOnly;
+        copy.forwardOnly = this.forwardOnly;
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryHints{" +
+                "fetchSize=" + fetchSize +
+                ", maxRows=" + maxRows +
+                ", readOnly=" + readOnly +
+                ", forwardOnly=" + forwardOnly +
+                '}';
+    }
+}
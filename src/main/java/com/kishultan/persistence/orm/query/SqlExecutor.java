@@ -1,6 +1,7 @@
 package com.kishultan.persistence.orm.query;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * SQL执行器接口
@@ -17,7 +18,26 @@ public interface SqlExecutor {
      * 执行查询并返回结果列表（使用指定的RowMapper）
      */
     <T> List<T> executeQuery(String sql, List<Object> parameters, Class<T> resultType, RowMapper<T> mapper);
-    
+
+    /**
+     * 执行查询并返回结果列表（应用查询提示）
+     * 默认实现忽略提示
+     */
+    default <T> List<T> executeQuery(String sql, List<Object> parameters, Class<T> resultType, RowMapper<T> mapper, QueryHints hints) {
+        return executeQuery(sql, parameters, resultType, mapper);
+    }
+
+    /**
+     * 执行查询并逐行回调（应用查询提示）
+     * 默认实现先收集结果列表再回调
+     */
+    default <T> void executeQuery(String sql, List<Object> parameters, Class<T> resultType, RowMapper<T> mapper,
+                                  QueryHints hints, Consumer<? super T> action) {
+        for (T row : executeQuery(sql, parameters, resultType, mapper, hints)) {
+            action.accept(row);
+        }
+    }
+
     /**
      * 执行查询并返回结果列表（使用指定的ResultSetMapper）
      */
@@ -27,6 +27,13 @@ public class CacheConfig {
     private boolean enableStatistics = true;
     private boolean enableWarmUp = false;
     private long maxMemoryUsage = 100 * 1024 * 1024; // 100MB
+    private Weigher weigher;
+    private boolean offHeapEnabled = false;
+    private long offHeapCapacity = 256 * 1024 * 1024; // 256MB
+    private long offHeapThreshold = 64 * 1024; // 64KB
+    private String persistentPath;
+    private long persistentMaxSize = 256 * 1024 * 1024; // 256MB
+    private long persistentInterval = 300000; // 5分钟
     
     /**
      * 默认构造函数
@@ -129,6 +136,79 @@ public class CacheConfig {
         this.maxMemoryUsage = Math.max(1024 * 1024, maxMemoryUsage); // 最小1MB
     }
     
+    /**
+     * 获取条目权重计算器，为null时使用EntityGraphWeigher
+     */
+    public Weigher getWeigher() {
+        return weigher;
+    }
+    
+    public void setWeigher(Weigher weigher) {
+        this.weigher = weigher;
+    }
+    
+    /**
+     * 是否启用堆外缓存层
+     * 启用后大结果直接保存到堆外，堆内淘汰的条目降级到堆外
+     */
+    public boolean isOffHeapEnabled() {
+        return offHeapEnabled;
+    }
+    
+    public void setOffHeapEnabled(boolean offHeapEnabled) {
+        this.offHeapEnabled = offHeapEnabled;
+    }
+    
+    public long getOffHeapCapacity() {
+        return offHeapCapacity;
+    }
+    
+    public void setOffHeapCapacity(long offHeapCapacity) {
+        this.offHeapCapacity = Math.max(1024 * 1024, offHeapCapacity); // 最小1MB
+    }
+    
+    /**
+     * 获取直接保存到堆外的结果大小阈值（字节），按Weigher估算的权重比较
+     */
+    public long getOffHeapThreshold() {
+        return offHeapThreshold;
+    }
+    
+    public void setOffHeapThreshold(long offHeapThreshold) {
+        this.offHeapThreshold = Math.max(0, offHeapThreshold);
+    }
+    
+    /**
+     * 获取持久化快照文件路径，为null时不持久化
+     * 配置后缓存创建时装载上次保存的快照，关闭时和每隔persistentInterval保存一次
+     */
+    public String getPersistentPath() {
+        return persistentPath;
+    }
+    
+    public void setPersistentPath(String persistentPath) {
+        this.persistentPath = persistentPath;
+    }
+    
+    public long getPersistentMaxSize() {
+        return persistentMaxSize;
+    }
+    
+    public void setPersistentMaxSize(long persistentMaxSize) {
+        this.persistentMaxSize = Math.max(1024 * 1024, persistentMaxSize); // 最小1MB
+    }
+    
+    /**
+     * 获取定期保存快照的间隔（毫秒），小于等于0时只在关闭时保存
+     */
+    public long getPersistentInterval() {
+        return persistentInterval;
+    }
+    
+    public void setPersistentInterval(long persistentInterval) {
+        this.persistentInterval = persistentInterval;
+    }
+    
     /**
      * 创建默认配置
      * 
@@ -178,7 +258,7 @@ public class CacheConfig {
         config.setMaxSize(50000);
         config.setDefaultTtl(1800000); // 30分钟
         config.setCleanupInterval(120000); // 2分钟
-        config.setStrategyType(CacheStrategy.StrategyType.LFU);
+        config.setStrategyType(CacheStrategy.StrategyType.W_TINY_LFU);
         config.setMaxMemoryUsage(1024 * 1024 * 1024); // 1GB
         config.setThreadPoolSize(8);
         return config;
@@ -0,0 +1,185 @@
+package com.kishultan.persistence.orm.query.cache;
+
+/**
+ * 查询级缓存策略
+ *
+ * hardTtl是条目的最长生存时间，超过后命中失效，调用方同步执行查询。
+ * softTtl小于hardTtl时启用过期后重新验证（stale-while-revalidate）：
+ * 超过softTtl的命中仍返回缓存结果，同时在缓存的执行器上异步刷新一次，刷新完成前的命中继续返回旧结果。
+ * readOnly时列表查询命中返回只读视图，元素在访问时才从快照创建，省去一次性创建全部实体的开销。
+ *
+ * 空列表和为0的计数按negativeTtl缓存，避免反复查询不存在的数据；negativeTtl为0时不缓存空结果。
+ * 超过maxResultSize行的列表不缓存。命中、未命中和存储按region分组统计。
+ *
+ * 策略不可变，readOnly和withXxx方法返回新的策略。
+ *
+ * @author Portal Team
+ */
+public final class CachePolicy {
+
+    /** 列表查询的默认TTL：5分钟 */
+    public static final long DEFAULT_LIST_TTL = 300000;
+    /** 计数查询的默认TTL：1分钟 */
+    public static final long DEFAULT_COUNT_TTL = 60000;
+    /** 空结果的默认TTL：30秒 */
+    public static final long DEFAULT_NEGATIVE_TTL = 30000;
+    /** 默认统计区域 */
+    public static final String DEFAULT_REGION = "default";
+
+    private static final CachePolicy DISABLED = new CachePolicy(false, 0, 0, false, 0, 0, DEFAULT_REGION);
+
+    private final boolean enabled;
+    private final long softTtl;
+    private final long hardTtl;
+    private final boolean readOnly;
+    private final long negativeTtl;
+    private final int maxResultSize;
+    private final String region;
+
+    private CachePolicy(boolean enabled, long softTtl, long hardTtl, boolean readOnly, long negativeTtl,
+                        int maxResultSize, String region) {
+        if (hardTtl < 0 || softTtl < 0 || negativeTtl < 0) {
+            throw new IllegalArgumentException("TTL不能为负数: softTtl=" + softTtl + ", hardTtl=" + hardTtl
+                + ", negativeTtl=" + negativeTtl);
+        }
+        if (hardTtl > 0 && softTtl > hardTtl) {
+            throw new IllegalArgumentException("softTtl不能大于hardTtl: softTtl=" + softTtl + ", hardTtl=" + hardTtl);
+        }
+        if (maxResultSize < 0) {
+            throw new IllegalArgumentException("maxResultSize不能为负数: " + maxResultSize);
+        }
+        this.enabled = enabled;
+        this.softTtl = softTtl;
+        this.hardTtl = hardTtl;
+        this.readOnly = readOnly;
+        this.negativeTtl = negativeTtl;
+        this.maxResultSize = maxResultSize;
+        this.region = region != null && !region.isEmpty() ? region : DEFAULT_REGION;
+    }
+
+    /**
+     * 固定TTL，过期后同步查询
+     *
+     * @param ttl 生存时间（毫秒），0表示使用缓存的默认TTL
+     */
+    public static CachePolicy ttl(long ttl) {
+        return new CachePolicy(true, 0, ttl, false, DEFAULT_NEGATIVE_TTL, 0, DEFAULT_REGION);
+    }
+
+    /**
+     * 过期后重新验证
+     *
+     * @param softTtl 超过后异步刷新的时间（毫秒）
+     * @param hardTtl 超过后同步查询的时间（毫秒）
+     */
+    public static CachePolicy staleWhileRevalidate(long softTtl, long hardTtl) {
+        return new CachePolicy(true, softTtl, hardTtl, false, DEFAULT_NEGATIVE_TTL, 0, DEFAULT_REGION);
+    }
+
+    /**
+     * 不使用缓存，既不读取也不存储
+     */
+    public static CachePolicy disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * 返回命中时使用只读视图的策略
+     * 调用方不能修改返回的列表，修改返回的实体不影响缓存
+     */
+    public CachePolicy readOnly() {
+        return new CachePolicy(enabled, softTtl, hardTtl, true, negativeTtl, maxResultSize, region);
+    }
+
+    /**
+     * 返回指定空结果TTL的策略
+     *
+     * @param negativeTtl 空列表和为0的计数的生存时间（毫秒），0表示不缓存空结果
+     */
+    public CachePolicy withNegativeTtl(long negativeTtl) {
+        return new CachePolicy(enabled, softTtl, hardTtl, readOnly, negativeTtl, maxResultSize, region);
+    }
+
+    /**
+     * 返回限制结果行数的策略
+     *
+     * @param maxResultSize 可缓存的最大行数，0表示不限制
+     */
+    public CachePolicy withMaxResultSize(int maxResultSize) {
+        return new CachePolicy(enabled, softTtl, hardTtl, readOnly, negativeTtl, maxResultSize, region);
+    }
+
+    /**
+     * 返回指定统计区域的策略
+     *
+     * @param region 区域名称，为空时使用默认区域
+     */
+    public CachePolicy withRegion(String region) {
+        return new CachePolicy(enabled, softTtl, hardTtl, readOnly, negativeTtl, maxResultSize, region);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getSoftTtl() {
+        return softTtl;
+    }
+
+    public long getHardTtl() {
+        return hardTtl;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public long getNegativeTtl() {
+        return negativeTtl;
+    }
+
+    public int getMaxResultSize() {
+        return maxResultSize;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    /**
+     * 是否在命中时异步刷新
+     */
+    public boolean isRefreshAhead() {
+        return softTtl > 0 && (hardTtl == 0 || softTtl < hardTtl);
+    }
+
+    /**
+     * 是否缓存指定行数的结果
+     *
+     * @param resultSize 结果行数，计数查询为0或1
+     */
+    public boolean accepts(int resultSize) {
+        if (!enabled) {
+            return false;
+        }
+        if (resultSize == 0) {
+            return negativeTtl > 0;
+        }
+        return maxResultSize == 0 || resultSize <= maxResultSize;
+    }
+
+    /**
+     * 空结果使用的策略：固定TTL为negativeTtl，不超过hardTtl，不刷新
+     */
+    public CachePolicy forNegativeResult() {
+        long ttl = hardTtl > 0 ? Math.min(negativeTtl, hardTtl) : negativeTtl;
+        return new CachePolicy(enabled, 0, ttl, readOnly, negativeTtl, maxResultSize, region);
+    }
+
+    @Override
+    public String toString() {
+        return "CachePolicy{enabled=" + enabled + ", softTtl=" + softTtl + ", hardTtl=" + hardTtl
+            + ", readOnly=" + readOnly + ", negativeTtl=" + negativeTtl + ", maxResultSize=" + maxResultSize
+            + ", region=" + region + "}";
+    }
+}
@@ -0,0 +1,73 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 查询缓存区域注解
+ *
+ * 标注在实体类上，该实体的查询结果缓存在独立的区域中：区域有自己的容量、淘汰策略和统计信息，
+ * 不同访问模式的查询（参考数据、频繁修改的表、报表查询）不会互相淘汰。
+ * 查询通过cachePolicy设置了策略时以该策略为准，策略的region指向已创建的区域时同样使用该区域。
+ *
+ * fullTable为true时区域缓存整张表，只有简单条件的单表查询直接在内存中求值，不访问数据库；
+ * 表被修改后整表快照失效，下次查询时重新装载。只适合行数不多、很少修改的参考表。
+ * 内存中的字符串比较区分大小写且不忽略末尾空格，与MySQL默认的_ci排序规则不同，
+ * 因此字符串字段上的条件默认仍由数据库执行，列的排序规则区分大小写时可通过caseSensitiveStrings开启。
+ *
+ * @author Portal Team
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface CacheRegion {
+
+    /**
+     * 区域名称，为空时使用实体类的全限定名；同名的实体共享一个区域
+     */
+    String value() default "";
+
+    /**
+     * 缓存条目存活时间（毫秒）
+     */
+    long ttl() default CachePolicy.DEFAULT_LIST_TTL;
+
+    /**
+     * 区域最大条目数
+     */
+    int maxSize() default CacheConfig.DEFAULT_MAX_SIZE;
+
+    /**
+     * 区域最大权重（字节），不大于0时使用默认值
+     */
+    long maxWeight() default 0;
+
+    /**
+     * 淘汰策略
+     */
+    CacheStrategy.StrategyType strategy() default CacheStrategy.StrategyType.LRU;
+
+    /**
+     * 列表查询命中时是否返回只读视图
+     */
+    boolean readOnly() default false;
+
+    /**
+     * 是否缓存整张表并在内存中对查询条件求值
+     */
+    boolean fullTable() default false;
+
+    /**
+     * 整表快照上建立哈希索引的列名，用于等值和IN条件
+     */
+    String[] indexes() default {};
+
+    /**
+     * 字符串字段的比较、LIKE、IN和BETWEEN条件是否在内存中求值，
+     * 只有表中字符串列的排序规则区分大小写（如utf8mb4_bin）时才能开启
+     */
+    boolean caseSensitiveStrings() default false;
+}
@@ -1,179 +1,414 @@
 package com.kishultan.persistence.orm.query.cache;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 缓存统计信息类
  * 记录缓存的各种统计信息
- * 
+ *
+ * 计数器使用LongAdder，高并发下不丢失更新，也不在同一个字段上竞争。
+ * 时间使用单调的System.nanoTime()记录，只在读取时转换为LocalDateTime。
+ * 另外按分钟记录最近60个区间的命中、未命中、加载和淘汰次数，并按区域和实体分组统计。
+ *
  * @author Portal Team
  */
 public class CacheStatistics {
-    
-    private long hitCount = 0;
-    private long missCount = 0;
-    private long putCount = 0;
-    private long removeCount = 0;
-    private long evictionCount = 0;
-    private long totalAccessCount = 0;
-    private long totalMemoryUsage = 0;
-    private LocalDateTime startTime = LocalDateTime.now();
-    private LocalDateTime lastAccessTime;
-    private LocalDateTime lastPutTime;
-    private LocalDateTime lastRemoveTime;
-    
+
+    private static final int INTERVAL_COUNT = 60;
+    private static final long INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder putCount = new LongAdder();
+    private final LongAdder removeCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder refreshCount = new LongAdder();
+    private final LongAdder refreshFailureCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalMemoryUsage = new LongAdder();
+    private final LoadTimeHistogram loadTimes = new LoadTimeHistogram();
+    private volatile long startMillis = System.currentTimeMillis();
+    private volatile long startNanos = System.nanoTime();
+    private volatile long lastAccessNanos;
+    private volatile long lastPutNanos;
+    private volatile long lastRemoveNanos;
+    private final AtomicReferenceArray<Interval> intervals = new AtomicReferenceArray<>(INTERVAL_COUNT);
+    private final Map<String, RegionStatistics> regions = new ConcurrentHashMap<>();
+    private final Map<String, RegionStatistics> entities = new ConcurrentHashMap<>();
+
     /**
      * 记录缓存命中
      */
     public void recordHit() {
-        this.hitCount++;
-        this.totalAccessCount++;
-        this.lastAccessTime = LocalDateTime.now();
+        hitCount.increment();
+        long now = System.nanoTime();
+        lastAccessNanos = now;
+        currentInterval(now).hits.increment();
     }
-    
+
     /**
      * 记录缓存未命中
      */
     public void recordMiss() {
-        this.missCount++;
-        this.totalAccessCount++;
-        this.lastAccessTime = LocalDateTime.now();
+        missCount.increment();
+        long now = System.nanoTime();
+        lastAccessNanos = now;
+        currentInterval(now).misses.increment();
     }
-    
+
     /**
      * 记录缓存存储
-     * 
+     *
      * @param memoryUsage 内存使用量
      */
     public void recordPut(long memoryUsage) {
-        this.putCount++;
-        this.totalMemoryUsage += memoryUsage;
-        this.lastPutTime = LocalDateTime.now();
+        putCount.increment();
+        totalMemoryUsage.add(memoryUsage);
+        lastPutNanos = System.nanoTime();
     }
-    
+
     /**
      * 记录缓存移除
-     * 
+     *
      * @param memoryUsage 释放的内存使用量
      */
     public void recordRemove(long memoryUsage) {
-        this.removeCount++;
-        this.totalMemoryUsage = Math.max(0, this.totalMemoryUsage - memoryUsage);
-        this.lastRemoveTime = LocalDateTime.now();
+        removeCount.increment();
+        totalMemoryUsage.add(-memoryUsage);
+        lastRemoveNanos = System.nanoTime();
     }
-    
+
     /**
      * 记录缓存淘汰
-     * 
+     *
      * @param memoryUsage 释放的内存使用量
      */
     public void recordEviction(long memoryUsage) {
-        this.evictionCount++;
-        this.totalMemoryUsage = Math.max(0, this.totalMemoryUsage - memoryUsage);
+        evictionCount.increment();
+        totalMemoryUsage.add(-memoryUsage);
+        currentInterval(System.nanoTime()).evictions.increment();
+    }
+
+    /**
+     * 记录过期后的异步刷新
+     *
+     * @param success 是否刷新成功
+     */
+    public void recordRefresh(boolean success) {
+        if (success) {
+            refreshCount.increment();
+        } else {
+            refreshFailureCount.increment();
+        }
+    }
+
+    /**
+     * 记录未命中后执行查询的加载
+     *
+     * @param nanos 加载耗时（纳秒）
+     * @param success 是否加载成功
+     */
+    public void recordLoad(long nanos, boolean success) {
+        if (success) {
+            loadTimes.record(nanos);
+        } else {
+            loadFailureCount.increment();
+        }
+        currentInterval(System.nanoTime()).loads.increment();
+    }
+
+    /**
+     * 获取区域的统计信息，不存在时创建
+     *
+     * @param region 区域名称
+     * @return 区域统计信息
+     */
+    public RegionStatistics getRegionStatistics(String region) {
+        return regions.computeIfAbsent(region, RegionStatistics::new);
+    }
+
+    /**
+     * 获取所有区域的统计信息
+     *
+     * @return 区域名称到统计信息的映射
+     */
+    public Map<String, RegionStatistics> getRegionStatistics() {
+        return Collections.unmodifiableMap(regions);
+    }
+
+    /**
+     * 获取实体的统计信息，不存在时创建
+     *
+     * @param entity 实体类名
+     * @return 实体统计信息
+     */
+    public RegionStatistics getEntityStatistics(String entity) {
+        return entities.computeIfAbsent(entity, RegionStatistics::new);
+    }
+
+    /**
+     * 获取所有实体的统计信息
+     *
+     * @return 实体类名到统计信息的映射
+     */
+    public Map<String, RegionStatistics> getEntityStatistics() {
+        return Collections.unmodifiableMap(entities);
+    }
+
+    /**
+     * 获取最近的分钟区间统计
+     *
+     * @param minutes 区间个数，最多60
+     * @return 按时间从早到晚排列的区间，包含当前未结束的区间；没有任何记录的区间计数为0
+     */
+    public List<IntervalSnapshot> getIntervalSnapshots(int minutes) {
+        long start = startNanos;
+        long current = (System.nanoTime() - start) / INTERVAL_NANOS;
+        int count = (int) Math.min(Math.min(minutes, INTERVAL_COUNT), current + 1);
+        List<IntervalSnapshot> snapshots = new ArrayList<>(Math.max(0, count));
+        for (long index = current - count + 1; index <= current; index++) {
+            Interval interval = intervals.get((int) (index % INTERVAL_COUNT));
+            LocalDateTime time = toDateTime(start + index * INTERVAL_NANOS);
+            snapshots.add(interval != null && interval.index == index
+                ? new IntervalSnapshot(time, interval.hits.sum(), interval.misses.sum(), interval.loads.sum(),
+                    interval.evictions.sum())
+                : new IntervalSnapshot(time, 0, 0, 0, 0));
+        }
+        return snapshots;
+    }
+
+    /**
+     * 获取当前时间所在的区间，进入新区间时替换环中最旧的区间
+     */
+    private Interval currentInterval(long now) {
+        // reset之前取得的时间可能早于新的起始时间
+        long index = Math.max(0, (now - startNanos) / INTERVAL_NANOS);
+        int slot = (int) (index % INTERVAL_COUNT);
+        Interval interval = intervals.get(slot);
+        while (interval == null || interval.index < index) {
+            Interval next = new Interval(index);
+            if (intervals.compareAndSet(slot, interval, next)) {
+                return next;
+            }
+            interval = intervals.get(slot);
+        }
+        return interval;
     }
-    
+
     // Getter方法
-    
+
     public long getHitCount() {
-        return hitCount;
+        return hitCount.sum();
     }
-    
+
     public long getMissCount() {
-        return missCount;
+        return missCount.sum();
     }
-    
+
     public long getPutCount() {
-        return putCount;
+        return putCount.sum();
     }
-    
+
     public long getRemoveCount() {
-        return removeCount;
+        return removeCount.sum();
     }
-    
+
     public long getEvictionCount() {
-        return evictionCount;
+        return evictionCount.sum();
+    }
+
+    public long getRefreshCount() {
+        return refreshCount.sum();
+    }
+
+    public long getRefreshFailureCount() {
+        return refreshFailureCount.sum();
+    }
+
+    public long getLoadCount() {
+        return loadTimes.getCount();
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount.sum();
+    }
+
+    public LoadTimeHistogram getLoadTimes() {
+        return loadTimes;
     }
-    
+
     public long getTotalAccessCount() {
-        return totalAccessCount;
+        return hitCount.sum() + missCount.sum();
     }
-    
+
     public long getTotalMemoryUsage() {
-        return totalMemoryUsage;
+        return Math.max(0, totalMemoryUsage.sum());
     }
-    
+
     public LocalDateTime getStartTime() {
-        return startTime;
+        return toDateTime(startNanos);
     }
-    
+
     public LocalDateTime getLastAccessTime() {
-        return lastAccessTime;
+        return lastAccessNanos != 0 ? toDateTime(lastAccessNanos) : null;
     }
-    
+
     public LocalDateTime getLastPutTime() {
-        return lastPutTime;
+        return lastPutNanos != 0 ? toDateTime(lastPutNanos) : null;
     }
-    
+
     public LocalDateTime getLastRemoveTime() {
-        return lastRemoveTime;
+        return lastRemoveNanos != 0 ? toDateTime(lastRemoveNanos) : null;
     }
-    
+
+    /**
+     * 把nanoTime转换为墙上时间
+     */
+    private LocalDateTime toDateTime(long nanos) {
+        long millis = startMillis + TimeUnit.NANOSECONDS.toMillis(nanos - startNanos);
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
     /**
      * 获取缓存命中率
-     * 
+     *
      * @return 命中率（0-1）
      */
     public double getHitRate() {
-        return totalAccessCount > 0 ? (double) hitCount / totalAccessCount : 0.0;
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total > 0 ? (double) hits / total : 0.0;
     }
-    
+
     /**
      * 获取缓存未命中率
-     * 
+     *
      * @return 未命中率（0-1）
      */
     public double getMissRate() {
-        return totalAccessCount > 0 ? (double) missCount / totalAccessCount : 0.0;
+        long misses = missCount.sum();
+        long total = hitCount.sum() + misses;
+        return total > 0 ? (double) misses / total : 0.0;
     }
-    
+
     /**
      * 获取平均内存使用量
-     * 
+     *
      * @return 平均内存使用量（字节）
      */
     public double getAverageMemoryUsage() {
-        return putCount > 0 ? (double) totalMemoryUsage / putCount : 0.0;
+        long puts = putCount.sum();
+        return puts > 0 ? (double) getTotalMemoryUsage() / puts : 0.0;
     }
-    
+
     /**
      * 获取运行时间（秒）
-     * 
+     *
      * @return 运行时间
      */
     public long getRunningTimeSeconds() {
-        return java.time.Duration.between(startTime, LocalDateTime.now()).getSeconds();
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
     }
-    
+
     /**
      * 重置统计信息
      */
     public void reset() {
-        this.hitCount = 0;
-        this.missCount = 0;
-        this.putCount = 0;
-        this.removeCount = 0;
-        this.evictionCount = 0;
-        this.totalAccessCount = 0;
-        this.totalMemoryUsage = 0;
-        this.startTime = LocalDateTime.now();
-        this.lastAccessTime = null;
-        this.lastPutTime = null;
-        this.lastRemoveTime = null;
-    }
-    
+        hitCount.reset();
+        missCount.reset();
+        putCount.reset();
+        removeCount.reset();
+        evictionCount.reset();
+        refreshCount.reset();
+        refreshFailureCount.reset();
+        loadFailureCount.reset();
+        totalMemoryUsage.reset();
+        loadTimes.reset();
+        startMillis = System.currentTimeMillis();
+        startNanos = System.nanoTime();
+        lastAccessNanos = 0;
+        lastPutNanos = 0;
+        lastRemoveNanos = 0;
+        for (int i = 0; i < INTERVAL_COUNT; i++) {
+            intervals.set(i, null);
+        }
+        regions.clear();
+        entities.clear();
+    }
+
     @Override
     public String toString() {
         return String.format("CacheStatistics{hitRate=%.2f%%, missRate=%.2f%%, totalAccess=%d, memoryUsage=%d bytes, runningTime=%d seconds}",
-                getHitRate() * 100, getMissRate() * 100, totalAccessCount, totalMemoryUsage, getRunningTimeSeconds());
+                getHitRate() * 100, getMissRate() * 100, getTotalAccessCount(), getTotalMemoryUsage(), getRunningTimeSeconds());
+    }
+
+    /**
+     * 一分钟区间内的计数器
+     */
+    private static final class Interval {
+        private final long index;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder loads = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        Interval(long index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * 分钟区间统计快照
+     */
+    public static final class IntervalSnapshot {
+        private final LocalDateTime startTime;
+        private final long hits;
+        private final long misses;
+        private final long loads;
+        private final long evictions;
+
+        IntervalSnapshot(LocalDateTime startTime, long hits, long misses, long loads, long evictions) {
+            this.startTime = startTime;
+            this.hits = hits;
+            this.misses = misses;
+            this.loads = loads;
+            this.evictions = evictions;
+        }
+
+        public LocalDateTime getStartTime() {
+            return startTime;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getLoads() {
+            return loads;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        @Override
+        public String toString() {
+            return "IntervalSnapshot{startTime=" + startTime + ", hits=" + hits + ", misses=" + misses
+                + ", loads=" + loads + ", evictions=" + evictions + "}";
+        }
     }
 }
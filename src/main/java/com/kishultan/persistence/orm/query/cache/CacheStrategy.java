@@ -1,6 +1,8 @@
 package com.kishultan.persistence.orm.query.cache;
 
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * 缓存策略接口
@@ -18,6 +20,7 @@ public interface CacheStrategy {
         LFU,    // 最少频率使用
         TTL,    // 基于时间过期
         SIZE,   // 基于大小限制
+        W_TINY_LFU, // 窗口LRU + 频率准入的分段淘汰
         CUSTOM  // 自定义策略
     }
     
@@ -92,4 +95,92 @@ public interface CacheStrategy {
      * @return 策略统计信息
      */
     StrategyStatistics getStatistics();
+    
+    /**
+     * 是否由策略自身维护容量
+     * 返回true时缓存不再调用canAddEntry/getEvictionCandidates，
+     * 而是由策略在记录存储时自行淘汰，并通过淘汰监听器通知缓存
+     * 
+     * @return 是否由策略维护容量
+     */
+    default boolean isCapacityManaged() {
+        return false;
+    }
+    
+    /**
+     * 设置缓存容量
+     * 
+     * @param maxSize 最大缓存条目数
+     */
+    default void configureCapacity(int maxSize) {
+    }
+    
+    /**
+     * 绑定淘汰监听器，策略淘汰条目时回调，参数为被淘汰的缓存键
+     * 
+     * @param listener 淘汰监听器
+     */
+    default void bindEvictionListener(Consumer<String> listener) {
+    }
+    
+    /**
+     * 绑定淘汰监听器，参数为被淘汰的缓存键和记录存储时传入的条目（未传入时为null），
+     * 缓存据此只移除策略淘汰的那个条目
+     * 
+     * @param listener 淘汰监听器
+     */
+    default void bindEntryEvictionListener(BiConsumer<String, Object> listener) {
+        bindEvictionListener(cacheKey -> listener.accept(cacheKey, null));
+    }
+    
+    /**
+     * 记录缓存条目被移除（主动删除或过期），不会触发淘汰监听器
+     * 
+     * @param cacheKey 缓存键
+     */
+    default void recordRemoval(String cacheKey) {
+    }
+    
+    /**
+     * 记录缓存条目被移除，策略跟踪的已是其他条目时忽略
+     * 
+     * @param cacheKey 缓存键
+     * @param entry 被移除的条目，与recordStore传入的条目比较身份
+     */
+    default void recordRemoval(String cacheKey, Object entry) {
+        recordRemoval(cacheKey);
+    }
+    
+    /**
+     * 设置缓存权重上限，0表示不按权重限制
+     * 
+     * @param maximumWeight 权重总和上限（字节）
+     */
+    default void configureMaximumWeight(long maximumWeight) {
+    }
+    
+    /**
+     * 记录带权重的缓存存储，由策略维护容量时按权重淘汰
+     * 
+     * @param cacheKey 缓存键
+     * @param storeTime 存储时间
+     * @param ttl 生存时间
+     * @param weight 条目权重（字节）
+     */
+    default void recordStore(String cacheKey, long storeTime, long ttl, long weight) {
+        recordStore(cacheKey, storeTime, ttl);
+    }
+    
+    /**
+     * 记录带权重的缓存存储，并记下条目身份，淘汰和移除时据此区分同一缓存键的新旧条目
+     * 
+     * @param cacheKey 缓存键
+     * @param storeTime 存储时间
+     * @param ttl 生存时间
+     * @param weight 条目权重（字节）
+     * @param entry 存储的条目
+     */
+    default void recordStore(String cacheKey, long storeTime, long ttl, long weight, Object entry) {
+        recordStore(cacheKey, storeTime, ttl, weight);
+    }
 }
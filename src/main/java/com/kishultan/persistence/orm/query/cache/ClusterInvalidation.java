@@ -0,0 +1,100 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 集群缓存失效入口
+ *
+ * 安装失效总线后，TableVersionTracker的表版本递增和实体缓存的移除会广播给其他节点；
+ * 收到其他节点的表修改时只在本地递增版本，不再广播。未安装总线时所有方法都是空操作。
+ *
+ * @author Portal Team
+ */
+public final class ClusterInvalidation {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterInvalidation.class);
+
+    private static final CopyOnWriteArrayList<InvalidationListener> localListeners = new CopyOnWriteArrayList<>();
+    private static volatile InvalidationBus bus;
+
+    private ClusterInvalidation() {
+    }
+
+    /**
+     * 安装失效总线，替换已安装的总线（不关闭旧总线）
+     */
+    public static synchronized void install(InvalidationBus invalidationBus) {
+        bus = invalidationBus;
+        invalidationBus.addListener(new InvalidationListener() {
+            @Override
+            public void onTablesInvalidated(Set<String> tables) {
+                if (bus != invalidationBus) {
+                    return;
+                }
+                TableVersionTracker.applyRemoteBump(tables);
+                for (InvalidationListener listener : localListeners) {
+                    listener.onTablesInvalidated(tables);
+                }
+            }
+
+            @Override
+            public void onEntitiesEvicted(String region, Set<String> keys) {
+                if (bus != invalidationBus) {
+                    return;
+                }
+                for (InvalidationListener listener : localListeners) {
+                    listener.onEntitiesEvicted(region, keys);
+                }
+            }
+        });
+        logger.info("集群缓存失效已启用，节点: {}", invalidationBus.getNodeId());
+    }
+
+    /**
+     * 卸载失效总线
+     *
+     * @return 卸载前的总线，未安装时返回null
+     */
+    public static synchronized InvalidationBus uninstall() {
+        InvalidationBus previous = bus;
+        bus = null;
+        return previous;
+    }
+
+    public static InvalidationBus getBus() {
+        return bus;
+    }
+
+    /**
+     * 注册本地缓存的监听器，接收其他节点的失效
+     */
+    public static void addLocalListener(InvalidationListener listener) {
+        localListeners.addIfAbsent(listener);
+    }
+
+    public static void removeLocalListener(InvalidationListener listener) {
+        localListeners.remove(listener);
+    }
+
+    static void publishTables(Collection<String> tables) {
+        InvalidationBus current = bus;
+        if (current != null && !tables.isEmpty()) {
+            current.publishTables(tables);
+        }
+    }
+
+    /**
+     * 广播实体缓存条目移除
+     */
+    public static void publishEntityEviction(String region, String key) {
+        InvalidationBus current = bus;
+        if (current != null) {
+            current.publishEntityEviction(region, key);
+        }
+    }
+}
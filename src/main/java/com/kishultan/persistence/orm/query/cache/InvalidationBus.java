@@ -0,0 +1,47 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import java.util.Collection;
+
+/**
+ * 缓存失效总线
+ * 把本节点的表版本递增和实体缓存移除广播给其他节点，并把其他节点的失效分发给本地监听器。
+ *
+ * @author Portal Team
+ */
+public interface InvalidationBus {
+
+    /**
+     * 广播表修改
+     *
+     * @param tables 表名，"*"表示所有表
+     */
+    void publishTables(Collection<String> tables);
+
+    /**
+     * 广播实体缓存条目移除
+     *
+     * @param region 缓存区域（实体类名）
+     * @param key 区域内的缓存键
+     */
+    void publishEntityEviction(String region, String key);
+
+    /**
+     * 注册接收其他节点失效的监听器
+     */
+    void addListener(InvalidationListener listener);
+
+    /**
+     * 立即发送尚未发送的消息
+     */
+    void flush();
+
+    /**
+     * 获取本节点标识，自己发出的消息不会再分发给本节点
+     */
+    String getNodeId();
+
+    /**
+     * 发送剩余消息并关闭
+     */
+    void close();
+}
@@ -0,0 +1,28 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import java.util.Set;
+
+/**
+ * 失效消息监听器，接收其他节点广播的失效
+ *
+ * @author Portal Team
+ */
+public interface InvalidationListener {
+
+    /**
+     * 其他节点修改了这些表
+     *
+     * @param tables 表名（已统一格式），包含"*"时表示所有表
+     */
+    default void onTablesInvalidated(Set<String> tables) {
+    }
+
+    /**
+     * 其他节点移除了这些实体缓存条目
+     *
+     * @param region 缓存区域（实体类名）
+     * @param keys 区域内的缓存键
+     */
+    default void onEntitiesEvicted(String region, Set<String> keys) {
+    }
+}
@@ -0,0 +1,32 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * 失效消息传输接口
+ * 负责在节点之间投递已编码的失效消息，可基于Redis发布订阅、消息队列、组播等实现。
+ * 传输层只需保证尽力投递，消息丢失时由条目的TTL兜底。
+ *
+ * @author Portal Team
+ */
+public interface InvalidationTransport {
+
+    /**
+     * 向其他节点广播消息
+     *
+     * @param message 已编码的消息
+     */
+    void send(byte[] message);
+
+    /**
+     * 设置接收其他节点消息的回调
+     *
+     * @param receiver 消息回调
+     */
+    void setReceiver(Consumer<byte[]> receiver);
+
+    /**
+     * 关闭传输
+     */
+    void close();
+}
@@ -0,0 +1,117 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 加载耗时直方图
+ * 按2的幂分桶：第0个桶记录约131微秒以内的加载，之后每个桶的上限翻倍，最后一个桶记录超过约68秒的加载。
+ * 计数器使用LongAdder，并发记录不加锁；百分位数返回所在桶的上限，是近似值。
+ *
+ * @author Portal Team
+ */
+public class LoadTimeHistogram {
+
+    /** 第0个桶的上限为2^17纳秒（约131微秒） */
+    private static final int MIN_SHIFT = 17;
+    private static final int BUCKETS = 21;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+
+    public LoadTimeHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次加载
+     *
+     * @param nanos 加载耗时（纳秒）
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        int index = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - MIN_SHIFT);
+        buckets[Math.min(index, BUCKETS - 1)].increment();
+        totalNanos.add(value);
+    }
+
+    /**
+     * 获取记录的加载次数
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * 获取平均耗时（毫秒）
+     */
+    public double getMeanMillis() {
+        long count = getCount();
+        return count > 0 ? (double) totalNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1) : 0.0;
+    }
+
+    /**
+     * 获取近似百分位耗时（毫秒）
+     *
+     * @param percentile 百分位（0-100）
+     * @return 百分位所在桶的上限，没有记录时返回0
+     */
+    public double getPercentileMillis(double percentile) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0.0;
+        }
+        long rank = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank)) {
+                return (double) getBucketUpperBoundNanos(i) / TimeUnit.MILLISECONDS.toNanos(1);
+            }
+        }
+        return (double) getBucketUpperBoundNanos(BUCKETS - 1) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * 获取各桶的计数
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * 获取桶的上限（纳秒），最后一个桶没有上限，返回其下限的两倍
+     *
+     * @param index 桶序号
+     */
+    public static long getBucketUpperBoundNanos(int index) {
+        return 1L << (MIN_SHIFT + index);
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        totalNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LoadTimeHistogram{count=%d, mean=%.2fms, p50=%.2fms, p99=%.2fms}",
+                getCount(), getMeanMillis(), getPercentileMillis(50), getPercentileMillis(99));
+    }
+}
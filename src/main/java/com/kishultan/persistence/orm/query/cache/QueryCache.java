@@ -3,6 +3,7 @@ package com.kishultan.persistence.orm.query.cache;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
  * 查询缓存接口
@@ -41,6 +42,33 @@ public interface QueryCache {
      */
     void put(String cacheKey, Object result, long ttl);
     
+    /**
+     * 存储依赖表的缓存结果，任一依赖表的版本变化后该结果失效
+     * 
+     * @param cacheKey 缓存键
+     * @param result 结果对象
+     * @param ttl 生存时间（毫秒），-1表示永不过期
+     * @param tableVersions 查询执行前记录的依赖表版本
+     */
+    default void put(String cacheKey, Object result, long ttl, TableVersionTracker.Snapshot tableVersions) {
+        put(cacheKey, result, ttl);
+    }
+    
+    /**
+     * 按查询级策略存储缓存结果
+     * 策略启用过期后重新验证时，超过softTtl的命中会调用refresher异步刷新结果
+     * 
+     * @param cacheKey 缓存键
+     * @param result 结果对象
+     * @param policy 缓存策略
+     * @param tableVersions 查询执行前记录的依赖表版本
+     * @param refresher 重新执行查询的函数，返回null表示结果不再缓存；不刷新时可为null
+     */
+    default void put(String cacheKey, Object result, CachePolicy policy, TableVersionTracker.Snapshot tableVersions,
+                     Supplier<?> refresher) {
+        put(cacheKey, result, policy.getHardTtl(), tableVersions);
+    }
+    
     /**
      * 异步存储缓存结果
      * 
@@ -0,0 +1,134 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存区域统计信息
+ * 按查询的缓存策略中的region分组，单独记录空结果的命中和存储；也用于按实体分组的统计。
+ * 未命中后执行查询的耗时记录在加载耗时直方图中。
+ *
+ * @author Portal Team
+ */
+public class RegionStatistics {
+
+    private final String region;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder negativeHitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder putCount = new LongAdder();
+    private final LongAdder negativePutCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LoadTimeHistogram loadTimes = new LoadTimeHistogram();
+
+    public RegionStatistics(String region) {
+        this.region = region;
+    }
+
+    /**
+     * 记录命中
+     *
+     * @param negative 是否命中空结果
+     */
+    public void recordHit(boolean negative) {
+        hitCount.increment();
+        if (negative) {
+            negativeHitCount.increment();
+        }
+    }
+
+    public void recordMiss() {
+        missCount.increment();
+    }
+
+    /**
+     * 记录存储
+     *
+     * @param negative 是否为空结果
+     */
+    public void recordPut(boolean negative) {
+        putCount.increment();
+        if (negative) {
+            negativePutCount.increment();
+        }
+    }
+
+    /**
+     * 记录因策略不缓存的结果（超过最大行数或不缓存空结果）
+     */
+    public void recordRejected() {
+        rejectedCount.increment();
+    }
+
+    /**
+     * 记录未命中后的加载
+     *
+     * @param nanos 加载耗时（纳秒）
+     * @param success 是否加载成功
+     */
+    public void recordLoad(long nanos, boolean success) {
+        if (success) {
+            loadTimes.record(nanos);
+        } else {
+            loadFailureCount.increment();
+        }
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getNegativeHitCount() {
+        return negativeHitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getPutCount() {
+        return putCount.sum();
+    }
+
+    public long getNegativePutCount() {
+        return negativePutCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getLoadCount() {
+        return loadTimes.getCount();
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount.sum();
+    }
+
+    public LoadTimeHistogram getLoadTimes() {
+        return loadTimes;
+    }
+
+    /**
+     * 获取命中率
+     *
+     * @return 命中率（0-1）
+     */
+    public double getHitRate() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return total > 0 ? (double) hits / total : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RegionStatistics{region=%s, hitRate=%.2f%%, hits=%d, negativeHits=%d, misses=%d, puts=%d, rejected=%d, loads=%d, meanLoad=%.2fms}",
+                region, getHitRate() * 100, getHitCount(), getNegativeHitCount(), getMissCount(), getPutCount(),
+                getRejectedCount(), getLoadCount(), loadTimes.getMeanMillis());
+    }
+}
@@ -0,0 +1,366 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 不可变的查询结果快照
+ *
+ * 把结果列表展平为一个字段值数组：实体按映射计划（无参构造函数和字段列表）逐字段取值，
+ * 同一快照内相等的字符串只保留一份。快照创建后不再被任何调用方持有，修改返回的列表或实体不会影响缓存。
+ *
+ * 命中时可以：
+ * <ul>
+ *   <li>materialize：重新创建全部实体，返回可修改的新列表</li>
+ *   <li>view：返回只读列表，元素在访问时才创建，每次访问得到新的实体</li>
+ * </ul>
+ * getValue可直接读取展平的字段值，用于在内存中筛选整表快照。
+ *
+ * 支持实体、Object[]行和不可变的单值行；字段值只能是字符串、数字、布尔、字符、枚举、java.time类型、UUID，
+ * 以及会被复制的Date和基本类型数组。包含其他类型（如关联集合）时of返回null，由调用方决定如何缓存。
+ *
+ * @author Portal Team
+ */
+public final class ResultSnapshot {
+
+    private static final ConcurrentHashMap<Class<?>, Optional<RowLayout>> layouts = new ConcurrentHashMap<>();
+
+    private enum Kind { ENTITY, ARRAY, VALUE }
+
+    private final Kind kind;
+    private final RowLayout layout;
+    private final int size;
+    private final int width;
+    // 展平的字段值：第i行第j列位于values[i * width + j]
+    private final Object[] values;
+
+    private ResultSnapshot(Kind kind, RowLayout layout, int size, int width, Object[] values) {
+        this.kind = kind;
+        this.layout = layout;
+        this.size = size;
+        this.width = width;
+        this.values = values;
+    }
+
+    /**
+     * 创建结果快照
+     *
+     * @param rows 查询结果
+     * @return 快照；结果包含不支持的类型时返回null
+     */
+    public static ResultSnapshot of(List<?> rows) {
+        if (rows == null) {
+            return null;
+        }
+        Object first = null;
+        for (Object row : rows) {
+            if (row != null) {
+                first = row;
+                break;
+            }
+        }
+        Map<String, String> strings = new HashMap<>();
+        if (first == null || isImmutable(first)) {
+            return snapshotValues(rows, strings);
+        }
+        if (first instanceof Object[]) {
+            return snapshotArrays(rows, ((Object[]) first).length, strings);
+        }
+        RowLayout layout = layoutOf(first.getClass());
+        return layout != null ? snapshotEntities(rows, layout, strings) : null;
+    }
+
+    private static ResultSnapshot snapshotValues(List<?> rows, Map<String, String> strings) {
+        Object[] values = new Object[rows.size()];
+        int i = 0;
+        for (Object row : rows) {
+            if (row != null && !isImmutable(row)) {
+                return null;
+            }
+            values[i++] = intern(row, strings);
+        }
+        return new ResultSnapshot(Kind.VALUE, null, values.length, 1, values);
+    }
+
+    private static ResultSnapshot snapshotArrays(List<?> rows, int width, Map<String, String> strings) {
+        Object[] values = new Object[rows.size() * width];
+        int offset = 0;
+        for (Object row : rows) {
+            // 包含null行或长度不同的行时不创建快照
+            if (!(row instanceof Object[]) || ((Object[]) row).length != width) {
+                return null;
+            }
+            for (Object value : (Object[]) row) {
+                if (!isSupported(value)) {
+                    return null;
+                }
+                values[offset++] = copy(intern(value, strings));
+            }
+        }
+        return new ResultSnapshot(Kind.ARRAY, null, rows.size(), width, values);
+    }
+
+    private static ResultSnapshot snapshotEntities(List<?> rows, RowLayout layout, Map<String, String> strings) {
+        Field[] fields = layout.fields;
+        Object[] values = new Object[rows.size() * fields.length];
+        int offset = 0;
+        try {
+            for (Object row : rows) {
+                if (row == null || row.getClass() != layout.type) {
+                    return null;
+                }
+                for (Field field : fields) {
+                    Object value = field.get(row);
+                    if (!isSupported(value)) {
+                        return null;
+                    }
+                    values[offset++] = copy(intern(value, strings));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+        return new ResultSnapshot(Kind.ENTITY, layout, rows.size(), fields.length, values);
+    }
+
+    /**
+     * 重新创建全部行，返回可修改的新列表
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> materialize() {
+        List<T> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add((T) row(i));
+        }
+        return result;
+    }
+
+    /**
+     * 重新创建指定的行，返回可修改的新列表
+     *
+     * @param rows 行号，按给定顺序返回
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> materialize(int[] rows) {
+        List<T> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            if (row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + size);
+            }
+            result.add((T) row(row));
+        }
+        return result;
+    }
+
+    /**
+     * 返回只读列表，元素在访问时创建
+     * 适合只读取部分元素的调用方；同一元素多次访问会得到不同的实例
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> view() {
+        return (List<T>) new View();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 获取每行的列数，实体行为字段数
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * 获取实体行的字段，非实体行返回null
+     *
+     * @param column 列序号
+     */
+    public Field getField(int column) {
+        return layout != null ? layout.fields[column] : null;
+    }
+
+    /**
+     * 读取快照中的字段值，供内存中的条件求值使用
+     * 返回的值不复制，调用方不能修改Date和数组
+     *
+     * @param row 行号
+     * @param column 列序号
+     */
+    public Object getValue(int row, int column) {
+        return values[row * width + column];
+    }
+
+    /**
+     * 获取实体行的类型，非实体行返回null
+     */
+    public Class<?> getRowType() {
+        return layout != null ? layout.type : null;
+    }
+
+    private Object row(int index) {
+        int offset = index * width;
+        switch (kind) {
+            case VALUE:
+                return values[index];
+            case ARRAY:
+                Object[] array = new Object[width];
+                for (int j = 0; j < width; j++) {
+                    array[j] = copy(values[offset + j]);
+                }
+                return array;
+            default:
+                return layout.create(values, offset);
+        }
+    }
+
+    private final class View extends AbstractList<Object> implements RandomAccess {
+        @Override
+        public Object get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return row(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private static RowLayout layoutOf(Class<?> type) {
+        Optional<RowLayout> layout = layouts.get(type);
+        if (layout == null) {
+            layout = layouts.computeIfAbsent(type, RowLayout::create);
+        }
+        return layout.orElse(null);
+    }
+
+    private static Object intern(Object value, Map<String, String> strings) {
+        if (value instanceof String) {
+            String existing = strings.putIfAbsent((String) value, (String) value);
+            return existing != null ? existing : value;
+        }
+        return value;
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value instanceof String || value instanceof Integer || value instanceof Long
+            || value instanceof Short || value instanceof Byte || value instanceof Double || value instanceof Float
+            || value instanceof Boolean || value instanceof Character || value instanceof BigDecimal
+            || value instanceof BigInteger || value instanceof Enum || value instanceof UUID
+            || value.getClass().getName().startsWith("java.time.");
+    }
+
+    private static boolean isSupported(Object value) {
+        return value == null || isImmutable(value) || value instanceof Date
+            || (value.getClass().isArray() && value.getClass().getComponentType().isPrimitive());
+    }
+
+    /**
+     * 复制可变值（Date和基本类型数组），其余值直接共享
+     */
+    private static Object copy(Object value) {
+        if (value instanceof Date) {
+            return ((Date) value).clone();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        }
+        if (value instanceof int[]) {
+            return ((int[]) value).clone();
+        }
+        if (value instanceof long[]) {
+            return ((long[]) value).clone();
+        }
+        if (value instanceof char[]) {
+            return ((char[]) value).clone();
+        }
+        if (value instanceof short[]) {
+            return ((short[]) value).clone();
+        }
+        if (value instanceof double[]) {
+            return ((double[]) value).clone();
+        }
+        if (value instanceof float[]) {
+            return ((float[]) value).clone();
+        }
+        if (value instanceof boolean[]) {
+            return ((boolean[]) value).clone();
+        }
+        return value;
+    }
+
+    /**
+     * 实体的映射计划：无参构造函数和全部实例字段
+     */
+    private static final class RowLayout {
+        private final Class<?> type;
+        private final Constructor<?> constructor;
+        private final Field[] fields;
+
+        private RowLayout(Class<?> type, Constructor<?> constructor, Field[] fields) {
+            this.type = type;
+            this.constructor = constructor;
+            this.fields = fields;
+        }
+
+        /**
+         * 类型没有无参构造函数或含final字段时无法重新创建，返回空
+         */
+        static Optional<RowLayout> create(Class<?> type) {
+            if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.isArray()
+                    || type.getName().startsWith("java.")) {
+                return Optional.empty();
+            }
+            try {
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                List<Field> fields = new ArrayList<>();
+                for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                    for (Field field : current.getDeclaredFields()) {
+                        int modifiers = field.getModifiers();
+                        if (Modifier.isStatic(modifiers) || field.isSynthetic()) {
+                            continue;
+                        }
+                        if (Modifier.isFinal(modifiers)) {
+                            return Optional.empty();
+                        }
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+                return Optional.of(new RowLayout(type, constructor, fields.toArray(new Field[0])));
+            } catch (NoSuchMethodException | RuntimeException e) {
+                return Optional.empty();
+            }
+        }
+
+        Object create(Object[] values, int offset) {
+            try {
+                Object entity = constructor.newInstance();
+                for (int j = 0; j < fields.length; j++) {
+                    fields[j].set(entity, copy(values[offset + j]));
+                }
+                return entity;
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to materialize cached row: " + type.getName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 并发加载合并
+ *
+ * 同一个键同时只执行一次加载，其他线程等待同一个结果，避免缓存条目过期时大量相同查询同时打到数据库。
+ * 等待超过超时时间的线程放弃等待，自行加载。加载失败时等待的线程收到同样的异常。
+ *
+ * 加载完成后结果在去重窗口内仍可复用，未启用缓存时也能合并短时间内的重复查询。
+ * 加载开始时记录依赖表版本，之后这些表有写入时不再复用，保证线程总能读到自己已提交的写入。
+ * 等待者与加载者共享同一个结果对象，调用方需要返回不可变的结果（如ResultSnapshot）或自行复制。
+ *
+ * @author Portal Team
+ */
+public class SingleFlight {
+
+    private static final Logger logger = LoggerFactory.getLogger(SingleFlight.class);
+
+    public static final long DEFAULT_WAIT_TIMEOUT = 10000; // 10秒
+    public static final long DEFAULT_DEDUP_WINDOW = 0;
+
+    private final long waitTimeout;
+    private final long dedupWindowNanos;
+    private final ConcurrentHashMap<Object, Flight> flights = new ConcurrentHashMap<>();
+    private volatile long lastPurge = System.nanoTime();
+
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder sharedCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+
+    public SingleFlight() {
+        this(DEFAULT_WAIT_TIMEOUT, DEFAULT_DEDUP_WINDOW);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param waitTimeout 等待其他线程加载的超时时间（毫秒），小于等于0表示一直等待
+     * @param dedupWindow 加载完成后结果可复用的时间（毫秒），0表示只合并正在进行的加载
+     */
+    public SingleFlight(long waitTimeout, long dedupWindow) {
+        this.waitTimeout = waitTimeout;
+        this.dedupWindowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, dedupWindow));
+    }
+
+    /**
+     * 执行加载，同一个键的并发调用只有一个线程真正执行
+     *
+     * @param key 加载键，按equals区分
+     * @param tables 结果依赖的表
+     * @param loader 加载函数
+     * @return 加载结果
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(Object key, Collection<String> tables, Supplier<V> loader) {
+        for (;;) {
+            Flight flight = flights.get(key);
+            if (flight == null) {
+                Flight created = new Flight(TableVersionTracker.snapshot(tables));
+                if (flights.putIfAbsent(key, created) == null) {
+                    return (V) load(key, created, loader);
+                }
+                continue;
+            }
+            if (!flight.isReusable(dedupWindowNanos)) {
+                flights.remove(key, flight);
+                continue;
+            }
+            if (flight.owner == Thread.currentThread()) {
+                // 加载函数内再次加载同一个键，直接执行避免自己等待自己
+                return loader.get();
+            }
+            return (V) await(flight, loader);
+        }
+    }
+
+    private Object load(Object key, Flight flight, Supplier<?> loader) {
+        loadCount.increment();
+        try {
+            Object value = loader.get();
+            flight.completedAt = System.nanoTime();
+            flight.future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flights.remove(key, flight);
+            flight.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            flight.owner = null;
+            if (dedupWindowNanos == 0) {
+                flights.remove(key, flight);
+            } else {
+                purgeExpired();
+            }
+        }
+    }
+
+    private Object await(Flight flight, Supplier<?> loader) {
+        try {
+            Object value = waitTimeout > 0
+                ? flight.future.get(waitTimeout, TimeUnit.MILLISECONDS)
+                : flight.future.get();
+            sharedCount.increment();
+            return value;
+        } catch (TimeoutException e) {
+            timeoutCount.increment();
+            logger.debug("等待并发加载超时，自行加载: timeout={}ms", waitTimeout);
+            return loader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待并发加载被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * 清理超出去重窗口的结果，每个窗口最多扫描一次
+     */
+    private void purgeExpired() {
+        long now = System.nanoTime();
+        if (now - lastPurge < dedupWindowNanos) {
+            return;
+        }
+        lastPurge = now;
+        Iterator<Flight> iterator = flights.values().iterator();
+        while (iterator.hasNext()) {
+            Flight flight = iterator.next();
+            if (flight.future.isDone() && !flight.isReusable(dedupWindowNanos)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 获取正在进行和去重窗口内的加载数
+     */
+    public int size() {
+        return flights.size();
+    }
+
+    /**
+     * 获取实际执行的加载次数
+     */
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    /**
+     * 获取复用其他线程结果的次数
+     */
+    public long getSharedCount() {
+        return sharedCount.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /**
+     * 一次加载
+     */
+    private static final class Flight {
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+        private final TableVersionTracker.Snapshot tableVersions;
+        private volatile Thread owner = Thread.currentThread();
+        private volatile long completedAt;
+
+        Flight(TableVersionTracker.Snapshot tableVersions) {
+            this.tableVersions = tableVersions;
+        }
+
+        /**
+         * 加载开始后依赖表没有写入，且未超出去重窗口
+         */
+        boolean isReusable(long dedupWindowNanos) {
+            if (!tableVersions.isCurrent() || future.isCompletedExceptionally()) {
+                return false;
+            }
+            return !future.isDone() || System.nanoTime() - completedAt <= dedupWindowNanos;
+        }
+    }
+}
@@ -1,141 +1,158 @@
 package com.kishultan.persistence.orm.query.cache;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 策略统计信息类
  * 记录缓存策略的各种统计信息
- * 
+ * 计数器使用LongAdder，时间使用单调的System.nanoTime()记录，只在读取时转换为LocalDateTime
+ *
  * @author Portal Team
  */
 public class StrategyStatistics {
-    
-    private long accessCount = 0;
-    private long storeCount = 0;
-    private long evictionCount = 0;
-    private long expiredCount = 0;
-    private LocalDateTime startTime = LocalDateTime.now();
-    private LocalDateTime lastAccessTime;
-    private LocalDateTime lastStoreTime;
-    private LocalDateTime lastEvictionTime;
-    
+
+    private final LongAdder accessCount = new LongAdder();
+    private final LongAdder storeCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private volatile long startMillis = System.currentTimeMillis();
+    private volatile long startNanos = System.nanoTime();
+    private volatile long lastAccessNanos;
+    private volatile long lastStoreNanos;
+    private volatile long lastEvictionNanos;
+
     /**
      * 记录访问
-     * 
+     *
      * @param accessTime 访问时间
      */
     public void recordAccess(long accessTime) {
-        this.accessCount++;
-        this.lastAccessTime = LocalDateTime.now();
+        accessCount.increment();
+        lastAccessNanos = System.nanoTime();
     }
-    
+
     /**
      * 记录存储
-     * 
+     *
      * @param storeTime 存储时间
      */
     public void recordStore(long storeTime) {
-        this.storeCount++;
-        this.lastStoreTime = LocalDateTime.now();
+        storeCount.increment();
+        lastStoreNanos = System.nanoTime();
     }
-    
+
     /**
      * 记录淘汰
-     * 
+     *
      * @param evictionTime 淘汰时间
      */
     public void recordEviction(long evictionTime) {
-        this.evictionCount++;
-        this.lastEvictionTime = LocalDateTime.now();
+        evictionCount.increment();
+        lastEvictionNanos = System.nanoTime();
     }
-    
+
     /**
      * 记录过期
-     * 
+     *
      * @param expiredTime 过期时间
      */
     public void recordExpired(long expiredTime) {
-        this.expiredCount++;
+        expiredCount.increment();
     }
-    
+
     // Getter方法
-    
+
     public long getAccessCount() {
-        return accessCount;
+        return accessCount.sum();
     }
-    
+
     public long getStoreCount() {
-        return storeCount;
+        return storeCount.sum();
     }
-    
+
     public long getEvictionCount() {
-        return evictionCount;
+        return evictionCount.sum();
     }
-    
+
     public long getExpiredCount() {
-        return expiredCount;
+        return expiredCount.sum();
     }
-    
+
     public LocalDateTime getStartTime() {
-        return startTime;
+        return toDateTime(startNanos);
     }
-    
+
     public LocalDateTime getLastAccessTime() {
-        return lastAccessTime;
+        return lastAccessNanos != 0 ? toDateTime(lastAccessNanos) : null;
     }
-    
+
     public LocalDateTime getLastStoreTime() {
-        return lastStoreTime;
+        return lastStoreNanos != 0 ? toDateTime(lastStoreNanos) : null;
     }
-    
+
     public LocalDateTime getLastEvictionTime() {
-        return lastEvictionTime;
+        return lastEvictionNanos != 0 ? toDateTime(lastEvictionNanos) : null;
+    }
+
+    /**
+     * 把nanoTime转换为墙上时间
+     */
+    private LocalDateTime toDateTime(long nanos) {
+        long millis = startMillis + TimeUnit.NANOSECONDS.toMillis(nanos - startNanos);
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
     }
-    
+
     /**
      * 获取淘汰率
-     * 
+     *
      * @return 淘汰率（0-1）
      */
     public double getEvictionRate() {
-        return storeCount > 0 ? (double) evictionCount / storeCount : 0.0;
+        long stores = storeCount.sum();
+        return stores > 0 ? (double) evictionCount.sum() / stores : 0.0;
     }
-    
+
     /**
      * 获取过期率
-     * 
+     *
      * @return 过期率（0-1）
      */
     public double getExpiredRate() {
-        return storeCount > 0 ? (double) expiredCount / storeCount : 0.0;
+        long stores = storeCount.sum();
+        return stores > 0 ? (double) expiredCount.sum() / stores : 0.0;
     }
-    
+
     /**
      * 获取运行时间（秒）
-     * 
+     *
      * @return 运行时间
      */
     public long getRunningTimeSeconds() {
-        return java.time.Duration.between(startTime, LocalDateTime.now()).getSeconds();
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
     }
-    
+
     /**
      * 重置统计信息
      */
     public void reset() {
-        this.accessCount = 0;
-        this.storeCount = 0;
-        this.evictionCount = 0;
-        this.expiredCount = 0;
-        this.startTime = LocalDateTime.now();
-        this.lastAccessTime = null;
-        this.lastStoreTime = null;
-        this.lastEvictionTime = null;
-    }
-    
+        accessCount.reset();
+        storeCount.reset();
+        evictionCount.reset();
+        expiredCount.reset();
+        startMillis = System.currentTimeMillis();
+        startNanos = System.nanoTime();
+        lastAccessNanos = 0;
+        lastStoreNanos = 0;
+        lastEvictionNanos = 0;
+    }
+
     @Override
     public String toString() {
         return String.format("StrategyStatistics{accessCount=%d, storeCount=%d, evictionRate=%.2f%%, expiredRate=%.2f%%, runningTime=%d seconds}",
-                accessCount, storeCount, getEvictionRate() * 100, getExpiredRate() * 100, getRunningTimeSeconds());
+                getAccessCount(), getStoreCount(), getEvictionRate() * 100, getExpiredRate() * 100, getRunningTimeSeconds());
     }
 }
@@ -0,0 +1,317 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import com.kishultan.persistence.datasource.ConnectionContext;
+import com.kishultan.persistence.datasource.DataSourceRoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 表版本跟踪器
+ *
+ * 为每张表维护一个单调递增的版本号，所有写入路径在写入后递增对应表的版本。
+ * 缓存条目在查询执行前记录所依赖表的版本快照，读取时发现任一表版本已变化即视为失效。
+ * 事务内的写入延迟到提交后再递增版本，回滚则丢弃。
+ *
+ * 表名统一转为小写并去掉引号和schema前缀，不同数据源中的同名表共用版本号（只会多失效，不会漏失效）。
+ *
+ * @author Portal Team
+ */
+public final class TableVersionTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(TableVersionTracker.class);
+
+    /** 无法解析写入的表时使用，表示所有表都可能被修改 */
+    private static final String ALL_TABLES = "*";
+
+    private static final Object PENDING_KEY = new Object();
+
+    private static final String TABLE = "((?:[`\"\\[]?[\\w$]+[`\"\\]]?\\s*\\.\\s*)*[`\"\\[]?[\\w$]+[`\"\\]]?)";
+
+    private static final Pattern COMMENTS = Pattern.compile("(?s)/\\*.*?\\*/|--[^\\n]*");
+    private static final Pattern INSERT = Pattern.compile(
+        "^(?:INSERT|REPLACE)\\s+(?:(?:LOW_PRIORITY|DELAYED|HIGH_PRIORITY|IGNORE)\\s+)*(?:INTO\\s+)?" + TABLE,
+        Pattern.CASE_INSENSITIVE);
+    private static final Pattern UPDATE = Pattern.compile(
+        "^UPDATE\\s+(?:(?:LOW_PRIORITY|IGNORE|ONLY)\\s+)*" + TABLE + "(.*?)\\bSET\\b",
+        Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern DELETE = Pattern.compile(
+        "^DELETE\\s+(?:(?:LOW_PRIORITY|QUICK|IGNORE)\\s+)*FROM\\s+(?:ONLY\\s+)?" + TABLE + "(.*)",
+        Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern MERGE = Pattern.compile(
+        "^MERGE\\s+INTO\\s+" + TABLE, Pattern.CASE_INSENSITIVE);
+    private static final Pattern TRUNCATE = Pattern.compile(
+        "^TRUNCATE\\s+(?:TABLE\\s+)?" + TABLE + "\\s*;?\\s*$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DDL = Pattern.compile(
+        "^(?:CREATE|DROP|ALTER)\\s+TABLE\\s+(?:IF\\s+(?:NOT\\s+)?EXISTS\\s+)?" + TABLE, Pattern.CASE_INSENSITIVE);
+    private static final Pattern READ_ONLY = Pattern.compile(
+        "^(?:SELECT|SHOW|EXPLAIN|DESCRIBE|SET|USE)\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private static final AtomicLong epoch = new AtomicLong();
+
+    private TableVersionTracker() {
+    }
+
+    /**
+     * 获取表的当前版本
+     */
+    public static long getVersion(String table) {
+        AtomicLong version = versions.get(normalize(table));
+        return version != null ? version.get() : 0L;
+    }
+
+    /**
+     * 记录一组表的当前版本，应在查询执行前调用
+     */
+    public static Snapshot snapshot(Collection<String> tables) {
+        long currentEpoch = epoch.get();
+        String[] names = new String[tables.size()];
+        long[] tableVersions = new long[names.length];
+        int i = 0;
+        for (String table : tables) {
+            names[i] = normalize(table);
+            tableVersions[i] = versionOf(names[i]);
+            i++;
+        }
+        return new Snapshot(currentEpoch, names, tableVersions);
+    }
+
+    /**
+     * 立即递增表版本，安装了失效总线时广播给其他节点
+     */
+    public static void bump(Collection<String> tables) {
+        ClusterInvalidation.publishTables(bumpLocal(tables));
+    }
+
+    /**
+     * 使所有快照失效
+     */
+    public static void bumpAll() {
+        epoch.incrementAndGet();
+        ClusterInvalidation.publishTables(Collections.singleton(ALL_TABLES));
+    }
+
+    /**
+     * 应用其他节点广播的表修改，只在本地生效
+     */
+    static void applyRemoteBump(Collection<String> tables) {
+        bumpLocal(tables);
+    }
+
+    private static Set<String> bumpLocal(Collection<String> tables) {
+        Set<String> names = normalizeAll(tables);
+        if (names.contains(ALL_TABLES)) {
+            epoch.incrementAndGet();
+            return Collections.singleton(ALL_TABLES);
+        }
+        for (String name : names) {
+            versions.computeIfAbsent(name, key -> new AtomicLong()).incrementAndGet();
+        }
+        return names;
+    }
+
+    /**
+     * 记录写入了哪些表：数据源绑定了事务时延迟到提交后生效，否则立即生效
+     *
+     * @param dataSource 执行写入的数据源，可为null
+     * @param tables 写入的表
+     */
+    public static void recordWrite(DataSource dataSource, Collection<String> tables) {
+        if (tables == null || tables.isEmpty()) {
+            return;
+        }
+        // 读写分离时开启读己之写窗口
+        DataSourceRoutingContext.recordWrite(dataSource);
+        if (dataSource != null && ConnectionContext.isBound(dataSource)) {
+            pendingTables(dataSource).addAll(normalizeAll(tables));
+            return;
+        }
+        bump(tables);
+    }
+
+    /**
+     * 记录写入了一张表
+     */
+    public static void recordWrite(DataSource dataSource, String table) {
+        recordWrite(dataSource, Collections.singleton(table));
+    }
+
+    /**
+     * 记录一次无法确定写入表的操作，使所有表失效
+     */
+    public static void recordUnknownWrite(DataSource dataSource) {
+        recordWrite(dataSource, Collections.singleton(ALL_TABLES));
+    }
+
+    /**
+     * 根据执行的写入SQL记录写入的表，无法解析时使所有表失效
+     */
+    public static void recordSqlWrite(DataSource dataSource, String sql) {
+        Set<String> tables = parseWrittenTables(sql);
+        if (tables == null) {
+            logger.debug("无法解析写入的表，所有查询缓存失效: {}", sql);
+            tables = Collections.singleton(ALL_TABLES);
+        }
+        recordWrite(dataSource, tables);
+    }
+
+    /**
+     * 当前线程的事务中是否有尚未提交的、涉及这些表的写入
+     * 此时查询结果包含未提交的数据，不能读写缓存
+     */
+    public static boolean hasPendingWrites(DataSource dataSource, Collection<String> tables) {
+        if (dataSource == null || !ConnectionContext.isBound(dataSource)) {
+            return false;
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> pending = (Set<String>) ConnectionContext.getResource(dataSource, PENDING_KEY);
+        if (pending == null || pending.isEmpty()) {
+            return false;
+        }
+        if (pending.contains(ALL_TABLES)) {
+            return true;
+        }
+        for (String table : tables) {
+            if (pending.contains(normalize(table))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析写入SQL修改的表
+     *
+     * @return 修改的表；只读语句返回空集合；无法确定时返回null
+     */
+    public static Set<String> parseWrittenTables(String sql) {
+        if (sql == null) {
+            return null;
+        }
+        String statement = COMMENTS.matcher(sql).replaceAll(" ").trim();
+        if (statement.isEmpty() || READ_ONLY.matcher(statement).find()) {
+            return Collections.emptySet();
+        }
+
+        Matcher matcher = UPDATE.matcher(statement);
+        if (matcher.find()) {
+            // 多表UPDATE无法确定全部目标表
+            String between = matcher.group(2);
+            if (between.contains(",") || between.toUpperCase(Locale.ROOT).contains("JOIN")) {
+                return null;
+            }
+            return Collections.singleton(normalize(matcher.group(1)));
+        }
+        matcher = DELETE.matcher(statement);
+        if (matcher.find()) {
+            String rest = matcher.group(2).trim().toUpperCase(Locale.ROOT);
+            if (rest.startsWith(",") || rest.startsWith("USING") || rest.contains(" JOIN ")) {
+                return null;
+            }
+            return Collections.singleton(normalize(matcher.group(1)));
+        }
+        for (Pattern pattern : Arrays.asList(INSERT, MERGE, TRUNCATE, DDL)) {
+            matcher = pattern.matcher(statement);
+            if (matcher.find()) {
+                return Collections.singleton(normalize(matcher.group(1)));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 统一表名：去掉引号和schema前缀，转为小写
+     */
+    public static String normalize(String table) {
+        if (table == null) {
+            return ALL_TABLES;
+        }
+        String name = table.trim();
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0) {
+            name = name.substring(dot + 1).trim();
+        }
+        StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c != '`' && c != '"' && c != '[' && c != ']') {
+                builder.append(c);
+            }
+        }
+        return builder.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 清空所有版本（主要用于测试）
+     */
+    public static void reset() {
+        versions.clear();
+        epoch.incrementAndGet();
+    }
+
+    private static long versionOf(String normalized) {
+        AtomicLong version = versions.get(normalized);
+        return version != null ? version.get() : 0L;
+    }
+
+    private static Set<String> normalizeAll(Collection<String> tables) {
+        Set<String> names = new HashSet<>();
+        for (String table : tables) {
+            names.add(normalize(table));
+        }
+        return names;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> pendingTables(DataSource dataSource) {
+        Set<String> pending = (Set<String>) ConnectionContext.getResource(dataSource, PENDING_KEY);
+        if (pending == null) {
+            Set<String> tables = new HashSet<>();
+            ConnectionContext.bindResource(dataSource, PENDING_KEY, tables);
+            ConnectionContext.registerAfterCommit(dataSource, () -> bump(tables));
+            pending = tables;
+        }
+        return pending;
+    }
+
+    /**
+     * 表版本快照
+     */
+    public static final class Snapshot {
+        private final long epoch;
+        private final String[] tables;
+        private final long[] versions;
+
+        private Snapshot(long epoch, String[] tables, long[] versions) {
+            this.epoch = epoch;
+            this.tables = tables;
+            this.versions = versions;
+        }
+
+        /**
+         * 快照记录的表版本是否仍是最新
+         */
+        public boolean isCurrent() {
+            if (epoch != TableVersionTracker.epoch.get()) {
+                return false;
+            }
+            for (int i = 0; i < tables.length; i++) {
+                if (versionOf(tables[i]) != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public Set<String> getTables() {
+            return new LinkedHashSet<>(Arrays.asList(tables));
+        }
+    }
+}
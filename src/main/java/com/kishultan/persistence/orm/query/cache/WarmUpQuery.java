@@ -0,0 +1,215 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 可重放的缓存查询
+ * 记录生成缓存键所需的实体类、操作、SQL、参数和maxRows，以及重新执行时需要的计数SQL、依赖表和缓存策略
+ * （TTL、空结果TTL、最大结果行数和缓存区域）。
+ * 实体类、操作、SQL、参数和maxRows相同的查询视为同一个查询。
+ *
+ * @author Portal Team
+ */
+public final class WarmUpQuery {
+
+    public static final String FIND_LIST = "findList";
+    public static final String COUNT = "count";
+
+    private final Class<?> entityClass;
+    private final String operation;
+    private final String sql;
+    private final String countSql;
+    private final List<Object> parameters;
+    private final int maxRows;
+    private final Set<String> tables;
+    private final long ttl;
+    private final long negativeTtl;
+    private final int maxResultSize;
+    private final String region;
+
+    /**
+     * @param entityClass 实体类
+     * @param operation 操作类型，findList或count
+     * @param sql 列表查询SQL，用于生成缓存键
+     * @param countSql 计数SQL，findList时可为null
+     * @param parameters 查询参数
+     * @param maxRows 最大行数，0表示不限制
+     * @param tables 查询依赖的表
+     * @param ttl 缓存生存时间（毫秒）
+     * @param region 缓存区域，为空时使用默认区域
+     */
+    public WarmUpQuery(Class<?> entityClass, String operation, String sql, String countSql, List<Object> parameters,
+                       int maxRows, Set<String> tables, long ttl, String region) {
+        this(entityClass, operation, sql, countSql, parameters, maxRows, tables,
+            CachePolicy.ttl(ttl).withRegion(region));
+    }
+
+    /**
+     * @param entityClass 实体类
+     * @param operation 操作类型，findList或count
+     * @param sql 列表查询SQL，用于生成缓存键
+     * @param countSql 计数SQL，findList时可为null
+     * @param parameters 查询参数
+     * @param maxRows 最大行数，0表示不限制
+     * @param tables 查询依赖的表
+     * @param policy 缓存策略，重放时按其中的TTL、空结果TTL、最大结果行数和缓存区域写入缓存
+     */
+    public WarmUpQuery(Class<?> entityClass, String operation, String sql, String countSql, List<Object> parameters,
+                       int maxRows, Set<String> tables, CachePolicy policy) {
+        if (!FIND_LIST.equals(operation) && !COUNT.equals(operation)) {
+            throw new IllegalArgumentException("不支持的预热操作: " + operation);
+        }
+        this.entityClass = Objects.requireNonNull(entityClass, "entityClass");
+        this.operation = operation;
+        this.sql = Objects.requireNonNull(sql, "sql");
+        this.countSql = countSql;
+        this.parameters = parameters != null
+            ? Collections.unmodifiableList(new ArrayList<>(parameters)) : Collections.emptyList();
+        this.maxRows = maxRows;
+        this.tables = tables != null
+            ? Collections.unmodifiableSet(new LinkedHashSet<>(tables)) : Collections.emptySet();
+        this.ttl = policy.getHardTtl();
+        this.negativeTtl = policy.getNegativeTtl();
+        this.maxResultSize = policy.getMaxResultSize();
+        this.region = policy.getRegion();
+    }
+
+    /**
+     * 生成查询缓存键，查询构建器和预热共用同一格式
+     *
+     * @param entityClass 实体类
+     * @param operation 操作类型
+     * @param sql 列表查询SQL
+     * @param parameters 查询参数
+     * @param maxRows 最大行数，0表示不限制
+     * @return 缓存键
+     */
+    public static String cacheKey(Class<?> entityClass, String operation, String sql, List<Object> parameters,
+                                  int maxRows) {
+        StringBuilder keyBuilder = new StringBuilder();
+        keyBuilder.append("querybuilder:").append(entityClass.getSimpleName().toLowerCase());
+        keyBuilder.append(":").append(operation);
+        keyBuilder.append(":").append(sql.hashCode());
+
+        // 添加参数哈希
+        if (parameters != null && !parameters.isEmpty()) {
+            keyBuilder.append(":").append(stableHash(parameters));
+        }
+
+        // maxRows会截断结果，需要区分缓存
+        if (maxRows > 0) {
+            keyBuilder.append(":max").append(maxRows);
+        }
+
+        return keyBuilder.toString();
+    }
+
+    /**
+     * 计算参数哈希，缓存键会写入持久化快照，需要在不同进程中保持一致
+     * 枚举按类名和名称计算，集合和数组逐个元素计算，其他值使用自身的hashCode
+     */
+    private static int stableHash(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Enum) {
+            Enum<?> constant = (Enum<?>) value;
+            return 31 * constant.getDeclaringClass().getName().hashCode() + constant.name().hashCode();
+        }
+        if (value instanceof Collection || value instanceof Object[]) {
+            Iterable<?> elements = value instanceof Collection ? (Collection<?>) value : Arrays.asList((Object[]) value);
+            int hash = 1;
+            for (Object element : elements) {
+                hash = 31 * hash + stableHash(element);
+            }
+            return hash;
+        }
+        return value.hashCode();
+    }
+
+    public String getCacheKey() {
+        return cacheKey(entityClass, operation, sql, parameters, maxRows);
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public String getCountSql() {
+        return countSql;
+    }
+
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    public Set<String> getTables() {
+        return tables;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public long getNegativeTtl() {
+        return negativeTtl;
+    }
+
+    public int getMaxResultSize() {
+        return maxResultSize;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    /**
+     * 重放时使用的缓存策略，固定TTL，不刷新
+     */
+    public CachePolicy getPolicy() {
+        return CachePolicy.ttl(ttl).withNegativeTtl(negativeTtl).withMaxResultSize(maxResultSize).withRegion(region);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof WarmUpQuery)) {
+            return false;
+        }
+        WarmUpQuery that = (WarmUpQuery) o;
+        return maxRows == that.maxRows && entityClass == that.entityClass && operation.equals(that.operation)
+            && sql.equals(that.sql) && parameters.equals(that.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(entityClass, operation, sql, parameters, maxRows);
+    }
+
+    @Override
+    public String toString() {
+        return "WarmUpQuery{entity=" + entityClass.getSimpleName() + ", operation=" + operation + ", sql=" + sql
+            + ", parameters=" + parameters + ", maxRows=" + maxRows + "}";
+    }
+}
@@ -0,0 +1,20 @@
+package com.kishultan.persistence.orm.query.cache;
+
+/**
+ * 缓存条目权重计算接口
+ * 权重为条目占用内存的估算字节数，在条目存储时计算一次，缓存按权重总和限制内存使用。
+ *
+ * @author Portal Team
+ */
+@FunctionalInterface
+public interface Weigher {
+
+    /**
+     * 计算缓存条目的权重
+     *
+     * @param cacheKey 缓存键
+     * @param value 缓存值
+     * @return 估算的字节数，不能为负
+     */
+    long weigh(String cacheKey, Object value);
+}
@@ -0,0 +1,236 @@
+package com.kishultan.persistence.orm.query.cache.impl;
+
+import com.kishultan.persistence.orm.query.cache.InvalidationBus;
+import com.kishultan.persistence.orm.query.cache.InvalidationListener;
+import com.kishultan.persistence.orm.query.cache.InvalidationTransport;
+import com.kishultan.persistence.orm.query.cache.TableVersionTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 批量合并的失效总线
+ *
+ * 发布的失效先在本地合并：同一张表、同一个实体键在一个批次内只发送一次，所有表失效覆盖单表失效。
+ * 每隔flushInterval或积累到maxBatchSize个失效时，把整批编码为一条消息交给传输层发送。
+ * flushInterval为0时每次发布立即发送。
+ *
+ * @author Portal Team
+ */
+public class BatchingInvalidationBus implements InvalidationBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchingInvalidationBus.class);
+
+    private static final String ALL_TABLES = "*";
+
+    public static final long DEFAULT_FLUSH_INTERVAL = 20; // 20毫秒
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+    private final InvalidationTransport transport;
+    private final String nodeId;
+    private final long flushInterval;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService flushExecutor;
+    private final CopyOnWriteArrayList<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+    // 待发送的批次，只在持有this锁时访问
+    private Set<String> pendingTables = new LinkedHashSet<>();
+    private Map<String, Set<String>> pendingEntityKeys = new LinkedHashMap<>();
+    private int pendingCount;
+    private volatile boolean closed;
+
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder receivedCount = new LongAdder();
+
+    public BatchingInvalidationBus(InvalidationTransport transport) {
+        this(transport, UUID.randomUUID().toString(), DEFAULT_FLUSH_INTERVAL, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param transport 传输层
+     * @param nodeId 本节点标识
+     * @param flushInterval 批量发送间隔（毫秒），0表示立即发送
+     * @param maxBatchSize 单批最多合并的失效数
+     */
+    public BatchingInvalidationBus(InvalidationTransport transport, String nodeId, long flushInterval, int maxBatchSize) {
+        this.transport = transport;
+        this.nodeId = nodeId;
+        this.flushInterval = Math.max(0, flushInterval);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        if (this.flushInterval > 0) {
+            this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "invalidation-bus-" + nodeId);
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flushExecutor.scheduleWithFixedDelay(this::flushQuietly, this.flushInterval, this.flushInterval,
+                TimeUnit.MILLISECONDS);
+        } else {
+            this.flushExecutor = null;
+        }
+        transport.setReceiver(this::receive);
+    }
+
+    @Override
+    public void publishTables(Collection<String> tables) {
+        if (closed || tables == null || tables.isEmpty()) {
+            return;
+        }
+        boolean full;
+        synchronized (this) {
+            if (!pendingTables.contains(ALL_TABLES)) {
+                for (String table : tables) {
+                    String name = TableVersionTracker.normalize(table);
+                    if (ALL_TABLES.equals(name)) {
+                        // 所有表失效覆盖已合并的单表失效
+                        pendingCount -= pendingTables.size();
+                        pendingTables.clear();
+                        pendingTables.add(ALL_TABLES);
+                        pendingCount++;
+                        break;
+                    }
+                    if (pendingTables.add(name)) {
+                        pendingCount++;
+                    }
+                }
+            }
+            full = pendingCount >= maxBatchSize;
+        }
+        publishedCount.add(tables.size());
+        if (flushExecutor == null || full) {
+            // 发布发生在写入提交之后，发送失败不影响写入
+            flushQuietly();
+        }
+    }
+
+    @Override
+    public void publishEntityEviction(String region, String key) {
+        if (closed || region == null || key == null) {
+            return;
+        }
+        boolean full;
+        synchronized (this) {
+            if (pendingEntityKeys.computeIfAbsent(region, name -> new LinkedHashSet<>()).add(key)) {
+                pendingCount++;
+            }
+            full = pendingCount >= maxBatchSize;
+        }
+        publishedCount.increment();
+        if (flushExecutor == null || full) {
+            flushQuietly();
+        }
+    }
+
+    @Override
+    public void addListener(InvalidationListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    @Override
+    public void flush() {
+        InvalidationMessage message;
+        synchronized (this) {
+            if (pendingCount == 0) {
+                return;
+            }
+            message = new InvalidationMessage(nodeId, pendingTables, pendingEntityKeys);
+            pendingTables = new LinkedHashSet<>();
+            pendingEntityKeys = new LinkedHashMap<>();
+            pendingCount = 0;
+        }
+        transport.send(message.encode());
+        sentCount.increment();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // 传输失败时放弃这一批，由条目的TTL兜底
+            logger.warn("发送缓存失效消息失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 处理其他节点的消息
+     */
+    private void receive(byte[] data) {
+        InvalidationMessage message;
+        try {
+            message = InvalidationMessage.decode(data);
+        } catch (RuntimeException e) {
+            logger.warn("无法解析缓存失效消息: {}", e.getMessage());
+            return;
+        }
+        if (closed || nodeId.equals(message.getNodeId())) {
+            return;
+        }
+        receivedCount.increment();
+        for (InvalidationListener listener : listeners) {
+            try {
+                if (!message.getTables().isEmpty()) {
+                    listener.onTablesInvalidated(message.getTables());
+                }
+                for (Map.Entry<String, Set<String>> region : message.getEntityKeys().entrySet()) {
+                    listener.onEntitiesEvicted(region.getKey(), Collections.unmodifiableSet(region.getValue()));
+                }
+            } catch (RuntimeException e) {
+                logger.warn("处理缓存失效消息失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 获取发布的失效数（合并前）
+     */
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    /**
+     * 获取发送的消息数
+     */
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    /**
+     * 获取收到的其他节点消息数
+     */
+    public long getReceivedCount() {
+        return receivedCount.sum();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+        }
+        flushQuietly();
+        closed = true;
+        transport.close();
+    }
+}
@@ -0,0 +1,663 @@
+package com.kishultan.persistence.orm.query.cache.impl;
+
+import com.kishultan.persistence.orm.query.cache.ResultSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 查询结果二进制编码器
+ *
+ * 按实体字段元数据把查询结果编码为紧凑的字节数组，供堆外缓存层保存。
+ * 格式：类名表 + 结果类型；列表结果额外保存每个元素的偏移量，解码时返回惰性列表，
+ * 只有被访问到的元素才会反序列化为对象。
+ * 类名表记录每个类的字段布局指纹（实体的字段名和类型、枚举的常量名），
+ * 字节在类结构变化后（如重新部署）无法再被解码，isCompatible可提前检查。
+ *
+ * 支持字符串、基本类型包装类、BigDecimal/BigInteger、日期时间、枚举、字节数组、
+ * List、Map、Object[]以及有无参构造函数的实体类；遇到其他类型时encode返回null，结果留在堆内缓存。
+ * List和Map解码为ArrayList和LinkedHashMap，字段声明为无法接收这两种类型的集合类型（如LinkedList、
+ * TreeMap、Set）的实体不支持编码。
+ *
+ * @author Portal Team
+ */
+public class BinaryResultCodec {
+
+    private static final int MAGIC = 0x51524331; // "QRC1"
+
+    private static final byte KIND_VALUE = 0;
+    private static final byte KIND_LIST = 1;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte SHORT = 6;
+    private static final byte BYTE = 7;
+    private static final byte BOOLEAN = 8;
+    private static final byte CHAR = 9;
+    private static final byte BIG_DECIMAL = 10;
+    private static final byte BIG_INTEGER = 11;
+    private static final byte DATE = 12;
+    private static final byte SQL_DATE = 13;
+    private static final byte TIMESTAMP = 14;
+    private static final byte SQL_TIME = 15;
+    private static final byte LOCAL_DATE = 16;
+    private static final byte LOCAL_DATE_TIME = 17;
+    private static final byte LOCAL_TIME = 18;
+    private static final byte BYTES = 19;
+    private static final byte ENUM = 20;
+    private static final byte LIST = 21;
+    private static final byte OBJECT_ARRAY = 22;
+    private static final byte ENTITY = 23;
+    private static final byte MAP = 24;
+
+    /** 嵌套深度上限，同时防止循环引用 */
+    private static final int MAX_DEPTH = 16;
+
+    private final Map<Class<?>, Optional<EntityLayout>> layouts = new ConcurrentHashMap<>();
+    private final Map<String, Class<?>> classesByName = new ConcurrentHashMap<>();
+
+    /**
+     * 编码查询结果
+     *
+     * @param value 查询结果
+     * @return 编码后的字节；包含不支持的类型时返回null
+     */
+    public byte[] encode(Object value) {
+        if (value instanceof ResultSnapshot) {
+            // 快照按实体列表编码，解码后直接得到新的实体
+            value = ((ResultSnapshot) value).materialize();
+        }
+        try {
+            Encoder encoder = new Encoder();
+            ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(body);
+            int[] offsets = null;
+            if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                offsets = new int[list.size()];
+                int i = 0;
+                for (Object element : list) {
+                    offsets[i++] = out.size();
+                    encoder.write(out, element, 0);
+                }
+            } else {
+                encoder.write(out, value, 0);
+            }
+            out.flush();
+
+            ByteArrayOutputStream result = new ByteArrayOutputStream(body.size() + 64);
+            DataOutputStream header = new DataOutputStream(result);
+            header.writeInt(MAGIC);
+            header.writeShort(encoder.classes.size());
+            for (Class<?> type : encoder.classes) {
+                header.writeUTF(type.getName());
+                header.writeInt(fingerprint(type));
+            }
+            if (offsets != null) {
+                header.writeByte(KIND_LIST);
+                header.writeInt(offsets.length);
+                for (int offset : offsets) {
+                    header.writeInt(offset);
+                }
+            } else {
+                header.writeByte(KIND_VALUE);
+            }
+            header.flush();
+            body.writeTo(result);
+            return result.toByteArray();
+        } catch (UnsupportedTypeException e) {
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to encode query result", e);
+        }
+    }
+
+    /**
+     * 解码查询结果，列表结果返回惰性列表
+     *
+     * @param data encode返回的字节
+     * @return 查询结果
+     */
+    public Object decode(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not an encoded query result");
+        }
+        Class<?>[] classes = readClassTable(buffer);
+        byte kind = buffer.get();
+        if (kind == KIND_LIST) {
+            int size = buffer.getInt();
+            int offsetsStart = buffer.position();
+            int bodyStart = offsetsStart + size * 4;
+            return new LazyResultList(data, classes, size, offsetsStart, bodyStart);
+        }
+        return new Decoder(buffer, classes).read(0);
+    }
+
+    /**
+     * 检查编码结果能否被当前的类结构解码：类都存在且字段布局没有变化
+     *
+     * @param data encode返回的字节
+     * @return 是否可以解码
+     */
+    public boolean isCompatible(byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            return buffer.getInt() == MAGIC && readClassTable(buffer) != null;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private Class<?>[] readClassTable(ByteBuffer buffer) {
+        int classCount = buffer.getShort() & 0xffff;
+        Class<?>[] classes = new Class<?>[classCount];
+        for (int i = 0; i < classCount; i++) {
+            classes[i] = resolveClass(readUtf(buffer));
+            if (buffer.getInt() != fingerprint(classes[i])) {
+                throw new IllegalStateException("Class layout changed since the result was cached: "
+                    + classes[i].getName());
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * 类的布局指纹：实体为字段名和类型，枚举为常量名
+     */
+    private int fingerprint(Class<?> type) {
+        if (type.isEnum()) {
+            int hash = 1;
+            for (Object constant : type.getEnumConstants()) {
+                hash = 31 * hash + ((Enum<?>) constant).name().hashCode();
+            }
+            return hash;
+        }
+        EntityLayout layout = getLayout(type);
+        return layout != null ? layout.fingerprint : 0;
+    }
+
+    private static String readUtf(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xffff;
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private Class<?> resolveClass(String name) {
+        Class<?> type = classesByName.get(name);
+        if (type == null) {
+            try {
+                ClassLoader loader = Thread.currentThread().getContextClassLoader();
+                type = Class.forName(name, false, loader != null ? loader : BinaryResultCodec.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Class of cached result not found: " + name, e);
+            }
+            classesByName.put(name, type);
+        }
+        return type;
+    }
+
+    private EntityLayout getLayout(Class<?> type) {
+        Optional<EntityLayout> layout = layouts.get(type);
+        if (layout == null) {
+            layout = layouts.computeIfAbsent(type, key -> Optional.ofNullable(EntityLayout.create(key)));
+        }
+        return layout.orElse(null);
+    }
+
+    /**
+     * 编码过程状态：本次编码用到的类
+     */
+    private final class Encoder {
+        private final List<Class<?>> classes = new ArrayList<>();
+        private final Map<Class<?>, Integer> classIndexes = new HashMap<>();
+
+        private int classIndex(Class<?> type) {
+            Integer index = classIndexes.get(type);
+            if (index == null) {
+                if (classes.size() >= 0xffff) {
+                    throw new UnsupportedTypeException();
+                }
+                index = classes.size();
+                classes.add(type);
+                classIndexes.put(type, index);
+            }
+            return index;
+        }
+
+        void write(DataOutputStream out, Object value, int depth) throws IOException {
+            if (depth > MAX_DEPTH) {
+                throw new UnsupportedTypeException();
+            }
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof String) {
+                byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+                out.writeByte(STRING);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            } else if (value instanceof Integer) {
+                out.writeByte(INT);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Float) {
+                out.writeByte(FLOAT);
+                out.writeFloat((Float) value);
+            } else if (value instanceof Short) {
+                out.writeByte(SHORT);
+                out.writeShort((Short) value);
+            } else if (value instanceof Byte) {
+                out.writeByte(BYTE);
+                out.writeByte((Byte) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof Character) {
+                out.writeByte(CHAR);
+                out.writeChar((Character) value);
+            } else if (value instanceof BigDecimal) {
+                BigDecimal decimal = (BigDecimal) value;
+                byte[] unscaled = decimal.unscaledValue().toByteArray();
+                out.writeByte(BIG_DECIMAL);
+                out.writeInt(decimal.scale());
+                out.writeInt(unscaled.length);
+                out.write(unscaled);
+            } else if (value instanceof BigInteger) {
+                byte[] bytes = ((BigInteger) value).toByteArray();
+                out.writeByte(BIG_INTEGER);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            } else if (value instanceof Date) {
+                writeDate(out, (Date) value);
+            } else if (value instanceof LocalDate) {
+                out.writeByte(LOCAL_DATE);
+                out.writeLong(((LocalDate) value).toEpochDay());
+            } else if (value instanceof LocalDateTime) {
+                LocalDateTime dateTime = (LocalDateTime) value;
+                out.writeByte(LOCAL_DATE_TIME);
+                out.writeLong(dateTime.toLocalDate().toEpochDay());
+                out.writeLong(dateTime.toLocalTime().toNanoOfDay());
+            } else if (value instanceof LocalTime) {
+                out.writeByte(LOCAL_TIME);
+                out.writeLong(((LocalTime) value).toNanoOfDay());
+            } else if (value instanceof byte[]) {
+                byte[] bytes = (byte[]) value;
+                out.writeByte(BYTES);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            } else if (value instanceof Enum) {
+                Enum<?> constant = (Enum<?>) value;
+                out.writeByte(ENUM);
+                out.writeShort(classIndex(constant.getDeclaringClass()));
+                out.writeInt(constant.ordinal());
+            } else if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                out.writeByte(LIST);
+                out.writeInt(list.size());
+                for (Object element : list) {
+                    write(out, element, depth + 1);
+                }
+            } else if (value instanceof Object[]) {
+                Object[] array = (Object[]) value;
+                if (array.getClass() != Object[].class) {
+                    throw new UnsupportedTypeException();
+                }
+                out.writeByte(OBJECT_ARRAY);
+                out.writeInt(array.length);
+                for (Object element : array) {
+                    write(out, element, depth + 1);
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.writeByte(MAP);
+                out.writeInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    write(out, entry.getKey(), depth + 1);
+                    write(out, entry.getValue(), depth + 1);
+                }
+            } else {
+                writeEntity(out, value, depth);
+            }
+        }
+
+        private void writeDate(DataOutputStream out, Date date) throws IOException {
+            Class<?> type = date.getClass();
+            if (type == Date.class) {
+                out.writeByte(DATE);
+            } else if (type == java.sql.Date.class) {
+                out.writeByte(SQL_DATE);
+            } else if (type == java.sql.Time.class) {
+                out.writeByte(SQL_TIME);
+            } else if (type == java.sql.Timestamp.class) {
+                out.writeByte(TIMESTAMP);
+                out.writeLong(date.getTime());
+                out.writeInt(((java.sql.Timestamp) date).getNanos());
+                return;
+            } else {
+                throw new UnsupportedTypeException();
+            }
+            out.writeLong(date.getTime());
+        }
+
+        private void writeEntity(DataOutputStream out, Object entity, int depth) throws IOException {
+            EntityLayout layout = getLayout(entity.getClass());
+            if (layout == null) {
+                throw new UnsupportedTypeException();
+            }
+            out.writeByte(ENTITY);
+            out.writeShort(classIndex(entity.getClass()));
+            for (Field field : layout.fields) {
+                try {
+                    write(out, field.get(entity), depth + 1);
+                } catch (IllegalAccessException e) {
+                    throw new UnsupportedTypeException();
+                }
+            }
+        }
+    }
+
+    /**
+     * 解码过程：从缓冲区当前位置读取一个值
+     */
+    private final class Decoder {
+        private final ByteBuffer buffer;
+        private final Class<?>[] classes;
+
+        Decoder(ByteBuffer buffer, Class<?>[] classes) {
+            this.buffer = buffer;
+            this.classes = classes;
+        }
+
+        Object read(int depth) {
+            byte tag = buffer.get();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case STRING: {
+                    int length = buffer.getInt();
+                    String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+                    buffer.position(buffer.position() + length);
+                    return value;
+                }
+                case INT:
+                    return buffer.getInt();
+                case LONG:
+                    return buffer.getLong();
+                case DOUBLE:
+                    return buffer.getDouble();
+                case FLOAT:
+                    return buffer.getFloat();
+                case SHORT:
+                    return buffer.getShort();
+                case BYTE:
+                    return buffer.get();
+                case BOOLEAN:
+                    return buffer.get() != 0;
+                case CHAR:
+                    return buffer.getChar();
+                case BIG_DECIMAL: {
+                    int scale = buffer.getInt();
+                    return new BigDecimal(new BigInteger(readBytes()), scale);
+                }
+                case BIG_INTEGER:
+                    return new BigInteger(readBytes());
+                case DATE:
+                    return new Date(buffer.getLong());
+                case SQL_DATE:
+                    return new java.sql.Date(buffer.getLong());
+                case SQL_TIME:
+                    return new java.sql.Time(buffer.getLong());
+                case TIMESTAMP: {
+                    java.sql.Timestamp timestamp = new java.sql.Timestamp(buffer.getLong());
+                    timestamp.setNanos(buffer.getInt());
+                    return timestamp;
+                }
+                case LOCAL_DATE:
+                    return LocalDate.ofEpochDay(buffer.getLong());
+                case LOCAL_DATE_TIME:
+                    return LocalDateTime.of(LocalDate.ofEpochDay(buffer.getLong()), LocalTime.ofNanoOfDay(buffer.getLong()));
+                case LOCAL_TIME:
+                    return LocalTime.ofNanoOfDay(buffer.getLong());
+                case BYTES:
+                    return readBytes();
+                case ENUM:
+                    return classes[buffer.getShort() & 0xffff].getEnumConstants()[buffer.getInt()];
+                case LIST: {
+                    int size = buffer.getInt();
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(read(depth + 1));
+                    }
+                    return list;
+                }
+                case OBJECT_ARRAY: {
+                    Object[] array = new Object[buffer.getInt()];
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = read(depth + 1);
+                    }
+                    return array;
+                }
+                case MAP: {
+                    int size = buffer.getInt();
+                    Map<Object, Object> map = new LinkedHashMap<>(Math.max(16, size * 4 / 3 + 1));
+                    for (int i = 0; i < size; i++) {
+                        map.put(read(depth + 1), read(depth + 1));
+                    }
+                    return map;
+                }
+                case ENTITY:
+                    return readEntity(depth);
+                default:
+                    throw new IllegalStateException("Unknown type tag in cached result: " + tag);
+            }
+        }
+
+        private byte[] readBytes() {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        private Object readEntity(int depth) {
+            Class<?> type = classes[buffer.getShort() & 0xffff];
+            EntityLayout layout = getLayout(type);
+            if (layout == null) {
+                throw new IllegalStateException("Cached entity class cannot be instantiated: " + type.getName());
+            }
+            try {
+                Object entity = layout.constructor.newInstance();
+                for (Field field : layout.fields) {
+                    field.set(entity, read(depth + 1));
+                }
+                return entity;
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to decode cached entity: " + type.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * 惰性结果列表
+     * 元素在首次访问时才从字节中解码；修改列表时先完整解码为普通列表，不影响缓存中的数据
+     */
+    private final class LazyResultList extends AbstractList<Object> implements RandomAccess {
+        private final byte[] data;
+        private final Class<?>[] classes;
+        private final int size;
+        private final int offsetsStart;
+        private final int bodyStart;
+        private final Object[] decoded;
+        private final boolean[] present;
+        private List<Object> materialized;
+
+        LazyResultList(byte[] data, Class<?>[] classes, int size, int offsetsStart, int bodyStart) {
+            this.data = data;
+            this.classes = classes;
+            this.size = size;
+            this.offsetsStart = offsetsStart;
+            this.bodyStart = bodyStart;
+            this.decoded = new Object[size];
+            this.present = new boolean[size];
+        }
+
+        @Override
+        public Object get(int index) {
+            if (materialized != null) {
+                return materialized.get(index);
+            }
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            if (!present[index]) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                buffer.position(bodyStart + buffer.getInt(offsetsStart + index * 4));
+                decoded[index] = new Decoder(buffer, classes).read(0);
+                present[index] = true;
+            }
+            return decoded[index];
+        }
+
+        @Override
+        public int size() {
+            return materialized != null ? materialized.size() : size;
+        }
+
+        @Override
+        public Object set(int index, Object element) {
+            return materialize().set(index, element);
+        }
+
+        @Override
+        public void add(int index, Object element) {
+            materialize().add(index, element);
+            modCount++;
+        }
+
+        @Override
+        public Object remove(int index) {
+            Object removed = materialize().remove(index);
+            modCount++;
+            return removed;
+        }
+
+        private List<Object> materialize() {
+            if (materialized == null) {
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(get(i));
+                }
+                materialized = list;
+            }
+            return materialized;
+        }
+    }
+
+    /**
+     * 实体类的字段布局
+     */
+    private static final class EntityLayout {
+        private final Constructor<?> constructor;
+        private final Field[] fields;
+        private final int fingerprint;
+
+        private EntityLayout(Constructor<?> constructor, Field[] fields) {
+            this.constructor = constructor;
+            this.fields = fields;
+            int hash = 1;
+            for (Field field : fields) {
+                hash = 31 * hash + field.getName().hashCode();
+                hash = 31 * hash + field.getType().getName().hashCode();
+            }
+            this.fingerprint = hash;
+        }
+
+        /**
+         * 创建字段布局；JDK类、没有无参构造函数、包含final字段或包含解码结果无法赋值的集合字段的类
+         * 返回null（不支持）
+         */
+        static EntityLayout create(Class<?> type) {
+            String name = type.getName();
+            if (name.startsWith("java.") || name.startsWith("javax.") || type.isInterface()
+                    || Modifier.isAbstract(type.getModifiers())) {
+                return null;
+            }
+            try {
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                List<Field> fields = new ArrayList<>();
+                for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                    for (Field field : current.getDeclaredFields()) {
+                        int modifiers = field.getModifiers();
+                        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                            continue;
+                        }
+                        if (Modifier.isFinal(modifiers) || !isDecodable(field.getType())) {
+                            return null;
+                        }
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+                return new EntityLayout(constructor, fields.toArray(new Field[0]));
+            } catch (NoSuchMethodException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        /**
+         * 集合和映射字段只能接收解码出的ArrayList和LinkedHashMap
+         */
+        private static boolean isDecodable(Class<?> fieldType) {
+            if (Collection.class.isAssignableFrom(fieldType)) {
+                return fieldType.isAssignableFrom(ArrayList.class);
+            }
+            if (Map.class.isAssignableFrom(fieldType)) {
+                return fieldType.isAssignableFrom(LinkedHashMap.class);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 结果中包含不支持编码的类型
+     */
+    private static final class UnsupportedTypeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedTypeException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.kishultan.persistence.orm.query.cache.impl;
+
+import com.kishultan.persistence.orm.query.cache.CacheConfig;
+import com.kishultan.persistence.orm.query.cache.CachePolicy;
+import com.kishultan.persistence.orm.query.cache.CacheRegion;
+import com.kishultan.persistence.orm.query.cache.CacheStrategy;
+import com.kishultan.persistence.orm.query.cache.QueryCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 查询缓存区域管理器
+ *
+ * 每个区域是一个独立的QueryCacheImpl，有自己的容量、淘汰策略和统计信息。
+ * 区域可以通过register按名称创建，也可以在实体类上标注@CacheRegion，第一次查询该实体时创建。
+ * 没有对应区域的查询使用全局缓存。
+ * 标注了fullTable的实体记录其索引列，查询时由StandardQueryBuilder装载整表快照。
+ *
+ * @author Portal Team
+ */
+public class CacheRegionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheRegionManager.class);
+
+    private final Map<String, QueryCacheImpl> regions = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Optional<CachePolicy>> entityPolicies = new ConcurrentHashMap<>();
+    private final Map<Class<?>, List<String>> fullTableIndexes = new ConcurrentHashMap<>();
+    private final Set<Class<?>> caseSensitiveTables = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 创建缓存区域，同名区域已存在时返回已有的区域
+     *
+     * @param name 区域名称
+     * @param config 区域配置
+     * @return 区域缓存
+     */
+    public QueryCache register(String name, CacheConfig config) {
+        if (name == null || name.isEmpty() || CachePolicy.DEFAULT_REGION.equals(name)) {
+            throw new IllegalArgumentException("无效的缓存区域名称: " + name);
+        }
+        return regions.computeIfAbsent(name, k -> {
+            CacheStrategy strategy = createStrategy(config);
+            logger.info("创建查询缓存区域: region={}, maxSize={}, strategy={}", name, config.getMaxSize(),
+                strategy.getStrategyType());
+            return new QueryCacheImpl(config, strategy);
+        });
+    }
+
+    /**
+     * 获取区域的缓存
+     *
+     * @param name 区域名称
+     * @return 区域缓存，区域不存在时返回null
+     */
+    public QueryCache getCache(String name) {
+        return name != null ? regions.get(name) : null;
+    }
+
+    /**
+     * 获取查询使用的缓存：策略的区域存在时使用该区域，否则使用默认缓存
+     * 实体标注了@CacheRegion时先创建实体的区域
+     *
+     * @param entityClass 查询的实体类
+     * @param region 策略的区域名称
+     * @param defaultCache 默认缓存
+     * @return 查询使用的缓存
+     */
+    public QueryCache resolve(Class<?> entityClass, String region, QueryCache defaultCache) {
+        getEntityPolicy(entityClass);
+        QueryCache cache = getCache(region);
+        return cache != null ? cache : defaultCache;
+    }
+
+    /**
+     * 获取所有区域的缓存
+     */
+    public Map<String, QueryCache> getCaches() {
+        return Collections.unmodifiableMap(regions);
+    }
+
+    /**
+     * 获取实体类注解声明的默认缓存策略，第一次调用时创建对应的区域
+     *
+     * @param entityClass 实体类
+     * @return 指向实体区域的策略，实体未标注@CacheRegion时返回null
+     */
+    public CachePolicy getEntityPolicy(Class<?> entityClass) {
+        if (entityClass == null) {
+            return null;
+        }
+        Optional<CachePolicy> policy = entityPolicies.get(entityClass);
+        if (policy == null) {
+            policy = entityPolicies.computeIfAbsent(entityClass, this::createEntityPolicy);
+        }
+        return policy.orElse(null);
+    }
+
+    /**
+     * 获取整表缓存实体的索引列
+     *
+     * @param entityClass 实体类
+     * @return 索引列名，实体不是整表缓存时返回null
+     */
+    public List<String> getFullTableIndexes(Class<?> entityClass) {
+        if (getEntityPolicy(entityClass) == null) {
+            return null;
+        }
+        return fullTableIndexes.get(entityClass);
+    }
+
+    /**
+     * 整表缓存实体的字符串条件是否可以在内存中求值
+     *
+     * @see CacheRegion#caseSensitiveStrings()
+     */
+    public boolean isCaseSensitiveFullTable(Class<?> entityClass) {
+        return getFullTableIndexes(entityClass) != null && caseSensitiveTables.contains(entityClass);
+    }
+
+    /**
+     * 关闭实体的整表缓存，用于无法创建整表快照的实体，之后的查询按普通方式缓存
+     */
+    public void disableFullTable(Class<?> entityClass) {
+        if (fullTableIndexes.remove(entityClass) != null) {
+            logger.warn("实体无法创建整表快照，关闭整表缓存: entity={}", entityClass.getName());
+        }
+    }
+
+    private Optional<CachePolicy> createEntityPolicy(Class<?> entityClass) {
+        CacheRegion annotation = entityClass.getAnnotation(CacheRegion.class);
+        if (annotation == null) {
+            return Optional.empty();
+        }
+        String name = annotation.value().isEmpty() ? entityClass.getName() : annotation.value();
+        CacheConfig config = new CacheConfig(true, annotation.maxSize(), annotation.ttl());
+        config.setStrategyType(annotation.strategy());
+        config.setThreadPoolSize(1);
+        if (annotation.maxWeight() > 0) {
+            config.setMaxMemoryUsage(annotation.maxWeight());
+        }
+        register(name, config);
+        if (annotation.fullTable()) {
+            if (annotation.caseSensitiveStrings()) {
+                caseSensitiveTables.add(entityClass);
+            }
+            fullTableIndexes.put(entityClass, Collections.unmodifiableList(Arrays.asList(annotation.indexes())));
+        }
+        CachePolicy policy = CachePolicy.ttl(annotation.ttl()).withRegion(name);
+        return Optional.of(annotation.readOnly() ? policy.readOnly() : policy);
+    }
+
+    /**
+     * 关闭所有区域
+     */
+    public void shutdown() {
+        for (QueryCacheImpl cache : regions.values()) {
+            cache.shutdown();
+        }
+        regions.clear();
+        entityPolicies.clear();
+        fullTableIndexes.clear();
+        caseSensitiveTables.clear();
+    }
+
+    /**
+     * 按配置创建缓存策略
+     * LFU使用频率准入的W-TinyLFU，其他未实现的策略类型回退为LRU
+     */
+    public static CacheStrategy createStrategy(CacheConfig config) {
+        switch (config.getStrategyType()) {
+            case LFU:
+            case W_TINY_LFU:
+                return new WTinyLfuCacheStrategy(config.getMaxSize());
+            case TTL:
+                return new TTLCacheStrategy();
+            default:
+                return new LRUCacheStrategy();
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.kishultan.persistence.orm.query.cache.impl;
+
+import com.kishultan.persistence.orm.query.DefaultRowMapper;
+import com.kishultan.persistence.orm.query.QueryHints;
+import com.kishultan.persistence.orm.query.SqlExecutor;
+import com.kishultan.persistence.orm.query.cache.CachePolicy;
+import com.kishultan.persistence.orm.query.cache.QueryCache;
+import com.kishultan.persistence.orm.query.cache.ResultSnapshot;
+import com.kishultan.persistence.orm.query.cache.TableVersionTracker;
+import com.kishultan.persistence.orm.query.cache.WarmUpQuery;
+import com.kishultan.persistence.orm.query.impl.SimpleSqlExecutor;
+import com.kishultan.persistence.orm.query.utils.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 查询缓存预热
+ *
+ * 运行期间按执行次数记录可重放的缓存查询，保存时把最常执行的前N个查询及其参数写入文件；
+ * 下次启动时读取文件，在接收请求前按限定的速率并行重新执行这些查询并写入缓存。
+ *
+ * 文件结构：魔数、条目数，之后是逐条记录：实体类名、操作、SQL、计数SQL、maxRows、TTL、空结果TTL、最大结果行数、
+ * 缓存区域、依赖表、执行次数和BinaryResultCodec编码的参数。类已不存在或参数无法解码的记录在读取时跳过。
+ *
+ * 跟踪的不同查询数有上限，达到上限后不再记录新的查询，已记录的查询继续计数。
+ *
+ * @author Portal Team
+ */
+public class CacheWarmUp {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmUp.class);
+
+    private static final int MAGIC = 0x51575532; // "QWU2"
+    public static final int DEFAULT_MAX_TRACKED = 10000;
+
+    private final int maxTracked;
+    private final Map<WarmUpQuery, LongAdder> frequencies = new ConcurrentHashMap<>();
+    private final BinaryResultCodec codec = new BinaryResultCodec();
+
+    public CacheWarmUp() {
+        this(DEFAULT_MAX_TRACKED);
+    }
+
+    /**
+     * @param maxTracked 跟踪的不同查询数上限
+     */
+    public CacheWarmUp(int maxTracked) {
+        this.maxTracked = Math.max(1, maxTracked);
+    }
+
+    /**
+     * 记录一次查询执行
+     *
+     * @param query 可重放的查询
+     */
+    public void record(WarmUpQuery query) {
+        LongAdder counter = frequencies.get(query);
+        if (counter == null) {
+            if (frequencies.size() >= maxTracked) {
+                return;
+            }
+            counter = frequencies.computeIfAbsent(query, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * 获取查询的执行次数
+     */
+    public long getFrequency(WarmUpQuery query) {
+        LongAdder counter = frequencies.get(query);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * 获取执行次数最多的查询
+     *
+     * @param limit 个数上限
+     * @return 按执行次数从多到少排列的查询
+     */
+    public List<WarmUpQuery> getTopQueries(int limit) {
+        List<Map.Entry<WarmUpQuery, Long>> entries = new ArrayList<>(frequencies.size());
+        for (Map.Entry<WarmUpQuery, LongAdder> entry : frequencies.entrySet()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().sum()));
+        }
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        List<WarmUpQuery> top = new ArrayList<>(Math.min(limit, entries.size()));
+        for (int i = 0; i < entries.size() && i < limit; i++) {
+            top.add(entries.get(i).getKey());
+        }
+        return top;
+    }
+
+    public int getTrackedCount() {
+        return frequencies.size();
+    }
+
+    public void clear() {
+        frequencies.clear();
+    }
+
+    /**
+     * 把执行次数最多的查询写入文件，先写临时文件再原子替换
+     *
+     * @param file 文件路径
+     * @param limit 写入的查询个数上限
+     * @return 写入的查询数，失败时返回-1
+     */
+    public synchronized int save(Path file, int limit) {
+        List<WarmUpQuery> queries = getTopQueries(limit);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            int written = 0;
+            List<byte[]> records = new ArrayList<>(queries.size());
+            for (WarmUpQuery query : queries) {
+                byte[] parameters = codec.encode(new ArrayList<>(query.getParameters()));
+                if (parameters == null) {
+                    // 参数包含不支持的类型，无法重放
+                    continue;
+                }
+                records.add(encode(query, getFrequency(query), parameters));
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(records.size());
+                for (byte[] record : records) {
+                    out.write(record);
+                    written++;
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            logger.info("缓存预热查询已保存: file={}, queries={}", file, written);
+            return written;
+        } catch (IOException e) {
+            logger.warn("保存缓存预热查询失败: {}", e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // 临时文件留到下次保存时覆盖
+            }
+            return -1;
+        }
+    }
+
+    private byte[] encode(WarmUpQuery query, long frequency, byte[] parameters) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(query.getEntityClass().getName());
+        out.writeUTF(query.getOperation());
+        writeString(out, query.getSql());
+        out.writeBoolean(query.getCountSql() != null);
+        if (query.getCountSql() != null) {
+            writeString(out, query.getCountSql());
+        }
+        out.writeInt(query.getMaxRows());
+        out.writeLong(query.getTtl());
+        out.writeLong(query.getNegativeTtl());
+        out.writeInt(query.getMaxResultSize());
+        out.writeUTF(query.getRegion());
+        out.writeInt(query.getTables().size());
+        for (String table : query.getTables()) {
+            out.writeUTF(table);
+        }
+        out.writeLong(frequency);
+        out.writeInt(parameters.length);
+        out.write(parameters);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 从文件读取预热查询，文件不存在时返回空列表
+     *
+     * @param file 文件路径
+     * @return 按保存时的顺序（执行次数从多到少）排列的查询
+     */
+    public List<WarmUpQuery> load(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return Collections.emptyList();
+        }
+        List<WarmUpQuery> queries = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                logger.warn("缓存预热文件格式不正确: {}", file);
+                return Collections.emptyList();
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String className = in.readUTF();
+                String operation = in.readUTF();
+                String sql = readString(in);
+                String countSql = in.readBoolean() ? readString(in) : null;
+                int maxRows = in.readInt();
+                long ttl = in.readLong();
+                long negativeTtl = in.readLong();
+                int maxResultSize = in.readInt();
+                String region = in.readUTF();
+                int tableCount = in.readInt();
+                Set<String> tables = new LinkedHashSet<>();
+                for (int t = 0; t < tableCount; t++) {
+                    tables.add(in.readUTF());
+                }
+                long frequency = in.readLong();
+                byte[] parameters = new byte[in.readInt()];
+                in.readFully(parameters);
+                try {
+                    Class<?> entityClass = Class.forName(className, false, Thread.currentThread().getContextClassLoader());
+                    if (!codec.isCompatible(parameters)) {
+                        continue;
+                    }
+                    @SuppressWarnings("unchecked")
+                    List<Object> decoded = new ArrayList<>((List<Object>) codec.decode(parameters));
+                    CachePolicy policy = CachePolicy.ttl(ttl).withNegativeTtl(negativeTtl)
+                        .withMaxResultSize(maxResultSize).withRegion(region);
+                    WarmUpQuery query = new WarmUpQuery(entityClass, operation, sql, countSql, decoded, maxRows, tables,
+                        policy);
+                    queries.add(query);
+                    // 保留历史次数，本次运行的记录在其基础上累加
+                    frequencies.computeIfAbsent(query, k -> new LongAdder()).add(frequency);
+                } catch (ClassNotFoundException | RuntimeException e) {
+                    logger.debug("跳过无法重放的预热查询: class={}, reason={}", className, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("读取缓存预热文件失败，已读取{}个查询: {}", queries.size(), e.getMessage());
+        }
+        return queries;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 并行重新执行查询并写入缓存
+     *
+     * @param queries 预热查询
+     * @param dataSource 数据源
+     * @param cache 查询缓存
+     * @param threads 并行线程数
+     * @param permitsPerSecond 每秒最多执行的查询数，不大于0表示不限速
+     * @return 写入缓存的查询数
+     */
+    public int replay(List<WarmUpQuery> queries, DataSource dataSource, QueryCache cache, int threads,
+                      double permitsPerSecond) {
+        return replay(queries, new SimpleSqlExecutor(dataSource), query -> cache, threads, permitsPerSecond);
+    }
+
+    /**
+     * 并行重新执行查询并写入各自区域的缓存
+     *
+     * @param queries 预热查询
+     * @param executor SQL执行器
+     * @param caches 查询写入的缓存
+     * @param threads 并行线程数
+     * @param permitsPerSecond 每秒最多执行的查询数，不大于0表示不限速
+     * @return 写入缓存的查询数
+     */
+    public int replay(List<WarmUpQuery> queries, SqlExecutor executor, Function<WarmUpQuery, QueryCache> caches,
+                      int threads, double permitsPerSecond) {
+        if (queries.isEmpty()) {
+            return 0;
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, queries.size())), r -> {
+            Thread thread = new Thread(r, "query-cache-warmup-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        RateLimiter limiter = new RateLimiter(permitsPerSecond);
+        AtomicInteger loaded = new AtomicInteger();
+        long start = System.nanoTime();
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>(queries.size());
+            for (WarmUpQuery query : queries) {
+                tasks.add(() -> {
+                    limiter.acquire();
+                    if (load(query, executor, caches.apply(query))) {
+                        loaded.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("缓存预热被中断，已预热{}个查询", loaded.get());
+        } catch (Exception e) {
+            logger.warn("缓存预热失败: {}", e.getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+        logger.info("缓存预热完成: queries={}, loaded={}, time={}ms", queries.size(), loaded.get(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return loaded.get();
+    }
+
+    /**
+     * 执行单个查询并按记录的策略写入缓存，空结果按negativeTtl缓存，策略不接受的结果不写入
+     */
+    private boolean load(WarmUpQuery query, SqlExecutor executor, QueryCache cache) {
+        long loadStart = System.nanoTime();
+        try {
+            // 执行前记录依赖表版本，执行期间的写入会使结果不被缓存
+            TableVersionTracker.Snapshot tableVersions = TableVersionTracker.snapshot(query.getTables());
+            CachePolicy policy = query.getPolicy();
+            Object result;
+            boolean negative;
+            int size;
+            if (WarmUpQuery.COUNT.equals(query.getOperation())) {
+                long count = executor.executeAsLong(query.getCountSql(), query.getParameters());
+                result = count;
+                negative = count == 0;
+                size = negative ? 0 : 1;
+            } else {
+                List<?> rows = executeList(query, query.getEntityClass(), executor);
+                if (rows == null) {
+                    return false;
+                }
+                ResultSnapshot snapshot = ResultSnapshot.of(rows);
+                result = snapshot != null ? snapshot : rows;
+                negative = rows.isEmpty();
+                size = rows.size();
+            }
+            cache.getStatistics().recordLoad(System.nanoTime() - loadStart, true);
+            if (!policy.accepts(size)) {
+                return false;
+            }
+            cache.put(query.getCacheKey(), result, negative ? policy.forNegativeResult() : policy, tableVersions, null);
+            return true;
+        } catch (Exception e) {
+            cache.getStatistics().recordLoad(System.nanoTime() - loadStart, false);
+            logger.warn("预热查询失败: {}, {}", query, e.getMessage());
+            return false;
+        }
+    }
+
+    private static <E> List<E> executeList(WarmUpQuery query, Class<E> entityClass, SqlExecutor executor) {
+        DefaultRowMapper<E> mapper = new DefaultRowMapper<>();
+        mapper.register(entityClass, EntityUtils.getTableName(entityClass));
+        QueryHints hints = new QueryHints();
+        hints.setMaxRows(query.getMaxRows());
+        return executor.executeQuery(query.getSql(), query.getParameters(), entityClass, mapper, hints);
+    }
+
+    /**
+     * 按固定间隔发放执行许可
+     */
+    private static final class RateLimiter {
+        private final long intervalNanos;
+        private long nextPermitNanos = System.nanoTime();
+
+        RateLimiter(double permitsPerSecond) {
+            this.intervalNanos = permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+        }
+
+        void acquire() throws InterruptedException {
+            if (intervalNanos == 0) {
+                return;
+            }
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long permit = Math.max(now, nextPermitNanos);
+                nextPermitNanos = permit + intervalNanos;
+                waitNanos = permit - now;
+            }
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.kishultan.persistence.orm.query.cache.impl;
+
+import com.kishultan.persistence.orm.query.cache.Weigher;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于实体字段元数据的权重计算器
+ *
+ * 按64位JVM开启压缩指针的对象布局估算：对象头12字节、引用4字节、按8字节对齐。
+ * 实体类的字段布局只反射一次并缓存；字符串按长度、数组和集合按元素个数计算，
+ * 超过采样数量的集合只计算均匀抽取的样本再按比例放大，10万行的结果也只需计算几十个元素。
+ * JDK类不反射内部字段，按常见实现的固定大小估算。
+ *
+ * @author Portal Team
+ */
+public class EntityGraphWeigher implements Weigher {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+
+    /** 集合元素超过此数量时抽样估算 */
+    private static final int DEFAULT_SAMPLE_SIZE = 32;
+
+    /** 对象图的最大递归深度，超过后只计算引用本身，同时避免循环引用 */
+    private static final int MAX_DEPTH = 6;
+
+    private final int sampleSize;
+    private final Map<Class<?>, ClassLayout> layouts = new ConcurrentHashMap<>();
+
+    public EntityGraphWeigher() {
+        this(DEFAULT_SAMPLE_SIZE);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param sampleSize 集合抽样数量
+     */
+    public EntityGraphWeigher(int sampleSize) {
+        this.sampleSize = Math.max(1, sampleSize);
+    }
+
+    @Override
+    public long weigh(String cacheKey, Object value) {
+        long keyWeight = cacheKey != null ? weighString(cacheKey) : 0;
+        return keyWeight + weighObject(value, 0);
+    }
+
+    /**
+     * 估算对象图的大小
+     */
+    long weighObject(Object value, int depth) {
+        if (value == null || depth > MAX_DEPTH) {
+            return 0;
+        }
+        Class<?> type = value.getClass();
+        if (value instanceof String) {
+            return weighString((String) value);
+        }
+        if (type.isArray()) {
+            return weighArray(value, depth);
+        }
+        if (value instanceof Collection) {
+            return weighCollection((Collection<?>) value, depth);
+        }
+        if (value instanceof Map) {
+            return weighMap((Map<?, ?>) value, depth);
+        }
+        if (value instanceof Enum || value instanceof Class || value instanceof AccessibleObject) {
+            return 0; // 全局共享
+        }
+        if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            return align(OBJECT_HEADER + 24) + (decimal.precision() > 18 ? weighBigInteger(decimal.unscaledValue()) : 0);
+        }
+        if (value instanceof BigInteger) {
+            return weighBigInteger((BigInteger) value);
+        }
+        return getLayout(type).weigh(value, depth);
+    }
+
+    private static long weighString(String value) {
+        // String对象24字节 + char[]
+        return 24 + align(ARRAY_HEADER + 2L * value.length());
+    }
+
+    private static long weighBigInteger(BigInteger value) {
+        return align(OBJECT_HEADER + 20) + align(ARRAY_HEADER + 4L * ((value.bitLength() + 31) / 32));
+    }
+
+    private long weighArray(Object array, int depth) {
+        int length = Array.getLength(array);
+        Class<?> componentType = array.getClass().getComponentType();
+        if (componentType.isPrimitive()) {
+            return align(ARRAY_HEADER + (long) length * primitiveSize(componentType));
+        }
+        long shallow = align(ARRAY_HEADER + (long) length * REFERENCE);
+        if (length == 0) {
+            return shallow;
+        }
+        if (length <= sampleSize) {
+            long total = shallow;
+            for (int i = 0; i < length; i++) {
+                total += weighObject(Array.get(array, i), depth + 1);
+            }
+            return total;
+        }
+        long sampled = 0;
+        for (int i = 0; i < sampleSize; i++) {
+            sampled += weighObject(Array.get(array, (int) ((long) i * length / sampleSize)), depth + 1);
+        }
+        return shallow + sampled * length / sampleSize;
+    }
+
+    private long weighCollection(Collection<?> collection, int depth) {
+        int size = collection.size();
+        // ArrayList：对象24字节 + 引用数组；链表和哈希集合每个元素额外一个节点
+        long shallow = 24 + align(ARRAY_HEADER + (long) size * REFERENCE);
+        if (!(collection instanceof RandomAccess)) {
+            shallow += 32L * size;
+        }
+        if (size == 0) {
+            return shallow;
+        }
+        return shallow + weighElements(collection, size, depth);
+    }
+
+    private long weighMap(Map<?, ?> map, int depth) {
+        int size = map.size();
+        // HashMap：对象48字节 + 桶数组 + 每个条目32字节
+        long shallow = 48 + align(ARRAY_HEADER + (long) Integer.highestOneBit(Math.max(1, size) * 2 - 1) * 2 * REFERENCE)
+            + 32L * size;
+        if (size == 0) {
+            return shallow;
+        }
+        return shallow + weighElements(map.keySet(), size, depth) + weighElements(map.values(), size, depth);
+    }
+
+    /**
+     * 计算元素总大小，元素过多时均匀抽样后按比例放大
+     */
+    private long weighElements(Collection<?> elements, int size, int depth) {
+        if (size <= sampleSize) {
+            long total = 0;
+            for (Object element : elements) {
+                total += weighObject(element, depth + 1);
+            }
+            return total;
+        }
+        long sampled = 0;
+        int count = 0;
+        if (elements instanceof List && elements instanceof RandomAccess) {
+            List<?> list = (List<?>) elements;
+            for (int i = 0; i < sampleSize; i++) {
+                sampled += weighObject(list.get((int) ((long) i * size / sampleSize)), depth + 1);
+            }
+            count = sampleSize;
+        } else {
+            // 不支持随机访问时按步长遍历，只计算样本
+            int step = size / sampleSize;
+            Iterator<?> iterator = elements.iterator();
+            for (int i = 0; iterator.hasNext() && count < sampleSize; i++) {
+                Object element = iterator.next();
+                if (i % step == 0) {
+                    sampled += weighObject(element, depth + 1);
+                    count++;
+                }
+            }
+        }
+        return count == 0 ? 0 : sampled * size / count;
+    }
+
+    private ClassLayout getLayout(Class<?> type) {
+        ClassLayout layout = layouts.get(type);
+        if (layout == null) {
+            layout = layouts.computeIfAbsent(type, ClassLayout::new);
+        }
+        return layout;
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * 类的字段布局：浅大小和需要递归计算的引用字段
+     */
+    private final class ClassLayout {
+        private final long shallowSize;
+        private final Field[] references;
+
+        ClassLayout(Class<?> type) {
+            long size = OBJECT_HEADER;
+            List<Field> referenceFields = new ArrayList<>();
+            boolean jdkType = isJdkType(type);
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    Class<?> fieldType = field.getType();
+                    if (fieldType.isPrimitive()) {
+                        size += primitiveSize(fieldType);
+                    } else {
+                        size += REFERENCE;
+                        // JDK类型（Date、LocalDateTime、包装类等）只计算浅大小，不访问其内部字段
+                        if (!jdkType) {
+                            field.setAccessible(true);
+                            referenceFields.add(field);
+                        }
+                    }
+                }
+            }
+            this.shallowSize = align(size);
+            this.references = referenceFields.toArray(new Field[0]);
+        }
+
+        long weigh(Object value, int depth) {
+            long total = shallowSize;
+            for (Field field : references) {
+                try {
+                    total += weighObject(field.get(value), depth + 1);
+                } catch (IllegalAccessException e) {
+                    // 无法访问的字段只计算引用
+                }
+            }
+            return total;
+        }
+
+        private boolean isJdkType(Class<?> type) {
+            String name = type.getName();
+            return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.");
+        }
+    }
+}
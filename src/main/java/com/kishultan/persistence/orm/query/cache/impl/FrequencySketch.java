@@ -0,0 +1,118 @@
+package com.kishultan.persistence.orm.query.cache.impl;
+
+/**
+ * 访问频率草图
+ * 基于Count-Min Sketch的近似频率统计，每个计数器4位，最大计数15。
+ * 累计增量达到采样大小后所有计数器减半，使频率随时间衰减。
+ *
+ * 非线程安全，只在持有淘汰锁时修改；并发读取得到的是近似值。
+ *
+ * @author Portal Team
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAX_TABLE_SIZE = 1 << 30;
+
+    private volatile long[] table = new long[1];
+    private int sampleSize = 10;
+    private int size;
+
+    /**
+     * 按缓存容量调整草图大小，调整后频率清零
+     *
+     * @param maximumSize 缓存最大条目数
+     */
+    void ensureCapacity(long maximumSize) {
+        int maximum = (int) Math.min(Math.max(1, maximumSize), MAX_TABLE_SIZE);
+        if (table.length >= maximum) {
+            return;
+        }
+        table = new long[ceilingPowerOfTwo(maximum)];
+        sampleSize = (int) Math.min(10L * maximum, Integer.MAX_VALUE);
+        size = 0;
+    }
+
+    /**
+     * 估算元素的访问频率（0-15）
+     */
+    int frequency(Object e) {
+        int hash = spread(e.hashCode());
+        int start = (hash & 3) << 2;
+        long[] t = table;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i, t.length - 1);
+            int count = (int) ((t[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * 增加元素的访问频率
+     */
+    void increment(Object e) {
+        int hash = spread(e.hashCode());
+        int start = (hash & 3) << 2;
+        long[] t = table;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(t, indexOf(hash, i, t.length - 1), start + i);
+        }
+        if (added && (++size == sampleSize)) {
+            reset();
+        }
+    }
+
+    /**
+     * 清空所有计数
+     */
+    void clear() {
+        java.util.Arrays.fill(table, 0L);
+        size = 0;
+    }
+
+    private static boolean incrementAt(long[] t, int i, int j) {
+        int offset = j << 2;
+        long mask = 0xfL << offset;
+        if ((t[i] & mask) != mask) {
+            t[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 所有计数器减半，实现频率老化
+     */
+    private void reset() {
+        long[] t = table;
+        int count = 0;
+        for (int i = 0; i < t.length; i++) {
+            count += Long.bitCount(t[i] & ONE_MASK);
+            t[i] = (t[i] >>> 1) & RESET_MASK;
+        }
+        size = (size - (count >>> 2)) >>> 1;
+    }
+
+    private static int indexOf(int item, int i, int mask) {
+        long hash = (item + SEEDS[i]) * SEEDS[i];
+        hash += (hash >>> 32);
+        return ((int) hash) & mask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    private static int ceilingPowerOfTwo(int x) {
+        return 1 << -Integer.numberOfLeadingZeros(x - 1);
+    }
+}
@@ -0,0 +1,99 @@
+package com.kishultan.persistence.orm.query.cache.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 失效消息：一批合并后的表修改和实体缓存移除
+ *
+ * @author Portal Team
+ */
+final class InvalidationMessage {
+
+    private static final int MAGIC = 0x51494231; // "QIB1"
+
+    private final String nodeId;
+    private final Set<String> tables;
+    private final Map<String, Set<String>> entityKeys;
+
+    InvalidationMessage(String nodeId, Set<String> tables, Map<String, Set<String>> entityKeys) {
+        this.nodeId = nodeId;
+        this.tables = tables;
+        this.entityKeys = entityKeys;
+    }
+
+    String getNodeId() {
+        return nodeId;
+    }
+
+    Set<String> getTables() {
+        return tables;
+    }
+
+    Map<String, Set<String>> getEntityKeys() {
+        return entityKeys;
+    }
+
+    byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeUTF(nodeId);
+            out.writeInt(tables.size());
+            for (String table : tables) {
+                out.writeUTF(table);
+            }
+            out.writeInt(entityKeys.size());
+            for (Map.Entry<String, Set<String>> region : entityKeys.entrySet()) {
+                out.writeUTF(region.getKey());
+                out.writeInt(region.getValue().size());
+                for (String key : region.getValue()) {
+                    out.writeUTF(key);
+                }
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("编码失效消息失败", e);
+        }
+    }
+
+    static InvalidationMessage decode(byte[] data) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("Not an invalidation message");
+            }
+            String nodeId = in.readUTF();
+            int tableCount = in.readInt();
+            Set<String> tables = new LinkedHashSet<>();
+            for (int i = 0; i < tableCount; i++) {
+                tables.add(in.readUTF());
+            }
+            int regionCount = in.readInt();
+            Map<String, Set<String>> entityKeys = new LinkedHashMap<>();
+            for (int i = 0; i < regionCount; i++) {
+                String region = in.readUTF();
+                int keyCount = in.readInt();
+                Set<String> keys = new LinkedHashSet<>();
+                for (int j = 0; j < keyCount; j++) {
+                    keys.add(in.readUTF());
+                }
+                entityKeys.put(region, Collections.unmodifiableSet(keys));
+            }
+            return new InvalidationMessage(nodeId, Collections.unmodifiableSet(tables),
+                Collections.unmodifiableMap(entityKeys));
+        } catch (IOException e) {
+            throw new RuntimeException("解码失效消息失败", e);
+        }
+    }
+}
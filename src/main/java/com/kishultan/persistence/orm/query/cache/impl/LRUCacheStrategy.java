@@ -99,6 +99,13 @@ public class LRUCacheStrategy implements CacheStrategy {
         return Math.log(Math.max(1, timeSinceAccess));
     }
     
+    @Override
+    public void recordRemoval(String cacheKey) {
+        if (cacheKey != null) {
+            accessTimes.remove(cacheKey);
+        }
+    }
+    
     @Override
     public void reset() {
         accessTimes.clear();
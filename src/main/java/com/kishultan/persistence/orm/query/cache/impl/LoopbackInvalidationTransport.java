@@ -0,0 +1,65 @@
+package com.kishultan.persistence.orm.query.cache.impl;
+
+import com.kishultan.persistence.orm.query.cache.InvalidationTransport;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 进程内回环传输
+ *
+ * 连接到同一个Hub的传输互相投递消息（不投递给发送者自己），在调用send的线程上同步分发。
+ * 用于测试或在单个进程内模拟多个节点。
+ *
+ * @author Portal Team
+ */
+public class LoopbackInvalidationTransport implements InvalidationTransport {
+
+    private final Hub hub;
+    private volatile Consumer<byte[]> receiver;
+
+    private LoopbackInvalidationTransport(Hub hub) {
+        this.hub = hub;
+    }
+
+    @Override
+    public void send(byte[] message) {
+        for (LoopbackInvalidationTransport peer : hub.transports) {
+            Consumer<byte[]> peerReceiver = peer.receiver;
+            if (peer != this && peerReceiver != null) {
+                // 每个接收者拿到独立的副本
+                peerReceiver.accept(message.clone());
+            }
+        }
+    }
+
+    @Override
+    public void setReceiver(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+    }
+
+    @Override
+    public void close() {
+        hub.transports.remove(this);
+    }
+
+    /**
+     * 回环集线器，相当于一个进程内的广播频道
+     */
+    public static class Hub {
+        private final CopyOnWriteArrayList<LoopbackInvalidationTransport> transports = new CopyOnWriteArrayList<>();
+
+        /**
+         * 创建连接到本频道的传输
+         */
+        public LoopbackInvalidationTransport connect() {
+            LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport(this);
+            transports.add(transport);
+            return transport;
+        }
+
+        public int size() {
+            return transports.size();
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.kishultan.persistence.orm.query.cache.impl;
+
+import com.kishultan.persistence.orm.query.cache.ResultSnapshot;
+import com.kishultan.persistence.orm.query.cache.TableVersionTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * 查询缓存的持久化快照
+ *
+ * 把缓存条目写入内存映射文件，应用重启后重新装载仍然有效的条目，避免冷启动时全部查询穿透到数据库。
+ *
+ * 文件结构：头部（魔数、版本、创建时间、条目数、数据长度），之后是逐条记录，
+ * 每条记录为长度、内容和内容的CRC32。记录内容包括缓存键、存储时间、TTL、依赖表和BinaryResultCodec编码的结果。
+ *
+ * 写入先写临时文件再原子替换，写到一半的文件不会被装载。装载时：
+ * <ul>
+ *   <li>校验失败的记录及其后的所有记录都被丢弃</li>
+ *   <li>已过期或没有有效期的条目、类结构已变化（编码中的类指纹不一致）的条目被跳过</li>
+ *   <li>列表结果还原为ResultSnapshot，无法生成快照的条目被跳过</li>
+ *   <li>表版本号只在进程内有效，装载的条目按当前版本重新记录依赖表，剩余有效期保持不变</li>
+ * </ul>
+ * 文件大小不超过设定的上限，超出部分的条目不写入。
+ *
+ * @author Portal Team
+ */
+public class MappedCacheSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedCacheSnapshot.class);
+
+    private static final int MAGIC = 0x51435331; // "QCS1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    // 每次映射写入的批大小
+    private static final int BATCH_SIZE = 8 * 1024 * 1024;
+
+    private final Path file;
+    private final long maxFileSize;
+    private final BinaryResultCodec codec;
+
+    /**
+     * 构造函数
+     *
+     * @param file 快照文件路径
+     * @param maxFileSize 文件大小上限（字节），不超过2GB
+     */
+    public MappedCacheSnapshot(Path file, long maxFileSize) {
+        this(file, maxFileSize, new BinaryResultCodec());
+    }
+
+    public MappedCacheSnapshot(Path file, long maxFileSize, BinaryResultCodec codec) {
+        this.file = file;
+        this.maxFileSize = Math.max(HEADER_SIZE, Math.min(Integer.MAX_VALUE, maxFileSize));
+        this.codec = codec;
+    }
+
+    /**
+     * 把缓存中的有效条目写入快照文件
+     *
+     * @param cache 查询缓存
+     * @return 写入的条目数，失败时返回-1
+     */
+    public synchronized int save(QueryCacheImpl cache) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Writer writer;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                writer = new Writer(channel);
+                cache.forEachEntry(writer);
+                writer.finish();
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (writer.skipped > 0) {
+                logger.info("缓存快照已保存: file={}, entries={}, 超出大小上限未写入: {}",
+                    file, writer.count, writer.skipped);
+            } else {
+                logger.debug("缓存快照已保存: file={}, entries={}", file, writer.count);
+            }
+            return writer.count;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("保存缓存快照失败: file={}, error={}", file, e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // 临时文件会在下次保存时被覆盖
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * 从快照文件装载仍然有效的条目
+     *
+     * @param cache 查询缓存
+     * @return 装载的条目数；文件不存在或无效时返回0
+     */
+    public synchronized int load(QueryCacheImpl cache) {
+        if (!Files.isRegularFile(file)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > maxFileSize) {
+                logger.warn("缓存快照大小无效，忽略: file={}, size={}", file, size);
+                return 0;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                logger.warn("缓存快照格式不匹配，忽略: file={}", file);
+                return 0;
+            }
+            buffer.getLong(); // 创建时间
+            int count = buffer.getInt();
+            long dataLength = buffer.getLong();
+            if (count < 0 || dataLength != size - HEADER_SIZE) {
+                logger.warn("缓存快照头部损坏，忽略: file={}", file);
+                return 0;
+            }
+            buffer.position(HEADER_SIZE);
+
+            long now = System.currentTimeMillis();
+            int loaded = 0;
+            int skipped = 0;
+            CRC32 crc = new CRC32();
+            for (int i = 0; i < count; i++) {
+                int length = buffer.remaining() >= 4 ? buffer.getInt() : -1;
+                if (length <= 0 || length > buffer.remaining() - 4) {
+                    logger.warn("缓存快照记录损坏，停止装载: file={}, record={}", file, i);
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != buffer.getInt()) {
+                    logger.warn("缓存快照记录校验失败，停止装载: file={}, record={}", file, i);
+                    break;
+                }
+                if (restore(cache, ByteBuffer.wrap(payload), now)) {
+                    loaded++;
+                } else {
+                    skipped++;
+                }
+            }
+            logger.info("缓存快照已装载: file={}, loaded={}, skipped={}", file, loaded, skipped);
+            return loaded;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("装载缓存快照失败: file={}, error={}", file, e.getMessage());
+            return 0;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * 还原一条记录，已过期或无法解码时返回false
+     */
+    private boolean restore(QueryCacheImpl cache, ByteBuffer payload, long now) {
+        byte[] keyBytes = new byte[payload.getInt()];
+        payload.get(keyBytes);
+        String cacheKey = new String(keyBytes, StandardCharsets.UTF_8);
+        long storeTime = payload.getLong();
+        long ttl = payload.getLong();
+        int tableCount = payload.getShort() & 0xffff;
+        List<String> tables = new ArrayList<>(tableCount);
+        for (int i = 0; i < tableCount; i++) {
+            byte[] table = new byte[payload.getShort() & 0xffff];
+            payload.get(table);
+            tables.add(new String(table, StandardCharsets.UTF_8));
+        }
+        byte[] data = new byte[payload.getInt()];
+        payload.get(data);
+
+        // 没有有效期的条目装载后会按默认TTL存储，不再装载
+        long remaining = storeTime + ttl - now;
+        if (ttl <= 0 || remaining <= 0) {
+            return false;
+        }
+        if (!codec.isCompatible(data)) {
+            return false;
+        }
+        Object value;
+        try {
+            value = codec.decode(data);
+        } catch (RuntimeException e) {
+            logger.debug("缓存快照条目无法解码: cacheKey={}, error={}", cacheKey, e.getMessage());
+            return false;
+        }
+        // 列表结果按快照缓存，与查询构建器存入的条目一致，调用方修改返回的实体不会影响缓存
+        if (value instanceof List) {
+            value = ResultSnapshot.of((List<?>) value);
+        } else if (!(value instanceof Number || value instanceof String || value instanceof Boolean)) {
+            value = null;
+        }
+        if (value == null) {
+            return false;
+        }
+        TableVersionTracker.Snapshot tableVersions = tables.isEmpty() ? null : TableVersionTracker.snapshot(tables);
+        cache.put(cacheKey, value, remaining, tableVersions);
+        return true;
+    }
+
+    /**
+     * 逐条编码缓存条目，攒够一批后映射到文件写入
+     */
+    private final class Writer implements QueryCacheImpl.EntryVisitor {
+        private final FileChannel channel;
+        private final ByteArrayOutputStream batch = new ByteArrayOutputStream(64 * 1024);
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream(1024);
+        private final DataOutputStream recordOut = new DataOutputStream(record);
+        private final CRC32 crc = new CRC32();
+        private long position = HEADER_SIZE;
+        private int count;
+        private int skipped;
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void visit(String cacheKey, Object value, byte[] encoded, long storeTime, long ttl,
+                          TableVersionTracker.Snapshot tableVersions) {
+            byte[] data = encoded != null ? encoded : codec.encode(value);
+            if (data == null) {
+                return;
+            }
+            Set<String> tables = tableVersions != null ? tableVersions.getTables() : Collections.<String>emptySet();
+            try {
+                record.reset();
+                byte[] keyBytes = cacheKey.getBytes(StandardCharsets.UTF_8);
+                recordOut.writeInt(keyBytes.length);
+                recordOut.write(keyBytes);
+                recordOut.writeLong(storeTime);
+                recordOut.writeLong(ttl);
+                recordOut.writeShort(tables.size());
+                for (String table : tables) {
+                    byte[] tableBytes = table.getBytes(StandardCharsets.UTF_8);
+                    recordOut.writeShort(tableBytes.length);
+                    recordOut.write(tableBytes);
+                }
+                recordOut.writeInt(data.length);
+                recordOut.write(data);
+                recordOut.flush();
+
+                int length = record.size();
+                if (position + batch.size() + length + 8 > maxFileSize) {
+                    skipped++;
+                    return;
+                }
+                crc.reset();
+                crc.update(record.toByteArray(), 0, length);
+                DataOutputStream batchOut = new DataOutputStream(batch);
+                batchOut.writeInt(length);
+                record.writeTo(batchOut);
+                batchOut.writeInt((int) crc.getValue());
+                batchOut.flush();
+                count++;
+                if (batch.size() >= BATCH_SIZE) {
+                    flushBatch();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("写入缓存快照失败", e);
+            }
+        }
+
+        void finish() throws IOException {
+            flushBatch();
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putLong(System.currentTimeMillis());
+            header.putInt(count);
+            header.putLong(position - HEADER_SIZE);
+            header.force();
+        }
+
+        private void flushBatch() throws IOException {
+            if (batch.size() == 0) {
+                return;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, position, batch.size());
+            mapped.put(batch.toByteArray());
+            mapped.force();
+            position += batch.size();
+            batch.reset();
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.kishultan.persistence.orm.query.cache.impl;
+
+import com.kishultan.persistence.orm.query.cache.TableVersionTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 堆外缓存层
+ *
+ * 查询结果经BinaryResultCodec编码后保存在直接内存中，不占用堆空间，也不参与GC扫描。
+ * 命中时把字节复制回堆内（一次内存拷贝），再惰性解码，只有被访问的元素才创建对象。
+ * 空间不足时按最久未访问顺序淘汰。
+ *
+ * 条目使用引用计数：读取期间被淘汰的条目在读取完成后才释放内存，不会读到被覆盖的数据。
+ *
+ * @author Portal Team
+ */
+public class OffHeapCacheTier {
+
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapCacheTier.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+    public static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+
+    private final OffHeapSlabAllocator allocator;
+    private final BinaryResultCodec codec;
+    private final ReentrantLock lock = new ReentrantLock();
+    // 访问顺序，队首为最久未访问的条目，只在持有锁时访问
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder storeCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * 构造函数
+     *
+     * @param capacity 堆外内存上限（字节）
+     */
+    public OffHeapCacheTier(long capacity) {
+        this(capacity, DEFAULT_CHUNK_SIZE, DEFAULT_SLAB_SIZE, new BinaryResultCodec());
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param capacity 堆外内存上限（字节）
+     * @param chunkSize 分配单位（字节）
+     * @param slabSize 每次申请的直接内存块大小（字节）
+     * @param codec 结果编码器
+     */
+    public OffHeapCacheTier(long capacity, int chunkSize, int slabSize, BinaryResultCodec codec) {
+        this.allocator = new OffHeapSlabAllocator(capacity, chunkSize, slabSize);
+        this.codec = codec;
+    }
+
+    /**
+     * 保存查询结果
+     *
+     * @param cacheKey 缓存键
+     * @param value 查询结果
+     * @param storeTime 存储时间
+     * @param ttl 生存时间（毫秒），小于等于0表示永不过期
+     * @param tableVersions 依赖表版本，可为null
+     * @return 是否已保存；结果包含不支持编码的类型或超过容量时返回false
+     */
+    public boolean put(String cacheKey, Object value, long storeTime, long ttl, TableVersionTracker.Snapshot tableVersions) {
+        if (cacheKey == null || value == null) {
+            return false;
+        }
+        byte[] data = codec.encode(value);
+        if (data == null || data.length > allocator.getCapacity()) {
+            rejectedCount.increment();
+            return false;
+        }
+
+        int[] chunks;
+        lock.lock();
+        try {
+            chunks = allocator.allocate(data.length);
+            // 空间不足时淘汰最久未访问的条目，正在被读取的条目要等读取完成才释放空间
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (chunks == null && iterator.hasNext()) {
+                Entry eldest = iterator.next().getValue();
+                iterator.remove();
+                eldest.release();
+                evictionCount.increment();
+                chunks = allocator.allocate(data.length);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (chunks == null) {
+            rejectedCount.increment();
+            return false;
+        }
+
+        // 写入在锁外进行，条目写完后才放入索引
+        allocator.write(chunks, data, data.length);
+        Entry entry = new Entry(chunks, data.length, storeTime, ttl, tableVersions);
+        Entry previous;
+        lock.lock();
+        try {
+            previous = entries.put(cacheKey, entry);
+        } finally {
+            lock.unlock();
+        }
+        if (previous != null) {
+            previous.release();
+        }
+        storeCount.increment();
+        return true;
+    }
+
+    /**
+     * 读取查询结果
+     *
+     * @param cacheKey 缓存键
+     * @return 查询结果，列表结果为惰性解码的列表；不存在、过期或依赖表已修改时返回null
+     */
+    public Object get(String cacheKey) {
+        if (cacheKey == null) {
+            return null;
+        }
+        Entry entry;
+        lock.lock();
+        try {
+            entry = entries.get(cacheKey);
+            if (entry != null && entry.isInvalid()) {
+                entries.remove(cacheKey);
+                entry.release();
+                entry = null;
+            }
+            if (entry != null && !entry.retain()) {
+                entry = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+
+        byte[] data = new byte[entry.length];
+        try {
+            allocator.read(entry.chunks, data, entry.length);
+        } finally {
+            entry.release();
+        }
+        Object value;
+        try {
+            value = codec.decode(data);
+        } catch (RuntimeException e) {
+            // 无法解码（如类结构已变化）时按未命中处理并丢弃条目
+            logger.debug("堆外缓存条目无法解码，已丢弃: cacheKey={}, error={}", cacheKey, e.getMessage());
+            boolean removed;
+            lock.lock();
+            try {
+                removed = entries.remove(cacheKey, entry);
+            } finally {
+                lock.unlock();
+            }
+            if (removed) {
+                entry.release();
+            }
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        return value;
+    }
+
+    /**
+     * 遍历有效条目的编码字节，供持久化快照使用
+     */
+    void forEachEntry(QueryCacheImpl.EntryVisitor visitor) {
+        List<String> keys = new ArrayList<>();
+        List<Entry> retained = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Map.Entry<String, Entry> mapping : entries.entrySet()) {
+                Entry entry = mapping.getValue();
+                if (!entry.isInvalid() && entry.retain()) {
+                    keys.add(mapping.getKey());
+                    retained.add(entry);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (int i = 0; i < retained.size(); i++) {
+            Entry entry = retained.get(i);
+            byte[] data = new byte[entry.length];
+            try {
+                allocator.read(entry.chunks, data, entry.length);
+            } finally {
+                entry.release();
+            }
+            visitor.visit(keys.get(i), null, data, entry.storeTime, entry.ttl, entry.tableVersions);
+        }
+    }
+
+    /**
+     * 是否包含有效的条目
+     */
+    public boolean contains(String cacheKey) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(cacheKey);
+            return entry != null && !entry.isInvalid();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 移除条目
+     */
+    public boolean remove(String cacheKey) {
+        Entry entry;
+        lock.lock();
+        try {
+            entry = entries.remove(cacheKey);
+        } finally {
+            lock.unlock();
+        }
+        if (entry != null) {
+            entry.release();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 清空所有条目，已申请的直接内存保留给后续条目使用
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            for (Entry entry : entries.values()) {
+                entry.release();
+            }
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("堆外缓存已清空");
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取条目占用的堆外字节数（按chunk计）
+     */
+    public long getUsedBytes() {
+        return allocator.getUsedBytes();
+    }
+
+    /**
+     * 获取已申请的直接内存字节数
+     */
+    public long getReservedBytes() {
+        return allocator.getReservedBytes();
+    }
+
+    public long getCapacity() {
+        return allocator.getCapacity();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getStoreCount() {
+        return storeCount.sum();
+    }
+
+    /**
+     * 获取因类型不支持或超过容量而未保存的次数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * 堆外条目：chunk编号和引用计数，索引持有一个引用，每个读取者各持有一个引用
+     */
+    private final class Entry {
+        private final int[] chunks;
+        private final int length;
+        private final long storeTime;
+        private final long ttl;
+        private final TableVersionTracker.Snapshot tableVersions;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        Entry(int[] chunks, int length, long storeTime, long ttl, TableVersionTracker.Snapshot tableVersions) {
+            this.chunks = chunks;
+            this.length = length;
+            this.storeTime = storeTime;
+            this.ttl = ttl;
+            this.tableVersions = tableVersions;
+        }
+
+        boolean isInvalid() {
+            if (ttl > 0 && System.currentTimeMillis() - storeTime > ttl) {
+                return true;
+            }
+            return tableVersions != null && !tableVersions.isCurrent();
+        }
+
+        boolean retain() {
+            for (;;) {
+                int count = references.get();
+                if (count <= 0) {
+                    return false;
+                }
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                allocator.free(chunks);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.kishultan.persistence.orm.query.cache.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 堆外内存分配器
+ *
+ * 按需申请固定大小的直接内存块（slab），每个slab切分为等长的chunk。
+ * 一个条目占用若干个不必连续的chunk，因此不会产生外部碎片，释放后chunk直接回到空闲栈。
+ * 申请的slab在分配器生命周期内不归还，总量不超过设定的容量。
+ *
+ * @author Portal Team
+ */
+final class OffHeapSlabAllocator {
+
+    private final int chunkSize;
+    private final int chunksPerSlab;
+    private final int maxChunks;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private int[] freeChunks;
+    private int freeCount;
+    private int createdChunks;
+
+    /**
+     * 构造函数
+     *
+     * @param capacity 堆外内存上限（字节）
+     * @param chunkSize 分配单位（字节）
+     * @param slabSize 每次向操作系统申请的内存块大小（字节）
+     */
+    OffHeapSlabAllocator(long capacity, int chunkSize, int slabSize) {
+        this.chunkSize = Math.max(64, chunkSize);
+        this.chunksPerSlab = Math.max(1, slabSize / this.chunkSize);
+        this.maxChunks = (int) Math.min(Integer.MAX_VALUE, Math.max(1, capacity / this.chunkSize));
+        this.freeChunks = new int[Math.min(maxChunks, chunksPerSlab)];
+    }
+
+    /**
+     * 分配能容纳指定字节数的chunk
+     *
+     * @param bytes 字节数
+     * @return chunk编号；剩余空间不足时返回null
+     */
+    synchronized int[] allocate(int bytes) {
+        int needed = Math.max(1, (bytes + chunkSize - 1) / chunkSize);
+        if (needed > freeCount + (maxChunks - createdChunks)) {
+            return null;
+        }
+        while (freeCount < needed) {
+            addSlab();
+        }
+        int[] chunks = new int[needed];
+        for (int i = 0; i < needed; i++) {
+            chunks[i] = freeChunks[--freeCount];
+        }
+        return chunks;
+    }
+
+    /**
+     * 释放chunk
+     */
+    synchronized void free(int[] chunks) {
+        ensureFreeCapacity(freeCount + chunks.length);
+        for (int chunk : chunks) {
+            freeChunks[freeCount++] = chunk;
+        }
+    }
+
+    /**
+     * 把数据写入已分配的chunk
+     */
+    void write(int[] chunks, byte[] data, int length) {
+        int offset = 0;
+        for (int chunk : chunks) {
+            int count = Math.min(chunkSize, length - offset);
+            if (count <= 0) {
+                break;
+            }
+            ByteBuffer buffer = chunkBuffer(chunk);
+            buffer.put(data, offset, count);
+            offset += count;
+        }
+    }
+
+    /**
+     * 从chunk读取数据到堆内数组
+     */
+    void read(int[] chunks, byte[] target, int length) {
+        int offset = 0;
+        for (int chunk : chunks) {
+            int count = Math.min(chunkSize, length - offset);
+            if (count <= 0) {
+                break;
+            }
+            ByteBuffer buffer = chunkBuffer(chunk);
+            buffer.get(target, offset, count);
+            offset += count;
+        }
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * 获取堆外内存上限（字节）
+     */
+    long getCapacity() {
+        return (long) maxChunks * chunkSize;
+    }
+
+    /**
+     * 获取已分配给条目的字节数（按chunk计）
+     */
+    synchronized long getUsedBytes() {
+        return (long) (createdChunks - freeCount) * chunkSize;
+    }
+
+    /**
+     * 获取已向操作系统申请的字节数
+     */
+    synchronized long getReservedBytes() {
+        return (long) createdChunks * chunkSize;
+    }
+
+    /**
+     * 返回指向chunk的独立视图，多个线程可以同时读写不同的chunk
+     */
+    private ByteBuffer chunkBuffer(int chunk) {
+        ByteBuffer slab;
+        synchronized (this) {
+            slab = slabs.get(chunk / chunksPerSlab);
+        }
+        ByteBuffer buffer = slab.duplicate();
+        int position = (chunk % chunksPerSlab) * chunkSize;
+        buffer.limit(position + chunkSize);
+        buffer.position(position);
+        return buffer;
+    }
+
+    private void addSlab() {
+        int chunks = Math.min(chunksPerSlab, maxChunks - createdChunks);
+        int firstChunk = slabs.size() * chunksPerSlab;
+        slabs.add(ByteBuffer.allocateDirect(chunks * chunkSize));
+        ensureFreeCapacity(freeCount + chunks);
+        // 倒序入栈，使分配从slab开头开始
+        for (int i = chunks - 1; i >= 0; i--) {
+            freeChunks[freeCount++] = firstChunk + i;
+        }
+        createdChunks += chunks;
+    }
+
+    private void ensureFreeCapacity(int capacity) {
+        if (freeChunks.length < capacity) {
+            int[] grown = new int[Math.max(capacity, Math.min(maxChunks, freeChunks.length * 2))];
+            System.arraycopy(freeChunks, 0, grown, 0, freeCount);
+            freeChunks = grown;
+        }
+    }
+}
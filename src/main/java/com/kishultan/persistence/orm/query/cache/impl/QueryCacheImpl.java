@@ -4,12 +4,19 @@ import com.kishultan.persistence.orm.query.cache.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * 查询缓存实现类
@@ -23,9 +30,15 @@ public class QueryCacheImpl implements QueryCache {
     
     private final CacheConfig config;
     private final CacheStrategy strategy;
+    private final Weigher weigher;
+    private final AtomicLong weightedSize = new AtomicLong();
+    private final OffHeapCacheTier offHeapTier;
+    private final MappedCacheSnapshot persistentSnapshot;
     private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    private final TimerWheel timerWheel = new TimerWheel(System.currentTimeMillis());
     private final CacheStatistics statistics = new CacheStatistics();
     private final ScheduledExecutorService cleanupExecutor;
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
     private volatile boolean enabled = true;
     
     /**
@@ -38,6 +51,15 @@ public class QueryCacheImpl implements QueryCache {
         this.config = config;
         this.strategy = strategy;
         this.enabled = config.isEnabled();
+        this.weigher = config.getWeigher() != null ? config.getWeigher() : new EntityGraphWeigher();
+        this.offHeapTier = config.isOffHeapEnabled() ? new OffHeapCacheTier(config.getOffHeapCapacity()) : null;
+        this.persistentSnapshot = config.getPersistentPath() != null
+            ? new MappedCacheSnapshot(Paths.get(config.getPersistentPath()), config.getPersistentMaxSize()) : null;
+        
+        // 由策略维护容量时，淘汰决定通过回调同步到缓存
+        strategy.configureCapacity(config.getMaxSize());
+        strategy.configureMaximumWeight(config.getMaxMemoryUsage());
+        strategy.bindEntryEvictionListener(this::onStrategyEviction);
         
         // 启动清理任务
         if (config.isEnableAsync()) {
@@ -51,6 +73,19 @@ public class QueryCacheImpl implements QueryCache {
         } else {
             this.cleanupExecutor = null;
         }
+        
+        // 装载上次保存的快照，并定期保存
+        if (persistentSnapshot != null) {
+            persistentSnapshot.load(this);
+            if (cleanupExecutor != null && config.getPersistentInterval() > 0) {
+                cleanupExecutor.scheduleWithFixedDelay(
+                    () -> persistentSnapshot.save(this),
+                    config.getPersistentInterval(),
+                    config.getPersistentInterval(),
+                    TimeUnit.MILLISECONDS
+                );
+            }
+        }
     }
     
     @Override
@@ -62,27 +97,43 @@ public class QueryCacheImpl implements QueryCache {
         
         CacheEntry entry = cache.get(cacheKey);
         if (entry == null) {
+            // 堆内未命中时查找堆外层
+            Object offHeapValue = offHeapTier != null ? offHeapTier.get(cacheKey) : null;
+            if (offHeapValue != null && resultType.isInstance(offHeapValue)) {
+                statistics.recordHit();
+                return (T) offHeapValue;
+            }
             statistics.recordMiss();
             return null;
         }
         
-        // 检查是否过期
-        if (strategy.isExpired(cacheKey, entry.getStoreTime(), entry.getTtl())) {
-            cache.remove(cacheKey);
+        // 检查是否过期，或依赖的表已被修改
+        if (strategy.isExpired(cacheKey, entry.getStoreTime(), entry.getTtl()) || entry.isStale()) {
+            if (removeEntry(cacheKey, entry)) {
+                strategy.recordRemoval(cacheKey, entry);
+            }
             statistics.recordMiss();
             return null;
         }
         
         // 记录访问
-        strategy.recordAccess(cacheKey, System.currentTimeMillis());
+        long now = System.currentTimeMillis();
+        strategy.recordAccess(cacheKey, now);
         statistics.recordHit();
         
+        // 超过softTtl时返回当前结果，同时异步刷新
+        if (entry.needsRefresh(now)) {
+            refreshAsync(cacheKey, entry);
+        }
+        
         try {
             return (T) entry.getValue();
         } catch (ClassCastException e) {
             logger.warn("缓存类型转换失败: cacheKey={}, expectedType={}, actualType={}", 
                 cacheKey, resultType.getSimpleName(), entry.getValue().getClass().getSimpleName());
-            cache.remove(cacheKey);
+            if (removeEntry(cacheKey, entry)) {
+                strategy.recordRemoval(cacheKey, entry);
+            }
             statistics.recordMiss();
             return null;
         }
@@ -99,27 +150,95 @@ public class QueryCacheImpl implements QueryCache {
     
     @Override
     public void put(String cacheKey, Object result, long ttl) {
+        put(cacheKey, result, ttl, null);
+    }
+    
+    @Override
+    public void put(String cacheKey, Object result, long ttl, TableVersionTracker.Snapshot tableVersions) {
+        store(cacheKey, result, ttl, 0, tableVersions, null);
+    }
+    
+    @Override
+    public void put(String cacheKey, Object result, CachePolicy policy, TableVersionTracker.Snapshot tableVersions,
+                    Supplier<?> refresher) {
+        long softTtl = policy.isRefreshAhead() && refresher != null ? policy.getSoftTtl() : 0;
+        store(cacheKey, result, policy.getHardTtl(), softTtl, tableVersions, refresher);
+    }
+    
+    /**
+     * 存储条目
+     * 
+     * @param softTtl 超过后命中时异步刷新的时间（毫秒），0表示不刷新
+     * @param refresher 刷新函数
+     */
+    private void store(String cacheKey, Object result, long ttl, long softTtl,
+                       TableVersionTracker.Snapshot tableVersions, Supplier<?> refresher) {
         if (!enabled || cacheKey == null || result == null) {
             return;
         }
-        
-        // 检查容量限制
-        if (!strategy.canAddEntry(cache.size(), config.getMaxSize())) {
-            evictEntries();
+        // 查询执行期间依赖表已被修改，结果可能已过时
+        if (tableVersions != null && !tableVersions.isCurrent()) {
+            return;
         }
         
         long storeTime = System.currentTimeMillis();
         long actualTtl = ttl > 0 ? ttl : config.getDefaultTtl();
         
-        CacheEntry entry = new CacheEntry(result, storeTime, actualTtl);
-        cache.put(cacheKey, entry);
+        // 权重只在存储时计算一次
+        long weight = weigher.weigh(cacheKey, result);
+        
+        // 大结果直接保存到堆外，不占用堆内缓存
+        if (offHeapTier != null && weight >= config.getOffHeapThreshold()
+                && offHeapTier.put(cacheKey, result, storeTime, actualTtl, tableVersions)) {
+            CacheEntry previous = cache.remove(cacheKey);
+            if (previous != null) {
+                timerWheel.deschedule(previous);
+                weightedSize.addAndGet(-previous.getWeight());
+                strategy.recordRemoval(cacheKey, previous);
+            }
+            statistics.recordPut(0);
+            if (logger.isDebugEnabled()) {
+                logger.debug("缓存存储到堆外: cacheKey={}, ttl={}ms, weight={}", cacheKey, actualTtl, weight);
+            }
+            return;
+        }
+        
+        if (weight > config.getMaxMemoryUsage()) {
+            logger.debug("缓存结果超过内存上限，不缓存: cacheKey={}, weight={}", cacheKey, weight);
+            return;
+        }
+        
+        // 检查容量限制，由策略维护容量时在recordStore中淘汰
+        if (!strategy.isCapacityManaged() && !strategy.canAddEntry(cache.size(), config.getMaxSize())) {
+            evictEntries();
+        }
+        
+        boolean refreshAhead = softTtl > 0 && (actualTtl <= 0 || softTtl < actualTtl);
+        CacheEntry entry = new CacheEntry(cacheKey, result, storeTime, actualTtl, tableVersions, weight,
+            refreshAhead ? softTtl : 0, refreshAhead ? refresher : null);
+        CacheEntry previous = cache.put(cacheKey, entry);
+        weightedSize.addAndGet(previous != null ? weight - previous.getWeight() : weight);
+        if (previous != null) {
+            timerWheel.deschedule(previous);
+        }
+        if (actualTtl > 0) {
+            timerWheel.schedule(entry, storeTime + actualTtl);
+        }
+        if (offHeapTier != null) {
+            offHeapTier.remove(cacheKey);
+        }
         
         // 记录存储
-        strategy.recordStore(cacheKey, storeTime, actualTtl);
-        statistics.recordPut(estimateMemoryUsage(result));
+        strategy.recordStore(cacheKey, storeTime, actualTtl, weight, entry);
+        statistics.recordPut(weight);
+        
+        // 超出内存上限时按策略淘汰，由策略维护容量时在recordStore中淘汰
+        if (!strategy.isCapacityManaged() && weightedSize.get() > config.getMaxMemoryUsage()) {
+            evictEntries();
+        }
         
         if (logger.isDebugEnabled()) {
-            logger.debug("缓存存储: cacheKey={}, ttl={}ms", cacheKey, actualTtl);
+            logger.debug("缓存存储: cacheKey={}, ttl={}ms, weight={}", cacheKey, actualTtl, weight);
         }
     }
     
@@ -139,12 +258,16 @@ public class QueryCacheImpl implements QueryCache {
             return false;
         }
         
+        boolean removedOffHeap = offHeapTier != null && offHeapTier.remove(cacheKey);
         CacheEntry entry = cache.remove(cacheKey);
         if (entry != null) {
-            statistics.recordRemove(estimateMemoryUsage(entry.getValue()));
+            timerWheel.deschedule(entry);
+            weightedSize.addAndGet(-entry.getWeight());
+            strategy.recordRemoval(cacheKey, entry);
+            statistics.recordRemove(entry.getWeight());
             return true;
         }
-        return false;
+        return removedOffHeap;
     }
     
     @Override
@@ -164,7 +287,16 @@ public class QueryCacheImpl implements QueryCache {
     
     @Override
     public void clear() {
-        cache.clear();
+        for (String cacheKey : new ArrayList<>(cache.keySet())) {
+            CacheEntry entry = cache.remove(cacheKey);
+            if (entry != null) {
+                timerWheel.deschedule(entry);
+                weightedSize.addAndGet(-entry.getWeight());
+            }
+        }
+        if (offHeapTier != null) {
+            offHeapTier.clear();
+        }
         statistics.reset();
         strategy.reset();
         
@@ -181,12 +313,14 @@ public class QueryCacheImpl implements QueryCache {
         
         CacheEntry entry = cache.get(cacheKey);
         if (entry == null) {
-            return false;
+            return offHeapTier != null && offHeapTier.contains(cacheKey);
         }
         
-        // 检查是否过期
-        if (strategy.isExpired(cacheKey, entry.getStoreTime(), entry.getTtl())) {
-            cache.remove(cacheKey);
+        // 检查是否过期，或依赖的表已被修改
+        if (strategy.isExpired(cacheKey, entry.getStoreTime(), entry.getTtl()) || entry.isStale()) {
+            if (removeEntry(cacheKey, entry)) {
+                strategy.recordRemoval(cacheKey, entry);
+            }
             return false;
         }
         
@@ -203,6 +337,51 @@ public class QueryCacheImpl implements QueryCache {
         return statistics;
     }
     
+    /**
+     * 获取所有条目的权重总和（估算的字节数）
+     * 
+     * @return 权重总和
+     */
+    public long getWeightedSize() {
+        return weightedSize.get();
+    }
+    
+    /**
+     * 获取堆外缓存层，未启用时返回null
+     * 
+     * @return 堆外缓存层
+     */
+    public OffHeapCacheTier getOffHeapTier() {
+        return offHeapTier;
+    }
+    
+    /**
+     * 立即把缓存保存到持久化快照
+     * 
+     * @return 写入的条目数；未配置持久化路径时返回0，保存失败时返回-1
+     */
+    public int saveSnapshot() {
+        return persistentSnapshot != null ? persistentSnapshot.save(this) : 0;
+    }
+    
+    /**
+     * 遍历所有有效条目，堆外条目以编码字节提供
+     */
+    void forEachEntry(EntryVisitor visitor) {
+        for (Map.Entry<String, CacheEntry> mapping : cache.entrySet()) {
+            CacheEntry entry = mapping.getValue();
+            if (entry.isStale() || (entry.getTtl() > 0
+                    && System.currentTimeMillis() - entry.getStoreTime() > entry.getTtl())) {
+                continue;
+            }
+            visitor.visit(mapping.getKey(), entry.getValue(), null, entry.getStoreTime(), entry.getTtl(),
+                entry.tableVersions);
+        }
+        if (offHeapTier != null) {
+            offHeapTier.forEachEntry(visitor);
+        }
+    }
+    
     @Override
     public void warmUp(Map<String, Object> cacheEntries) {
         if (cacheEntries == null || cacheEntries.isEmpty()) {
@@ -240,70 +419,168 @@ public class QueryCacheImpl implements QueryCache {
     
     /**
      * 清理过期条目
+     * 只处理时间轮中到期的桶，不扫描整个缓存；依赖表已被修改的条目在访问或到期时移除
      */
     private void cleanupExpiredEntries() {
         if (!enabled) {
             return;
         }
         
-        List<String> expiredKeys = new ArrayList<>();
-        for (Map.Entry<String, CacheEntry> entry : cache.entrySet()) {
-            String cacheKey = entry.getKey();
-            CacheEntry cacheEntry = entry.getValue();
-            
-            if (strategy.isExpired(cacheKey, cacheEntry.getStoreTime(), cacheEntry.getTtl())) {
-                expiredKeys.add(cacheKey);
+        int expiredCount = 0;
+        for (TimerWheel.Node node : timerWheel.advance(System.currentTimeMillis())) {
+            CacheEntry entry = (CacheEntry) node;
+            if (removeEntry(entry.key, entry)) {
+                strategy.recordRemoval(entry.key, entry);
+                statistics.recordRemove(entry.getWeight());
+                expiredCount++;
             }
         }
         
-        if (!expiredKeys.isEmpty()) {
-            removeAll(expiredKeys);
-            logger.debug("清理过期缓存条目: {} 个", expiredKeys.size());
+        if (expiredCount > 0) {
+            logger.debug("清理过期缓存条目: {} 个", expiredCount);
         }
     }
     
     /**
      * 淘汰缓存条目
+     * 条目数达到上限时淘汰10%；只是超出内存上限时按策略顺序逐个淘汰，直到回到上限以内。
+     * 同一时刻只允许一个线程执行，其他线程发现正在淘汰时直接返回
      */
     private void evictEntries() {
-        List<String> allKeys = new ArrayList<>(cache.keySet());
-        int evictCount = Math.max(1, allKeys.size() / 10); // 淘汰10%
-        
-        List<String> evictCandidates = strategy.getEvictionCandidates(allKeys, evictCount);
-        
-        for (String cacheKey : evictCandidates) {
-            CacheEntry entry = cache.remove(cacheKey);
-            if (entry != null) {
-                statistics.recordEviction(estimateMemoryUsage(entry.getValue()));
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int evictedCount = 0;
+            boolean full;
+            while ((full = !strategy.canAddEntry(cache.size(), config.getMaxSize())) || isOverweight()) {
+                List<String> allKeys = new ArrayList<>(cache.keySet());
+                int evictCount = Math.max(1, allKeys.size() / 10); // 淘汰10%
+                
+                List<String> evictCandidates = strategy.getEvictionCandidates(allKeys, evictCount);
+                if (evictCandidates.isEmpty()) {
+                    break;
+                }
+                for (String cacheKey : evictCandidates) {
+                    if (!full && !isOverweight()) {
+                        break;
+                    }
+                    CacheEntry entry = cache.remove(cacheKey);
+                    if (entry != null) {
+                        timerWheel.deschedule(entry);
+                        weightedSize.addAndGet(-entry.getWeight());
+                        strategy.recordRemoval(cacheKey, entry);
+                        statistics.recordEviction(entry.getWeight());
+                        demote(cacheKey, entry);
+                        evictedCount++;
+                    }
+                }
+                if (full) {
+                    break;
+                }
+            }
+            
+            if (logger.isDebugEnabled()) {
+                logger.debug("淘汰缓存条目: {} 个", evictedCount);
             }
+        } finally {
+            evicting.set(false);
         }
-        
-        if (logger.isDebugEnabled()) {
-            logger.debug("淘汰缓存条目: {} 个", evictCandidates.size());
+    }
+    
+    /**
+     * 异步刷新条目，同一条目同时只有一个刷新任务
+     * 使用缓存的执行器，未启用异步时使用公共线程池
+     */
+    private void refreshAsync(String cacheKey, CacheEntry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        Executor executor = cleanupExecutor != null && !cleanupExecutor.isShutdown()
+            ? cleanupExecutor : ForkJoinPool.commonPool();
+        try {
+            executor.execute(() -> refresh(cacheKey, entry));
+        } catch (RejectedExecutionException e) {
+            entry.refreshing.set(false);
         }
     }
     
+    private void refresh(String cacheKey, CacheEntry entry) {
+        try {
+            // 重新执行前记录依赖表版本，刷新期间的写入会使新结果不被缓存
+            TableVersionTracker.Snapshot tableVersions = entry.tableVersions != null
+                ? TableVersionTracker.snapshot(entry.tableVersions.getTables()) : null;
+            Object result = entry.refresher.get();
+            statistics.recordRefresh(true);
+            // 条目已被替换或移除时丢弃刷新结果
+            if (!enabled || cache.get(cacheKey) != entry) {
+                return;
+            }
+            if (result == null) {
+                if (removeEntry(cacheKey, entry)) {
+                    strategy.recordRemoval(cacheKey, entry);
+                }
+                return;
+            }
+            store(cacheKey, result, entry.getTtl(), entry.softTtl, tableVersions, entry.refresher);
+            if (logger.isDebugEnabled()) {
+                logger.debug("缓存已异步刷新: cacheKey={}", cacheKey);
+            }
+        } catch (RuntimeException e) {
+            // 允许后续命中再次尝试刷新，硬过期前仍返回旧结果
+            statistics.recordRefresh(false);
+            entry.refreshing.set(false);
+            logger.warn("缓存异步刷新失败: cacheKey={}, error={}", cacheKey, e.getMessage());
+        }
+    }
+    
+    private boolean isOverweight() {
+        return weightedSize.get() > config.getMaxMemoryUsage();
+    }
+    
     /**
-     * 估算内存使用量
+     * 策略淘汰回调，只移除策略淘汰的那个条目
+     * 策略重放缓冲的顺序可能与缓存的写入顺序不同，淘汰的是已被替换的条目时重新登记当前条目
      * 
-     * @param obj 对象
-     * @return 估算的内存使用量（字节）
+     * @param cacheKey 被淘汰的缓存键
+     * @param evicted 被淘汰的条目，策略未记录时为null
      */
-    private long estimateMemoryUsage(Object obj) {
-        if (obj == null) {
-            return 0;
+    private void onStrategyEviction(String cacheKey, Object evicted) {
+        CacheEntry entry = cache.get(cacheKey);
+        if (entry == null) {
+            return;
         }
-        
-        // 简单的内存估算
-        if (obj instanceof String) {
-            return ((String) obj).length() * 2; // 每个字符2字节
-        } else if (obj instanceof List) {
-            return ((List<?>) obj).size() * 64; // 每个元素估算64字节
-        } else if (obj instanceof Map) {
-            return ((Map<?, ?>) obj).size() * 128; // 每个条目估算128字节
-        } else {
-            return 64; // 默认估算64字节
+        if (evicted != null && evicted != entry) {
+            strategy.recordStore(cacheKey, entry.getStoreTime(), entry.getTtl(), entry.getWeight(), entry);
+            return;
+        }
+        if (removeEntry(cacheKey, entry)) {
+            statistics.recordEviction(entry.getWeight());
+            demote(cacheKey, entry);
+        }
+    }
+    
+    /**
+     * 把堆内淘汰的有效条目降级到堆外层
+     */
+    private void demote(String cacheKey, CacheEntry entry) {
+        if (offHeapTier == null || entry.isStale()
+                || (entry.getTtl() > 0 && System.currentTimeMillis() - entry.getStoreTime() > entry.getTtl())) {
+            return;
+        }
+        offHeapTier.put(cacheKey, entry.getValue(), entry.getStoreTime(), entry.getTtl(), entry.tableVersions);
+    }
+    
+    /**
+     * 条件移除条目，条目已被替换或移除时返回false
+     */
+    private boolean removeEntry(String cacheKey, CacheEntry entry) {
+        if (cache.remove(cacheKey, entry)) {
+            timerWheel.deschedule(entry);
+            weightedSize.addAndGet(-entry.getWeight());
+            return true;
         }
+        return false;
     }
     
     /**
@@ -321,20 +598,71 @@ public class QueryCacheImpl implements QueryCache {
                 Thread.currentThread().interrupt();
             }
         }
+        if (persistentSnapshot != null) {
+            persistentSnapshot.save(this);
+        }
+        if (offHeapTier != null) {
+            offHeapTier.clear();
+        }
+    }
+    
+    /**
+     * 条目访问器，供持久化快照遍历缓存
+     */
+    interface EntryVisitor {
+        /**
+         * @param cacheKey 缓存键
+         * @param value 堆内条目的结果，堆外条目为null
+         * @param encoded 堆外条目的编码字节，堆内条目为null
+         * @param storeTime 存储时间
+         * @param ttl 生存时间（毫秒）
+         * @param tableVersions 依赖表版本，可为null
+         */
+        void visit(String cacheKey, Object value, byte[] encoded, long storeTime, long ttl,
+                   TableVersionTracker.Snapshot tableVersions);
     }
     
     /**
      * 缓存条目类
      */
-    private static class CacheEntry {
+    private static class CacheEntry extends TimerWheel.Node {
         private final Object value;
         private final long storeTime;
         private final long ttl;
+        private final TableVersionTracker.Snapshot tableVersions;
+        private final long weight;
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+        private final long softTtl;
+        private final Supplier<?> refresher;
         
-        public CacheEntry(Object value, long storeTime, long ttl) {
+        public CacheEntry(String cacheKey, Object value, long storeTime, long ttl,
+                          TableVersionTracker.Snapshot tableVersions, long weight, long softTtl, Supplier<?> refresher) {
+            super(cacheKey);
             this.value = value;
             this.storeTime = storeTime;
             this.ttl = ttl;
+            this.tableVersions = tableVersions;
+            this.weight = weight;
+            this.softTtl = softTtl;
+            this.refresher = refresher;
+        }
+        
+        public long getWeight() {
+            return weight;
+        }
+        
+        /**
+         * 依赖的表是否已被修改
+         */
+        public boolean isStale() {
+            return tableVersions != null && !tableVersions.isCurrent();
+        }
+        
+        /**
+         * 是否已超过softTtl且尚未开始刷新
+         */
+        public boolean needsRefresh(long now) {
+            return refresher != null && !refreshing.get() && now - storeTime > softTtl;
         }
         
         public Object getValue() {
@@ -9,13 +9,13 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * TTL缓存策略实现
  * 基于时间过期的缓存策略
+ * 过期清理由缓存的时间轮负责，策略只记录每个键的存储时间和TTL，用于选择淘汰候选
  * 
  * @author Portal Team
  */
 public class TTLCacheStrategy implements CacheStrategy {
     
-    private final Map<String, Long> storeTimes = new ConcurrentHashMap<>();
-    private final Map<String, Long> ttls = new ConcurrentHashMap<>();
+    private final Map<String, Expiry> expiries = new ConcurrentHashMap<>();
     private final StrategyStatistics statistics = new StrategyStatistics();
     
     @Override
@@ -37,27 +37,26 @@ public class TTLCacheStrategy implements CacheStrategy {
         long currentTime = System.currentTimeMillis();
         List<String> expiredKeys = new ArrayList<>();
         
-        // 找出所有过期的条目
+        List<String> remainingKeys = new ArrayList<>();
+        
+        // 找出所有过期的条目，整个过程使用同一个当前时间
         for (String cacheKey : cacheKeys) {
-            if (isExpired(cacheKey, storeTimes.getOrDefault(cacheKey, 0L), 
-                         ttls.getOrDefault(cacheKey, 0L))) {
+            Expiry expiry = expiries.get(cacheKey);
+            if (expiry != null && expiry.remaining(currentTime) < 0) {
                 expiredKeys.add(cacheKey);
+                statistics.recordExpired(currentTime);
+            } else {
+                remainingKeys.add(cacheKey);
             }
         }
         
         // 如果过期条目不够，按TTL剩余时间排序
         if (expiredKeys.size() < count) {
-            List<String> remainingKeys = new ArrayList<>(cacheKeys);
-            remainingKeys.removeAll(expiredKeys);
-            
             // 按TTL剩余时间排序，选择剩余时间最短的
-            remainingKeys.sort((key1, key2) -> {
-                long ttl1 = ttls.getOrDefault(key1, Long.MAX_VALUE);
-                long ttl2 = ttls.getOrDefault(key2, Long.MAX_VALUE);
-                long remaining1 = Math.max(0, ttl1 - (currentTime - storeTimes.getOrDefault(key1, 0L)));
-                long remaining2 = Math.max(0, ttl2 - (currentTime - storeTimes.getOrDefault(key2, 0L)));
-                return Long.compare(remaining1, remaining2);
-            });
+            remainingKeys.sort(Comparator.comparingLong(key -> {
+                Expiry expiry = expiries.get(key);
+                return expiry != null ? Math.max(0, expiry.remaining(currentTime)) : Long.MAX_VALUE;
+            }));
             
             int needMore = count - expiredKeys.size();
             for (int i = 0; i < Math.min(needMore, remainingKeys.size()); i++) {
@@ -79,8 +78,7 @@ public class TTLCacheStrategy implements CacheStrategy {
     @Override
     public void recordStore(String cacheKey, long storeTime, long ttl) {
         if (cacheKey != null) {
-            storeTimes.put(cacheKey, storeTime);
-            ttls.put(cacheKey, ttl);
+            expiries.put(cacheKey, new Expiry(storeTime, ttl));
             statistics.recordStore(storeTime);
         }
     }
@@ -103,24 +101,27 @@ public class TTLCacheStrategy implements CacheStrategy {
     
     @Override
     public double getWeight(String cacheKey) {
-        Long storeTime = storeTimes.get(cacheKey);
-        Long ttl = ttls.get(cacheKey);
-        
-        if (storeTime == null || ttl == null || ttl <= 0) {
+        Expiry expiry = expiries.get(cacheKey);
+        if (expiry == null || expiry.ttl <= 0) {
             return 0.0;
         }
         
-        long currentTime = System.currentTimeMillis();
-        long remainingTime = Math.max(0, ttl - (currentTime - storeTime));
+        long remainingTime = Math.max(0, expiry.remaining(System.currentTimeMillis()));
         
         // 权重基于剩余TTL时间，剩余时间越长权重越高
-        return (double) remainingTime / ttl;
+        return (double) remainingTime / expiry.ttl;
+    }
+    
+    @Override
+    public void recordRemoval(String cacheKey) {
+        if (cacheKey != null) {
+            expiries.remove(cacheKey);
+        }
     }
     
     @Override
     public void reset() {
-        storeTimes.clear();
-        ttls.clear();
+        expiries.clear();
         statistics.reset();
     }
     
@@ -128,4 +129,24 @@ public class TTLCacheStrategy implements CacheStrategy {
     public StrategyStatistics getStatistics() {
         return statistics;
     }
+    
+    /**
+     * 条目的存储时间和TTL
+     */
+    private static final class Expiry {
+        private final long storeTime;
+        private final long ttl;
+        
+        Expiry(long storeTime, long ttl) {
+            this.storeTime = storeTime;
+            this.ttl = ttl;
+        }
+        
+        /**
+         * 剩余时间，永不过期的条目返回Long.MAX_VALUE
+         */
+        long remaining(long currentTime) {
+            return ttl > 0 ? ttl - (currentTime - storeTime) : Long.MAX_VALUE;
+        }
+    }
 }
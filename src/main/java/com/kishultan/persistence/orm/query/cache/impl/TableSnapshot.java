@@ -0,0 +1,258 @@
+package com.kishultan.persistence.orm.query.cache.impl;
+
+import com.kishultan.persistence.orm.query.cache.ResultSnapshot;
+import com.kishultan.persistence.orm.query.utils.EntityUtils;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 整表快照
+ *
+ * 保存实体表的全部行（ResultSnapshot）和按比较规则归一化后的字段值，并在声明的列上建立哈希索引，
+ * 供简单条件的查询在内存中求值。归一化规则：
+ * <ul>
+ *   <li>整数和没有小数部分的数值统一为Long，其他有限数值为去掉末尾0的BigDecimal</li>
+ *   <li>枚举按名称、字符按字符串比较</li>
+ *   <li>java.util.Date及其子类统一为Instant</li>
+ * </ul>
+ * 字符串按Java语义比较，区分大小写，是否用于求值由实体的@CacheRegion(caseSensitiveStrings)决定。
+ * 快照创建后不可变，可被多个线程同时读取。
+ *
+ * @author Portal Team
+ */
+public final class TableSnapshot {
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private final ResultSnapshot rows;
+    private final Object[] keys;
+    private final int width;
+    private final Map<String, Integer> columns;
+    private final Map<Integer, Map<Object, int[]>> indexes;
+
+    private TableSnapshot(ResultSnapshot rows, Object[] keys, Map<String, Integer> columns,
+                          Map<Integer, Map<Object, int[]>> indexes) {
+        this.rows = rows;
+        this.keys = keys;
+        this.width = rows.getWidth();
+        this.columns = columns;
+        this.indexes = indexes;
+    }
+
+    /**
+     * 创建整表快照
+     *
+     * @param entities 表的全部实体
+     * @param indexedColumns 建立哈希索引的列名
+     * @return 快照，实体无法创建快照时返回null；空表的快照没有列信息，带条件的查询仍由数据库执行
+     */
+    public static TableSnapshot of(List<?> entities, Collection<String> indexedColumns) {
+        ResultSnapshot rows = ResultSnapshot.of(entities);
+        if (rows == null || (rows.size() > 0 && rows.getRowType() == null)) {
+            return null;
+        }
+        int width = rows.getWidth();
+        Map<String, Integer> columns = new HashMap<>();
+        for (int j = 0; rows.getRowType() != null && j < width; j++) {
+            Field field = rows.getField(j);
+            columns.put(EntityUtils.getColumnName(field).toLowerCase(Locale.ROOT), j);
+            columns.putIfAbsent(field.getName().toLowerCase(Locale.ROOT), j);
+        }
+        Object[] keys = new Object[rows.size() * width];
+        for (int i = 0; i < rows.size(); i++) {
+            for (int j = 0; j < width; j++) {
+                keys[i * width + j] = normalize(rows.getValue(i, j));
+            }
+        }
+        Map<Integer, Map<Object, int[]>> indexes = new HashMap<>();
+        for (String column : indexedColumns) {
+            Integer index = columns.get(column.toLowerCase(Locale.ROOT));
+            if (index != null && !indexes.containsKey(index)) {
+                indexes.put(index, buildIndex(keys, rows.size(), width, index));
+            }
+        }
+        return new TableSnapshot(rows, keys, columns, indexes);
+    }
+
+    private static Map<Object, int[]> buildIndex(Object[] keys, int size, int width, int column) {
+        Map<Object, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Object key = keys[i * width + column];
+            if (key != null) {
+                positions.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            }
+        }
+        Map<Object, int[]> index = new HashMap<>(positions.size() * 2);
+        for (Map.Entry<Object, List<Integer>> entry : positions.entrySet()) {
+            List<Integer> list = entry.getValue();
+            int[] rows = new int[list.size()];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = list.get(i);
+            }
+            index.put(entry.getKey(), rows);
+        }
+        return index;
+    }
+
+    /**
+     * 按比较规则归一化值
+     */
+    public static Object normalize(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof BigInteger) {
+            BigInteger integer = (BigInteger) value;
+            return integer.bitLength() < 64 ? (Object) integer.longValue() : new BigDecimal(integer);
+        }
+        if ((value instanceof Double && !Double.isFinite((Double) value))
+                || (value instanceof Float && !Float.isFinite((Float) value))) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof BigDecimal || value instanceof Double || value instanceof Float) {
+            BigDecimal decimal = value instanceof BigDecimal ? (BigDecimal) value
+                : new BigDecimal(value.toString());
+            if (decimal.signum() == 0) {
+                return 0L;
+            }
+            decimal = decimal.stripTrailingZeros();
+            if (decimal.scale() <= 0 && decimal.precision() - decimal.scale() < 19) {
+                return decimal.longValueExact();
+            }
+            return decimal;
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        if (value instanceof Character) {
+            return value.toString();
+        }
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toInstant();
+        }
+        if (value instanceof Date) {
+            return Instant.ofEpochMilli(((Date) value).getTime());
+        }
+        return value;
+    }
+
+    /**
+     * 获取归一化后值的比较类别：数值为Number，其他为值的类型
+     */
+    public static Class<?> categoryOf(Object normalized) {
+        return normalized instanceof Number ? Number.class : normalized.getClass();
+    }
+
+    /**
+     * 获取字段类型的比较类别，与categoryOf对应
+     */
+    public static Class<?> categoryOf(Class<?> type) {
+        if (type.isPrimitive()) {
+            return type == boolean.class ? Boolean.class : type == char.class ? String.class : Number.class;
+        }
+        if (Number.class.isAssignableFrom(type)) {
+            return Number.class;
+        }
+        if (type.isEnum() || type == Character.class) {
+            return String.class;
+        }
+        if (Date.class.isAssignableFrom(type)) {
+            return Instant.class;
+        }
+        return type;
+    }
+
+    /**
+     * 比较两个归一化后的同类别值
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static int compare(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            return Long.compare((Long) left, (Long) right);
+        }
+        if (left instanceof Double || right instanceof Double) {
+            // 非有限的浮点数
+            return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+        }
+        if (left instanceof Number && right instanceof Number) {
+            return toBigDecimal(left).compareTo(toBigDecimal(right));
+        }
+        return ((Comparable) left).compareTo(right);
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        return value instanceof BigDecimal ? (BigDecimal) value : BigDecimal.valueOf((Long) value);
+    }
+
+    /**
+     * 获取列序号，按列名或字段名查找，不区分大小写
+     *
+     * @return 列序号，列不存在时返回-1
+     */
+    public int columnIndex(String column) {
+        Integer index = column != null ? columns.get(column.toLowerCase(Locale.ROOT)) : null;
+        return index != null ? index : -1;
+    }
+
+    /**
+     * 获取列对应的字段类型
+     */
+    public Class<?> columnType(int column) {
+        return rows.getField(column).getType();
+    }
+
+    /**
+     * 获取归一化后的字段值
+     */
+    public Object key(int row, int column) {
+        return keys[row * width + column];
+    }
+
+    /**
+     * 通过哈希索引查找等于给定值的行
+     *
+     * @param column 列序号
+     * @param normalized 归一化后的值
+     * @return 按行号升序的行，列没有索引时返回null
+     */
+    public int[] lookup(int column, Object normalized) {
+        Map<Object, int[]> index = indexes.get(column);
+        if (index == null) {
+            return null;
+        }
+        int[] rows = normalized != null ? index.get(normalized) : null;
+        return rows != null ? rows : NO_ROWS;
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * 重新创建指定的行
+     *
+     * @param rowNumbers 行号
+     * @return 新的实体列表
+     */
+    public <T> List<T> materialize(int[] rowNumbers) {
+        return rows.materialize(rowNumbers);
+    }
+
+    @Override
+    public String toString() {
+        return "TableSnapshot{type=" + (rows.getRowType() != null ? rows.getRowType().getSimpleName() : null)
+            + ", rows=" + rows.size() + ", indexes=" + Arrays.toString(indexes.keySet().toArray()) + "}";
+    }
+}
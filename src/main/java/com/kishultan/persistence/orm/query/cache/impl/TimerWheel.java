@@ -0,0 +1,176 @@
+package com.kishultan.persistence.orm.query.cache.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分层时间轮
+ * 按过期时间把节点放入桶中，推进时只处理到期的桶，清理开销与到期条目数成正比，与缓存大小无关。
+ *
+ * 共4层，每层64个桶，每个桶的跨度依次为64毫秒、约4秒、约4.4分钟、约4.7小时，最高一层覆盖约12天。
+ * 上层的桶到期时，其中尚未过期的节点按剩余时间重新放入下层；超出最高层范围的节点在所在桶到期时重新放置。
+ *
+ * 所有操作在持有this锁时执行。
+ *
+ * @author Portal Team
+ */
+final class TimerWheel {
+
+    private static final int BUCKETS = 64;
+    private static final int MASK = BUCKETS - 1;
+    private static final int[] SHIFTS = {6, 12, 18, 24};
+
+    private final Node[][] wheel = new Node[SHIFTS.length][BUCKETS];
+    private long currentTime;
+    private int size;
+
+    /**
+     * 构造函数
+     *
+     * @param now 当前时间（毫秒）
+     */
+    TimerWheel(long now) {
+        this.currentTime = now;
+        for (Node[] level : wheel) {
+            for (int i = 0; i < BUCKETS; i++) {
+                Node sentinel = new Node(null);
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+                level[i] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * 按过期时间放置节点，节点已在时间轮中时先移除
+     *
+     * @param node 节点
+     * @param deadline 过期时间（毫秒）
+     */
+    synchronized void schedule(Node node, long deadline) {
+        if (node.next != null) {
+            unlink(node);
+        }
+        node.deadline = deadline;
+        link(findBucket(deadline), node);
+    }
+
+    /**
+     * 移除节点，节点不在时间轮中时忽略
+     */
+    synchronized void deschedule(Node node) {
+        if (node.next != null) {
+            unlink(node);
+        }
+    }
+
+    /**
+     * 推进到指定时间，返回已过期的节点
+     *
+     * @param now 当前时间（毫秒）
+     * @return 过期的节点，已从时间轮中移除
+     */
+    synchronized List<Node> advance(long now) {
+        long previousTime = currentTime;
+        if (now <= previousTime || size == 0) {
+            currentTime = Math.max(now, previousTime);
+            return Collections.emptyList();
+        }
+        currentTime = now;
+        List<Node> expired = new ArrayList<>();
+        for (int i = 0; i < SHIFTS.length; i++) {
+            long previousTicks = previousTime >>> SHIFTS[i];
+            long currentTicks = now >>> SHIFTS[i];
+            long delta = currentTicks - previousTicks;
+            if (i > 0 && delta == 0) {
+                // 上层的刻度变化更慢，同样不需要处理
+                break;
+            }
+            // 包含上次推进所在的桶，最底层的该桶中可能有当时尚未过期的节点
+            int start = (int) (previousTicks & MASK);
+            int count = (int) Math.min(delta + 1, BUCKETS);
+            for (int j = 0; j < count; j++) {
+                expire(wheel[i][(start + j) & MASK], now, expired);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * 取出桶中的节点，过期的加入结果，其余按剩余时间重新放置
+     */
+    private void expire(Node sentinel, long now, List<Node> expired) {
+        Node node = sentinel.next;
+        sentinel.prev = sentinel;
+        sentinel.next = sentinel;
+        while (node != sentinel) {
+            Node next = node.next;
+            node.prev = null;
+            node.next = null;
+            size--;
+            if (node.deadline <= now) {
+                expired.add(node);
+            } else {
+                link(findBucket(node.deadline), node);
+            }
+            node = next;
+        }
+    }
+
+    private Node findBucket(long deadline) {
+        long delta = deadline - currentTime;
+        if (delta <= 0) {
+            // 已过期的节点放入当前刻度的桶，下次推进时取出
+            return wheel[0][(int) ((currentTime >>> SHIFTS[0]) & MASK)];
+        }
+        for (int i = 0; i < SHIFTS.length - 1; i++) {
+            if (delta < (1L << SHIFTS[i + 1])) {
+                return wheel[i][(int) ((deadline >>> SHIFTS[i]) & MASK)];
+            }
+        }
+        int top = SHIFTS.length - 1;
+        return wheel[top][(int) ((deadline >>> SHIFTS[top]) & MASK)];
+    }
+
+    private void link(Node sentinel, Node node) {
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+        size++;
+    }
+
+    private void unlink(Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        size--;
+    }
+
+    /**
+     * 时间轮中的节点数
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 时间轮节点，缓存条目直接作为节点，避免额外的映射
+     */
+    static class Node {
+        final String key;
+        private long deadline;
+        private Node prev;
+        private Node next;
+
+        Node(String key) {
+            this.key = key;
+        }
+
+        long getDeadline() {
+            return deadline;
+        }
+    }
+}
@@ -0,0 +1,772 @@
+package com.kishultan.persistence.orm.query.cache.impl;
+
+import com.kishultan.persistence.orm.query.cache.CacheConfig;
+import com.kishultan.persistence.orm.query.cache.CacheStrategy;
+import com.kishultan.persistence.orm.query.cache.StrategyStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * W-TinyLFU缓存策略实现
+ *
+ * 新条目先进入容量约1%的窗口LRU，被挤出窗口后作为候选者与主区（SLRU：试用区+保护区）
+ * 的淘汰者比较访问频率，频率更高者留下。访问频率由计数最小草图近似统计并定期衰减。
+ *
+ * 读操作只把缓存键放入按线程分段的有损环形缓冲区，写操作放入写队列；
+ * 由获得淘汰锁（tryLock）的线程批量重放，每次写入的淘汰成本为均摊O(1)，
+ * 并发写入不会同时做出淘汰决定。
+ *
+ * 同时限制条目数和权重总和（由缓存的Weigher计算的字节数），窗口、保护区按相同比例划分两种容量。
+ *
+ * 节点记下最后重放的存储条目，带条目的移除只在仍是同一条目时生效；淘汰通知在释放淘汰锁后发出，
+ * 缓存在回调中做的移除和降级编码不占用淘汰锁。
+ *
+ * @author Portal Team
+ */
+public class WTinyLfuCacheStrategy implements CacheStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(WTinyLfuCacheStrategy.class);
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private static final double WINDOW_PERCENTAGE = 0.01;
+    private static final double PROTECTED_PERCENTAGE = 0.80;
+
+    /** 候选者频率不高于此值时直接拒绝，高于此值时以小概率准入，抵御哈希碰撞攻击 */
+    private static final int ADMIT_HASHDOS_THRESHOLD = 5;
+
+    /** 写队列积压超过此值时写线程阻塞等待淘汰锁，防止容量失控 */
+    private static final int WRITE_BUFFER_MAX = 128;
+
+    private static final int IDLE = 0;
+    private static final int REQUIRED = 1;
+    private static final int PROCESSING = 2;
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AtomicInteger drainStatus = new AtomicInteger(IDLE);
+    private final ReadBuffer readBuffer = new ReadBuffer();
+    private final Queue<Runnable> writeBuffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    // 已淘汰待通知的节点，释放淘汰锁后回调
+    private final Queue<Node> pendingEvictions = new ConcurrentLinkedQueue<>();
+
+    // 以下状态只在持有淘汰锁时访问
+    private final Map<String, Node> data = new HashMap<>();
+    private final AccessOrderDeque window = new AccessOrderDeque();
+    private final AccessOrderDeque probation = new AccessOrderDeque();
+    private final AccessOrderDeque protectedQueue = new AccessOrderDeque();
+    private final FrequencySketch sketch = new FrequencySketch();
+    private final StrategyStatistics statistics = new StrategyStatistics();
+    private int maximum;
+    private int windowMaximum;
+    private int protectedMaximum;
+    private int windowSize;
+    private int protectedSize;
+    private long maximumWeight;
+    private long windowMaximumWeight;
+    private long protectedMaximumWeight;
+    private long weightedSize;
+    private long windowWeightedSize;
+    private long protectedWeightedSize;
+
+    private volatile BiConsumer<String, Object> evictionListener;
+
+    private final LongAdder accessCount = new LongAdder();
+    private final LongAdder storeCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder admittedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder droppedReadCount = new LongAdder();
+
+    /**
+     * 使用默认容量创建策略，绑定到缓存时按缓存配置调整
+     */
+    public WTinyLfuCacheStrategy() {
+        this(CacheConfig.DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param maximumSize 最大缓存条目数
+     */
+    public WTinyLfuCacheStrategy(int maximumSize) {
+        setMaximum(maximumSize);
+    }
+
+    @Override
+    public StrategyType getStrategyType() {
+        return StrategyType.W_TINY_LFU;
+    }
+
+    @Override
+    public boolean isCapacityManaged() {
+        return true;
+    }
+
+    @Override
+    public void configureCapacity(int maxSize) {
+        evictionLock.lock();
+        try {
+            setMaximum(maxSize);
+            maintenance();
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public void configureMaximumWeight(long maximumWeight) {
+        evictionLock.lock();
+        try {
+            setMaximumWeight(maximumWeight);
+            maintenance();
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public void bindEvictionListener(Consumer<String> listener) {
+        this.evictionListener = listener != null ? (cacheKey, entry) -> listener.accept(cacheKey) : null;
+    }
+
+    @Override
+    public void bindEntryEvictionListener(BiConsumer<String, Object> listener) {
+        this.evictionListener = listener;
+    }
+
+    @Override
+    public boolean canAddEntry(int currentSize, int maxSize) {
+        // 容量由策略自身维护
+        return true;
+    }
+
+    @Override
+    public List<String> getEvictionCandidates(List<String> cacheKeys, int count) {
+        if (cacheKeys == null || cacheKeys.isEmpty() || count <= 0) {
+            return Collections.emptyList();
+        }
+
+        Set<String> keys = new HashSet<>(cacheKeys);
+        List<String> candidates = new ArrayList<>(Math.min(count, keys.size()));
+        evictionLock.lock();
+        try {
+            maintenance();
+            // 淘汰顺序：试用区、窗口、保护区，各自从最久未访问开始
+            for (AccessOrderDeque deque : Arrays.asList(probation, window, protectedQueue)) {
+                for (Node node = deque.first(); node != null && candidates.size() < count; node = deque.next(node)) {
+                    if (keys.contains(node.key)) {
+                        candidates.add(node.key);
+                    }
+                }
+            }
+        } finally {
+            unlock();
+        }
+        return candidates;
+    }
+
+    @Override
+    public void recordAccess(String cacheKey, long accessTime) {
+        if (cacheKey == null) {
+            return;
+        }
+        accessCount.increment();
+        int result = readBuffer.offer(cacheKey);
+        if (result == ReadBuffer.DROPPED || result == ReadBuffer.FAILED) {
+            droppedReadCount.increment();
+        }
+        if (result == ReadBuffer.FULL || result == ReadBuffer.DROPPED || drainStatus.get() == REQUIRED) {
+            scheduleDrain();
+        }
+    }
+
+    @Override
+    public void recordStore(String cacheKey, long storeTime, long ttl) {
+        recordStore(cacheKey, storeTime, ttl, 0);
+    }
+
+    @Override
+    public void recordStore(String cacheKey, long storeTime, long ttl, long weight) {
+        recordStore(cacheKey, storeTime, ttl, weight, null);
+    }
+
+    @Override
+    public void recordStore(String cacheKey, long storeTime, long ttl, long weight, Object entry) {
+        if (cacheKey != null) {
+            storeCount.increment();
+            long entryWeight = Math.max(0, weight);
+            afterWrite(() -> onStore(cacheKey, entryWeight, entry));
+        }
+    }
+
+    @Override
+    public void recordRemoval(String cacheKey) {
+        recordRemoval(cacheKey, null);
+    }
+
+    @Override
+    public void recordRemoval(String cacheKey, Object entry) {
+        if (cacheKey != null) {
+            afterWrite(() -> onRemove(cacheKey, entry));
+        }
+    }
+
+    @Override
+    public boolean isExpired(String cacheKey, long storeTime, long ttl) {
+        if (ttl <= 0) {
+            return false; // 永不过期
+        }
+
+        boolean expired = (System.currentTimeMillis() - storeTime) > ttl;
+        if (expired) {
+            expiredCount.increment();
+        }
+        return expired;
+    }
+
+    @Override
+    public double getWeight(String cacheKey) {
+        if (cacheKey == null) {
+            return 0.0;
+        }
+        // 权重为近似访问频率，读取时不加锁，允许轻微误差
+        return sketch.frequency(cacheKey);
+    }
+
+    @Override
+    public void reset() {
+        evictionLock.lock();
+        try {
+            readBuffer.drainTo(key -> { });
+            writeBuffer.clear();
+            pendingWrites.set(0);
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            windowSize = 0;
+            protectedSize = 0;
+            weightedSize = 0;
+            windowWeightedSize = 0;
+            protectedWeightedSize = 0;
+            sketch.clear();
+            statistics.reset();
+            pendingEvictions.clear();
+        } finally {
+            unlock();
+        }
+        accessCount.reset();
+        storeCount.reset();
+        evictionCount.reset();
+        expiredCount.reset();
+        admittedCount.reset();
+        rejectedCount.reset();
+        droppedReadCount.reset();
+    }
+
+    @Override
+    public StrategyStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * 立即处理缓冲区中积压的读写操作并执行淘汰
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * 获取策略当前跟踪的条目数（处理完积压操作后）
+     *
+     * @return 条目数
+     */
+    public int getTrackedSize() {
+        evictionLock.lock();
+        try {
+            maintenance();
+            return data.size();
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * 获取策略当前跟踪的权重总和（处理完积压操作后）
+     *
+     * @return 权重总和
+     */
+    public long getWeightedSize() {
+        evictionLock.lock();
+        try {
+            maintenance();
+            return weightedSize;
+        } finally {
+            unlock();
+        }
+    }
+
+    public int getMaximum() {
+        return maximum;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public long getAccessCount() {
+        return accessCount.sum();
+    }
+
+    public long getStoreCount() {
+        return storeCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    /**
+     * 获取候选者胜出（淘汰主区条目）的次数
+     */
+    public long getAdmittedCount() {
+        return admittedCount.sum();
+    }
+
+    /**
+     * 获取候选者被拒绝（自身被淘汰）的次数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 获取读缓冲区竞争时丢弃的访问记录数
+     */
+    public long getDroppedReadCount() {
+        return droppedReadCount.sum();
+    }
+
+    private void setMaximum(int maxSize) {
+        maximum = Math.max(1, maxSize);
+        windowMaximum = Math.max(1, (int) (maximum * WINDOW_PERCENTAGE));
+        int mainMaximum = maximum - windowMaximum;
+        protectedMaximum = (int) (mainMaximum * PROTECTED_PERCENTAGE);
+        sketch.ensureCapacity(maximum);
+    }
+
+    private void setMaximumWeight(long maxWeight) {
+        maximumWeight = Math.max(0, maxWeight);
+        windowMaximumWeight = Math.max(1, (long) (maximumWeight * WINDOW_PERCENTAGE));
+        protectedMaximumWeight = (long) ((maximumWeight - windowMaximumWeight) * PROTECTED_PERCENTAGE);
+    }
+
+    /**
+     * 释放淘汰锁并通知已淘汰的条目
+     */
+    private void unlock() {
+        evictionLock.unlock();
+        Node node;
+        while ((node = pendingEvictions.poll()) != null) {
+            BiConsumer<String, Object> listener = evictionListener;
+            if (listener == null) {
+                continue;
+            }
+            try {
+                listener.accept(node.key, node.entry);
+            } catch (Exception e) {
+                logger.warn("缓存淘汰回调失败: cacheKey={}, error={}", node.key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 写操作入队后尝试处理；积压过多时阻塞等待淘汰锁
+     */
+    private void afterWrite(Runnable task) {
+        writeBuffer.add(task);
+        if (pendingWrites.incrementAndGet() > WRITE_BUFFER_MAX) {
+            cleanUp();
+            return;
+        }
+        drainStatus.set(REQUIRED);
+        scheduleDrain();
+    }
+
+    /**
+     * 尝试获取淘汰锁并处理缓冲区；获取失败说明其他线程正在处理，
+     * 它会在释放锁后发现REQUIRED状态并再次处理
+     */
+    private void scheduleDrain() {
+        do {
+            if (!evictionLock.tryLock()) {
+                return;
+            }
+            try {
+                drainStatus.set(PROCESSING);
+                maintenance();
+            } finally {
+                drainStatus.compareAndSet(PROCESSING, IDLE);
+                unlock();
+            }
+        } while (drainStatus.get() == REQUIRED);
+    }
+
+    /**
+     * 重放读写缓冲区并淘汰超出容量的条目，必须持有淘汰锁
+     */
+    private void maintenance() {
+        readBuffer.drainTo(this::onAccess);
+        Runnable task;
+        while ((task = writeBuffer.poll()) != null) {
+            pendingWrites.decrementAndGet();
+            task.run();
+        }
+        evictEntries();
+    }
+
+    private void onAccess(String key) {
+        sketch.increment(key);
+        statistics.recordAccess(System.currentTimeMillis());
+        Node node = data.get(key);
+        if (node != null) {
+            reorder(node);
+        }
+    }
+
+    private void onStore(String key, long weight, Object entry) {
+        sketch.increment(key);
+        statistics.recordStore(System.currentTimeMillis());
+        Node node = data.get(key);
+        if (node != null) {
+            node.entry = entry;
+            // 覆盖写入时按新权重调整所在区域的权重
+            long delta = weight - node.weight;
+            node.weight = weight;
+            weightedSize += delta;
+            if (node.queue == WINDOW) {
+                windowWeightedSize += delta;
+            } else if (node.queue == PROTECTED) {
+                protectedWeightedSize += delta;
+            }
+            reorder(node);
+            return;
+        }
+        node = new Node(key);
+        node.weight = weight;
+        node.entry = entry;
+        data.put(key, node);
+        window.addLast(node);
+        windowSize++;
+        windowWeightedSize += weight;
+        weightedSize += weight;
+    }
+
+    /**
+     * 移除节点；带条目的移除在节点已记录其他条目时忽略，避免重放顺序与缓存不一致时丢失新条目
+     */
+    private void onRemove(String key, Object entry) {
+        Node node = data.get(key);
+        if (node != null && (entry == null || node.entry == null || node.entry == entry)) {
+            data.remove(key);
+            unlink(node);
+        }
+    }
+
+    /**
+     * 命中后调整位置：窗口和保护区内移到队尾，试用区命中则晋升到保护区
+     */
+    private void reorder(Node node) {
+        if (node.queue == WINDOW) {
+            window.moveToBack(node);
+        } else if (node.queue == PROBATION) {
+            probation.remove(node);
+            node.queue = PROTECTED;
+            protectedQueue.addLast(node);
+            protectedSize++;
+            protectedWeightedSize += node.weight;
+            demoteFromProtected();
+        } else {
+            protectedQueue.moveToBack(node);
+        }
+    }
+
+    private void demoteFromProtected() {
+        while (protectedSize > protectedMaximum
+                || (maximumWeight > 0 && protectedWeightedSize > protectedMaximumWeight)) {
+            Node demoted = protectedQueue.first();
+            if (demoted == null) {
+                break;
+            }
+            protectedQueue.remove(demoted);
+            protectedSize--;
+            protectedWeightedSize -= demoted.weight;
+            demoted.queue = PROBATION;
+            probation.addLast(demoted);
+        }
+    }
+
+    private void evictEntries() {
+        Node candidate = evictFromWindow();
+        evictFromMain(candidate);
+    }
+
+    /**
+     * 把超出窗口容量的条目移到试用区队尾，返回第一个移入的候选者
+     */
+    private Node evictFromWindow() {
+        Node first = null;
+        while (windowSize > windowMaximum
+                || (maximumWeight > 0 && windowWeightedSize > windowMaximumWeight)) {
+            Node node = window.first();
+            if (node == null) {
+                break;
+            }
+            window.remove(node);
+            windowSize--;
+            windowWeightedSize -= node.weight;
+            node.queue = PROBATION;
+            probation.addLast(node);
+            if (first == null) {
+                first = node;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * 条目数或权重超出容量时，候选者（试用区队尾）与淘汰者（试用区队首）比较频率，淘汰较低者
+     */
+    private void evictFromMain(Node candidate) {
+        while (data.size() > maximum || (maximumWeight > 0 && weightedSize > maximumWeight)) {
+            Node victim = probation.first();
+            if (victim == null) {
+                victim = protectedQueue.first();
+            }
+            if (victim == null) {
+                victim = window.first();
+            }
+            if (victim == null) {
+                break;
+            }
+
+            if (candidate != null && candidate.queue != PROBATION) {
+                candidate = null;
+            }
+            if (candidate == null || candidate == victim) {
+                candidate = null;
+                evict(victim);
+            } else if (admit(candidate.key, victim.key)) {
+                admittedCount.increment();
+                candidate = probation.next(candidate);
+                evict(victim);
+            } else {
+                rejectedCount.increment();
+                Node rejected = candidate;
+                candidate = probation.next(candidate);
+                evict(rejected);
+            }
+        }
+    }
+
+    private boolean admit(String candidateKey, String victimKey) {
+        int victimFreq = sketch.frequency(victimKey);
+        int candidateFreq = sketch.frequency(candidateKey);
+        if (candidateFreq > victimFreq) {
+            return true;
+        }
+        if (candidateFreq <= ADMIT_HASHDOS_THRESHOLD) {
+            return false;
+        }
+        return (ThreadLocalRandom.current().nextInt() & 127) == 0;
+    }
+
+    private void evict(Node node) {
+        data.remove(node.key);
+        unlink(node);
+        evictionCount.increment();
+        statistics.recordEviction(System.currentTimeMillis());
+        if (evictionListener != null) {
+            pendingEvictions.add(node);
+        }
+    }
+
+    private void unlink(Node node) {
+        weightedSize -= node.weight;
+        if (node.queue == WINDOW) {
+            window.remove(node);
+            windowSize--;
+            windowWeightedSize -= node.weight;
+        } else if (node.queue == PROBATION) {
+            probation.remove(node);
+        } else {
+            protectedQueue.remove(node);
+            protectedSize--;
+            protectedWeightedSize -= node.weight;
+        }
+    }
+
+    /**
+     * 缓存键在访问顺序队列中的节点
+     */
+    private static final class Node {
+        private final String key;
+        private Object entry;
+        private int queue = WINDOW;
+        private long weight;
+        private Node prev;
+        private Node next;
+
+        Node(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * 带哨兵的侵入式双向链表，队首为最久未访问的节点
+     */
+    private static final class AccessOrderDeque {
+        private final Node head = new Node(null);
+
+        AccessOrderDeque() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        Node first() {
+            return head.next == head ? null : head.next;
+        }
+
+        Node next(Node node) {
+            return node.next == head ? null : node.next;
+        }
+
+        void addLast(Node node) {
+            node.prev = head.prev;
+            node.next = head;
+            head.prev.next = node;
+            head.prev = node;
+        }
+
+        void remove(Node node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToBack(Node node) {
+            if (head.prev != node) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void clear() {
+            head.prev = head;
+            head.next = head;
+        }
+    }
+
+    /**
+     * 按线程分段的有损读缓冲区
+     * 每段是固定大小的环形数组，写满或CAS竞争失败时直接丢弃访问记录，读线程从不阻塞
+     */
+    private static final class ReadBuffer {
+        static final int SUCCESS = 0;
+        /** 已记录，缓冲区已满 */
+        static final int FULL = 1;
+        /** 缓冲区已满，未记录 */
+        static final int DROPPED = 2;
+        /** CAS竞争失败，未记录 */
+        static final int FAILED = 3;
+
+        private static final int BUFFER_SIZE = 16;
+        private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+
+        private final Stripe[] stripes;
+        private final int stripeMask;
+
+        ReadBuffer() {
+            int count = Integer.highestOneBit(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 16)));
+            stripes = new Stripe[count];
+            for (int i = 0; i < count; i++) {
+                stripes[i] = new Stripe();
+            }
+            stripeMask = count - 1;
+        }
+
+        int offer(String key) {
+            long id = Thread.currentThread().getId();
+            int h = (int) (id ^ (id >>> 32)) * 0x9e3779b9;
+            return stripes[(h ^ (h >>> 16)) & stripeMask].offer(key);
+        }
+
+        void drainTo(Consumer<String> consumer) {
+            for (Stripe stripe : stripes) {
+                stripe.drainTo(consumer);
+            }
+        }
+
+        private static final class Stripe {
+            private final AtomicReferenceArray<String> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+            private final AtomicLong writeCounter = new AtomicLong();
+            private volatile long readCounter;
+
+            int offer(String key) {
+                long head = readCounter;
+                long tail = writeCounter.get();
+                long size = tail - head;
+                if (size >= BUFFER_SIZE) {
+                    return DROPPED;
+                }
+                if (writeCounter.compareAndSet(tail, tail + 1)) {
+                    buffer.lazySet((int) (tail & BUFFER_MASK), key);
+                    return size + 1 >= BUFFER_SIZE ? FULL : SUCCESS;
+                }
+                return FAILED;
+            }
+
+            void drainTo(Consumer<String> consumer) {
+                long head = readCounter;
+                long tail = writeCounter.get();
+                for (; head < tail; head++) {
+                    int index = (int) (head & BUFFER_MASK);
+                    String key = buffer.get(index);
+                    if (key == null) {
+                        // 写入方已占位但尚未发布
+                        break;
+                    }
+                    buffer.lazySet(index, null);
+                    consumer.accept(key);
+                }
+                readCounter = head;
+            }
+        }
+    }
+}
@@ -5,11 +5,25 @@ import com.kishultan.persistence.orm.query.monitor.PerformanceConfig;
 import com.kishultan.persistence.orm.query.monitor.impl.QueryPerformanceMonitorImpl;
 import com.kishultan.persistence.orm.query.cache.QueryCache;
 import com.kishultan.persistence.orm.query.cache.CacheConfig;
+import com.kishultan.persistence.orm.query.cache.CacheStrategy;
+import com.kishultan.persistence.orm.query.cache.ClusterInvalidation;
+import com.kishultan.persistence.orm.query.cache.InvalidationBus;
+import com.kishultan.persistence.orm.query.cache.InvalidationTransport;
+import com.kishultan.persistence.orm.query.cache.SingleFlight;
+import com.kishultan.persistence.orm.query.cache.WarmUpQuery;
+import com.kishultan.persistence.orm.query.cache.impl.BatchingInvalidationBus;
+import com.kishultan.persistence.orm.query.cache.impl.CacheWarmUp;
+import com.kishultan.persistence.orm.query.cache.impl.CacheRegionManager;
 import com.kishultan.persistence.orm.query.cache.impl.QueryCacheImpl;
-import com.kishultan.persistence.orm.query.cache.impl.LRUCacheStrategy;
+import com.kishultan.persistence.orm.query.impl.SimpleSqlExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
 /**
  * QueryBuilder配置管理器
  * 统一管理性能监控和缓存的初始化
@@ -20,7 +34,14 @@ public class QueryBuilderConfigManager {
     
     private static volatile QueryPerformanceMonitor performanceMonitor;
     private static volatile QueryCache queryCache;
+    private static volatile SingleFlight singleFlight;
+    private static volatile CacheRegionManager cacheRegionManager;
     private static volatile boolean initialized = false;
+    private static Thread snapshotHook;
+    private static InvalidationBus invalidationBus;
+    private static volatile CacheWarmUp cacheWarmUp;
+    private static volatile List<WarmUpQuery> warmUpQueries;
+    private static Thread warmUpHook;
     
     /**
      * 初始化配置
@@ -37,6 +58,15 @@ public class QueryBuilderConfigManager {
             // 初始化缓存
             initializeCache();
             
+            // 初始化并发查询合并
+            initializeSingleFlight();
+            
+            // 初始化集群缓存失效
+            initializeInvalidationBus();
+            
+            // 初始化缓存预热
+            initializeCacheWarmUp();
+            
             initialized = true;
             logger.info("QueryBuilder配置管理器初始化完成");
         } catch (Exception e) {
@@ -70,9 +100,32 @@ public class QueryBuilderConfigManager {
             String cacheEnabled = System.getProperty("querybuilder.cache.enabled", "false");
             if ("true".equalsIgnoreCase(cacheEnabled)) {
                 CacheConfig config = CacheConfig.createDefault();
-                LRUCacheStrategy strategy = new LRUCacheStrategy();
-                queryCache = new QueryCacheImpl(config, strategy);
-                logger.info("查询缓存已启用");
+                String strategyName = System.getProperty("querybuilder.cache.strategy");
+                if (strategyName != null && !strategyName.trim().isEmpty()) {
+                    config.setStrategyType(CacheStrategy.StrategyType.valueOf(
+                        strategyName.trim().toUpperCase().replace('-', '_')));
+                }
+                if ("true".equalsIgnoreCase(System.getProperty("querybuilder.cache.offheap.enabled"))) {
+                    config.setOffHeapEnabled(true);
+                    String capacity = System.getProperty("querybuilder.cache.offheap.capacity.mb");
+                    if (capacity != null && !capacity.trim().isEmpty()) {
+                        config.setOffHeapCapacity(Long.parseLong(capacity.trim()) * 1024 * 1024);
+                    }
+                }
+                String persistentPath = System.getProperty("querybuilder.cache.persistent.path");
+                if (persistentPath != null && !persistentPath.trim().isEmpty()) {
+                    config.setPersistentPath(persistentPath.trim());
+                }
+                CacheStrategy strategy = CacheRegionManager.createStrategy(config);
+                QueryCacheImpl cache = new QueryCacheImpl(config, strategy);
+                queryCache = cache;
+                cacheRegionManager = new CacheRegionManager();
+                if (config.getPersistentPath() != null) {
+                    // 进程退出时保存快照，下次启动直接装载
+                    snapshotHook = new Thread(cache::shutdown, "query-cache-snapshot");
+                    Runtime.getRuntime().addShutdownHook(snapshotHook);
+                }
+                logger.info("查询缓存已启用，淘汰策略: {}", strategy.getStrategyType());
             } else {
                 logger.debug("查询缓存未启用");
             }
@@ -81,6 +134,69 @@ public class QueryBuilderConfigManager {
         }
     }
     
+    /**
+     * 初始化并发查询合并，默认不启用
+     * 合并的线程共享同一个结果，列表结果能转换为快照时每个线程得到自己的实体，否则共享同一批实体
+     */
+    private static void initializeSingleFlight() {
+        try {
+            if (!"true".equalsIgnoreCase(System.getProperty("querybuilder.singleflight.enabled"))) {
+                logger.debug("并发查询合并未启用");
+                return;
+            }
+            long timeout = Long.getLong("querybuilder.singleflight.timeout.ms", SingleFlight.DEFAULT_WAIT_TIMEOUT);
+            long dedupWindow = Long.getLong("querybuilder.singleflight.dedup.window.ms", SingleFlight.DEFAULT_DEDUP_WINDOW);
+            singleFlight = new SingleFlight(timeout, dedupWindow);
+            logger.debug("并发查询合并已启用，等待超时: {}ms, 去重窗口: {}ms", timeout, dedupWindow);
+        } catch (Exception e) {
+            logger.warn("初始化并发查询合并失败: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 按配置的传输类初始化集群缓存失效总线，传输类需有无参构造函数
+     */
+    private static void initializeInvalidationBus() {
+        String transportClass = System.getProperty("querybuilder.cache.invalidation.transport");
+        if (transportClass == null || transportClass.trim().isEmpty()) {
+            return;
+        }
+        try {
+            InvalidationTransport transport = (InvalidationTransport) Class.forName(transportClass.trim())
+                .getDeclaredConstructor().newInstance();
+            String nodeId = System.getProperty("querybuilder.cache.invalidation.node");
+            invalidationBus = nodeId != null && !nodeId.trim().isEmpty()
+                ? new BatchingInvalidationBus(transport, nodeId.trim(), BatchingInvalidationBus.DEFAULT_FLUSH_INTERVAL,
+                    BatchingInvalidationBus.DEFAULT_MAX_BATCH_SIZE)
+                : new BatchingInvalidationBus(transport);
+            ClusterInvalidation.install(invalidationBus);
+        } catch (Exception e) {
+            logger.warn("初始化集群缓存失效失败: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 初始化缓存预热：读取上次保存的查询，进程退出时保存本次执行次数最多的查询
+     */
+    private static void initializeCacheWarmUp() {
+        String file = System.getProperty("querybuilder.cache.warmup.file");
+        if (queryCache == null || file == null || file.trim().isEmpty()) {
+            return;
+        }
+        try {
+            int top = Integer.getInteger("querybuilder.cache.warmup.top", 100);
+            CacheWarmUp warmUp = new CacheWarmUp();
+            Path path = Paths.get(file.trim());
+            warmUpQueries = warmUp.load(path);
+            cacheWarmUp = warmUp;
+            warmUpHook = new Thread(() -> warmUp.save(path, top), "query-cache-warmup-save");
+            Runtime.getRuntime().addShutdownHook(warmUpHook);
+            logger.info("缓存预热已启用，读取到{}个预热查询", warmUpQueries.size());
+        } catch (Exception e) {
+            logger.warn("初始化缓存预热失败: {}", e.getMessage());
+        }
+    }
+    
     /**
      * 获取性能监控器
      */
@@ -101,6 +217,57 @@ public class QueryBuilderConfigManager {
         return queryCache;
     }
     
+    /**
+     * 获取缓存区域管理器，未启用缓存时返回null
+     */
+    public static CacheRegionManager getCacheRegionManager() {
+        if (!initialized) {
+            initialize();
+        }
+        return cacheRegionManager;
+    }
+    
+    /**
+     * 获取并发查询合并器，未启用时返回null
+     */
+    public static SingleFlight getSingleFlight() {
+        if (!initialized) {
+            initialize();
+        }
+        return singleFlight;
+    }
+    
+    /**
+     * 获取缓存预热记录器，未配置预热文件时返回null
+     */
+    public static CacheWarmUp getCacheWarmUp() {
+        if (!initialized) {
+            initialize();
+        }
+        return cacheWarmUp;
+    }
+    
+    /**
+     * 用上次保存的查询预热缓存，应在接收请求前调用
+     * 并行线程数和每秒查询数由querybuilder.cache.warmup.threads和querybuilder.cache.warmup.rate配置
+     * 
+     * @param dataSource 执行预热查询的数据源
+     * @return 写入缓存的查询数
+     */
+    public static int warmUp(DataSource dataSource) {
+        CacheWarmUp warmUp = getCacheWarmUp();
+        List<WarmUpQuery> queries = warmUpQueries;
+        if (warmUp == null || queries == null || queries.isEmpty()) {
+            return 0;
+        }
+        int threads = Integer.getInteger("querybuilder.cache.warmup.threads", 4);
+        double rate = Double.parseDouble(System.getProperty("querybuilder.cache.warmup.rate", "50"));
+        QueryCache cache = queryCache;
+        CacheRegionManager regions = cacheRegionManager;
+        return warmUp.replay(queries, new SimpleSqlExecutor(dataSource),
+            query -> regions.resolve(query.getEntityClass(), query.getRegion(), cache), threads, rate);
+    }
+    
     /**
      * 检查性能监控是否启用
      */
@@ -119,8 +286,41 @@ public class QueryBuilderConfigManager {
      * 重置配置（主要用于测试）
      */
     public static synchronized void reset() {
+        if (snapshotHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(snapshotHook);
+            } catch (IllegalStateException e) {
+                // 进程正在退出，由钩子完成保存
+            }
+            snapshotHook = null;
+        }
+        if (warmUpHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(warmUpHook);
+            } catch (IllegalStateException e) {
+                // 进程正在退出，由钩子完成保存
+            }
+            warmUpHook = null;
+        }
+        if (queryCache instanceof QueryCacheImpl) {
+            ((QueryCacheImpl) queryCache).shutdown();
+        }
+        if (cacheRegionManager != null) {
+            cacheRegionManager.shutdown();
+        }
+        if (invalidationBus != null) {
+            if (ClusterInvalidation.getBus() == invalidationBus) {
+                ClusterInvalidation.uninstall();
+            }
+            invalidationBus.close();
+            invalidationBus = null;
+        }
         performanceMonitor = null;
         queryCache = null;
+        cacheRegionManager = null;
+        singleFlight = null;
+        cacheWarmUp = null;
+        warmUpQueries = null;
         initialized = false;
     }
 }
@@ -1,7 +1,11 @@
 package com.kishultan.persistence.orm.query.context;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 表别名注册管理器，统一管理所有表的别名
@@ -9,6 +13,7 @@ import java.util.Map;
 public class TableAliasRegistry {
     private final Map<String, String> tableToAlias = new HashMap<>();
     private final Map<String, String> aliasToTable = new HashMap<>();
+    private final Set<String> referencedTables = new LinkedHashSet<>();
     private int aliasCounter = 0;
     
     /**
@@ -55,6 +60,31 @@ public class TableAliasRegistry {
         return aliasToTable.containsKey(alias);
     }
     
+    /**
+     * 记录查询读取的表（FROM、JOIN、子查询），用于缓存失效
+     */
+    public void addReferencedTable(String tableName) {
+        if (tableName != null && !tableName.isEmpty()) {
+            referencedTables.add(tableName);
+        }
+    }
+    
+    /**
+     * 批量记录查询读取的表
+     */
+    public void addReferencedTables(Collection<String> tableNames) {
+        for (String tableName : tableNames) {
+            addReferencedTable(tableName);
+        }
+    }
+    
+    /**
+     * 获取查询读取的表
+     */
+    public Set<String> getReferencedTables() {
+        return Collections.unmodifiableSet(referencedTables);
+    }
+    
     /**
      * 自动生成别名
      */
@@ -78,6 +108,7 @@ public class TableAliasRegistry {
     public void clear() {
         tableToAlias.clear();
         aliasToTable.clear();
+        referencedTables.clear();
         aliasCounter = 0;
     }
 }
@@ -7,6 +7,7 @@ import com.kishultan.persistence.orm.query.ClauseBuilder;
 import com.kishultan.persistence.orm.query.context.ClauseResult;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -159,6 +160,7 @@ public class AggregateClauseImpl<T> extends SelectClauseImpl<T> implements Aggre
         StringBuilder sql = new StringBuilder();
         List<Object> parameters = new ArrayList<>();
         
+        sql.append("SELECT ");
         if (aggregateFunctions.isEmpty()) {
             sql.append("*");
         } else {
@@ -186,6 +188,13 @@ public class AggregateClauseImpl<T> extends SelectClauseImpl<T> implements Aggre
         return String.join(", ", aggregateFunctions);
     }
     
+    /**
+     * 获取已添加的聚合函数表达式
+     */
+    public List<String> getAggregateFunctions() {
+        return Collections.unmodifiableList(aggregateFunctions);
+    }
+    
     // ==================== 辅助方法 ====================
     
     private String getCurrentTableAlias() {
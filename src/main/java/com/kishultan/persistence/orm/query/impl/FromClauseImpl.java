@@ -233,6 +233,10 @@ public class FromClauseImpl<T> extends AbstractClause<T> implements FromClause<T
             sql.append(" AS ").append(tableAlias);
         }
         
+        if (queryBuilder instanceof StandardQueryBuilder) {
+            ((StandardQueryBuilder<T>) queryBuilder).getAliasRegistry().addReferencedTable(tableName);
+        }
+        
         // 自动注册别名到QueryBuilder
         if (queryBuilder instanceof StandardQueryBuilder && entityClass != null) {
             ((StandardQueryBuilder<T>) queryBuilder).registerTable(entityClass, tableName, tableAlias != null ? tableAlias : tableName);
@@ -0,0 +1,515 @@
+package com.kishultan.persistence.orm.query.impl;
+
+import com.kishultan.persistence.orm.query.QueryBuilder;
+import com.kishultan.persistence.orm.query.cache.impl.TableSnapshot;
+import com.kishultan.persistence.orm.query.context.ConditionInfo;
+import com.kishultan.persistence.orm.query.context.GroupCondition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 在整表快照上求值的WHERE条件
+ *
+ * 把WhereClauseImpl的条件按buildClause生成SQL的顺序（分组括号、AND/OR，AND优先于OR）编译为条件树，
+ * 支持比较、LIKE、IN/NOT IN、IS NULL/IS NOT NULL和BETWEEN；NULL按SQL语义处理，与NULL比较的结果不成立。
+ * 包含子查询、未知的列或操作符、参数与字段类型不一致时无法编译，查询仍由数据库执行。
+ * 字符串按Java语义区分大小写比较，与数据库的排序规则可能不同，实体没有声明
+ * caseSensitiveStrings时字符串字段上除IS NULL外的条件都无法编译。
+ * 等值和IN条件所在的列有哈希索引时，先通过索引确定候选行，再对候选行求值。
+ *
+ * @author Portal Team
+ */
+final class InMemoryPredicate {
+
+    private static final String OPEN = "(";
+    private static final String CLOSE = ")";
+
+    private final Node root;
+
+    private InMemoryPredicate(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * 编译条件
+     *
+     * @param conditions WhereClauseImpl中的条件和分组标记，null表示没有条件
+     * @param table 整表快照
+     * @param caseSensitiveStrings 字符串字段上的条件是否可以按区分大小写的语义求值
+     * @return 编译后的条件，无法在内存中求值时返回null
+     */
+    static InMemoryPredicate compile(List<Object> conditions, TableSnapshot table, boolean caseSensitiveStrings) {
+        if (conditions == null || conditions.isEmpty()) {
+            return new InMemoryPredicate(null);
+        }
+        // 与buildClause相同的规则插入逻辑操作符
+        List<Object> tokens = new ArrayList<>();
+        boolean skipOperator = true;
+        for (Object element : conditions) {
+            if (element instanceof GroupCondition) {
+                GroupCondition group = (GroupCondition) element;
+                if (group.isGroupStart()) {
+                    if (!skipOperator) {
+                        tokens.add(group.getGroupOperator().toUpperCase());
+                        skipOperator = true;
+                    }
+                    tokens.add(OPEN);
+                } else if (group.isGroupEnd()) {
+                    tokens.add(CLOSE);
+                }
+                continue;
+            }
+            if (!(element instanceof ConditionInfo)) {
+                return null;
+            }
+            ConditionInfo condition = (ConditionInfo) element;
+            if (!skipOperator) {
+                tokens.add(condition.getLogicalOperator().toUpperCase());
+            }
+            Node node = compileCondition(condition, table, caseSensitiveStrings);
+            if (node == null) {
+                return null;
+            }
+            tokens.add(node);
+            skipOperator = false;
+        }
+        Parser parser = new Parser(tokens);
+        Node root = parser.parseOr();
+        return root != null && parser.position == tokens.size() ? new InMemoryPredicate(root) : null;
+    }
+
+    /**
+     * 选出满足条件的行
+     *
+     * @return 按快照顺序排列的行号
+     */
+    int[] select(TableSnapshot table) {
+        if (root == null) {
+            int[] all = new int[table.size()];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        int[] candidates = root.candidates(table);
+        int count = candidates != null ? candidates.length : table.size();
+        int[] matched = new int[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int row = candidates != null ? candidates[i] : i;
+            if (root.test(table, row)) {
+                matched[size++] = row;
+            }
+        }
+        return size == matched.length ? matched : Arrays.copyOf(matched, size);
+    }
+
+    private static Node compileCondition(ConditionInfo condition, TableSnapshot table, boolean caseSensitiveStrings) {
+        int column = table.columnIndex(condition.getColumn());
+        if (column < 0) {
+            return null;
+        }
+        Class<?> category = TableSnapshot.categoryOf(table.columnType(column));
+        String operator = condition.getOperator();
+        Object value = condition.getValue();
+        if ("IS NULL".equals(operator) || "IS NOT NULL".equals(operator)) {
+            return new NullCheck(column, "IS NULL".equals(operator));
+        }
+        if (category == String.class && !caseSensitiveStrings) {
+            return null;
+        }
+        switch (operator) {
+            case "IN":
+            case "NOT IN": {
+                Object[] values = value instanceof Object[] ? (Object[]) value
+                    : value instanceof Collection ? ((Collection<?>) value).toArray() : new Object[]{value};
+                if (values.length == 0) {
+                    return null;
+                }
+                Object[] keys = new Object[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] instanceof QueryBuilder) {
+                        return null;
+                    }
+                    keys[i] = normalize(values[i], category, true);
+                    if (keys[i] == INVALID) {
+                        return null;
+                    }
+                }
+                return new InList(column, keys, "NOT IN".equals(operator));
+            }
+            case "BETWEEN":
+            case "NOT BETWEEN": {
+                if (!(value instanceof Object[]) || ((Object[]) value).length != 2) {
+                    return null;
+                }
+                Object low = normalize(((Object[]) value)[0], category, false);
+                Object high = normalize(((Object[]) value)[1], category, false);
+                if (low == INVALID || high == INVALID) {
+                    return null;
+                }
+                return new Between(column, low, high, "NOT BETWEEN".equals(operator));
+            }
+            case "LIKE":
+                if (!(value instanceof String) || category != String.class) {
+                    return null;
+                }
+                return new Like(column, toPattern((String) value));
+            case "=":
+            case "!=":
+            case "<>":
+            case ">":
+            case ">=":
+            case "<":
+            case "<=": {
+                Object key = normalize(value, category, false);
+                return key != INVALID ? new Comparison(column, operator, key) : null;
+            }
+            default:
+                return null;
+        }
+    }
+
+    private static final Object INVALID = new Object();
+
+    /**
+     * 归一化参数，类型与字段不一致时返回INVALID
+     */
+    private static Object normalize(Object value, Class<?> category, boolean allowNull) {
+        if (value == null) {
+            return allowNull ? null : INVALID;
+        }
+        Object key = TableSnapshot.normalize(value);
+        return TableSnapshot.categoryOf(key) == category ? key : INVALID;
+    }
+
+    /**
+     * 把LIKE模式转换为正则表达式：%匹配任意字符串，_匹配单个字符，反斜杠转义
+     */
+    private static Pattern toPattern(String like) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < like.length(); i++) {
+            char c = like.charAt(i);
+            if (c == '\\' && i + 1 < like.length()) {
+                regex.append(Pattern.quote(String.valueOf(like.charAt(++i))));
+            } else if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    /**
+     * 合并两个升序的行号数组
+     */
+    private static int[] union(int[] left, int[] right) {
+        int[] merged = new int[left.length + right.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < left.length || j < right.length) {
+            int next;
+            if (j >= right.length || (i < left.length && left[i] <= right[j])) {
+                next = left[i++];
+            } else {
+                next = right[j++];
+            }
+            if (size == 0 || merged[size - 1] != next) {
+                merged[size++] = next;
+            }
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    // ==================== 条件树 ====================
+
+    private abstract static class Node {
+        abstract boolean test(TableSnapshot table, int row);
+
+        /**
+         * 通过索引确定的候选行，无法用索引缩小范围时返回null
+         */
+        int[] candidates(TableSnapshot table) {
+            return null;
+        }
+    }
+
+    private static final class Comparison extends Node {
+        private final int column;
+        private final String operator;
+        private final Object value;
+
+        Comparison(int column, String operator, Object value) {
+            this.column = column;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        boolean test(TableSnapshot table, int row) {
+            Object key = table.key(row, column);
+            if (key == null) {
+                return false;
+            }
+            switch (operator) {
+                case "=":
+                    return key.equals(value);
+                case "!=":
+                case "<>":
+                    return !key.equals(value);
+                case ">":
+                    return TableSnapshot.compare(key, value) > 0;
+                case ">=":
+                    return TableSnapshot.compare(key, value) >= 0;
+                case "<":
+                    return TableSnapshot.compare(key, value) < 0;
+                default:
+                    return TableSnapshot.compare(key, value) <= 0;
+            }
+        }
+
+        @Override
+        int[] candidates(TableSnapshot table) {
+            return "=".equals(operator) ? table.lookup(column, value) : null;
+        }
+    }
+
+    private static final class NullCheck extends Node {
+        private final int column;
+        private final boolean isNull;
+
+        NullCheck(int column, boolean isNull) {
+            this.column = column;
+            this.isNull = isNull;
+        }
+
+        @Override
+        boolean test(TableSnapshot table, int row) {
+            return (table.key(row, column) == null) == isNull;
+        }
+    }
+
+    private static final class InList extends Node {
+        private final int column;
+        private final Object[] values;
+        private final boolean negated;
+        private final boolean containsNull;
+
+        InList(int column, Object[] values, boolean negated) {
+            this.column = column;
+            this.values = values;
+            this.negated = negated;
+            this.containsNull = Arrays.asList(values).contains(null);
+        }
+
+        @Override
+        boolean test(TableSnapshot table, int row) {
+            Object key = table.key(row, column);
+            if (key == null) {
+                return false;
+            }
+            for (Object value : values) {
+                if (key.equals(value)) {
+                    return !negated;
+                }
+            }
+            // NOT IN的列表包含NULL时结果不确定，不成立
+            return negated && !containsNull;
+        }
+
+        @Override
+        int[] candidates(TableSnapshot table) {
+            if (negated) {
+                return null;
+            }
+            int[] rows = new int[0];
+            for (Object value : values) {
+                int[] matched = table.lookup(column, value);
+                if (matched == null) {
+                    return null;
+                }
+                rows = union(rows, matched);
+            }
+            return rows;
+        }
+    }
+
+    private static final class Between extends Node {
+        private final int column;
+        private final Object low;
+        private final Object high;
+        private final boolean negated;
+
+        Between(int column, Object low, Object high, boolean negated) {
+            this.column = column;
+            this.low = low;
+            this.high = high;
+            this.negated = negated;
+        }
+
+        @Override
+        boolean test(TableSnapshot table, int row) {
+            Object key = table.key(row, column);
+            if (key == null) {
+                return false;
+            }
+            boolean between = TableSnapshot.compare(key, low) >= 0 && TableSnapshot.compare(key, high) <= 0;
+            return between != negated;
+        }
+    }
+
+    private static final class Like extends Node {
+        private final int column;
+        private final Pattern pattern;
+
+        Like(int column, Pattern pattern) {
+            this.column = column;
+            this.pattern = pattern;
+        }
+
+        @Override
+        boolean test(TableSnapshot table, int row) {
+            Object key = table.key(row, column);
+            return key != null && pattern.matcher((String) key).matches();
+        }
+    }
+
+    private static final class And extends Node {
+        private final List<Node> children;
+
+        And(List<Node> children) {
+            this.children = children;
+        }
+
+        @Override
+        boolean test(TableSnapshot table, int row) {
+            for (Node child : children) {
+                if (!child.test(table, row)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        int[] candidates(TableSnapshot table) {
+            int[] best = null;
+            for (Node child : children) {
+                int[] rows = child.candidates(table);
+                if (rows != null && (best == null || rows.length < best.length)) {
+                    best = rows;
+                }
+            }
+            return best;
+        }
+    }
+
+    private static final class Or extends Node {
+        private final List<Node> children;
+
+        Or(List<Node> children) {
+            this.children = children;
+        }
+
+        @Override
+        boolean test(TableSnapshot table, int row) {
+            for (Node child : children) {
+                if (child.test(table, row)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int[] candidates(TableSnapshot table) {
+            int[] rows = new int[0];
+            for (Node child : children) {
+                int[] matched = child.candidates(table);
+                if (matched == null) {
+                    return null;
+                }
+                rows = union(rows, matched);
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * 按SQL优先级解析：expr := term (OR term)*，term := factor (AND factor)*，factor := ( expr ) | 条件
+     */
+    private static final class Parser {
+        private final List<Object> tokens;
+        private int position;
+
+        Parser(List<Object> tokens) {
+            this.tokens = tokens;
+        }
+
+        Node parseOr() {
+            List<Node> terms = new ArrayList<>();
+            Node term = parseAnd();
+            if (term == null) {
+                return null;
+            }
+            terms.add(term);
+            while ("OR".equals(peek())) {
+                position++;
+                term = parseAnd();
+                if (term == null) {
+                    return null;
+                }
+                terms.add(term);
+            }
+            return terms.size() == 1 ? terms.get(0) : new Or(terms);
+        }
+
+        private Node parseAnd() {
+            List<Node> factors = new ArrayList<>();
+            Node factor = parseFactor();
+            if (factor == null) {
+                return null;
+            }
+            factors.add(factor);
+            while ("AND".equals(peek())) {
+                position++;
+                factor = parseFactor();
+                if (factor == null) {
+                    return null;
+                }
+                factors.add(factor);
+            }
+            return factors.size() == 1 ? factors.get(0) : new And(factors);
+        }
+
+        private Node parseFactor() {
+            Object token = peek();
+            if (OPEN.equals(token)) {
+                position++;
+                Node inner = parseOr();
+                if (inner == null || !CLOSE.equals(peek())) {
+                    return null;
+                }
+                position++;
+                return inner;
+            }
+            if (token instanceof Node) {
+                position++;
+                return (Node) token;
+            }
+            return null;
+        }
+
+        private Object peek() {
+            return position < tokens.size() ? tokens.get(position) : null;
+        }
+    }
+}
@@ -40,6 +40,7 @@ public class JoinClauseImpl<T> extends AbstractClause<T> implements JoinClause<T
         // 注册表别名和实体类到ResultSetMapper
         if (queryBuilder != null) {
             queryBuilder.registerTable(entityClass, this.tableName, this.tableAlias);
+            queryBuilder.getAliasRegistry().addReferencedTable(this.tableName);
         }
     }
     
@@ -54,7 +55,10 @@ public class JoinClauseImpl<T> extends AbstractClause<T> implements JoinClause<T
         // 如果没有指定别名，使用表名作为别名
         this.tableAlias = alias != null ? alias : this.tableName;
         
-        // 中间表不注册到ResultSetMapper
+        // 中间表不注册到ResultSetMapper，但仍记录为查询读取的表
+        if (queryBuilder != null) {
+            queryBuilder.getAliasRegistry().addReferencedTable(this.tableName);
+        }
     }
     
     // ==================== ON条件 ====================
@@ -6,6 +6,7 @@ import com.kishultan.persistence.orm.ColumnabledLambda;
 import com.kishultan.persistence.orm.query.context.ClauseResult;
 import com.kishultan.persistence.orm.query.context.OrderInfo;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -124,6 +125,13 @@ public class OrderClauseImpl<T> extends AbstractClause<T> implements OrderClause
         return buildClause().getSql();
     }
     
+    /**
+     * 获取排序信息，供跨分片归并排序使用
+     */
+    public List<OrderInfo> getOrderInfos() {
+        return Collections.unmodifiableList(orderInfos);
+    }
+    
     // ==================== 内部方法 ====================
     // 注意：getTableAlias 方法现在在父类 AbstractClause 中定义
 }
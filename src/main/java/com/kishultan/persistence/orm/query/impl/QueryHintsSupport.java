@@ -0,0 +1,98 @@
+package com.kishultan.persistence.orm.query.impl;
+
+import com.kishultan.persistence.orm.dialect.DatabaseDialect;
+import com.kishultan.persistence.orm.dialect.DialectFactory;
+import com.kishultan.persistence.orm.query.QueryHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * 查询提示应用工具
+ * 供SimpleSqlExecutor和流式分割器共用，按提示和方言创建并配置语句
+ *
+ * @author Portal Team
+ */
+final class QueryHintsSupport {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryHintsSupport.class);
+
+    private QueryHintsSupport() {
+    }
+
+    /**
+     * 需要流式读取时解析方言并做连接级准备
+     *
+     * @return 流式读取状态，未开启时返回null
+     */
+    static Streaming beginStreaming(Connection connection, QueryHints hints) throws SQLException {
+        if (hints == null || !hints.isStreaming()) {
+            return null;
+        }
+        DatabaseDialect dialect = DialectFactory.getDialect(connection);
+        if (dialect == null) {
+            return null;
+        }
+        return new Streaming(dialect, dialect.beginStreaming(connection));
+    }
+
+    /**
+     * 按提示创建预编译语句
+     *
+     * @param streaming beginStreaming返回的状态，可为null
+     */
+    static PreparedStatement prepareStatement(Connection connection, String sql, QueryHints hints,
+                                              Streaming streaming) throws SQLException {
+        DatabaseDialect dialect = streaming != null ? streaming.dialect : null;
+        if (hints == null || hints.isDefault()) {
+            return connection.prepareStatement(sql);
+        }
+        PreparedStatement stmt = connection.prepareStatement(sql, hints.getResultSetType(), hints.getResultSetConcurrency());
+        try {
+            if (hints.getMaxRows() > 0) {
+                stmt.setMaxRows(hints.getMaxRows());
+            }
+            if (hints.getFetchSize() > 0) {
+                if (dialect != null) {
+                    dialect.configureStreaming(connection, stmt, hints.getFetchSize());
+                } else {
+                    stmt.setFetchSize(hints.getFetchSize());
+                }
+            }
+            return stmt;
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 恢复流式读取对连接做的修改，失败只记录日志
+     */
+    static void endStreaming(Connection connection, Streaming streaming) {
+        if (streaming == null || !streaming.restore) {
+            return;
+        }
+        try {
+            streaming.dialect.endStreaming(connection);
+        } catch (SQLException e) {
+            logger.warn("恢复流式读取连接状态失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 流式读取状态：使用的方言，以及结束时是否需要恢复连接
+     */
+    static final class Streaming {
+        private final DatabaseDialect dialect;
+        private final boolean restore;
+
+        private Streaming(DatabaseDialect dialect, boolean restore) {
+            this.dialect = dialect;
+            this.restore = restore;
+        }
+    }
+}
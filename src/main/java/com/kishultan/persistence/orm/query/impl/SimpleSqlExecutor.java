@@ -1,13 +1,19 @@
 package com.kishultan.persistence.orm.query.impl;
 
+import com.kishultan.persistence.datasource.ConnectionContext;
 import com.kishultan.persistence.orm.query.DefaultRowMapper;
+import com.kishultan.persistence.orm.query.QueryHints;
 import com.kishultan.persistence.orm.query.SqlExecutor;
 import com.kishultan.persistence.orm.query.RowMapper;
+import com.kishultan.persistence.orm.query.cache.TableVersionTracker;
+import com.kishultan.persistence.orm.query.monitor.PhaseTimer;
+import com.kishultan.persistence.orm.query.monitor.QueryPhase;
 
 import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * 简单SQL执行器实现
@@ -28,21 +34,56 @@ public class SimpleSqlExecutor implements SqlExecutor {
     
     @Override
     public <T> List<T> executeQuery(String sql, List<Object> parameters, Class<T> resultType, RowMapper<T> mapper) {
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(sql)) {
-            setParameters(stmt, parameters);
-            try (ResultSet rs = stmt.executeQuery()) {
-                List<T> results = new ArrayList<>();
-                //int rowNum = 1;
-                while (rs.next()) {
-                    T result = mapper.mapRow(rs, resultType);
-                    //if (result != null) {
-                        results.add(result);
-                    //}
+        return executeQuery(sql, parameters, resultType, mapper, (QueryHints) null);
+    }
+    
+    @Override
+    public <T> List<T> executeQuery(String sql, List<Object> parameters, Class<T> resultType, RowMapper<T> mapper, QueryHints hints) {
+        List<T> results = new ArrayList<>();
+        executeQuery(sql, parameters, resultType, mapper, hints, results::add);
+        try {
+            //按主键合并对象，解决连接查询主表数据重复的问题
+            long phase = PhaseTimer.start();
+            List<T> merged = this.rowMapper.mergeList(results,resultType);
+            PhaseTimer.stop(QueryPhase.MERGE, phase);
+            return merged;
+        } catch (Exception e) {
+            throw new RuntimeException("执行查询失败: " + sql, e);
+        }
+    }
+    
+    @Override
+    public <T> void executeQuery(String sql, List<Object> parameters, Class<T> resultType, RowMapper<T> mapper,
+                                 QueryHints hints, Consumer<? super T> action) {
+        long phase = PhaseTimer.start();
+        try (Connection connection = ConnectionContext.getReadConnection(dataSource)) {
+            phase = PhaseTimer.stop(QueryPhase.CONNECTION_ACQUIRE, phase);
+            QueryHintsSupport.Streaming streaming = QueryHintsSupport.beginStreaming(connection, hints);
+            try (PreparedStatement stmt = QueryHintsSupport.prepareStatement(connection, sql, hints, streaming)) {
+                setParameters(stmt, parameters);
+                phase = PhaseTimer.stop(QueryPhase.STATEMENT_PREPARE, phase);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    phase = PhaseTimer.stop(QueryPhase.EXECUTE, phase);
+                    // 逐行分别计入读取和映射，处理行的时间不计入
+                    while (rs.next()) {
+                        phase = PhaseTimer.stop(QueryPhase.FETCH, phase);
+                        T row = mapper.mapRow(rs, resultType);
+                        PhaseTimer.stop(QueryPhase.ROW_MAPPING, phase);
+                        try {
+                            action.accept(row);
+                        } catch (RuntimeException e) {
+                            throw new CallbackException(e);
+                        }
+                        phase = PhaseTimer.start();
+                    }
+                    PhaseTimer.stop(QueryPhase.FETCH, phase);
                 }
-                //按主键合并对象，解决连接查询主表数据重复的问题
-                return this.rowMapper.mergeList(results,resultType);
+            } finally {
+                QueryHintsSupport.endStreaming(connection, streaming);
             }
+        } catch (CallbackException e) {
+            // 调用方处理行时抛出的异常原样抛出
+            throw e.getCause();
         } catch (Exception e) {
             throw new RuntimeException("执行查询失败: " + sql, e);
         }
@@ -50,14 +91,23 @@ public class SimpleSqlExecutor implements SqlExecutor {
     
     @Override
     public <T> T executeAs(String sql, List<Object> parameters, Class<T> resultType) {
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(sql)) {
-            setParameters(stmt, parameters);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return (T)this.rowMapper.mapRow(rs,resultType);
+        long phase = PhaseTimer.start();
+        try (Connection connection = ConnectionContext.getReadConnection(dataSource)) {
+            phase = PhaseTimer.stop(QueryPhase.CONNECTION_ACQUIRE, phase);
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                setParameters(stmt, parameters);
+                phase = PhaseTimer.stop(QueryPhase.STATEMENT_PREPARE, phase);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    phase = PhaseTimer.stop(QueryPhase.EXECUTE, phase);
+                    boolean found = rs.next();
+                    phase = PhaseTimer.stop(QueryPhase.FETCH, phase);
+                    if (found) {
+                        T value = (T)this.rowMapper.mapRow(rs,resultType);
+                        PhaseTimer.stop(QueryPhase.ROW_MAPPING, phase);
+                        return value;
+                    }
+                    return null;
                 }
-                return null;
             }
         } catch (Exception e) {
             throw new RuntimeException("执行count查询失败: " + sql, e);
@@ -71,10 +121,12 @@ public class SimpleSqlExecutor implements SqlExecutor {
     
     @Override
     public int executeUpdate(String sql, List<Object> parameters) {
-        try (Connection connection = dataSource.getConnection();
+        try (Connection connection = ConnectionContext.getConnection(dataSource);
              PreparedStatement stmt = connection.prepareStatement(sql)) {
             setParameters(stmt, parameters);
-            return stmt.executeUpdate();
+            int result = stmt.executeUpdate();
+            TableVersionTracker.recordSqlWrite(dataSource, sql);
+            return result;
         } catch (Exception e) {
             throw new RuntimeException("执行更新失败: " + sql, e);
         }
@@ -82,8 +134,12 @@ public class SimpleSqlExecutor implements SqlExecutor {
     
     @Override
     public int[] executeBatchUpdate(List<String> sqlList, List<List<Object>> parametersList) {
-        try (Connection connection = dataSource.getConnection()) {
-            connection.setAutoCommit(false);
+        // 已绑定事务连接时加入外部事务，由事务方提交
+        boolean ownTransaction = !ConnectionContext.isBound(dataSource);
+        try (Connection connection = ConnectionContext.getConnection(dataSource)) {
+            if (ownTransaction) {
+                connection.setAutoCommit(false);
+            }
             int[] results = new int[sqlList.size()];
             
             for (int i = 0; i < sqlList.size(); i++) {
@@ -93,13 +149,34 @@ public class SimpleSqlExecutor implements SqlExecutor {
                 }
             }
             
-            connection.commit();
+            if (ownTransaction) {
+                connection.commit();
+            }
+            for (String sql : sqlList) {
+                TableVersionTracker.recordSqlWrite(dataSource, sql);
+            }
             return results;
         } catch (Exception e) {
             throw new RuntimeException("批量更新失败", e);
         }
     }
     
+    /**
+     * 包装逐行处理回调抛出的异常，与查询本身的异常区分
+     */
+    private static final class CallbackException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CallbackException(RuntimeException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized RuntimeException getCause() {
+            return (RuntimeException) super.getCause();
+        }
+    }
+    
     private void setParameters(PreparedStatement stmt, List<Object> parameters) throws SQLException {
         if (parameters != null) {
             for (int i = 0; i < parameters.size(); i++) {
@@ -2,9 +2,22 @@ package com.kishultan.persistence.orm.query.impl;
 
 import com.kishultan.persistence.orm.query.*;
 import com.kishultan.persistence.orm.Columnable;
+import com.kishultan.persistence.orm.query.monitor.PhaseTimer;
 import com.kishultan.persistence.orm.query.monitor.QueryPerformanceMonitor;
+import com.kishultan.persistence.orm.query.monitor.QueryPhase;
 import com.kishultan.persistence.orm.query.monitor.QueryMetrics;
+import com.kishultan.persistence.datasource.ConnectionContext;
+import com.kishultan.persistence.orm.query.cache.CachePolicy;
+import com.kishultan.persistence.orm.query.cache.CacheStatistics;
 import com.kishultan.persistence.orm.query.cache.QueryCache;
+import com.kishultan.persistence.orm.query.cache.RegionStatistics;
+import com.kishultan.persistence.orm.query.cache.ResultSnapshot;
+import com.kishultan.persistence.orm.query.cache.SingleFlight;
+import com.kishultan.persistence.orm.query.cache.TableVersionTracker;
+import com.kishultan.persistence.orm.query.cache.WarmUpQuery;
+import com.kishultan.persistence.orm.query.cache.impl.CacheRegionManager;
+import com.kishultan.persistence.orm.query.cache.impl.CacheWarmUp;
+import com.kishultan.persistence.orm.query.cache.impl.TableSnapshot;
 import com.kishultan.persistence.orm.query.config.QueryBuilderConfigManager;
 import com.kishultan.persistence.orm.ColumnabledLambda;
 import com.kishultan.persistence.orm.query.context.*;
@@ -14,9 +27,13 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.sql.Connection;
 import javax.sql.DataSource;
 
@@ -56,15 +73,22 @@ public class StandardQueryBuilder<T> implements QueryBuilder<T> {
     private int offsetValue = 0;
     private int limitValue = 0;
     
+    // 执行提示
+    private final QueryHints queryHints = new QueryHints();
+    
     // 执行器
     private SqlExecutor sqlExecutor;
     
     // 数据源引用
     private DataSource dataSource;
     
+    // 缓存范围，区分同一SQL在不同分片上的结果
+    private String cacheScope;
+    
     // 性能监控和缓存（通过配置管理器获取）
     private QueryPerformanceMonitor performanceMonitor;
     private QueryCache queryCache;
+    private CachePolicy cachePolicy;
     private boolean performanceMonitoringEnabled = false;
     private boolean cacheEnabled = false;
     
@@ -94,6 +118,15 @@ public class StandardQueryBuilder<T> implements QueryBuilder<T> {
         this.sqlExecutor = sqlExecutor;
     }
     
+    /**
+     * 设置缓存范围
+     * 同一SQL在不同分片上或跨分片合并时结果不同，缓存键、并发合并和整表快照都按范围区分；
+     * 设置了范围的查询不记录预热
+     */
+    public void setCacheScope(String cacheScope) {
+        this.cacheScope = cacheScope;
+    }
+    
     // ==================== 别名注册表管理 ====================
     
     public TableAliasRegistry getAliasRegistry() {
@@ -109,6 +142,17 @@ public class StandardQueryBuilder<T> implements QueryBuilder<T> {
         return aliasRegistry.getAlias(tableName);
     }
     
+    /**
+     * 获取查询读取的所有表（FROM、JOIN及子查询），构建SQL后才完整
+     */
+    public Set<String> getReferencedTables() {
+        Set<String> tables = new LinkedHashSet<>(aliasRegistry.getReferencedTables());
+        if (subquery != null) {
+            tables.addAll(subquery.getReferencedTables());
+        }
+        return tables;
+    }
+    
     public DefaultRowMapper getResultSetMapper() {
         return defaultMapper;
     }
@@ -284,25 +328,87 @@ public class StandardQueryBuilder<T> implements QueryBuilder<T> {
             throw new IllegalStateException("SQL执行器未设置");
         }
         
+        PhaseTimer timer = beginPhaseTiming();
+        try {
+            return doFindList();
+        } finally {
+            endPhaseTiming(timer);
+        }
+    }
+    
+    private List<T> doFindList() {
         // 如果启用了缓存，先尝试从缓存获取
-        if (QueryBuilderConfigManager.isCacheEnabled()) {
-            QueryCache cache = getQueryCache();
+        QueryCache cache = null;
+        String cacheKey = null;
+        TableVersionTracker.Snapshot tableVersions = null;
+        CachePolicy policy = getEffectiveCachePolicy(CachePolicy.DEFAULT_LIST_TTL);
+        if (QueryBuilderConfigManager.isCacheEnabled() && policy.isEnabled()) {
+            cacheKey = generateCacheKey("findList");
+            cache = getUsableQueryCache(policy);
+            List<T> inMemory = cache != null ? findInMemory(cache, policy) : null;
+            if (inMemory != null) {
+                recordCacheStatistics(cache, policy, statistics -> statistics.recordHit(inMemory.isEmpty()));
+                return inMemory;
+            }
+            recordWarmUp(WarmUpQuery.FIND_LIST, policy);
             if (cache != null) {
-                String cacheKey = generateCacheKey("findList");
-                @SuppressWarnings("unchecked")
-                List<T> cachedResult = cache.get(cacheKey, List.class);
+                long phase = PhaseTimer.start();
+                Object cachedResult = cache.get(cacheKey, Object.class);
+                PhaseTimer.stop(QueryPhase.CACHE_LOOKUP, phase);
                 if (cachedResult != null) {
                     logger.debug("从缓存获取查询结果: cacheKey={}", cacheKey);
-                    return cachedResult;
+                    List<T> result = toResultList(cachedResult);
+                    recordCacheStatistics(cache, policy, statistics -> statistics.recordHit(result.isEmpty()));
+                    return result;
                 }
+                recordCacheStatistics(cache, policy, RegionStatistics::recordMiss);
+                // 执行前记录依赖表版本，执行期间的写入会使结果不被缓存
+                tableVersions = TableVersionTracker.snapshot(getReferencedTables());
             }
         }
         
+        // 相同查询并发未命中时只执行一次
+        QueryCache resultCache = cache;
+        String resultKey = cacheKey;
+        TableVersionTracker.Snapshot resultVersions = tableVersions;
+        return toResultList(coalesce("findList", queryResult -> {
+            Object result = executeFindList(resultCache, resultKey, resultVersions, queryResult);
+            // 合并执行的结果由多个线程共享，转换为快照后每个线程得到自己的实体
+            if (queryResult != null && result instanceof List) {
+                ResultSnapshot snapshot = ResultSnapshot.of((List<?>) result);
+                return snapshot != null ? snapshot : result;
+            }
+            return result;
+        }));
+    }
+    
+    /**
+     * 把缓存或合并执行得到的结果转换为调用方的列表
+     * 快照每次重新创建实体，调用方之间互不影响；策略为只读时返回只读视图
+     */
+    @SuppressWarnings("unchecked")
+    private List<T> toResultList(Object result) {
+        if (result instanceof ResultSnapshot) {
+            ResultSnapshot snapshot = (ResultSnapshot) result;
+            return getEffectiveCachePolicy(CachePolicy.DEFAULT_LIST_TTL).isReadOnly() ? snapshot.view() : snapshot.materialize();
+        }
+        return (List<T>) result;
+    }
+    
+    /**
+     * 执行列表查询，并在启用缓存时存储结果
+     * 结果可以转换为快照时缓存并返回快照，否则返回原始列表
+     */
+    private Object executeFindList(QueryCache cache, String cacheKey, TableVersionTracker.Snapshot tableVersions,
+                                   QueryResult builtQuery) {
         // 开始性能监控
         String contextId = startPerformanceMonitoring();
+        long loadStart = System.nanoTime();
         
         try {
-            QueryResult queryResult = buildQuery();
+            long phase = PhaseTimer.start();
+            QueryResult queryResult = builtQuery != null ? builtQuery : buildQuery();
+            PhaseTimer.stop(QueryPhase.SQL_BUILD, phase);
 //            System.out.println("-------------------------------------");
 //            System.out.println("findList->SQL : "+queryResult.getSql());
 //            System.out.println("findList->parameters: " + buildContext.getParameters());
@@ -316,35 +422,86 @@ public class StandardQueryBuilder<T> implements QueryBuilder<T> {
                 RowMapper typedRowMapper =  customRowMapper;
                 @SuppressWarnings("unchecked")
                 Class<T> typedResultType = (Class<T>) customResultType;
-                result = sqlExecutor.executeQuery(queryResult.getSql(), queryResult.getParameters(), typedResultType, typedRowMapper);
+                result = sqlExecutor.executeQuery(queryResult.getSql(), queryResult.getParameters(), typedResultType, typedRowMapper, queryHints);
             } else {
                 // 使用默认的ResultSetMapper
                 @SuppressWarnings("unchecked")
                 DefaultRowMapper typedDefaultMapper = defaultMapper;
-                result = sqlExecutor.executeQuery(queryResult.getSql(), queryResult.getParameters(), entityClass, typedDefaultMapper);
+                result = sqlExecutor.executeQuery(queryResult.getSql(), queryResult.getParameters(), entityClass, typedDefaultMapper, queryHints);
             }
             
-            // 结束性能监控
-            endPerformanceMonitoring(contextId, true, result != null ? result.size() : 0);
-            
-            // 如果启用了缓存，存储结果到缓存
-            if (QueryBuilderConfigManager.isCacheEnabled() && result != null && !result.isEmpty()) {
-                QueryCache cache = getQueryCache();
-                if (cache != null) {
-                    String cacheKey = generateCacheKey("findList");
-                    cache.put(cacheKey, result, 300000); // 5分钟TTL
+            // 如果启用了缓存，按策略存储结果，空结果按negativeTtl缓存
+            Object value = result;
+            if (cache != null && result != null) {
+                CachePolicy policy = getEffectiveCachePolicy(CachePolicy.DEFAULT_LIST_TTL);
+                recordCacheLoad(cache, policy, System.nanoTime() - loadStart, true);
+                if (policy.accepts(result.size())) {
+                    boolean negative = result.isEmpty();
+                    CachePolicy entryPolicy = negative ? policy.forNegativeResult() : policy;
+                    // 缓存不可变快照，调用方修改返回的实体不会影响缓存
+                    phase = PhaseTimer.start();
+                    ResultSnapshot snapshot = ResultSnapshot.of(result);
+                    cache.put(cacheKey, snapshot != null ? snapshot : result, entryPolicy, tableVersions,
+                        entryPolicy.isRefreshAhead() ? listRefresher(queryResult) : null);
+                    PhaseTimer.stop(QueryPhase.CACHE_STORE, phase);
+                    recordCacheStatistics(cache, policy, statistics -> statistics.recordPut(negative));
                     logger.debug("查询结果已缓存: cacheKey={}, resultSize={}", cacheKey, result.size());
+                    if (snapshot != null) {
+                        value = snapshot;
+                    }
+                } else {
+                    recordCacheStatistics(cache, policy, RegionStatistics::recordRejected);
                 }
             }
             
-            return result;
+            // 结束性能监控，耗时包括缓存存储
+            endPerformanceMonitoring(contextId, true, result != null ? result.size() : 0);
+            return value;
         } catch (Exception e) {
             // 记录性能监控错误
             recordPerformanceError(contextId, e);
+            if (cache != null) {
+                recordCacheLoad(cache, getEffectiveCachePolicy(0), System.nanoTime() - loadStart, false);
+            }
             throw e;
         }
     }
     
+    @Override
+    @SuppressWarnings("unchecked")
+    public void findEach(Consumer<? super T> action) {
+        if (sqlExecutor == null) {
+            throw new IllegalStateException("SQL执行器未设置");
+        }
+        
+        // 逐行处理不经过缓存
+        PhaseTimer timer = beginPhaseTiming();
+        String contextId = startPerformanceMonitoring();
+        
+        try {
+            long phase = PhaseTimer.start();
+            QueryResult queryResult = buildQuery();
+            PhaseTimer.stop(QueryPhase.SQL_BUILD, phase);
+            int[] rowCount = new int[1];
+            Consumer<T> counting = row -> {
+                rowCount[0]++;
+                action.accept(row);
+            };
+            if (customRowMapper != null) {
+                sqlExecutor.executeQuery(queryResult.getSql(), queryResult.getParameters(), (Class<T>) customResultType, customRowMapper, queryHints, counting);
+            } else {
+                sqlExecutor.executeQuery(queryResult.getSql(), queryResult.getParameters(), entityClass, (RowMapper<T>) defaultMapper, queryHints, counting);
+            }
+            
+            endPerformanceMonitoring(contextId, true, rowCount[0]);
+        } catch (Exception e) {
+            recordPerformanceError(contextId, e);
+            throw e;
+        } finally {
+            endPhaseTiming(timer);
+        }
+    }
+    
     @Override
     public T findFirst() {
         List<T> list = findList();
@@ -357,24 +514,62 @@ public class StandardQueryBuilder<T> implements QueryBuilder<T> {
             throw new IllegalStateException("SQL执行器未设置，请先设置数据源或SQL执行器");
         }
         
+        PhaseTimer timer = beginPhaseTiming();
+        try {
+            return doCount();
+        } finally {
+            endPhaseTiming(timer);
+        }
+    }
+    
+    private long doCount() {
         // 如果启用了缓存，先尝试从缓存获取
-        if (QueryBuilderConfigManager.isCacheEnabled()) {
-            QueryCache cache = getQueryCache();
+        QueryCache cache = null;
+        String cacheKey = null;
+        TableVersionTracker.Snapshot tableVersions = null;
+        CachePolicy policy = getEffectiveCachePolicy(CachePolicy.DEFAULT_COUNT_TTL);
+        if (QueryBuilderConfigManager.isCacheEnabled() && policy.isEnabled()) {
+            cacheKey = generateCacheKey("count");
+            cache = getUsableQueryCache(policy);
+            Long inMemory = cache != null ? countInMemory(cache, policy) : null;
+            if (inMemory != null) {
+                recordCacheStatistics(cache, policy, statistics -> statistics.recordHit(inMemory == 0));
+                return inMemory;
+            }
+            recordWarmUp(WarmUpQuery.COUNT, policy);
             if (cache != null) {
-                String cacheKey = generateCacheKey("count");
+                long phase = PhaseTimer.start();
                 Long cachedResult = cache.get(cacheKey, Long.class);
+                PhaseTimer.stop(QueryPhase.CACHE_LOOKUP, phase);
                 if (cachedResult != null) {
                     logger.debug("从缓存获取计数结果: cacheKey={}, count={}", cacheKey, cachedResult);
+                    recordCacheStatistics(cache, policy, statistics -> statistics.recordHit(cachedResult == 0));
                     return cachedResult;
                 }
+                recordCacheStatistics(cache, policy, RegionStatistics::recordMiss);
+                tableVersions = TableVersionTracker.snapshot(getReferencedTables());
             }
         }
         
+        QueryCache resultCache = cache;
+        String resultKey = cacheKey;
+        TableVersionTracker.Snapshot resultVersions = tableVersions;
+        return coalesce("count", queryResult -> executeCount(resultCache, resultKey, resultVersions, queryResult));
+    }
+    
+    /**
+     * 执行计数查询，并在启用缓存时存储结果
+     */
+    private long executeCount(QueryCache cache, String cacheKey, TableVersionTracker.Snapshot tableVersions,
+                              QueryResult builtQuery) {
         // 开始性能监控
         String contextId = startPerformanceMonitoring();
+        long loadStart = System.nanoTime();
         
         try {
-            QueryResult queryResult = buildQuery();
+            long phase = PhaseTimer.start();
+            QueryResult queryResult = builtQuery != null ? builtQuery : buildQuery();
+            PhaseTimer.stop(QueryPhase.SQL_BUILD, phase);
 //            System.out.println("-------------------------------------");
 //            System.out.println("count->SQL : "+queryResult.getCountSql());
 //            System.out.println("count->parameters: " + buildContext.getParameters());
@@ -382,23 +577,33 @@ public class StandardQueryBuilder<T> implements QueryBuilder<T> {
             
             long result = sqlExecutor.executeAsLong(queryResult.getCountSql(), queryResult.getParameters());
             
-            // 结束性能监控
-            endPerformanceMonitoring(contextId, true, 1); // count查询结果数量为1
-            
-            // 如果启用了缓存，存储结果到缓存
-            if (QueryBuilderConfigManager.isCacheEnabled()) {
-                QueryCache cache = getQueryCache();
-                if (cache != null) {
-                    String cacheKey = generateCacheKey("count");
-                    cache.put(cacheKey, result, 60000); // 1分钟TTL
+            // 如果启用了缓存，按策略存储结果，为0的计数按negativeTtl缓存
+            if (cache != null) {
+                CachePolicy policy = getEffectiveCachePolicy(CachePolicy.DEFAULT_COUNT_TTL);
+                recordCacheLoad(cache, policy, System.nanoTime() - loadStart, true);
+                boolean negative = result == 0;
+                if (policy.accepts(negative ? 0 : 1)) {
+                    CachePolicy entryPolicy = negative ? policy.forNegativeResult() : policy;
+                    phase = PhaseTimer.start();
+                    cache.put(cacheKey, result, entryPolicy, tableVersions,
+                        entryPolicy.isRefreshAhead() ? countRefresher(queryResult) : null);
+                    PhaseTimer.stop(QueryPhase.CACHE_STORE, phase);
+                    recordCacheStatistics(cache, policy, statistics -> statistics.recordPut(negative));
                     logger.debug("计数结果已缓存: cacheKey={}, count={}", cacheKey, result);
+                } else {
+                    recordCacheStatistics(cache, policy, RegionStatistics::recordRejected);
                 }
             }
             
+            // 结束性能监控，耗时包括缓存存储
+            endPerformanceMonitoring(contextId, true, 1); // count查询结果数量为1
             return result;
         } catch (Exception e) {
             // 记录性能监控错误
             recordPerformanceError(contextId, e);
+            if (cache != null) {
+                recordCacheLoad(cache, getEffectiveCachePolicy(0), System.nanoTime() - loadStart, false);
+            }
             throw e;
         }
     }
@@ -651,6 +856,33 @@ public class StandardQueryBuilder<T> implements QueryBuilder<T> {
         return limitValue > 0;
     }
     
+    public boolean hasGroupBy() {
+        return groupClause != null;
+    }
+    
+    /**
+     * 获取排序信息
+     */
+    public List<OrderInfo> getOrderInfos() {
+        if (orderClause instanceof OrderClauseImpl) {
+            return ((OrderClauseImpl<T>) orderClause).getOrderInfos();
+        }
+        return new ArrayList<>();
+    }
+    
+    /**
+     * 获取SELECT列表中的表达式（聚合函数或显式选择的字段）
+     */
+    public List<String> getSelectExpressions() {
+        if (aggregateClause instanceof AggregateClauseImpl) {
+            return ((AggregateClauseImpl<T>) aggregateClause).getAggregateFunctions();
+        }
+        if (selectClause instanceof SelectClauseImpl) {
+            return new ArrayList<>(((SelectClauseImpl<T>) selectClause).getSelectedFields());
+        }
+        return new ArrayList<>();
+    }
+    
     // ==================== 必要的方法 ====================
     
     @Override
@@ -660,6 +892,37 @@ public class StandardQueryBuilder<T> implements QueryBuilder<T> {
         return this;
     }
     
+    // ==================== 执行提示 ====================
+    
+    @Override
+    public QueryBuilder<T> fetchSize(int fetchSize) {
+        queryHints.setFetchSize(fetchSize);
+        return this;
+    }
+    
+    @Override
+    public QueryBuilder<T> maxRows(int maxRows) {
+        queryHints.setMaxRows(maxRows);
+        return this;
+    }
+    
+    @Override
+    public QueryBuilder<T> readOnly(boolean readOnly) {
+        queryHints.setReadOnly(readOnly);
+        return this;
+    }
+    
+    @Override
+    public QueryBuilder<T> forwardOnly(boolean forwardOnly) {
+        queryHints.setForwardOnly(forwardOnly);
+        return this;
+    }
+    
+    @Override
+    public QueryHints getQueryHints() {
+        return queryHints;
+    }
+    
     // ==================== 子句设置方法 ====================
     
     void setFromClause(FromClause<T> fromClause) {
@@ -781,6 +1044,260 @@ public class StandardQueryBuilder<T> implements QueryBuilder<T> {
         return queryCache;
     }
     
+    @Override
+    public QueryBuilder<T> cachePolicy(CachePolicy cachePolicy) {
+        this.cachePolicy = cachePolicy;
+        return this;
+    }
+    
+    @Override
+    public CachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+    
+    /**
+     * 获取实际使用的缓存策略
+     * 未设置时使用实体@CacheRegion声明的策略，实体未标注时使用指定的默认TTL
+     */
+    private CachePolicy getEffectiveCachePolicy(long defaultTtl) {
+        if (cachePolicy != null) {
+            return cachePolicy;
+        }
+        CacheRegionManager regions = QueryBuilderConfigManager.getCacheRegionManager();
+        CachePolicy entityPolicy = regions != null ? regions.getEntityPolicy(entityClass) : null;
+        return entityPolicy != null ? entityPolicy : CachePolicy.ttl(defaultTtl);
+    }
+    
+    /**
+     * 按策略的区域和查询的实体分别记录缓存统计
+     */
+    private void recordCacheStatistics(QueryCache cache, CachePolicy policy, Consumer<RegionStatistics> recorder) {
+        CacheStatistics statistics = cache.getStatistics();
+        recorder.accept(statistics.getRegionStatistics(policy.getRegion()));
+        if (entityClass != null) {
+            recorder.accept(statistics.getEntityStatistics(entityClass.getName()));
+        }
+    }
+    
+    /**
+     * 记录未命中后执行查询的耗时
+     */
+    private void recordCacheLoad(QueryCache cache, CachePolicy policy, long nanos, boolean success) {
+        cache.getStatistics().recordLoad(nanos, success);
+        recordCacheStatistics(cache, policy, statistics -> statistics.recordLoad(nanos, success));
+    }
+    
+    /**
+     * 创建列表查询的刷新函数
+     * 捕获已生成的SQL、参数和映射器，刷新时直接重新执行，不受构建器之后修改的影响
+     */
+    @SuppressWarnings("unchecked")
+    private Supplier<Object> listRefresher(QueryResult queryResult) {
+        SqlExecutor executor = sqlExecutor;
+        String sql = queryResult.getSql();
+        List<Object> parameters = new ArrayList<>(queryResult.getParameters());
+        QueryHints hints = queryHints.copy();
+        Supplier<List<T>> query;
+        if (customRowMapper != null) {
+            @SuppressWarnings("unchecked")
+            RowMapper<T> typedRowMapper = customRowMapper;
+            @SuppressWarnings("unchecked")
+            Class<T> typedResultType = (Class<T>) customResultType;
+            query = () -> executor.executeQuery(sql, parameters, typedResultType, typedRowMapper, hints);
+        } else {
+            @SuppressWarnings("unchecked")
+            DefaultRowMapper<T> typedDefaultMapper = defaultMapper;
+            query = () -> executor.executeQuery(sql, parameters, entityClass, typedDefaultMapper, hints);
+        }
+        return () -> {
+            List<T> rows = query.get();
+            if (rows == null || rows.isEmpty()) {
+                return null;
+            }
+            ResultSnapshot snapshot = ResultSnapshot.of(rows);
+            return snapshot != null ? snapshot : rows;
+        };
+    }
+    
+    /**
+     * 创建计数查询的刷新函数
+     */
+    private Supplier<Object> countRefresher(QueryResult queryResult) {
+        SqlExecutor executor = sqlExecutor;
+        String countSql = queryResult.getCountSql();
+        List<Object> parameters = new ArrayList<>(queryResult.getParameters());
+        return () -> executor.executeAsLong(countSql, parameters);
+    }
+    
+    /**
+     * 获取当前查询可用的缓存：策略的区域存在时使用区域的缓存，否则使用全局缓存
+     * 事务中有涉及查询表的未提交写入时，结果包含未提交数据，不使用缓存
+     */
+    private QueryCache getUsableQueryCache(CachePolicy policy) {
+        QueryCache cache = getQueryCache();
+        CacheRegionManager regions = QueryBuilderConfigManager.getCacheRegionManager();
+        if (cache != null && regions != null) {
+            cache = regions.resolve(entityClass, policy.getRegion(), cache);
+        }
+        if (cache != null && TableVersionTracker.hasPendingWrites(dataSource, getReferencedTables())) {
+            logger.debug("事务中存在未提交的写入，跳过查询缓存");
+            return null;
+        }
+        return cache;
+    }
+    
+    /**
+     * 在整表快照上执行列表查询，按offset、limit和maxRows截取结果
+     *
+     * @return 查询结果，无法在内存中求值时返回null
+     */
+    private List<T> findInMemory(QueryCache cache, CachePolicy policy) {
+        TableSnapshot table = getInMemoryTable(cache, policy);
+        int[] rows = table != null ? selectInMemory(table) : null;
+        if (rows == null) {
+            return null;
+        }
+        int from = Math.min(offsetValue, rows.length);
+        int to = limitValue > 0 ? (int) Math.min((long) from + limitValue, rows.length) : rows.length;
+        if (queryHints.getMaxRows() > 0) {
+            to = Math.min(to, from + queryHints.getMaxRows());
+        }
+        logger.debug("在整表快照上执行查询: entity={}, matched={}", entityClass.getSimpleName(), rows.length);
+        return table.materialize(Arrays.copyOfRange(rows, from, to));
+    }
+
+    /**
+     * 在整表快照上执行计数查询
+     *
+     * @return 计数结果，无法在内存中求值时返回null
+     */
+    private Long countInMemory(QueryCache cache, CachePolicy policy) {
+        TableSnapshot table = getInMemoryTable(cache, policy);
+        int[] rows = table != null ? selectInMemory(table) : null;
+        return rows != null ? (long) rows.length : null;
+    }
+
+    /**
+     * 获取可以在内存中执行当前查询的整表快照
+     * 只处理实体标注了@CacheRegion(fullTable = true)且使用实体区域的简单单表查询，
+     * 有JOIN、子查询、排序、分组、聚合、指定字段或自定义映射的查询仍由数据库执行
+     */
+    private TableSnapshot getInMemoryTable(QueryCache cache, CachePolicy policy) {
+        return isInMemoryEligible(policy) ? getTableSnapshot(cache, policy) : null;
+    }
+
+    /**
+     * 在整表快照上对WHERE条件求值
+     *
+     * @return 满足条件的行号，条件无法在内存中求值时返回null
+     */
+    private int[] selectInMemory(TableSnapshot table) {
+        CacheRegionManager regions = QueryBuilderConfigManager.getCacheRegionManager();
+        InMemoryPredicate predicate = InMemoryPredicate.compile(
+            whereClause != null ? ((WhereClauseImpl<T>) whereClause).getConditions() : null, table,
+            regions != null && regions.isCaseSensitiveFullTable(entityClass));
+        return predicate != null ? predicate.select(table) : null;
+    }
+
+    private boolean isInMemoryEligible(CachePolicy policy) {
+        CacheRegionManager regions = QueryBuilderConfigManager.getCacheRegionManager();
+        CachePolicy entityPolicy = regions != null ? regions.getEntityPolicy(entityClass) : null;
+        if (entityPolicy == null || regions.getFullTableIndexes(entityClass) == null
+                || !entityPolicy.getRegion().equals(policy.getRegion())) {
+            return false;
+        }
+        // 跨分片等包装执行器绑定了原查询构建器，不能用来装载整表
+        if (!(sqlExecutor instanceof SimpleSqlExecutor)) {
+            return false;
+        }
+        if (customRowMapper != null || subquery != null || !joinClauses.isEmpty()
+                || aggregateClause != null || windowClause != null || expressionClause != null
+                || caseWhenClause != null || groupClause != null || havingClause != null || orderClause != null) {
+            return false;
+        }
+        if (selectClause != null && !(selectClause instanceof SelectClauseImpl
+                && ((SelectClauseImpl<T>) selectClause).getSelectedFields().isEmpty())) {
+            return false;
+        }
+        if (whereClause != null && !(whereClause instanceof WhereClauseImpl)) {
+            return false;
+        }
+        Set<String> tables = getReferencedTables();
+        return tables.size() == 1 && tables.iterator().next().equalsIgnoreCase(EntityUtils.getTableName(entityClass));
+    }
+
+    /**
+     * 获取实体的整表快照，不存在时查询整张表并按实体区域的TTL缓存
+     * 表被修改后快照随表版本失效；并发装载时只查询一次
+     */
+    private TableSnapshot getTableSnapshot(QueryCache cache, CachePolicy policy) {
+        String tableKey = scoped("querybuilder:table:" + entityClass.getName());
+        TableSnapshot cached = cache.get(tableKey, TableSnapshot.class);
+        if (cached != null) {
+            return cached;
+        }
+        CacheRegionManager regions = QueryBuilderConfigManager.getCacheRegionManager();
+        List<String> indexes = regions.getFullTableIndexes(entityClass);
+        Set<String> tables = getReferencedTables();
+        Supplier<TableSnapshot> loader = () -> {
+            TableVersionTracker.Snapshot versions = TableVersionTracker.snapshot(tables);
+            long loadStart = System.nanoTime();
+            try {
+                StandardQueryBuilder<T> all = new StandardQueryBuilder<>(entityClass, dataSource);
+                all.setSqlExecutor(sqlExecutor);
+                all.setCacheScope(cacheScope);
+                all.cachePolicy(CachePolicy.disabled());
+                TableSnapshot table = TableSnapshot.of(all.findList(), indexes);
+                recordCacheLoad(cache, policy, System.nanoTime() - loadStart, true);
+                if (table == null) {
+                    regions.disableFullTable(entityClass);
+                    return null;
+                }
+                cache.put(tableKey, table, CachePolicy.ttl(policy.getHardTtl()).withRegion(policy.getRegion()),
+                    versions, null);
+                logger.debug("整表快照已缓存: {}", table);
+                return table;
+            } catch (RuntimeException e) {
+                recordCacheLoad(cache, policy, System.nanoTime() - loadStart, false);
+                throw e;
+            }
+        };
+        SingleFlight singleFlight = QueryBuilderConfigManager.getSingleFlight();
+        if (singleFlight == null || (dataSource != null && ConnectionContext.isBound(dataSource))) {
+            return loader.get();
+        }
+        return singleFlight.execute(Arrays.asList(dataSource, cacheScope, "table", entityClass), tables, loader);
+    }
+
+    /**
+     * 合并相同查询的并发执行
+     * 事务中的查询可能读到未提交的数据或依赖事务的隔离视图，不与其他线程合并
+     * 
+     * @param operation 操作类型
+     * @param loader 实际执行查询的函数，参数为已构建的查询，未启用合并时为null
+     * @return 查询结果
+     */
+    private <V> V coalesce(String operation, Function<QueryResult, V> loader) {
+        SingleFlight singleFlight = QueryBuilderConfigManager.getSingleFlight();
+        if (singleFlight == null || (dataSource != null && ConnectionContext.isBound(dataSource))) {
+            return loader.apply(null);
+        }
+        long phase = PhaseTimer.start();
+        QueryResult queryResult = buildQuery();
+        PhaseTimer.stop(QueryPhase.SQL_BUILD, phase);
+        // 无法确定依赖的表时，无法判断其他线程的结果是否包含本线程已提交的写入
+        Set<String> tables = getReferencedTables();
+        if (tables.isEmpty()) {
+            return loader.apply(queryResult);
+        }
+        // 按完整SQL和参数区分，避免哈希冲突时共享错误的结果
+        List<Object> key = Arrays.asList(dataSource, cacheScope, operation,
+            customRowMapper != null ? customRowMapper : entityClass,
+            "count".equals(operation) ? queryResult.getCountSql() : queryResult.getSql(),
+            new ArrayList<>(queryResult.getParameters()), queryHints.getMaxRows());
+        return singleFlight.execute(key, tables, () -> loader.apply(queryResult));
+    }
+    
     @Override
     public QueryBuilder setRowMapper(RowMapper rowMapper) {
         this.customRowMapper = rowMapper;
@@ -804,19 +1321,64 @@ public class StandardQueryBuilder<T> implements QueryBuilder<T> {
      * @return 缓存键
      */
     private String generateCacheKey(String operation) {
-        StringBuilder keyBuilder = new StringBuilder();
-        keyBuilder.append("querybuilder:").append(entityClass.getSimpleName().toLowerCase());
-        keyBuilder.append(":").append(operation);
-        keyBuilder.append(":").append(getGeneratedSql().hashCode());
-        
-        // 添加参数哈希
-        if (buildContext.getParameters() != null && !buildContext.getParameters().isEmpty()) {
-            keyBuilder.append(":").append(buildContext.getParameters().hashCode());
+        long phase = PhaseTimer.start();
+        String sql = getGeneratedSql();
+        PhaseTimer.stop(QueryPhase.SQL_BUILD, phase);
+        return scoped(WarmUpQuery.cacheKey(entityClass, operation, sql, buildContext.getParameters(),
+            queryHints.getMaxRows()));
+    }
+    
+    private String scoped(String key) {
+        return cacheScope != null ? key + "@" + cacheScope : key;
+    }
+    
+    /**
+     * 记录缓存查询供下次启动时预热
+     * 自定义映射器和多表查询的结果映射无法只凭SQL重建，分片查询无法在单个数据源上重放，不记录
+     * 
+     * @param operation 操作类型
+     * @param policy 缓存策略
+     */
+    private void recordWarmUp(String operation, CachePolicy policy) {
+        CacheWarmUp warmUp = QueryBuilderConfigManager.getCacheWarmUp();
+        if (warmUp == null || customRowMapper != null || subquery != null || cacheScope != null) {
+            return;
+        }
+        try {
+            QueryResult queryResult = buildQuery();
+            Set<String> tables = getReferencedTables();
+            if (tables.size() != 1) {
+                return;
+            }
+            warmUp.record(new WarmUpQuery(entityClass, operation, queryResult.getSql(),
+                WarmUpQuery.COUNT.equals(operation) ? queryResult.getCountSql() : null,
+                queryResult.getParameters(), queryHints.getMaxRows(), tables, policy));
+        } catch (Exception e) {
+            logger.debug("记录预热查询失败: {}", e.getMessage());
         }
-        
-        return keyBuilder.toString();
     }
 
+    /**
+     * 启用性能监控时在当前线程开始分阶段计时，监控记录查询时读取各阶段的耗时
+     * 
+     * @return 计时器，未启用时返回null
+     */
+    private PhaseTimer beginPhaseTiming() {
+        QueryPerformanceMonitor monitor = QueryBuilderConfigManager.getPerformanceMonitor();
+        return monitor != null && monitor.isEnabled() ? PhaseTimer.begin() : null;
+    }
+    
+    /**
+     * 结束分阶段计时
+     * 
+     * @param timer beginPhaseTiming返回的计时器
+     */
+    private void endPhaseTiming(PhaseTimer timer) {
+        if (timer != null) {
+            timer.end();
+        }
+    }
+    
     /**
      * 开始性能监控
      * 
@@ -1,7 +1,9 @@
 package com.kishultan.persistence.orm.query.impl;
 
+import com.kishultan.persistence.datasource.ConnectionContext;
 import com.kishultan.persistence.orm.query.DefaultRowMapper;
 import com.kishultan.persistence.orm.query.QueryBuilder;
+import com.kishultan.persistence.orm.query.QueryHints;
 import com.kishultan.persistence.orm.query.SqlExecutor;
 import com.kishultan.persistence.orm.query.context.QueryResult;
 
@@ -30,6 +32,7 @@ public class StreamingQuerySpliterator<T> implements Spliterator<T> {
     private final int batchSize;
     
     private Connection connection;
+    private QueryHintsSupport.Streaming streaming;
     private PreparedStatement statement;
     private ResultSet resultSet;
     private List<T> currentBatch;
@@ -65,17 +68,23 @@ public class StreamingQuerySpliterator<T> implements Spliterator<T> {
      */
     private void initializeQuery() {
         try {
-            // 获取数据库连接
-            connection = dataSource.getConnection();
+            // 获取数据库连接，事务中复用事务连接
+            connection = ConnectionContext.getReadConnection(dataSource);
             
             // 构建查询SQL
             QueryResult queryResult = ((StandardQueryBuilder<T>) queryBuilder).buildQuery();
             String sql = queryResult.getSql();
             List<Object> parameters = queryResult.getParameters();
             
-            // 创建预编译语句
-            statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
-            statement.setFetchSize(batchSize);
+            // 创建预编译语句：以批次大小作为默认fetchSize，并按方言开启流式读取
+            QueryHints hints = queryBuilder.getQueryHints() != null ? queryBuilder.getQueryHints().copy() : new QueryHints();
+            hints.setForwardOnly(true);
+            hints.setReadOnly(true);
+            if (hints.getFetchSize() == 0) {
+                hints.setFetchSize(batchSize);
+            }
+            streaming = QueryHintsSupport.beginStreaming(connection, hints);
+            statement = QueryHintsSupport.prepareStatement(connection, sql, hints, streaming);
             
             // 设置参数
             for (int i = 0; i < parameters.size(); i++) {
@@ -192,6 +201,7 @@ public class StreamingQuerySpliterator<T> implements Spliterator<T> {
                 statement.close();
             }
             if (connection != null) {
+                QueryHintsSupport.endStreaming(connection, streaming);
                 connection.close();
             }
         } catch (SQLException e) {
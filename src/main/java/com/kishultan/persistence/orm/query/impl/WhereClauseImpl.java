@@ -564,6 +564,7 @@ public class WhereClauseImpl<T> extends AbstractClause<T> implements WhereClause
                             (StandardQueryBuilder<?>) subQuery;
                         com.kishultan.persistence.orm.query.context.QueryResult subQueryResult = subQueryImpl.buildQuery();
                         parameters.addAll(subQueryResult.getParameters());
+                        includeSubqueryTables(subQueryImpl);
                     }
                 } else if (value instanceof Object[]) {
                     // 处理数组值
@@ -612,6 +613,7 @@ public class WhereClauseImpl<T> extends AbstractClause<T> implements WhereClause
                                 (StandardQueryBuilder<?>) subQuery;
                             com.kishultan.persistence.orm.query.context.QueryResult subQueryResult = subQueryImpl.buildQuery();
                             parameters.addAll(subQueryResult.getParameters());
+                            includeSubqueryTables(subQueryImpl);
                         }
                         break; // 只处理第一个QueryBuilder
                     }
@@ -642,7 +644,14 @@ public class WhereClauseImpl<T> extends AbstractClause<T> implements WhereClause
     public String getClauseSql() {
         return buildClause().getSql();
     }
-    
+
+    /**
+     * 获取条件和分组标记，用于在整表快照上求值
+     */
+    List<Object> getConditions() {
+        return conditions;
+    }
+
     // ==================== 内部方法 ====================
     
     /**
@@ -687,6 +696,15 @@ public class WhereClauseImpl<T> extends AbstractClause<T> implements WhereClause
     }
     
     // 注意：getMainTableAlias 方法现在在父类 AbstractClause 中定义
+    
+    /**
+     * 把子查询读取的表记录到外层查询，用于缓存失效
+     */
+    private void includeSubqueryTables(StandardQueryBuilder<?> subQuery) {
+        if (queryBuilder instanceof StandardQueryBuilder) {
+            ((StandardQueryBuilder<T>) queryBuilder).getAliasRegistry().addReferencedTables(subQuery.getReferencedTables());
+        }
+    }
 
     /**
      * 判断字符串是否是SQL子查询
@@ -0,0 +1,272 @@
+package com.kishultan.persistence.orm.query.monitor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 查询耗时直方图
+ *
+ * 按纳秒记录，采用对数-线性分桶（与HdrHistogram相同）：精度为p时，2^(p+1)纳秒以内每个值一个桶，
+ * 之后每个2的幂区间再线性分为2^p个子桶，任意值的相对误差不超过1/2^p。默认精度为6（约1.6%，约18KB），
+ * 按时间段保存大量直方图时可以使用较低的精度。
+ * 最大记录约18分钟（2^40纳秒），更长的耗时计入最后一个桶。桶数固定，内存占用与记录次数无关。
+ * 计数使用原子数组，并发记录不加锁；copy得到某一时刻的副本，intervalSince得到两个副本之间的增量，
+ * 多个直方图可以用add合并。
+ *
+ * @author Portal Team
+ */
+public class LatencyHistogram {
+
+    /** 默认精度，相对误差不超过1/64 */
+    public static final int DEFAULT_PRECISION = 6;
+    /** 可以区分的最大耗时（纳秒） */
+    public static final long MAX_TRACKABLE_NANOS = (1L << 40) - 1;
+
+    /** 每个2的幂区间的子桶数为2^precision */
+    private final int precision;
+    private final int subBucketHalfCount;
+    private final long subBucketMask;
+    private final int length;
+    private final AtomicLongArray counts;
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong minNanos = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param precision 精度（1-10），相对误差不超过1/2^precision
+     */
+    public LatencyHistogram(int precision) {
+        if (precision < 1 || precision > 10) {
+            throw new IllegalArgumentException("直方图精度必须在1到10之间: " + precision);
+        }
+        this.precision = precision;
+        this.subBucketHalfCount = 1 << precision;
+        this.subBucketMask = (subBucketHalfCount << 1) - 1;
+        int bucketCount = 64 - Long.numberOfLeadingZeros(MAX_TRACKABLE_NANOS) - precision;
+        this.length = (bucketCount + 1) << precision;
+        this.counts = new AtomicLongArray(length);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * 记录一次执行
+     *
+     * @param nanos 执行耗时（纳秒），负数按0记录
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalNanos.add(value);
+        long min;
+        while (value < (min = minNanos.get()) && !minNanos.compareAndSet(min, value)) {
+            // 重试
+        }
+        long max;
+        while (value > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, value)) {
+            // 重试
+        }
+    }
+
+    private int indexOf(long value) {
+        long clamped = Math.min(value, MAX_TRACKABLE_NANOS);
+        int bucket = 64 - Long.numberOfLeadingZeros(clamped | subBucketMask) - (precision + 1);
+        int subBucket = (int) (clamped >>> bucket);
+        return ((bucket + 1) << precision) + (subBucket - subBucketHalfCount);
+    }
+
+    /**
+     * 获取桶内的最小值
+     */
+    private long lowestValueAt(int index) {
+        int bucket = (index >> precision) - 1;
+        int subBucket = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+        if (bucket < 0) {
+            subBucket -= subBucketHalfCount;
+            bucket = 0;
+        }
+        return (long) subBucket << bucket;
+    }
+
+    /**
+     * 获取桶内的最大值
+     */
+    private long highestValueAt(int index) {
+        return index + 1 < length ? lowestValueAt(index + 1) - 1 : MAX_TRACKABLE_NANOS;
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMinNanos() {
+        long min = minNanos.get();
+        return min == Long.MAX_VALUE ? 0 : min;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        long count = getCount();
+        return count > 0 ? (double) getTotalNanos() / count : 0.0;
+    }
+
+    /**
+     * 获取百分位耗时
+     *
+     * @param percentile 百分位（0-100），如99.9
+     * @return 百分位所在桶的最大值（纳秒），不超过记录的最大值；没有记录时返回0
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = snapshotCounts();
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                long max = getMaxNanos();
+                long value = highestValueAt(i);
+                return max > 0 ? Math.min(value, max) : value;
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * 获取百分位耗时（毫秒）
+     *
+     * @param percentile 百分位（0-100）
+     */
+    public double getPercentileMillis(double percentile) {
+        return (double) getValueAtPercentile(percentile) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * 获取耗时不小于阈值的执行次数
+     * 阈值所在的桶整体计入，误差不超过该桶的宽度
+     *
+     * @param thresholdNanos 阈值（纳秒）
+     */
+    public long getCountAtOrAbove(long thresholdNanos) {
+        long count = 0;
+        for (int i = indexOf(Math.max(0, thresholdNanos)); i < length; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * 合并另一个直方图的记录
+     *
+     * @param other 精度相同的直方图
+     */
+    public void add(LatencyHistogram other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("只能合并精度相同的直方图: " + other.precision + " != " + precision);
+        }
+        for (int i = 0; i < length; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.add(other.getCount());
+        totalNanos.add(other.getTotalNanos());
+        if (other.getCount() > 0) {
+            minNanos.accumulateAndGet(other.getMinNanos(), Math::min);
+            maxNanos.accumulateAndGet(other.getMaxNanos(), Math::max);
+        }
+    }
+
+    /**
+     * 创建当前记录的副本
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram(precision);
+        copy.add(this);
+        return copy;
+    }
+
+    /**
+     * 计算从earlier副本到当前的增量，用于按时间段统计
+     * 增量的最小值和最大值按桶的边界估算
+     *
+     * @param earlier 之前通过copy得到的副本
+     * @return 这段时间内的记录
+     */
+    public LatencyHistogram intervalSince(LatencyHistogram earlier) {
+        if (earlier != null && earlier.precision != precision) {
+            throw new IllegalArgumentException("只能比较精度相同的直方图: " + earlier.precision + " != " + precision);
+        }
+        LatencyHistogram interval = new LatencyHistogram(precision);
+        long count = 0;
+        int lowest = -1;
+        int highest = -1;
+        for (int i = 0; i < length; i++) {
+            long delta = counts.get(i) - (earlier != null ? earlier.counts.get(i) : 0);
+            if (delta > 0) {
+                interval.counts.set(i, delta);
+                count += delta;
+                lowest = lowest < 0 ? i : lowest;
+                highest = i;
+            }
+        }
+        interval.totalCount.add(count);
+        interval.totalNanos.add(getTotalNanos() - (earlier != null ? earlier.getTotalNanos() : 0));
+        if (count > 0) {
+            interval.minNanos.set(lowestValueAt(lowest));
+            interval.maxNanos.set(Math.min(highestValueAt(highest), getMaxNanos()));
+        }
+        return interval;
+    }
+
+    private long[] snapshotCounts() {
+        long[] snapshot = new long[length];
+        for (int i = 0; i < length; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    public void reset() {
+        for (int i = 0; i < length; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalNanos.reset();
+        minNanos.set(Long.MAX_VALUE);
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LatencyHistogram{count=%d, p50=%.3fms, p90=%.3fms, p99=%.3fms, p999=%.3fms, max=%.3fms}",
+                getCount(), getPercentileMillis(50), getPercentileMillis(90), getPercentileMillis(99),
+                getPercentileMillis(99.9), (double) getMaxNanos() / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -15,6 +15,7 @@ public class PerformanceConfig {
     public static final int DEFAULT_SAMPLING_RATE = 100; // 100%采样
     public static final int DEFAULT_TREND_WINDOW = 60; // 60分钟
     public static final int DEFAULT_METRICS_RETENTION_HOURS = 24; // 24小时
+    public static final int DEFAULT_MAX_QUERY_STATISTICS = 200;
     
     // 配置属性
     private boolean enabled = DEFAULT_ENABLED;
@@ -23,6 +24,7 @@ public class PerformanceConfig {
     private int samplingRate = DEFAULT_SAMPLING_RATE;
     private int trendWindow = DEFAULT_TREND_WINDOW;
     private int metricsRetentionHours = DEFAULT_METRICS_RETENTION_HOURS;
+    private int maxQueryStatistics = DEFAULT_MAX_QUERY_STATISTICS;
     private boolean enableDetailedLogging = false;
     private boolean enableSlowQueryLogging = true;
     
@@ -93,6 +95,17 @@ public class PerformanceConfig {
         this.metricsRetentionHours = metricsRetentionHours;
     }
     
+    /**
+     * 按查询形态保留统计的最大数量，超出后执行次数少的形态归入other汇总
+     */
+    public int getMaxQueryStatistics() {
+        return maxQueryStatistics;
+    }
+    
+    public void setMaxQueryStatistics(int maxQueryStatistics) {
+        this.maxQueryStatistics = Math.max(1, maxQueryStatistics);
+    }
+    
     public boolean isEnableDetailedLogging() {
         return enableDetailedLogging;
     }
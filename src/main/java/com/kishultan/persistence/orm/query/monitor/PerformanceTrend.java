@@ -16,9 +16,11 @@ public class PerformanceTrend {
     private final long maxExecutionTime;
     private final double successRate;
     private final long totalResultCount;
+    private final long intervalMillis;
+    private final double p99ExecutionTime;
     
     /**
-     * 构造函数
+     * 构造函数，时间窗口为1分钟
      * 
      * @param timestamp 时间戳
      * @param queryCount 查询次数
@@ -30,12 +32,34 @@ public class PerformanceTrend {
     public PerformanceTrend(LocalDateTime timestamp, long queryCount, 
                            double averageExecutionTime, long maxExecutionTime, 
                            double successRate, long totalResultCount) {
+        this(timestamp, queryCount, averageExecutionTime, maxExecutionTime, successRate, totalResultCount,
+            60000, 0.0);
+    }
+    
+    /**
+     * 构造函数
+     * 
+     * @param timestamp 时间段的开始时间
+     * @param queryCount 查询次数
+     * @param averageExecutionTime 平均执行时间（毫秒）
+     * @param maxExecutionTime 最大执行时间（毫秒）
+     * @param successRate 成功率（0-1）
+     * @param totalResultCount 总结果数量
+     * @param intervalMillis 时间段长度（毫秒）
+     * @param p99ExecutionTime 99百分位执行时间（毫秒）
+     */
+    public PerformanceTrend(LocalDateTime timestamp, long queryCount, 
+                           double averageExecutionTime, long maxExecutionTime, 
+                           double successRate, long totalResultCount,
+                           long intervalMillis, double p99ExecutionTime) {
         this.timestamp = timestamp;
         this.queryCount = queryCount;
         this.averageExecutionTime = averageExecutionTime;
         this.maxExecutionTime = maxExecutionTime;
         this.successRate = successRate;
         this.totalResultCount = totalResultCount;
+        this.intervalMillis = intervalMillis;
+        this.p99ExecutionTime = p99ExecutionTime;
     }
     
     // Getter方法
@@ -64,19 +88,26 @@ public class PerformanceTrend {
         return totalResultCount;
     }
     
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+    
+    public double getP99ExecutionTime() {
+        return p99ExecutionTime;
+    }
+    
     /**
      * 获取QPS（每秒查询数）
      * 
      * @return QPS
      */
     public double getQueriesPerSecond() {
-        // 假设时间窗口为1分钟
-        return queryCount / 60.0;
+        return intervalMillis > 0 ? queryCount * 1000.0 / intervalMillis : 0.0;
     }
     
     @Override
     public String toString() {
-        return String.format("PerformanceTrend{timestamp=%s, queryCount=%d, avgTime=%.2fms, maxTime=%dms, successRate=%.2f%%, qps=%.2f}",
-                timestamp, queryCount, averageExecutionTime, maxExecutionTime, successRate * 100, getQueriesPerSecond());
+        return String.format("PerformanceTrend{timestamp=%s, queryCount=%d, avgTime=%.2fms, p99=%.2fms, maxTime=%dms, successRate=%.2f%%, qps=%.2f}",
+                timestamp, queryCount, averageExecutionTime, p99ExecutionTime, maxExecutionTime, successRate * 100, getQueriesPerSecond());
     }
 }
@@ -0,0 +1,135 @@
+package com.kishultan.persistence.orm.query.monitor;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 查询阶段计时器
+ *
+ * 绑定到当前线程，按QueryPhase累计一次查询各阶段的耗时（纳秒）。查询开始时begin，结束时end；
+ * 执行路径上用start和stop包住各阶段，当前线程没有计时器时start不读取时钟，stop直接返回，
+ * 未启用性能监控时几乎没有开销。嵌套查询（如加载全表缓存）使用自己的计时器，结束时各阶段耗时
+ * 计入外层查询。同一阶段可以多次计时，如逐行的读取和映射，耗时累加。
+ *
+ * <pre>
+ * long phase = PhaseTimer.start();
+ * Connection connection = dataSource.getConnection();
+ * PhaseTimer.stop(QueryPhase.CONNECTION_ACQUIRE, phase);
+ * </pre>
+ *
+ * @author Portal Team
+ */
+public final class PhaseTimer {
+
+    /** 当前线程没有计时器时start返回的值 */
+    public static final long INACTIVE = Long.MIN_VALUE;
+
+    private static final QueryPhase[] PHASES = QueryPhase.values();
+    private static final ThreadLocal<PhaseTimer> CURRENT = new ThreadLocal<>();
+
+    private final PhaseTimer parent;
+    private final long startNanos;
+    private final long[] phaseNanos = new long[PHASES.length];
+
+    private PhaseTimer(PhaseTimer parent) {
+        this.parent = parent;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * 在当前线程开始一次查询的计时
+     *
+     * @return 计时器，查询结束时调用end
+     */
+    public static PhaseTimer begin() {
+        PhaseTimer timer = new PhaseTimer(CURRENT.get());
+        CURRENT.set(timer);
+        return timer;
+    }
+
+    /**
+     * 获取当前线程的计时器
+     *
+     * @return 计时器，没有时返回null
+     */
+    public static PhaseTimer current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 开始一个阶段
+     *
+     * @return 开始时间（System.nanoTime），当前线程没有计时器时返回INACTIVE
+     */
+    public static long start() {
+        return CURRENT.get() != null ? System.nanoTime() : INACTIVE;
+    }
+
+    /**
+     * 结束一个阶段，把耗时计入当前线程的计时器
+     *
+     * @param phase 阶段
+     * @param start start返回的开始时间
+     * @return 结束时间，可以作为下一个阶段的开始时间；没有计时器时返回INACTIVE
+     */
+    public static long stop(QueryPhase phase, long start) {
+        if (start == INACTIVE) {
+            return INACTIVE;
+        }
+        PhaseTimer timer = CURRENT.get();
+        if (timer == null) {
+            return INACTIVE;
+        }
+        long now = System.nanoTime();
+        timer.phaseNanos[phase.ordinal()] += now - start;
+        return now;
+    }
+
+    /**
+     * 结束计时，恢复外层查询的计时器并把各阶段耗时计入外层
+     */
+    public void end() {
+        if (CURRENT.get() != this) {
+            return;
+        }
+        if (parent != null) {
+            for (int i = 0; i < phaseNanos.length; i++) {
+                parent.phaseNanos[i] += phaseNanos[i];
+            }
+            CURRENT.set(parent);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * 获取计时开始的时间（System.nanoTime）
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * 获取阶段累计的耗时（纳秒）
+     */
+    public long getPhaseNanos(QueryPhase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * 获取各阶段耗时的副本
+     *
+     * @return 按执行顺序排列的有耗时的阶段（纳秒）
+     */
+    public Map<QueryPhase, Long> getBreakdown() {
+        Map<QueryPhase, Long> breakdown = new EnumMap<>(QueryPhase.class);
+        for (QueryPhase phase : PHASES) {
+            long nanos = phaseNanos[phase.ordinal()];
+            if (nanos > 0) {
+                breakdown.put(phase, nanos);
+            }
+        }
+        return Collections.unmodifiableMap(breakdown);
+    }
+}
@@ -81,7 +81,7 @@ public interface QueryMetrics {
     double getFailureRate();
     
     /**
-     * 获取每秒查询数（QPS）
+     * 获取最近一分钟的每秒查询数（QPS）
      * 
      * @return QPS
      */
@@ -118,13 +118,43 @@ public interface QueryMetrics {
     double getSlowQueryRate(long threshold);
     
     /**
-     * 获取性能趋势数据
+     * 获取百分位执行时间
      * 
-     * @param timeWindow 时间窗口（分钟）
-     * @return 性能趋势数据
+     * @param percentile 百分位（0-100），如50、90、99、99.9
+     * @return 百分位执行时间（毫秒）
+     */
+    double getPercentileExecutionTime(double percentile);
+    
+    /**
+     * 获取全部查询的耗时直方图
+     * 
+     * @return 耗时直方图
+     */
+    LatencyHistogram getLatencyHistogram();
+    
+    /**
+     * 获取上次调用以来的耗时直方图，多个实例的结果可以合并
+     * 
+     * @return 这段时间内的耗时直方图
+     */
+    LatencyHistogram getIntervalHistogram();
+    
+    /**
+     * 获取性能趋势数据，每分钟一个数据点
+     * 
+     * @param timeWindow 时间窗口（分钟），不大于0时使用配置的trendWindow，不超过数据保留时长
+     * @return 按时间升序的性能趋势数据，包括当前未结束的一分钟
      */
     List<PerformanceTrend> getPerformanceTrend(int timeWindow);
     
+    /**
+     * 获取最近的性能趋势数据，每秒一个数据点
+     * 
+     * @param seconds 秒数，最多保留120秒
+     * @return 按时间升序的性能趋势数据，包括当前未结束的一秒
+     */
+    List<PerformanceTrend> getRecentTrend(int seconds);
+    
     /**
      * 重置所有指标
      */
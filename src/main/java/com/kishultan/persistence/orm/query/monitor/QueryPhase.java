@@ -0,0 +1,39 @@
+package com.kishultan.persistence.orm.query.monitor;
+
+/**
+ * 查询执行阶段
+ * 按执行顺序排列，用于PhaseTimer分阶段计时
+ *
+ * @author Portal Team
+ */
+public enum QueryPhase {
+
+    /** 构建SQL和缓存键 */
+    SQL_BUILD("SQL构建"),
+    /** 查找结果缓存 */
+    CACHE_LOOKUP("缓存查找"),
+    /** 获取数据库连接 */
+    CONNECTION_ACQUIRE("获取连接"),
+    /** 预编译语句并设置参数 */
+    STATEMENT_PREPARE("语句准备"),
+    /** 数据库执行查询 */
+    EXECUTE("执行"),
+    /** 从结果集读取行 */
+    FETCH("读取结果"),
+    /** 把行映射为对象 */
+    ROW_MAPPING("行映射"),
+    /** 按主键合并连接查询的结果或合并分片结果 */
+    MERGE("结果合并"),
+    /** 存储结果缓存 */
+    CACHE_STORE("缓存存储");
+
+    private final String description;
+
+    QueryPhase(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -1,10 +1,16 @@
 package com.kishultan.persistence.orm.query.monitor;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 查询统计信息类
- * 记录特定查询的统计信息
+ * 记录特定查询的统计信息，耗时按纳秒记录在LatencyHistogram中，可以获取百分位耗时
+ * 启用分阶段计时时同时累计各QueryPhase的耗时，可以得到每次执行各阶段的平均耗时
  * 
  * @author Portal Team
  */
@@ -12,15 +18,13 @@ public class QueryStatistics {
     
     private final String sqlHash;
     private final String sql;
-    private long executionCount = 0;
-    private long totalExecutionTime = 0;
-    private long maxExecutionTime = 0;
-    private long minExecutionTime = Long.MAX_VALUE;
-    private long successCount = 0;
-    private long failureCount = 0;
-    private long totalResultCount = 0;
-    private LocalDateTime firstExecution;
-    private LocalDateTime lastExecution;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder successCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private final LongAdder totalResultCount = new LongAdder();
+    private final LongAdder[] phaseNanos = newPhaseAdders();
+    private final LocalDateTime firstExecution;
+    private volatile LocalDateTime lastExecution;
     
     /**
      * 构造函数
@@ -35,6 +39,14 @@ public class QueryStatistics {
         this.lastExecution = LocalDateTime.now();
     }
     
+    private static LongAdder[] newPhaseAdders() {
+        LongAdder[] adders = new LongAdder[QueryPhase.values().length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+    
     /**
      * 记录查询执行
      * 
@@ -43,17 +55,54 @@ public class QueryStatistics {
      * @param resultCount 结果数量
      */
     public void recordExecution(long executionTime, boolean success, int resultCount) {
-        this.executionCount++;
-        this.totalExecutionTime += executionTime;
-        this.maxExecutionTime = Math.max(this.maxExecutionTime, executionTime);
-        this.minExecutionTime = Math.min(this.minExecutionTime, executionTime);
-        this.totalResultCount += resultCount;
+        recordExecutionNanos(TimeUnit.MILLISECONDS.toNanos(executionTime), success, resultCount);
+    }
+    
+    /**
+     * 记录查询执行
+     * 
+     * @param executionNanos 执行时间（纳秒）
+     * @param success 是否成功
+     * @param resultCount 结果数量
+     */
+    public void recordExecutionNanos(long executionNanos, boolean success, int resultCount) {
+        histogram.record(executionNanos);
+        totalResultCount.add(resultCount);
         this.lastExecution = LocalDateTime.now();
         
         if (success) {
-            this.successCount++;
+            successCount.increment();
         } else {
-            this.failureCount++;
+            failureCount.increment();
+        }
+    }
+    
+    /**
+     * 累计一次执行的各阶段耗时
+     * 
+     * @param breakdown 各阶段耗时（纳秒）
+     */
+    public void recordPhases(Map<QueryPhase, Long> breakdown) {
+        for (Map.Entry<QueryPhase, Long> entry : breakdown.entrySet()) {
+            phaseNanos[entry.getKey().ordinal()].add(entry.getValue());
+        }
+    }
+    
+    /**
+     * 合并另一个统计的记录，用于把淘汰的查询归入汇总统计
+     * 
+     * @param other 要合并的统计
+     */
+    public void add(QueryStatistics other) {
+        histogram.add(other.histogram);
+        successCount.add(other.getSuccessCount());
+        failureCount.add(other.getFailureCount());
+        totalResultCount.add(other.getTotalResultCount());
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i].add(other.phaseNanos[i].sum());
+        }
+        if (other.lastExecution.isAfter(lastExecution)) {
+            this.lastExecution = other.lastExecution;
         }
     }
     
@@ -68,31 +117,38 @@ public class QueryStatistics {
     }
     
     public long getExecutionCount() {
-        return executionCount;
+        return histogram.getCount();
     }
     
     public long getTotalExecutionTime() {
-        return totalExecutionTime;
+        return TimeUnit.NANOSECONDS.toMillis(histogram.getTotalNanos());
     }
     
     public long getMaxExecutionTime() {
-        return maxExecutionTime;
+        return TimeUnit.NANOSECONDS.toMillis(histogram.getMaxNanos());
     }
     
     public long getMinExecutionTime() {
-        return minExecutionTime == Long.MAX_VALUE ? 0 : minExecutionTime;
+        return TimeUnit.NANOSECONDS.toMillis(histogram.getMinNanos());
     }
     
     public long getSuccessCount() {
-        return successCount;
+        return successCount.sum();
     }
     
     public long getFailureCount() {
-        return failureCount;
+        return failureCount.sum();
     }
     
     public long getTotalResultCount() {
-        return totalResultCount;
+        return totalResultCount.sum();
+    }
+    
+    /**
+     * 获取耗时直方图
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return histogram;
     }
     
     public LocalDateTime getFirstExecution() {
@@ -109,7 +165,64 @@ public class QueryStatistics {
      * @return 平均执行时间（毫秒）
      */
     public double getAverageExecutionTime() {
-        return executionCount > 0 ? (double) totalExecutionTime / executionCount : 0.0;
+        return histogram.getMeanNanos() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+    
+    /**
+     * 获取百分位执行时间
+     * 
+     * @param percentile 百分位（0-100），如50、90、99、99.9
+     * @return 百分位执行时间（毫秒）
+     */
+    public double getPercentileExecutionTime(double percentile) {
+        return histogram.getPercentileMillis(percentile);
+    }
+    
+    /**
+     * 获取执行时间不小于阈值的次数
+     * 
+     * @param threshold 阈值（毫秒）
+     * @return 慢查询次数
+     */
+    public long getSlowQueryCount(long threshold) {
+        return histogram.getCountAtOrAbove(TimeUnit.MILLISECONDS.toNanos(threshold));
+    }
+    
+    /**
+     * 获取阶段的累计耗时
+     * 
+     * @param phase 阶段
+     * @return 累计耗时（纳秒）
+     */
+    public long getTotalPhaseNanos(QueryPhase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+    
+    /**
+     * 获取阶段每次执行的平均耗时
+     * 
+     * @param phase 阶段
+     * @return 平均耗时（毫秒）
+     */
+    public double getAveragePhaseTime(QueryPhase phase) {
+        long executionCount = getExecutionCount();
+        return executionCount > 0
+            ? (double) getTotalPhaseNanos(phase) / executionCount / TimeUnit.MILLISECONDS.toNanos(1) : 0.0;
+    }
+    
+    /**
+     * 获取各阶段每次执行的平均耗时
+     * 
+     * @return 按执行顺序排列的有耗时的阶段（毫秒）
+     */
+    public Map<QueryPhase, Double> getPhaseBreakdown() {
+        Map<QueryPhase, Double> breakdown = new EnumMap<>(QueryPhase.class);
+        for (QueryPhase phase : QueryPhase.values()) {
+            if (getTotalPhaseNanos(phase) > 0) {
+                breakdown.put(phase, getAveragePhaseTime(phase));
+            }
+        }
+        return Collections.unmodifiableMap(breakdown);
     }
     
     /**
@@ -118,7 +231,8 @@ public class QueryStatistics {
      * @return 成功率（0-1）
      */
     public double getSuccessRate() {
-        return executionCount > 0 ? (double) successCount / executionCount : 0.0;
+        long executionCount = getExecutionCount();
+        return executionCount > 0 ? (double) getSuccessCount() / executionCount : 0.0;
     }
     
     /**
@@ -127,6 +241,7 @@ public class QueryStatistics {
      * @return 平均结果集大小
      */
     public double getAverageResultSetSize() {
-        return executionCount > 0 ? (double) totalResultCount / executionCount : 0.0;
+        long executionCount = getExecutionCount();
+        return executionCount > 0 ? (double) getTotalResultCount() / executionCount : 0.0;
     }
 }
@@ -1,6 +1,9 @@
 package com.kishultan.persistence.orm.query.monitor;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 慢查询信息类
@@ -16,6 +19,7 @@ public class SlowQueryInfo {
     private final LocalDateTime timestamp;
     private final int resultCount;
     private final String errorMessage;
+    private final Map<QueryPhase, Long> phaseBreakdown;
     
     /**
      * 构造函数
@@ -28,12 +32,28 @@ public class SlowQueryInfo {
      */
     public SlowQueryInfo(String sql, Object[] parameters, long executionTime, 
                         int resultCount, String errorMessage) {
+        this(sql, parameters, executionTime, resultCount, errorMessage, null);
+    }
+    
+    /**
+     * 构造函数
+     * 
+     * @param sql SQL语句
+     * @param parameters 查询参数
+     * @param executionTime 执行时间（毫秒）
+     * @param resultCount 结果数量
+     * @param errorMessage 错误信息（如果有）
+     * @param phaseBreakdown 各阶段耗时（纳秒），没有分阶段计时时为null
+     */
+    public SlowQueryInfo(String sql, Object[] parameters, long executionTime, 
+                        int resultCount, String errorMessage, Map<QueryPhase, Long> phaseBreakdown) {
         this.sql = sql;
         this.parameters = parameters;
         this.executionTime = executionTime;
         this.timestamp = LocalDateTime.now();
         this.resultCount = resultCount;
         this.errorMessage = errorMessage;
+        this.phaseBreakdown = phaseBreakdown != null ? phaseBreakdown : Collections.emptyMap();
     }
     
     // Getter方法
@@ -62,6 +82,15 @@ public class SlowQueryInfo {
         return errorMessage;
     }
     
+    /**
+     * 获取各阶段耗时
+     * 
+     * @return 按执行顺序排列的阶段耗时（纳秒），没有分阶段计时时为空
+     */
+    public Map<QueryPhase, Long> getPhaseBreakdown() {
+        return phaseBreakdown;
+    }
+    
     /**
      * 是否有错误
      * 
@@ -73,7 +102,12 @@ public class SlowQueryInfo {
     
     @Override
     public String toString() {
-        return String.format("SlowQueryInfo{sql='%s', executionTime=%dms, resultCount=%d, timestamp=%s, hasError=%s}",
-                sql, executionTime, resultCount, timestamp, hasError());
+        StringBuilder phases = new StringBuilder();
+        for (Map.Entry<QueryPhase, Long> entry : phaseBreakdown.entrySet()) {
+            phases.append(phases.length() > 0 ? ", " : "").append(entry.getKey())
+                .append('=').append(String.format("%.3fms", (double) entry.getValue() / TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+        return String.format("SlowQueryInfo{sql='%s', executionTime=%dms, resultCount=%d, timestamp=%s, hasError=%s, phases={%s}}",
+                sql, executionTime, resultCount, timestamp, hasError(), phases);
     }
 }
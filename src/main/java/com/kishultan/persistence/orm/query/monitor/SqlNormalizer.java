@@ -0,0 +1,178 @@
+package com.kishultan.persistence.orm.query.monitor;
+
+/**
+ * SQL规范化工具
+ *
+ * 把SQL转换为只保留结构的模板，用于按查询形态聚合统计：
+ * <ul>
+ *   <li>字符串和数值常量替换为?</li>
+ *   <li>IN列表（常量或参数）合并为IN (?)，不同长度的IN列表得到相同的模板</li>
+ *   <li>注释去掉，连续的空白合并为一个空格</li>
+ * </ul>
+ * 标识符（包括双引号和反引号括起的）和关键字保持原样，不改变大小写。
+ *
+ * @author Portal Team
+ */
+public final class SqlNormalizer {
+
+    private SqlNormalizer() {
+    }
+
+    /**
+     * 规范化SQL
+     *
+     * @param sql SQL语句
+     * @return 模板，sql为null时返回空字符串
+     */
+    public static String normalize(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(Math.min(sql.length(), 256));
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i = skipWhitespace(sql, i);
+                appendSpace(out);
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? length : end;
+                appendSpace(out);
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                appendSpace(out);
+            } else if (c == '\'') {
+                i = skipQuoted(sql, i, '\'');
+                out.append('?');
+            } else if (c == '"' || c == '`') {
+                int end = skipQuoted(sql, i, c);
+                out.append(sql, i, end);
+                i = end;
+            } else if (Character.isDigit(c) && !isIdentifierPart(out)) {
+                i = skipNumber(sql, i);
+                out.append('?');
+            } else if (c == '(' && endsWithIn(out)) {
+                int end = skipValueList(sql, i);
+                if (end > 0) {
+                    out.append("(?)");
+                    i = end;
+                } else {
+                    out.append(c);
+                    i++;
+                }
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        int end = out.length();
+        while (end > 0 && out.charAt(end - 1) == ' ') {
+            end--;
+        }
+        out.setLength(end);
+        return out.toString();
+    }
+
+    private static int skipWhitespace(String sql, int i) {
+        while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static void appendSpace(StringBuilder out) {
+        if (out.length() > 0 && out.charAt(out.length() - 1) != ' ') {
+            out.append(' ');
+        }
+    }
+
+    /**
+     * 跳过引号括起的内容，两个连续的引号表示引号本身
+     *
+     * @return 结束引号之后的位置
+     */
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    private static int skipNumber(String sql, int i) {
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '.') {
+                i++;
+            } else if ((c == '+' || c == '-') && (sql.charAt(i - 1) == 'e' || sql.charAt(i - 1) == 'E')) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static boolean isIdentifierPart(StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        char last = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+    }
+
+    private static boolean endsWithIn(StringBuilder out) {
+        int end = out.length();
+        if (end > 0 && out.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end < 2 || Character.toUpperCase(out.charAt(end - 1)) != 'N'
+                || Character.toUpperCase(out.charAt(end - 2)) != 'I') {
+            return false;
+        }
+        return end == 2 || !(Character.isLetterOrDigit(out.charAt(end - 3)) || out.charAt(end - 3) == '_');
+    }
+
+    /**
+     * 跳过只包含参数和常量的括号列表
+     *
+     * @return 右括号之后的位置，括号内有其他内容（如子查询）时返回-1
+     */
+    private static int skipValueList(String sql, int start) {
+        int i = start + 1;
+        boolean expectValue = true;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == ')' && !expectValue) {
+                return i + 1;
+            } else if (c == ',' && !expectValue) {
+                expectValue = true;
+                i++;
+            } else if (expectValue && c == '?') {
+                expectValue = false;
+                i++;
+            } else if (expectValue && c == '\'') {
+                expectValue = false;
+                i = skipQuoted(sql, i, '\'');
+            } else if (expectValue && (Character.isDigit(c) || c == '-' || c == '+')) {
+                expectValue = false;
+                i = skipNumber(sql, i + 1);
+            } else {
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,31 +1,56 @@
 package com.kishultan.persistence.orm.query.monitor.impl;
 
+import com.kishultan.persistence.orm.query.monitor.LatencyHistogram;
+import com.kishultan.persistence.orm.query.monitor.PerformanceConfig;
 import com.kishultan.persistence.orm.query.monitor.QueryMetrics;
 import com.kishultan.persistence.orm.query.monitor.PerformanceTrend;
 
-import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 查询性能指标实现类
- * 提供查询执行的各种性能指标
+ * 提供查询执行的各种性能指标，耗时按纳秒记录在LatencyHistogram中
+ * 同时按秒和按分钟滚动记录，用于QPS和性能趋势；按分钟的数据保留metricsRetentionHours小时
  * 
  * @author Portal Team
  */
 public class QueryMetricsImpl implements QueryMetrics {
     
+    /** 按秒保留的时间段数量 */
+    private static final int SECOND_BUCKETS = 120;
+    /** 计算QPS使用的秒数 */
+    private static final int QPS_WINDOW_SECONDS = 60;
+    
     private final AtomicLong totalQueryCount = new AtomicLong(0);
     private final AtomicLong successQueryCount = new AtomicLong(0);
     private final AtomicLong failedQueryCount = new AtomicLong(0);
-    private final AtomicLong totalExecutionTime = new AtomicLong(0);
     private final AtomicLong totalResultSetSize = new AtomicLong(0);
-    private final AtomicReference<Long> maxExecutionTime = new AtomicReference<>(0L);
-    private final AtomicReference<Long> minExecutionTime = new AtomicReference<>(Long.MAX_VALUE);
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final AtomicReference<LatencyHistogram> lastInterval = new AtomicReference<>();
     private final AtomicReference<Long> lastExecutionTime = new AtomicReference<>(0L);
-    private final AtomicReference<LocalDateTime> startTime = new AtomicReference<>(LocalDateTime.now());
+    private final RollingMetrics secondMetrics;
+    private final RollingMetrics minuteMetrics;
+    private final int trendWindow;
+    private volatile long startMillis = System.currentTimeMillis();
+    
+    public QueryMetricsImpl() {
+        this(PerformanceConfig.createDefault());
+    }
+    
+    /**
+     * 构造函数
+     * 
+     * @param config 性能配置，使用其中的trendWindow和metricsRetentionHours
+     */
+    public QueryMetricsImpl(PerformanceConfig config) {
+        this.secondMetrics = new RollingMetrics(TimeUnit.SECONDS.toMillis(1), SECOND_BUCKETS);
+        this.minuteMetrics = new RollingMetrics(TimeUnit.MINUTES.toMillis(1),
+            Math.max(1, config.getMetricsRetentionHours() * 60));
+        this.trendWindow = config.getTrendWindow();
+    }
     
     /**
      * 记录查询执行
@@ -35,9 +60,23 @@ public class QueryMetricsImpl implements QueryMetrics {
      * @param resultCount 结果数量
      */
     public void recordExecution(long executionTime, boolean success, int resultCount) {
+        recordExecutionNanos(TimeUnit.MILLISECONDS.toNanos(executionTime), success, resultCount);
+    }
+    
+    /**
+     * 记录查询执行
+     * 
+     * @param executionNanos 执行时间（纳秒）
+     * @param success 是否成功
+     * @param resultCount 结果数量
+     */
+    public void recordExecutionNanos(long executionNanos, boolean success, int resultCount) {
         totalQueryCount.incrementAndGet();
-        totalExecutionTime.addAndGet(executionTime);
+        histogram.record(executionNanos);
         totalResultSetSize.addAndGet(resultCount);
+        long now = System.currentTimeMillis();
+        secondMetrics.record(now, executionNanos, success, resultCount);
+        minuteMetrics.record(now, executionNanos, success, resultCount);
         
         if (success) {
             successQueryCount.incrementAndGet();
@@ -45,14 +84,8 @@ public class QueryMetricsImpl implements QueryMetrics {
             failedQueryCount.incrementAndGet();
         }
         
-        // 更新最大执行时间
-        maxExecutionTime.updateAndGet(current -> Math.max(current, executionTime));
-        
-        // 更新最小执行时间
-        minExecutionTime.updateAndGet(current -> Math.min(current, executionTime));
-        
         // 更新最后执行时间
-        lastExecutionTime.set(executionTime);
+        lastExecutionTime.set(TimeUnit.NANOSECONDS.toMillis(executionNanos));
     }
     
     @Override
@@ -72,19 +105,17 @@ public class QueryMetricsImpl implements QueryMetrics {
     
     @Override
     public double getAverageExecutionTime() {
-        long count = totalQueryCount.get();
-        return count > 0 ? (double) totalExecutionTime.get() / count : 0.0;
+        return histogram.getMeanNanos() / TimeUnit.MILLISECONDS.toNanos(1);
     }
     
     @Override
     public long getMaxExecutionTime() {
-        return maxExecutionTime.get();
+        return TimeUnit.NANOSECONDS.toMillis(histogram.getMaxNanos());
     }
     
     @Override
     public long getMinExecutionTime() {
-        long min = minExecutionTime.get();
-        return min == Long.MAX_VALUE ? 0 : min;
+        return TimeUnit.NANOSECONDS.toMillis(histogram.getMinNanos());
     }
     
     @Override
@@ -94,7 +125,7 @@ public class QueryMetricsImpl implements QueryMetrics {
     
     @Override
     public long getTotalExecutionTime() {
-        return totalExecutionTime.get();
+        return TimeUnit.NANOSECONDS.toMillis(histogram.getTotalNanos());
     }
     
     @Override
@@ -111,8 +142,10 @@ public class QueryMetricsImpl implements QueryMetrics {
     
     @Override
     public double getQueriesPerSecond() {
-        long runningTimeSeconds = java.time.Duration.between(startTime.get(), LocalDateTime.now()).getSeconds();
-        return runningTimeSeconds > 0 ? (double) totalQueryCount.get() / runningTimeSeconds : 0.0;
+        // 最近60个完整的秒，运行不足60秒时按实际运行时间计算
+        long now = System.currentTimeMillis();
+        long seconds = Math.min(QPS_WINDOW_SECONDS, (now - startMillis) / 1000);
+        return seconds > 0 ? (double) secondMetrics.getCount(now - 1000, (int) seconds) / seconds : 0.0;
     }
     
     @Override
@@ -128,9 +161,7 @@ public class QueryMetricsImpl implements QueryMetrics {
     
     @Override
     public long getSlowQueryCount(long threshold) {
-        // 这里简化实现，实际应该记录每个查询的执行时间
-        // 在真实实现中，需要维护一个执行时间列表
-        return 0;
+        return histogram.getCountAtOrAbove(TimeUnit.MILLISECONDS.toNanos(threshold));
     }
     
     @Override
@@ -139,23 +170,33 @@ public class QueryMetricsImpl implements QueryMetrics {
         return total > 0 ? (double) getSlowQueryCount(threshold) / total : 0.0;
     }
     
+    @Override
+    public double getPercentileExecutionTime(double percentile) {
+        return histogram.getPercentileMillis(percentile);
+    }
+    
+    @Override
+    public LatencyHistogram getLatencyHistogram() {
+        return histogram;
+    }
+    
+    @Override
+    public synchronized LatencyHistogram getIntervalHistogram() {
+        LatencyHistogram current = histogram.copy();
+        LatencyHistogram interval = current.intervalSince(lastInterval.get());
+        lastInterval.set(current);
+        return interval;
+    }
+    
     @Override
     public List<PerformanceTrend> getPerformanceTrend(int timeWindow) {
-        // 这里简化实现，实际应该按时间窗口记录性能数据
-        List<PerformanceTrend> trends = new ArrayList<>();
-        
-        // 创建当前时间窗口的趋势数据
-        PerformanceTrend currentTrend = new PerformanceTrend(
-            LocalDateTime.now(),
-            totalQueryCount.get(),
-            getAverageExecutionTime(),
-            getMaxExecutionTime(),
-            getSuccessRate(),
-            totalResultSetSize.get()
-        );
-        trends.add(currentTrend);
-        
-        return trends;
+        int minutes = timeWindow > 0 ? timeWindow : trendWindow;
+        return minuteMetrics.getTrend(System.currentTimeMillis(), minutes);
+    }
+    
+    @Override
+    public List<PerformanceTrend> getRecentTrend(int seconds) {
+        return secondMetrics.getTrend(System.currentTimeMillis(), seconds);
     }
     
     @Override
@@ -163,11 +204,12 @@ public class QueryMetricsImpl implements QueryMetrics {
         totalQueryCount.set(0);
         successQueryCount.set(0);
         failedQueryCount.set(0);
-        totalExecutionTime.set(0);
         totalResultSetSize.set(0);
-        maxExecutionTime.set(0L);
-        minExecutionTime.set(Long.MAX_VALUE);
+        histogram.reset();
+        lastInterval.set(null);
         lastExecutionTime.set(0L);
-        startTime.set(LocalDateTime.now());
+        secondMetrics.reset();
+        minuteMetrics.reset();
+        startMillis = System.currentTimeMillis();
     }
 }
@@ -6,12 +6,16 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
  * 查询性能监控实现类
  * 提供查询执行性能监控和统计功能
+ * 查询统计按规范化后的SQL模板聚合，保留执行次数最多的maxQueryStatistics个形态
+ * 查询在PhaseTimer中计时时，耗时从计时开始算起，各阶段耗时计入查询统计和慢查询记录
  * 
  * @author Portal Team
  */
@@ -21,7 +25,7 @@ public class QueryPerformanceMonitorImpl implements QueryPerformanceMonitor {
     
     private final PerformanceConfig config;
     private final QueryMetricsImpl metrics;
-    private final Map<String, QueryStatistics> queryStatisticsMap = new ConcurrentHashMap<>();
+    private final TopQueryStatistics queryStatistics;
     private final List<SlowQueryInfo> slowQueries = Collections.synchronizedList(new ArrayList<>());
     private final Map<String, MonitoringContext> activeContexts = new ConcurrentHashMap<>();
     private final AtomicLong contextIdGenerator = new AtomicLong(0);
@@ -33,7 +37,8 @@ public class QueryPerformanceMonitorImpl implements QueryPerformanceMonitor {
      */
     public QueryPerformanceMonitorImpl(PerformanceConfig config) {
         this.config = config;
-        this.metrics = new QueryMetricsImpl();
+        this.metrics = new QueryMetricsImpl(config);
+        this.queryStatistics = new TopQueryStatistics(config.getMaxQueryStatistics());
     }
     
     @Override
@@ -48,7 +53,9 @@ public class QueryPerformanceMonitorImpl implements QueryPerformanceMonitor {
         }
         
         String contextId = String.valueOf(contextIdGenerator.incrementAndGet());
-        MonitoringContext context = new MonitoringContext(contextId, sql, parameters);
+        PhaseTimer timer = PhaseTimer.current();
+        MonitoringContext context = new MonitoringContext(contextId, sql, parameters,
+            timer != null ? timer.getStartNanos() : System.nanoTime());
         activeContexts.put(contextId, context);
         
         if (config.isEnableDetailedLogging()) {
@@ -69,16 +76,18 @@ public class QueryPerformanceMonitorImpl implements QueryPerformanceMonitor {
             return;
         }
         
-        long executionTime = System.currentTimeMillis() - context.getStartTime();
+        long executionNanos = System.nanoTime() - context.getStartTime();
+        long executionTime = TimeUnit.NANOSECONDS.toMillis(executionNanos);
         
         // 更新指标
-        metrics.recordExecution(executionTime, success, resultCount);
+        metrics.recordExecutionNanos(executionNanos, success, resultCount);
         
         // 更新查询统计
-        String sqlHash = generateSqlHash(context.getSql());
-        QueryStatistics stats = queryStatisticsMap.computeIfAbsent(sqlHash, 
-            k -> new QueryStatistics(sqlHash, context.getSql()));
-        stats.recordExecution(executionTime, success, resultCount);
+        Map<QueryPhase, Long> phases = getPhaseBreakdown();
+        recordStatistics(context.getSql(), statistics -> {
+            statistics.recordExecutionNanos(executionNanos, success, resultCount);
+            statistics.recordPhases(phases);
+        });
         
         // 检查慢查询
         if (executionTime >= config.getSlowQueryThreshold()) {
@@ -87,7 +96,8 @@ public class QueryPerformanceMonitorImpl implements QueryPerformanceMonitor {
                 context.getParameters(), 
                 executionTime, 
                 resultCount, 
-                null
+                null,
+                phases
             );
             slowQueries.add(slowQuery);
             
@@ -118,16 +128,18 @@ public class QueryPerformanceMonitorImpl implements QueryPerformanceMonitor {
             return;
         }
         
-        long executionTime = System.currentTimeMillis() - context.getStartTime();
+        long executionNanos = System.nanoTime() - context.getStartTime();
+        long executionTime = TimeUnit.NANOSECONDS.toMillis(executionNanos);
         
         // 更新指标
-        metrics.recordExecution(executionTime, false, 0);
+        metrics.recordExecutionNanos(executionNanos, false, 0);
         
         // 更新查询统计
-        String sqlHash = generateSqlHash(context.getSql());
-        QueryStatistics stats = queryStatisticsMap.computeIfAbsent(sqlHash, 
-            k -> new QueryStatistics(sqlHash, context.getSql()));
-        stats.recordExecution(executionTime, false, 0);
+        Map<QueryPhase, Long> phases = getPhaseBreakdown();
+        recordStatistics(context.getSql(), statistics -> {
+            statistics.recordExecutionNanos(executionNanos, false, 0);
+            statistics.recordPhases(phases);
+        });
         
         // 记录错误慢查询
         if (executionTime >= config.getSlowQueryThreshold()) {
@@ -136,7 +148,8 @@ public class QueryPerformanceMonitorImpl implements QueryPerformanceMonitor {
                 context.getParameters(), 
                 executionTime, 
                 0, 
-                error.getMessage()
+                error.getMessage(),
+                phases
             );
             slowQueries.add(slowQuery);
             
@@ -164,13 +177,13 @@ public class QueryPerformanceMonitorImpl implements QueryPerformanceMonitor {
     
     @Override
     public Map<String, QueryStatistics> getQueryStatistics() {
-        return new HashMap<>(queryStatisticsMap);
+        return queryStatistics.snapshot();
     }
     
     @Override
     public void clearMetrics() {
         metrics.reset();
-        queryStatisticsMap.clear();
+        queryStatistics.clear();
         slowQueries.clear();
         activeContexts.clear();
     }
@@ -185,6 +198,27 @@ public class QueryPerformanceMonitorImpl implements QueryPerformanceMonitor {
         config.setEnabled(enabled);
     }
     
+    /**
+     * 记录到SQL所属查询形态的统计
+     * 
+     * @param sql SQL语句
+     * @param recorder 记录本次执行
+     */
+    private void recordStatistics(String sql, Consumer<QueryStatistics> recorder) {
+        String template = SqlNormalizer.normalize(sql);
+        queryStatistics.record(generateSqlHash(template), template, recorder);
+    }
+    
+    /**
+     * 获取当前线程查询到目前为止的各阶段耗时
+     * 
+     * @return 各阶段耗时（纳秒），没有分阶段计时时为空
+     */
+    private Map<QueryPhase, Long> getPhaseBreakdown() {
+        PhaseTimer timer = PhaseTimer.current();
+        return timer != null ? timer.getBreakdown() : Collections.emptyMap();
+    }
+    
     /**
      * 生成SQL哈希值
      * 
@@ -202,13 +236,14 @@ public class QueryPerformanceMonitorImpl implements QueryPerformanceMonitor {
         private final String contextId;
         private final String sql;
         private final Object[] parameters;
+        /** 开始时间（System.nanoTime） */
         private final long startTime;
         
-        public MonitoringContext(String contextId, String sql, Object[] parameters) {
+        public MonitoringContext(String contextId, String sql, Object[] parameters, long startTime) {
             this.contextId = contextId;
             this.sql = sql;
             this.parameters = parameters;
-            this.startTime = System.currentTimeMillis();
+            this.startTime = startTime;
         }
         
         public String getContextId() {
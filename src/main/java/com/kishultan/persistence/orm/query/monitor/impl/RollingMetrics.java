@@ -0,0 +1,161 @@
+package com.kishultan.persistence.orm.query.monitor.impl;
+
+import com.kishultan.persistence.orm.query.monitor.LatencyHistogram;
+import com.kishultan.persistence.orm.query.monitor.PerformanceTrend;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按时间段滚动的查询指标
+ *
+ * 环形数组保存最近capacity个时间段，每个时间段记录查询次数、失败次数、结果行数和耗时直方图。
+ * 进入新的时间段时用新的桶替换环上最旧的桶（CAS），超过保留时长的数据自动淘汰，内存占用固定。
+ * 记录不加锁；替换瞬间仍在写旧桶的少量记录会丢失，对趋势数据没有影响。
+ *
+ * @author Portal Team
+ */
+public class RollingMetrics {
+
+    /** 每个时间段直方图的精度，相对误差不超过1/8 */
+    private static final int HISTOGRAM_PRECISION = 3;
+
+    private final long intervalMillis;
+    private final int capacity;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    /**
+     * 构造函数
+     *
+     * @param intervalMillis 时间段长度（毫秒）
+     * @param capacity 保留的时间段数量
+     */
+    public RollingMetrics(long intervalMillis, int capacity) {
+        if (intervalMillis <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("时间段长度和数量必须大于0");
+        }
+        this.intervalMillis = intervalMillis;
+        this.capacity = capacity;
+        this.buckets = new AtomicReferenceArray<>(capacity);
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 记录一次查询
+     *
+     * @param nowMillis 当前时间（毫秒）
+     * @param executionNanos 执行时间（纳秒）
+     * @param success 是否成功
+     * @param resultCount 结果数量
+     */
+    public void record(long nowMillis, long executionNanos, boolean success, int resultCount) {
+        Bucket bucket = bucketFor(nowMillis / intervalMillis);
+        bucket.count.increment();
+        if (!success) {
+            bucket.errors.increment();
+        }
+        bucket.rows.add(resultCount);
+        bucket.histogram.record(executionNanos);
+    }
+
+    private Bucket bucketFor(long epoch) {
+        int index = (int) Math.floorMod(epoch, (long) capacity);
+        for (;;) {
+            Bucket current = buckets.get(index);
+            if (current != null && current.epoch >= epoch) {
+                // 时钟回退或记录过晚时计入环上已有的桶
+                return current;
+            }
+            Bucket created = new Bucket(epoch);
+            if (buckets.compareAndSet(index, current, created)) {
+                return created;
+            }
+        }
+    }
+
+    /**
+     * 获取最近的时间段，包括当前未结束的时间段
+     *
+     * @param nowMillis 当前时间（毫秒）
+     * @param count 时间段数量，不超过保留的数量
+     * @return 按时间升序的趋势数据，没有查询的时间段次数为0
+     */
+    public List<PerformanceTrend> getTrend(long nowMillis, int count) {
+        int points = Math.max(0, Math.min(count, capacity));
+        long currentEpoch = nowMillis / intervalMillis;
+        List<PerformanceTrend> trend = new ArrayList<>(points);
+        for (long epoch = currentEpoch - points + 1; epoch <= currentEpoch; epoch++) {
+            trend.add(toTrend(epoch, get(epoch)));
+        }
+        return trend;
+    }
+
+    /**
+     * 获取最近若干时间段的查询总数，包括当前未结束的时间段
+     */
+    public long getCount(long nowMillis, int count) {
+        int points = Math.max(0, Math.min(count, capacity));
+        long currentEpoch = nowMillis / intervalMillis;
+        long total = 0;
+        for (long epoch = currentEpoch - points + 1; epoch <= currentEpoch; epoch++) {
+            Bucket bucket = get(epoch);
+            total += bucket != null ? bucket.count.sum() : 0;
+        }
+        return total;
+    }
+
+    private Bucket get(long epoch) {
+        Bucket bucket = buckets.get((int) Math.floorMod(epoch, (long) capacity));
+        return bucket != null && bucket.epoch == epoch ? bucket : null;
+    }
+
+    private PerformanceTrend toTrend(long epoch, Bucket bucket) {
+        LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(epoch * intervalMillis),
+            ZoneId.systemDefault());
+        if (bucket == null) {
+            return new PerformanceTrend(timestamp, 0, 0.0, 0, 0.0, 0, intervalMillis, 0.0);
+        }
+        long queries = bucket.count.sum();
+        long errors = bucket.errors.sum();
+        LatencyHistogram histogram = bucket.histogram;
+        return new PerformanceTrend(timestamp, queries,
+            histogram.getMeanNanos() / TimeUnit.MILLISECONDS.toNanos(1),
+            TimeUnit.NANOSECONDS.toMillis(histogram.getMaxNanos()),
+            queries > 0 ? (double) (queries - errors) / queries : 0.0,
+            bucket.rows.sum(), intervalMillis, histogram.getPercentileMillis(99));
+    }
+
+    /**
+     * 清除所有时间段
+     */
+    public void reset() {
+        for (int i = 0; i < capacity; i++) {
+            buckets.set(i, null);
+        }
+    }
+
+    private static final class Bucket {
+        private final long epoch;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LatencyHistogram histogram = new LatencyHistogram(HISTOGRAM_PRECISION);
+
+        Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.kishultan.persistence.orm.query.monitor.impl;
+
+import com.kishultan.persistence.orm.query.monitor.QueryStatistics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 容量固定的查询统计表
+ *
+ * 按Space-Saving算法保留执行次数最多的capacity个查询形态：表满时新的查询替换计数最小的条目，
+ * 新条目继承被替换条目的计数加1，因此计数是上界，误差不超过继承的部分；被替换条目的统计合并到
+ * “other”汇总中，总执行次数保持不变。频繁执行的查询不会被偶发的查询挤出，内存占用与运行时间无关。
+ * 新增和替换条目时加锁，替换时扫描一遍表找出计数最小的条目。记录持有条目的读锁，替换时获取被替换条目的写锁，
+ * 等正在进行的记录完成后再合并到汇总中；记录时发现条目已被替换则重新查找，记录不会丢失。
+ *
+ * @author Portal Team
+ */
+public class TopQueryStatistics {
+
+    /** 汇总被淘汰查询的统计键 */
+    public static final String OTHER_KEY = "other";
+
+    private final int capacity;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder evictionCount = new LongAdder();
+    private volatile QueryStatistics other = new QueryStatistics(OTHER_KEY, OTHER_KEY);
+
+    /**
+     * 构造函数
+     *
+     * @param capacity 保留的查询形态数量
+     */
+    public TopQueryStatistics(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("统计表容量必须大于0: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * 计数并记录查询形态的一次执行，表满时替换计数最小的条目
+     *
+     * @param key 查询形态的键
+     * @param template 规范化后的SQL模板
+     * @param recorder 把本次执行记录到统计中
+     */
+    public void record(String key, String template, Consumer<QueryStatistics> recorder) {
+        while (true) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                entry = insert(key, template);
+            }
+            Lock lock = entry.lock.readLock();
+            lock.lock();
+            try {
+                if (!entry.evicted) {
+                    entry.weight.increment();
+                    recorder.accept(entry.statistics);
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private synchronized Entry insert(String key, String template) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        long inherited = 0;
+        if (entries.size() >= capacity) {
+            Map.Entry<String, Entry> victim = null;
+            long min = Long.MAX_VALUE;
+            for (Map.Entry<String, Entry> candidate : entries.entrySet()) {
+                long weight = candidate.getValue().weight.sum();
+                if (weight < min) {
+                    min = weight;
+                    victim = candidate;
+                }
+            }
+            entries.remove(victim.getKey());
+            Entry evicted = victim.getValue();
+            Lock lock = evicted.lock.writeLock();
+            lock.lock();
+            try {
+                evicted.evicted = true;
+                other.add(evicted.statistics);
+            } finally {
+                lock.unlock();
+            }
+            evictionCount.increment();
+            inherited = min;
+        }
+        entry = new Entry(new QueryStatistics(key, template), inherited);
+        entries.put(key, entry);
+        return entry;
+    }
+
+    /**
+     * 获取当前保留的统计，被淘汰查询的汇总有记录时以OTHER_KEY包含在内
+     */
+    public Map<String, QueryStatistics> snapshot() {
+        Map<String, QueryStatistics> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().statistics);
+        }
+        QueryStatistics summary = other;
+        if (summary.getExecutionCount() > 0) {
+            result.put(OTHER_KEY, summary);
+        }
+        return result;
+    }
+
+    /**
+     * 获取查询形态计数的最大误差，即条目创建时继承的计数
+     *
+     * @return 误差，查询形态不在表中时返回-1
+     */
+    public long getError(String key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.error : -1;
+    }
+
+    public QueryStatistics getOther() {
+        return other;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        other = new QueryStatistics(OTHER_KEY, OTHER_KEY);
+        evictionCount.reset();
+    }
+
+    private static final class Entry {
+        private final QueryStatistics statistics;
+        private final LongAdder weight = new LongAdder();
+        private final long error;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private boolean evicted;
+
+        Entry(QueryStatistics statistics, long inherited) {
+            this.statistics = statistics;
+            this.error = inherited;
+            weight.add(inherited);
+        }
+    }
+}
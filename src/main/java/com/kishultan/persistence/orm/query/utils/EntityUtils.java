@@ -102,7 +102,7 @@ public class EntityUtils {
     /**
      * 检查字段是否是关联字段
      */
-    private static boolean isAssociationField(Field field) {
+    public static boolean isAssociationField(Field field) {
         // 检查JPA关联注解
         return field.isAnnotationPresent(javax.persistence.OneToMany.class) ||
                field.isAnnotationPresent(javax.persistence.ManyToOne.class) ||
@@ -115,7 +115,7 @@ public class EntityUtils {
     /**
      * 检查字段是否是不持久化字段
      */
-    private static boolean isTransientField(Field field) {
+    public static boolean isTransientField(Field field) {
         return field.isAnnotationPresent(javax.persistence.Transient.class);
     }
     
@@ -0,0 +1,29 @@
+package com.kishultan.persistence.orm.shard;
+
+import java.math.BigInteger;
+
+/**
+ * 哈希取模分片策略（默认策略）
+ *
+ * 整数类型的分片键直接取模，便于按租户ID推算分片；
+ * 其他类型使用hashCode取模，字符串的hashCode在不同JVM间保持一致。
+ *
+ * @author Portal Team
+ */
+public class HashShardingStrategy implements ShardingStrategy {
+
+    @Override
+    public int shardFor(Object shardKey, int shardCount) {
+        if (shardKey instanceof Long || shardKey instanceof Integer
+                || shardKey instanceof Short || shardKey instanceof Byte) {
+            return (int) Math.floorMod(((Number) shardKey).longValue(), (long) shardCount);
+        }
+        if (shardKey instanceof BigInteger) {
+            return ((BigInteger) shardKey).mod(BigInteger.valueOf(shardCount)).intValue();
+        }
+        int hash = shardKey.hashCode();
+        // 打散低位分布较差的hashCode
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, shardCount);
+    }
+}
@@ -0,0 +1,21 @@
+package com.kishultan.persistence.orm.shard;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 分片键注解
+ *
+ * 标注在实体字段上，ShardedEntityManager按该字段的值选择分片。
+ * 未使用注解的实体也可以通过ShardedDataSource.registerShardKey配置分片键。
+ *
+ * @author Portal Team
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface ShardKey {
+}
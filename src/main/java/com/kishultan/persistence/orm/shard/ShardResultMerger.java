@@ -0,0 +1,361 @@
+package com.kishultan.persistence.orm.shard;
+
+import com.kishultan.persistence.orm.query.context.OrderInfo;
+import com.kishultan.persistence.orm.query.utils.EntityUtils;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 跨分片结果归并工具
+ *
+ * 负责有序结果的多路归并，以及COUNT/SUM/AVG/MIN/MAX的二次聚合。
+ *
+ * @author Portal Team
+ */
+final class ShardResultMerger {
+
+    private static final Pattern AGGREGATE_PATTERN = Pattern.compile(
+            "^\\s*(COUNT|SUM|AVG|MIN|MAX)\\s*\\((.+)\\)\\s*(?:AS\\s+(\\w+))?\\s*$", Pattern.CASE_INSENSITIVE);
+
+    private ShardResultMerger() {
+    }
+
+    // ==================== 有序归并 ====================
+
+    /**
+     * 多路归并各分片已排序的结果，最多取出limit条（limit为0表示全部）
+     */
+    static <T> List<T> mergeSorted(List<List<T>> shardResults, Comparator<? super T> comparator, int limit) {
+        int total = 0;
+        for (List<T> rows : shardResults) {
+            total += rows.size();
+        }
+        int wanted = limit > 0 ? Math.min(limit, total) : total;
+        List<T> merged = new ArrayList<>(wanted);
+
+        // 比较相同时按分片顺序，保证结果稳定
+        PriorityQueue<Cursor<T>> heap = new PriorityQueue<>(Math.max(1, shardResults.size()), (a, b) -> {
+            int result = comparator.compare(a.current(), b.current());
+            return result != 0 ? result : Integer.compare(a.shardIndex, b.shardIndex);
+        });
+        for (int i = 0; i < shardResults.size(); i++) {
+            List<T> rows = shardResults.get(i);
+            if (!rows.isEmpty()) {
+                heap.add(new Cursor<>(i, rows));
+            }
+        }
+        while (merged.size() < wanted && !heap.isEmpty()) {
+            Cursor<T> cursor = heap.poll();
+            merged.add(cursor.current());
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 按分片顺序拼接结果，最多取出limit条（limit为0表示全部）
+     */
+    static <T> List<T> concat(List<List<T>> shardResults, int limit) {
+        List<T> merged = new ArrayList<>();
+        for (List<T> rows : shardResults) {
+            for (T row : rows) {
+                if (limit > 0 && merged.size() >= limit) {
+                    return merged;
+                }
+                merged.add(row);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 根据ORDER BY信息构建结果比较器
+     * 排序列无法在结果中定位时无法保证全局顺序（分页下推后还会取错前N条），直接拒绝执行
+     */
+    static <T> Comparator<T> orderComparator(List<OrderInfo> orderInfos, Class<T> resultType) {
+        Comparator<T> comparator = null;
+        for (OrderInfo orderInfo : orderInfos) {
+            Function<Object, Object> extractor = valueExtractor(orderInfo.getColumn(), resultType);
+            if (extractor == null) {
+                throw new UnsupportedOperationException("跨分片归并无法在结果类型 " + resultType.getSimpleName()
+                        + " 中定位排序列 " + orderInfo.getColumn() + "，请按结果中包含的列排序");
+            }
+            boolean descending = "DESC".equalsIgnoreCase(orderInfo.getDirection());
+            Comparator<T> column = (a, b) -> compareValues(extractor.apply(a), extractor.apply(b));
+            if (descending) {
+                column = column.reversed();
+            }
+            comparator = comparator == null ? column : comparator.thenComparing(column);
+        }
+        return comparator;
+    }
+
+    private static Function<Object, Object> valueExtractor(String column, Class<?> resultType) {
+        String qualified = stripQuotes(column.trim());
+        int dot = qualified.lastIndexOf('.');
+        String columnName = dot >= 0 ? qualified.substring(dot + 1) : qualified;
+
+        if (Map.class.isAssignableFrom(resultType)) {
+            // JOIN查询的列标签为 表别名__列名
+            String joinLabel = qualified.replace(".", "__");
+            return row -> {
+                Map<?, ?> map = (Map<?, ?>) row;
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    String key = String.valueOf(entry.getKey());
+                    if (key.equalsIgnoreCase(columnName) || key.equalsIgnoreCase(joinLabel)) {
+                        return entry.getValue();
+                    }
+                }
+                return null;
+            };
+        }
+
+        for (Class<?> clazz = resultType; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (EntityUtils.getColumnName(field).equalsIgnoreCase(columnName)
+                        || field.getName().equalsIgnoreCase(columnName)) {
+                    field.setAccessible(true);
+                    return row -> {
+                        try {
+                            return field.get(row);
+                        } catch (IllegalAccessException e) {
+                            throw new RuntimeException("读取排序字段失败: " + field.getName(), e);
+                        }
+                    };
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String stripQuotes(String column) {
+        return column.replace("`", "").replace("\"", "");
+    }
+
+    /**
+     * 比较两个列值，NULL视为最小值，与H2和MySQL的默认排序一致
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compareValues(Object a, Object b) {
+        if (a == b) {
+            return 0;
+        }
+        if (a == null) {
+            return -1;
+        }
+        if (b == null) {
+            return 1;
+        }
+        if (a instanceof Number && b instanceof Number && a.getClass() != b.getClass()) {
+            return toBigDecimal((Number) a).compareTo(toBigDecimal((Number) b));
+        }
+        if (a instanceof Comparable && a.getClass().isInstance(b)) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    // ==================== 二次聚合 ====================
+
+    /**
+     * 解析SELECT列表中的聚合表达式，存在无法二次聚合的表达式时返回null
+     */
+    static List<AggregateSpec> parseAggregates(List<String> expressions) {
+        if (expressions.isEmpty()) {
+            return null;
+        }
+        List<AggregateSpec> specs = new ArrayList<>();
+        for (int i = 0; i < expressions.size(); i++) {
+            String expression = expressions.get(i);
+            Matcher matcher = AGGREGATE_PATTERN.matcher(expression);
+            if (!matcher.matches()) {
+                return null;
+            }
+            String argument = matcher.group(2).trim();
+            if (argument.toUpperCase().startsWith("DISTINCT ")) {
+                throw new UnsupportedOperationException("跨分片聚合不支持DISTINCT: " + expression);
+            }
+            String alias = matcher.group(3);
+            String label = alias != null ? alias : expression.trim();
+            specs.add(new AggregateSpec(matcher.group(1).toUpperCase(), argument, label, "agg" + i));
+        }
+        return specs;
+    }
+
+    /**
+     * 生成各分片执行的SELECT子句，AVG改写为SUM和COUNT
+     */
+    static String shardSelect(List<AggregateSpec> specs) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < specs.size(); i++) {
+            AggregateSpec spec = specs.get(i);
+            if (i > 0) {
+                sql.append(", ");
+            }
+            if ("AVG".equals(spec.function)) {
+                sql.append("SUM(").append(spec.argument).append(") AS ").append(spec.shardLabel).append("_sum, ");
+                sql.append("COUNT(").append(spec.argument).append(") AS ").append(spec.shardLabel).append("_cnt");
+            } else {
+                sql.append(spec.function).append("(").append(spec.argument).append(") AS ").append(spec.shardLabel);
+            }
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 合并各分片的部分聚合结果
+     */
+    static Map<String, Object> mergeAggregates(List<AggregateSpec> specs, List<Map<String, Object>> shardRows) {
+        Map<String, Object> merged = new LinkedHashMap<>();
+        for (AggregateSpec spec : specs) {
+            switch (spec.function) {
+                case "COUNT":
+                    Number count = sum(shardRows, spec.shardLabel);
+                    merged.put(spec.label, count == null ? 0L : count.longValue());
+                    break;
+                case "SUM":
+                    merged.put(spec.label, sum(shardRows, spec.shardLabel));
+                    break;
+                case "AVG":
+                    merged.put(spec.label, average(sum(shardRows, spec.shardLabel + "_sum"),
+                            sum(shardRows, spec.shardLabel + "_cnt")));
+                    break;
+                case "MIN":
+                case "MAX":
+                    Object best = null;
+                    for (Map<String, Object> row : shardRows) {
+                        Object value = get(row, spec.shardLabel);
+                        if (value == null) {
+                            continue;
+                        }
+                        int result = best == null ? 0 : compareValues(value, best);
+                        if (best == null || ("MIN".equals(spec.function) ? result < 0 : result > 0)) {
+                            best = value;
+                        }
+                    }
+                    merged.put(spec.label, best);
+                    break;
+                default:
+                    throw new IllegalStateException("未知的聚合函数: " + spec.function);
+            }
+        }
+        return merged;
+    }
+
+    private static Number sum(List<Map<String, Object>> shardRows, String label) {
+        BigDecimal total = null;
+        boolean integral = true;
+        boolean floating = false;
+        for (Map<String, Object> row : shardRows) {
+            Object value = get(row, label);
+            if (value == null) {
+                continue;
+            }
+            Number number = (Number) value;
+            integral &= isIntegral(number);
+            floating |= number instanceof Double || number instanceof Float;
+            total = total == null ? toBigDecimal(number) : total.add(toBigDecimal(number));
+        }
+        if (total == null) {
+            return null;
+        }
+        if (integral) {
+            return total.longValue();
+        }
+        return floating ? (Number) total.doubleValue() : total;
+    }
+
+    private static Number average(Number sum, Number count) {
+        if (sum == null || count == null || count.longValue() == 0) {
+            return null;
+        }
+        if (sum instanceof Double) {
+            return sum.doubleValue() / count.longValue();
+        }
+        return toBigDecimal(sum).divide(BigDecimal.valueOf(count.longValue()), MathContext.DECIMAL64);
+    }
+
+    private static Object get(Map<String, Object> row, String label) {
+        Object value = row.get(label);
+        if (value != null || row.containsKey(label)) {
+            return value;
+        }
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(label)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short
+                || number instanceof Byte || number instanceof BigInteger;
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        }
+        if (number instanceof BigInteger) {
+            return new BigDecimal((BigInteger) number);
+        }
+        if (isIntegral(number)) {
+            return BigDecimal.valueOf(number.longValue());
+        }
+        return BigDecimal.valueOf(number.doubleValue());
+    }
+
+    /**
+     * 聚合表达式
+     */
+    static final class AggregateSpec {
+        final String function;
+        final String argument;
+        final String label;
+        final String shardLabel;
+
+        AggregateSpec(String function, String argument, String label, String shardLabel) {
+            this.function = function;
+            this.argument = argument;
+            this.label = label;
+            this.shardLabel = shardLabel;
+        }
+    }
+
+    /**
+     * 单个分片结果的游标
+     */
+    private static final class Cursor<T> {
+        final int shardIndex;
+        final List<T> rows;
+        int position;
+
+        Cursor(int shardIndex, List<T> rows) {
+            this.shardIndex = shardIndex;
+            this.rows = rows;
+        }
+
+        T current() {
+            return rows.get(position);
+        }
+
+        boolean advance() {
+            return ++position < rows.size();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.kishultan.persistence.orm.shard;
+
+import com.kishultan.persistence.datasource.DataSourceManager;
+import com.kishultan.persistence.orm.query.utils.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分片数据源
+ *
+ * 持有一组分片数据源、分片策略以及实体的分片键配置，
+ * 并提供并行地在所有分片上执行操作的线程池。
+ * 每个分片本身可以是普通数据源，也可以是RoutingDataSource。
+ *
+ * @author Portal Team
+ */
+public class ShardedDataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedDataSource.class);
+
+    private static final AtomicInteger poolCounter = new AtomicInteger();
+
+    private final List<DataSource> shards;
+    private final ShardingStrategy strategy;
+    private final ExecutorService scatterExecutor;
+
+    // 通过配置注册的分片键字段名
+    private final Map<Class<?>, String> configuredShardKeys = new ConcurrentHashMap<>();
+    // 解析后的分片键字段缓存，没有分片键的实体缓存为NO_SHARD_KEY
+    private final Map<Class<?>, Object> shardKeyFieldCache = new ConcurrentHashMap<>();
+    private static final Object NO_SHARD_KEY = new Object();
+
+    public ShardedDataSource(DataSource... shards) {
+        this(shards == null ? Collections.<DataSource>emptyList() : Arrays.asList(shards), new HashShardingStrategy());
+    }
+
+    public ShardedDataSource(List<DataSource> shards, ShardingStrategy strategy) {
+        if (shards == null || shards.isEmpty()) {
+            throw new IllegalArgumentException("分片数据源不能为空");
+        }
+        for (DataSource shard : shards) {
+            if (shard == null) {
+                throw new IllegalArgumentException("分片数据源不能包含null");
+            }
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        this.strategy = strategy != null ? strategy : new HashShardingStrategy();
+
+        int poolId = poolCounter.incrementAndGet();
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.scatterExecutor = Executors.newFixedThreadPool(this.shards.size(), runnable -> {
+            Thread thread = new Thread(runnable, "shard-scatter-" + poolId + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("创建分片数据源，分片数量: {}, 分片策略: {}", this.shards.size(), this.strategy.getClass().getSimpleName());
+    }
+
+    /**
+     * 按DataSourceManager中注册的名称创建分片数据源，名称顺序即分片顺序
+     */
+    public static ShardedDataSource fromNames(String... dataSourceNames) {
+        List<DataSource> dataSources = new ArrayList<>();
+        for (String name : dataSourceNames) {
+            dataSources.add(DataSourceManager.getDataSource(name));
+        }
+        return new ShardedDataSource(dataSources, new HashShardingStrategy());
+    }
+
+    // ==================== 分片键配置 ====================
+
+    /**
+     * 通过配置声明实体的分片键字段，优先于@ShardKey注解
+     */
+    public ShardedDataSource registerShardKey(Class<?> entityClass, String fieldName) {
+        configuredShardKeys.put(entityClass, fieldName);
+        shardKeyFieldCache.remove(entityClass);
+        return this;
+    }
+
+    /**
+     * 获取实体的分片键字段，未声明时返回null
+     */
+    public Field getShardKeyField(Class<?> entityClass) {
+        Object cached = shardKeyFieldCache.computeIfAbsent(entityClass, this::resolveShardKeyField);
+        return cached == NO_SHARD_KEY ? null : (Field) cached;
+    }
+
+    private Object resolveShardKeyField(Class<?> entityClass) {
+        String configured = configuredShardKeys.get(entityClass);
+        for (Class<?> clazz = entityClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                boolean matched = configured != null
+                        ? field.getName().equals(configured)
+                        : field.isAnnotationPresent(ShardKey.class);
+                if (matched) {
+                    field.setAccessible(true);
+                    return field;
+                }
+            }
+        }
+        if (configured != null) {
+            throw new IllegalArgumentException("分片键字段不存在: " + entityClass.getName() + "." + configured);
+        }
+        return NO_SHARD_KEY;
+    }
+
+    /**
+     * 分片键是否就是实体主键，此时按ID查找可以直接定位分片
+     */
+    public boolean isShardKeyPrimaryKey(Class<?> entityClass) {
+        Field shardKeyField = getShardKeyField(entityClass);
+        return shardKeyField != null && shardKeyField.equals(EntityUtils.getPrimaryKeyFieldObject(entityClass));
+    }
+
+    // ==================== 路由 ====================
+
+    /**
+     * 根据分片键的值计算分片下标
+     */
+    public int shardFor(Object shardKey) {
+        if (shardKey == null) {
+            throw new IllegalArgumentException("分片键的值不能为空");
+        }
+        int index = strategy.shardFor(shardKey, shards.size());
+        if (index < 0 || index >= shards.size()) {
+            throw new IllegalStateException("分片策略返回了无效的分片下标: " + index);
+        }
+        return index;
+    }
+
+    /**
+     * 根据实体上分片键字段的值计算分片下标
+     */
+    public int shardOf(Object entity) {
+        Class<?> entityClass = entity.getClass();
+        Field shardKeyField = getShardKeyField(entityClass);
+        if (shardKeyField == null) {
+            throw new IllegalStateException("实体未声明分片键: " + entityClass.getName());
+        }
+        Object value;
+        try {
+            value = shardKeyField.get(entity);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("读取分片键失败: " + entityClass.getName() + "." + shardKeyField.getName(), e);
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("分片键的值不能为空: " + entityClass.getName() + "." + shardKeyField.getName());
+        }
+        return shardFor(value);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public DataSource getShard(int index) {
+        return shards.get(index);
+    }
+
+    public List<DataSource> getShards() {
+        return shards;
+    }
+
+    public ShardingStrategy getStrategy() {
+        return strategy;
+    }
+
+    // ==================== 并行执行 ====================
+
+    /**
+     * 分片任务
+     */
+    @FunctionalInterface
+    public interface ShardTask<R> {
+        R execute(int shardIndex, DataSource dataSource) throws Exception;
+    }
+
+    /**
+     * 在所有分片上并行执行任务，结果按分片顺序返回
+     *
+     * 任一分片失败时抛出异常，其余分片的结果被丢弃。
+     */
+    public <R> List<R> scatter(ShardTask<R> task) {
+        int count = shards.size();
+        List<R> results = new ArrayList<>(count);
+        if (count == 1) {
+            results.add(runTask(task, 0));
+            return results;
+        }
+
+        List<Future<R>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int shardIndex = i;
+            futures.add(scatterExecutor.submit(() -> runTask(task, shardIndex)));
+        }
+        try {
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("分片查询被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("分片查询失败", cause);
+        } finally {
+            for (Future<R> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private <R> R runTask(ShardTask<R> task, int shardIndex) {
+        try {
+            return task.execute(shardIndex, shards.get(shardIndex));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("分片 " + shardIndex + " 执行失败", e);
+        }
+    }
+
+    /**
+     * 关闭并行执行线程池
+     */
+    public void shutdown() {
+        scatterExecutor.shutdownNow();
+        logger.info("分片数据源已关闭");
+    }
+}
@@ -0,0 +1,244 @@
+package com.kishultan.persistence.orm.shard;
+
+import com.kishultan.persistence.datasource.DataSourceRoutingContext;
+import com.kishultan.persistence.orm.query.QueryBuilder;
+import com.kishultan.persistence.orm.query.cache.TableVersionTracker;
+import com.kishultan.persistence.orm.query.impl.StandardQueryBuilder;
+import com.kishultan.persistence.orm.query.utils.EntityUtils;
+import com.zaxxer.sansorm.OrmElf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分片实体管理器
+ *
+ * 按实体的分片键（@ShardKey注解或ShardedDataSource.registerShardKey配置）
+ * 把save/update/delete路由到对应分片；分片键即主键时findById直接定位分片，
+ * 否则并行查询所有分片。createQueryBuilder返回的查询构建器在所有分片上并行执行并合并结果。
+ *
+ * 跨分片事务不在支持范围内，每个操作在目标分片上独立提交。
+ *
+ * @author Portal Team
+ */
+public class ShardedEntityManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedEntityManager.class);
+    private static final AtomicInteger instanceCounter = new AtomicInteger();
+
+    private final ShardedDataSource shardedDataSource;
+    // 查询缓存范围前缀，跨分片查询和各分片查询的结果分别缓存
+    private final String cacheScope;
+
+    public ShardedEntityManager(ShardedDataSource shardedDataSource) {
+        if (shardedDataSource == null) {
+            throw new IllegalArgumentException("分片数据源不能为空");
+        }
+        this.shardedDataSource = shardedDataSource;
+        this.cacheScope = "sharded" + instanceCounter.incrementAndGet() + ":";
+    }
+
+    public ShardedDataSource getShardedDataSource() {
+        return shardedDataSource;
+    }
+
+    // ==================== 查询构建器 ====================
+
+    /**
+     * 创建跨所有分片执行的查询构建器
+     */
+    public <T> QueryBuilder<T> createQueryBuilder(Class<T> entityClass) {
+        logger.debug("创建跨分片查询构建器: {}", entityClass.getSimpleName());
+        StandardQueryBuilder<T> queryBuilder = new StandardQueryBuilder<>(entityClass, shardedDataSource.getShard(0));
+        queryBuilder.setSqlExecutor(new ShardedSqlExecutor(shardedDataSource, queryBuilder));
+        queryBuilder.setCacheScope(cacheScope + "all");
+        return queryBuilder;
+    }
+
+    /**
+     * 创建只在分片键所在分片上执行的查询构建器
+     */
+    public <T> QueryBuilder<T> createQueryBuilder(Class<T> entityClass, Object shardKey) {
+        int shard = shardedDataSource.shardFor(shardKey);
+        StandardQueryBuilder<T> queryBuilder = new StandardQueryBuilder<>(entityClass, shardedDataSource.getShard(shard));
+        queryBuilder.setCacheScope(cacheScope + shard);
+        return queryBuilder;
+    }
+
+    /**
+     * 执行跨分片聚合查询，返回 别名（无别名时为聚合表达式）到合并结果的映射
+     *
+     * 查询构建器需由createQueryBuilder(Class)创建，SELECT列表只能包含COUNT/SUM/AVG/MIN/MAX。
+     */
+    public Map<String, Object> aggregate(QueryBuilder<?> queryBuilder) {
+        if (queryBuilder instanceof StandardQueryBuilder) {
+            return new ShardedSqlExecutor(shardedDataSource, (StandardQueryBuilder<?>) queryBuilder).executeAggregate();
+        }
+        throw new IllegalArgumentException("不支持的查询构建器: " + queryBuilder.getClass().getName());
+    }
+
+    // ==================== 写操作 ====================
+
+    /**
+     * 保存实体到分片键所在的分片
+     */
+    public <T> T save(T entity) {
+        int shard = shardedDataSource.shardOf(entity);
+        logger.debug("保存实体到分片 {}: {}", shard, entity.getClass().getSimpleName());
+        try (Connection conn = shardedDataSource.getShard(shard).getConnection()) {
+            T saved = OrmElf.insertObject(conn, entity);
+            recordWrite(entity.getClass());
+            return saved;
+        } catch (Exception e) {
+            logger.error("保存实体失败: {}", entity.getClass().getSimpleName(), e);
+            throw new RuntimeException("Failed to save entity", e);
+        }
+    }
+
+    /**
+     * 批量保存实体，按分片分组后分别写入
+     */
+    public <T> List<T> saveAll(List<T> entities) {
+        Map<Integer, List<T>> byShard = new LinkedHashMap<>();
+        for (T entity : entities) {
+            byShard.computeIfAbsent(shardedDataSource.shardOf(entity), k -> new ArrayList<>()).add(entity);
+        }
+        for (Map.Entry<Integer, List<T>> entry : byShard.entrySet()) {
+            try (Connection conn = shardedDataSource.getShard(entry.getKey()).getConnection()) {
+                for (T entity : entry.getValue()) {
+                    OrmElf.insertObject(conn, entity);
+                    recordWrite(entity.getClass());
+                }
+            } catch (Exception e) {
+                logger.error("批量保存实体失败，分片: {}", entry.getKey(), e);
+                throw new RuntimeException("Failed to save entities", e);
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * 更新分片键所在分片上的实体，分片键的值不应被修改
+     */
+    public <T> T update(T entity) {
+        int shard = shardedDataSource.shardOf(entity);
+        try (Connection conn = shardedDataSource.getShard(shard).getConnection()) {
+            T updated = OrmElf.updateObject(conn, entity);
+            recordWrite(entity.getClass());
+            return updated;
+        } catch (Exception e) {
+            logger.error("更新实体失败: {}", entity.getClass().getSimpleName(), e);
+            throw new RuntimeException("Failed to update entity", e);
+        }
+    }
+
+    /**
+     * 删除分片键所在分片上的实体
+     */
+    public <T> void delete(T entity) {
+        int shard = shardedDataSource.shardOf(entity);
+        try (Connection conn = shardedDataSource.getShard(shard).getConnection()) {
+            OrmElf.deleteObject(conn, entity);
+            recordWrite(entity.getClass());
+        } catch (Exception e) {
+            logger.error("删除实体失败: {}", entity.getClass().getSimpleName(), e);
+            throw new RuntimeException("Failed to delete entity", e);
+        }
+    }
+
+    /**
+     * 根据ID删除实体，分片键不是主键时在所有分片上执行
+     */
+    public <T> void deleteById(Class<T> entityClass, Object id) {
+        try {
+            if (shardedDataSource.isShardKeyPrimaryKey(entityClass)) {
+                try (Connection conn = shardedDataSource.getShard(shardedDataSource.shardFor(id)).getConnection()) {
+                    OrmElf.deleteObjectById(conn, entityClass, id);
+                }
+            } else {
+                shardedDataSource.scatter((shardIndex, dataSource) -> {
+                    try (Connection conn = dataSource.getConnection()) {
+                        return OrmElf.deleteObjectById(conn, entityClass, id);
+                    }
+                });
+            }
+            recordWrite(entityClass);
+        } catch (Exception e) {
+            logger.error("根据ID删除实体失败: {} - {}", entityClass.getSimpleName(), id, e);
+            throw new RuntimeException("Failed to delete entity by ID", e);
+        }
+    }
+
+    // ==================== 读操作 ====================
+
+    /**
+     * 根据ID查找实体，分片键是主键时直接定位分片，否则并行查询所有分片
+     */
+    public <T> T findById(Class<T> entityClass, Object id) {
+        if (shardedDataSource.isShardKeyPrimaryKey(entityClass)) {
+            return findById(entityClass, id, id);
+        }
+        try {
+            for (T entity : shardedDataSource.scatter((shardIndex, dataSource) -> {
+                try (Connection conn = DataSourceRoutingContext.getReadConnection(dataSource)) {
+                    return OrmElf.objectById(conn, entityClass, id);
+                }
+            })) {
+                if (entity != null) {
+                    return entity;
+                }
+            }
+            return null;
+        } catch (Exception e) {
+            logger.error("根据ID查找实体失败: {} - {}", entityClass.getSimpleName(), id, e);
+            throw new RuntimeException("Failed to find entity by ID", e);
+        }
+    }
+
+    /**
+     * 在分片键所在的分片上根据ID查找实体
+     */
+    public <T> T findById(Class<T> entityClass, Object id, Object shardKey) {
+        DataSource shard = shardedDataSource.getShard(shardedDataSource.shardFor(shardKey));
+        try (Connection conn = DataSourceRoutingContext.getReadConnection(shard)) {
+            return OrmElf.objectById(conn, entityClass, id);
+        } catch (Exception e) {
+            logger.error("根据ID查找实体失败: {} - {}", entityClass.getSimpleName(), id, e);
+            throw new RuntimeException("Failed to find entity by ID", e);
+        }
+    }
+
+    /**
+     * 查找所有分片上的实体
+     */
+    public <T> List<T> findAll(Class<T> entityClass) {
+        try {
+            List<T> all = new ArrayList<>();
+            for (List<T> rows : shardedDataSource.scatter((shardIndex, dataSource) -> {
+                try (Connection conn = DataSourceRoutingContext.getReadConnection(dataSource)) {
+                    return OrmElf.listFromClause(conn, entityClass, "");
+                }
+            })) {
+                all.addAll(rows);
+            }
+            return all;
+        } catch (Exception e) {
+            logger.error("查找所有实体失败: {}", entityClass.getSimpleName(), e);
+            throw new RuntimeException("Failed to find all entities", e);
+        }
+    }
+
+    /**
+     * 记录实体表被修改，使依赖该表的查询缓存失效
+     */
+    private void recordWrite(Class<?> entityClass) {
+        TableVersionTracker.recordWrite(null, EntityUtils.getTableName(entityClass));
+    }
+}
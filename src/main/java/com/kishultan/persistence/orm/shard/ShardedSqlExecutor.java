@@ -0,0 +1,199 @@
+package com.kishultan.persistence.orm.shard;
+
+import com.kishultan.persistence.orm.query.DefaultRowMapper;
+import com.kishultan.persistence.orm.query.QueryHints;
+import com.kishultan.persistence.orm.query.RowMapper;
+import com.kishultan.persistence.orm.query.SqlExecutor;
+import com.kishultan.persistence.orm.query.context.QueryResult;
+import com.kishultan.persistence.orm.query.impl.SimpleSqlExecutor;
+import com.kishultan.persistence.orm.query.impl.StandardQueryBuilder;
+import com.kishultan.persistence.orm.query.monitor.PhaseTimer;
+import com.kishultan.persistence.orm.query.monitor.QueryPhase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 跨分片SQL执行器
+ *
+ * 绑定到一个查询构建器，把构建出的SQL并行发送到所有分片后合并结果：
+ * 有ORDER BY时多路归并，分页时每个分片取 offset+limit 条后再统一截取，
+ * count()求和，COUNT/SUM/AVG/MIN/MAX二次聚合（AVG改写为SUM和COUNT）。
+ * 跨分片的GROUP BY暂不支持。
+ *
+ * @author Portal Team
+ */
+public class ShardedSqlExecutor implements SqlExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedSqlExecutor.class);
+
+    private final ShardedDataSource shardedDataSource;
+    private final StandardQueryBuilder<?> queryBuilder;
+    private final List<SqlExecutor> shardExecutors = new ArrayList<>();
+
+    public ShardedSqlExecutor(ShardedDataSource shardedDataSource, StandardQueryBuilder<?> queryBuilder) {
+        this.shardedDataSource = shardedDataSource;
+        this.queryBuilder = queryBuilder;
+        for (int i = 0; i < shardedDataSource.getShardCount(); i++) {
+            shardExecutors.add(new SimpleSqlExecutor(shardedDataSource.getShard(i)));
+        }
+    }
+
+    // ==================== 查询 ====================
+
+    @Override
+    public <T> List<T> executeQuery(String sql, List<Object> parameters, Class<T> resultType) {
+        return executeQuery(sql, parameters, resultType, new DefaultRowMapper<>());
+    }
+
+    @Override
+    public <T> List<T> executeQuery(String sql, List<Object> parameters, Class<T> resultType, RowMapper<T> mapper) {
+        return executeQuery(sql, parameters, resultType, mapper, (QueryHints) null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> executeQuery(String sql, List<Object> parameters, Class<T> resultType, RowMapper<T> mapper, QueryHints hints) {
+        checkGroupBy();
+
+        List<ShardResultMerger.AggregateSpec> aggregates = ShardResultMerger.parseAggregates(queryBuilder.getSelectExpressions());
+        if (aggregates != null) {
+            if (!Map.class.isAssignableFrom(resultType)) {
+                throw new UnsupportedOperationException("跨分片聚合查询只能映射为Map，请使用ShardedEntityManager.aggregate()");
+            }
+            return (List<T>) Collections.singletonList(aggregate(aggregates, sql, parameters));
+        }
+
+        int limit = queryBuilder.getLimitValue();
+        int offset = limit > 0 ? queryBuilder.getOffsetValue() : 0;
+        int maxRows = hints != null ? hints.getMaxRows() : 0;
+
+        // LIMIT下推：每个分片从头取 offset+limit 条，合并后再跳过offset
+        String shardSql = sql;
+        QueryHints shardHints = hints;
+        if (offset > 0) {
+            String limitClause = queryBuilder.getBuildContext().getLimitClause();
+            if (!sql.endsWith(limitClause)) {
+                throw new IllegalStateException("无法改写分页子句: " + sql);
+            }
+            shardSql = sql.substring(0, sql.length() - limitClause.length()) + "LIMIT " + (offset + limit);
+            if (maxRows > 0) {
+                shardHints = hints.copy();
+                shardHints.setMaxRows(maxRows + offset);
+            }
+        }
+
+        int window = limit > 0 ? offset + limit : 0;
+        if (maxRows > 0) {
+            window = window > 0 ? Math.min(window, offset + maxRows) : maxRows;
+        }
+
+        final String finalSql = shardSql;
+        final QueryHints finalHints = shardHints;
+        List<List<T>> shardResults = shardedDataSource.scatter((shardIndex, dataSource) ->
+                shardExecutors.get(shardIndex).executeQuery(finalSql, parameters, resultType, mapper, finalHints));
+
+        // 多个分片在其他线程并行执行，其阶段耗时不计入当前查询，当前线程只计合并
+        long phase = PhaseTimer.start();
+        Comparator<T> comparator = ShardResultMerger.orderComparator(queryBuilder.getOrderInfos(), resultType);
+        List<T> merged = comparator != null
+                ? ShardResultMerger.mergeSorted(shardResults, comparator, window)
+                : ShardResultMerger.concat(shardResults, window);
+        if (offset > 0) {
+            merged = new ArrayList<>(merged.subList(Math.min(offset, merged.size()), merged.size()));
+        }
+        PhaseTimer.stop(QueryPhase.MERGE, phase);
+        logger.debug("跨分片查询完成，分片数: {}, 结果数: {}", shardResults.size(), merged.size());
+        return merged;
+    }
+
+    /**
+     * 执行绑定的查询构建器中的聚合查询，返回 别名（无别名时为表达式）到合并结果的映射
+     */
+    public Map<String, Object> executeAggregate() {
+        checkGroupBy();
+        List<ShardResultMerger.AggregateSpec> aggregates = ShardResultMerger.parseAggregates(queryBuilder.getSelectExpressions());
+        if (aggregates == null) {
+            throw new IllegalStateException("SELECT列表不是可跨分片合并的聚合函数: " + queryBuilder.getSelectExpressions());
+        }
+        QueryResult queryResult = queryBuilder.buildQuery();
+        return aggregate(aggregates, queryResult.getSql(), queryResult.getParameters());
+    }
+
+    private Map<String, Object> aggregate(List<ShardResultMerger.AggregateSpec> aggregates, String sql, List<Object> parameters) {
+        String selectClause = queryBuilder.getBuildContext().getSelectClause();
+        if (!sql.startsWith(selectClause)) {
+            throw new IllegalStateException("无法改写聚合查询: " + sql);
+        }
+        String shardSql = ShardResultMerger.shardSelect(aggregates) + sql.substring(selectClause.length());
+
+        List<Map<String, Object>> shardRows = shardedDataSource.scatter((shardIndex, dataSource) -> {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            shardExecutors.get(shardIndex).executeQuery(shardSql, parameters, mapType(), new DefaultRowMapper<>(),
+                    null, rows::add);
+            return rows.isEmpty() ? Collections.<String, Object>emptyMap() : rows.get(0);
+        });
+        return ShardResultMerger.mergeAggregates(aggregates, shardRows);
+    }
+
+    @Override
+    public <T> T executeAs(String sql, List<Object> parameters, Class<T> resultType) {
+        for (T result : shardedDataSource.scatter((shardIndex, dataSource) ->
+                shardExecutors.get(shardIndex).executeAs(sql, parameters, resultType))) {
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public long executeAsLong(String sql, List<Object> parameters) {
+        long total = 0;
+        for (Long count : shardedDataSource.scatter((shardIndex, dataSource) ->
+                shardExecutors.get(shardIndex).executeAsLong(sql, parameters))) {
+            total += count;
+        }
+        return total;
+    }
+
+    // ==================== 更新（广播到所有分片） ====================
+
+    @Override
+    public int executeUpdate(String sql, List<Object> parameters) {
+        int total = 0;
+        for (Integer updated : shardedDataSource.scatter((shardIndex, dataSource) ->
+                shardExecutors.get(shardIndex).executeUpdate(sql, parameters))) {
+            total += updated;
+        }
+        return total;
+    }
+
+    @Override
+    public int[] executeBatchUpdate(List<String> sqlList, List<List<Object>> parametersList) {
+        int[] total = new int[sqlList.size()];
+        for (int[] updated : shardedDataSource.scatter((shardIndex, dataSource) ->
+                shardExecutors.get(shardIndex).executeBatchUpdate(sqlList, parametersList))) {
+            for (int i = 0; i < total.length; i++) {
+                total[i] += updated[i];
+            }
+        }
+        return total;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<Map<String, Object>> mapType() {
+        return (Class<Map<String, Object>>) (Class<?>) Map.class;
+    }
+
+    private void checkGroupBy() {
+        if (queryBuilder.hasGroupBy()) {
+            throw new UnsupportedOperationException("跨分片查询暂不支持GROUP BY，请按分片键查询单个分片");
+        }
+    }
+}
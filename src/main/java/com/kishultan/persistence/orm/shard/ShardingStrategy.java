@@ -0,0 +1,20 @@
+package com.kishultan.persistence.orm.shard;
+
+/**
+ * 分片策略接口
+ *
+ * 根据分片键的值计算目标分片下标，同一个值必须始终落在同一个分片上。
+ *
+ * @author Portal Team
+ */
+public interface ShardingStrategy {
+
+    /**
+     * 计算分片下标
+     *
+     * @param shardKey 分片键的值，不为null
+     * @param shardCount 分片数量
+     * @return 0到shardCount-1之间的分片下标
+     */
+    int shardFor(Object shardKey, int shardCount);
+}
@@ -67,6 +67,8 @@ public class TransactionTest {
     
     @After
     public void tearDown() throws Exception {
+        // 回滚测试遗留的事务
+        entityManager.close();
         // 清理数据源
         DataSourceManager.removeLocalDataSource("default");
         DataSourceManager.setUseJNDI(true);
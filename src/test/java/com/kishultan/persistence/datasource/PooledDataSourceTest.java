@@ -0,0 +1,339 @@
+package com.kishultan.persistence.datasource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 内置连接池测试类
+ *
+ * @author Portal Team
+ */
+public class PooledDataSourceTest {
+
+    private static final String URL = "jdbc:h2:mem:pooled_ds;DB_CLOSE_DELAY=-1";
+
+    private PooledDataSource pool;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new PooledDataSource(URL, "sa", "");
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS pool_items (id INT PRIMARY KEY)");
+            stmt.execute("DELETE FROM pool_items");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    private Connection physical(Connection conn) throws SQLException {
+        return conn.unwrap(Connection.class);
+    }
+
+    @Test
+    public void testFailureWhileWrappingClosesPhysicalConnection() throws Exception {
+        List<Connection> opened = new ArrayList<>();
+        Driver driver = new FailingDriver(opened);
+        DriverManager.registerDriver(driver);
+        PooledDataSource failing = new PooledDataSource("jdbc:failing:pooled_ds", "sa", "");
+        try {
+            try {
+                failing.getConnection();
+                fail("读取连接默认状态失败时应抛出异常");
+            } catch (SQLException e) {
+                assertEquals("读取隔离级别失败", e.getMessage());
+            }
+            assertEquals(1, opened.size());
+            assertTrue("物理连接应被关闭", opened.get(0).isClosed());
+            PooledDataSource.PoolMetrics metrics = failing.getMetrics();
+            assertEquals(0, metrics.getTotalConnections());
+            assertEquals(0, metrics.getCreatedCount());
+            assertEquals(0, metrics.getActiveConnections());
+        } finally {
+            failing.close();
+            DriverManager.deregisterDriver(driver);
+        }
+    }
+
+    /**
+     * 连接到H2，返回的连接读取隔离级别时失败
+     */
+    private static class FailingDriver implements Driver {
+        private static final String PREFIX = "jdbc:failing:";
+        private final List<Connection> opened;
+
+        FailingDriver(List<Connection> opened) {
+            this.opened = opened;
+        }
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            Connection target = DriverManager.getConnection("jdbc:h2:mem:" + url.substring(PREFIX.length()),
+                info.getProperty("user"), info.getProperty("password"));
+            opened.add(target);
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if ("getTransactionIsolation".equals(method.getName())) {
+                        throw new SQLException("读取隔离级别失败");
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url != null && url.startsWith(PREFIX);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+
+    @Test
+    public void testConnectionsAreReused() throws Exception {
+        Connection first;
+        try (Connection conn = pool.getConnection()) {
+            first = physical(conn);
+        }
+        for (int i = 0; i < 10; i++) {
+            try (Connection conn = pool.getConnection()) {
+                assertSame("顺序借用应复用同一物理连接", first, physical(conn));
+            }
+        }
+        PooledDataSource.PoolMetrics metrics = pool.getMetrics();
+        assertEquals(1, metrics.getCreatedCount());
+        assertEquals(12, metrics.getBorrowCount());
+        assertEquals(1, metrics.getIdleConnections());
+        assertEquals(0, metrics.getActiveConnections());
+    }
+
+    @Test
+    public void testCloseTwiceAndUseAfterClose() throws Exception {
+        Connection conn = pool.getConnection();
+        conn.close();
+        conn.close();
+        assertTrue(conn.isClosed());
+        try {
+            conn.createStatement();
+            fail("归还后的连接不应可用");
+        } catch (SQLException expected) {
+            // 预期异常
+        }
+        assertEquals("重复关闭不应重复归还", 1, pool.getMetrics().getIdleConnections());
+    }
+
+    @Test
+    public void testBoundedWithTimeout() throws Exception {
+        PooledDataSource small = new PooledDataSource(URL, "sa", "");
+        small.setMaxPoolSize(2);
+        small.setConnectionTimeout(100);
+        try (Connection a = small.getConnection(); Connection b = small.getConnection()) {
+            long start = System.currentTimeMillis();
+            try {
+                small.getConnection();
+                fail("超过最大连接数应超时");
+            } catch (SQLTransientConnectionException expected) {
+                assertTrue(System.currentTimeMillis() - start >= 90);
+            }
+            assertEquals(1, small.getMetrics().getTimeoutCount());
+            assertEquals(2, small.getMetrics().getActiveConnections());
+        }
+        try (Connection c = small.getConnection()) {
+            assertNotNull("归还后应能再次获取连接", c);
+        } finally {
+            small.close();
+        }
+    }
+
+    @Test
+    public void testUncommittedWorkRolledBackOnReturn() throws Exception {
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            stmt.execute("INSERT INTO pool_items (id) VALUES (1)");
+        }
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM pool_items")) {
+            assertTrue("归还时应恢复自动提交", conn.getAutoCommit());
+            rs.next();
+            assertEquals("未提交的写入应在归还时回滚", 0, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void testValidationOnBorrow() throws Exception {
+        String url = "jdbc:h2:mem:pooled_validation";
+        PooledDataSource validating = new PooledDataSource(url, "sa", "");
+        validating.setValidationInterval(0);
+        try {
+            try (Connection conn = validating.getConnection()) {
+                assertNotNull(conn);
+            }
+            // 模拟数据库端断开空闲连接
+            try (Connection raw = DriverManager.getConnection(url, "sa", ""); Statement stmt = raw.createStatement()) {
+                stmt.execute("SHUTDOWN");
+            }
+            try (Connection conn = validating.getConnection(); Statement stmt = conn.createStatement()) {
+                stmt.execute("SELECT 1");
+            }
+            PooledDataSource.PoolMetrics metrics = validating.getMetrics();
+            assertEquals("失效的空闲连接应在借出时被发现", 1, metrics.getValidationFailureCount());
+            assertEquals(2, metrics.getCreatedCount());
+        } finally {
+            validating.close();
+        }
+    }
+
+    @Test
+    public void testMaxLifetime() throws Exception {
+        Connection first;
+        try (Connection conn = pool.getConnection()) {
+            first = physical(conn);
+        }
+        pool.setMaxLifetime(1);
+        Thread.sleep(5);
+        try (Connection conn = pool.getConnection()) {
+            assertNotSame("超过生命周期的连接应被替换", first, physical(conn));
+        }
+        assertTrue(first.isClosed());
+    }
+
+    @Test
+    public void testLeakDetection() throws Exception {
+        PooledDataSource leaky = new PooledDataSource(URL, "sa", "");
+        leaky.setLeakDetectionThreshold(20);
+        leaky.setHousekeepingPeriod(10);
+        try (Connection conn = leaky.getConnection()) {
+            long deadline = System.currentTimeMillis() + 2000;
+            while (leaky.getMetrics().getLeakCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals("长时间未归还的连接应被报告", 1, leaky.getMetrics().getLeakCount());
+        } finally {
+            leaky.close();
+        }
+    }
+
+    @Test
+    public void testConfiguredThroughDataSourceConfig() throws Exception {
+        DataSourceManager.setUseJNDI(false);
+        try {
+            DataSourceConfig.LocalDataSourceInfo info = new DataSourceConfig.LocalDataSourceInfo();
+            info.name = "pooled_config_test";
+            info.url = URL;
+            info.userName = "sa";
+            info.password = "";
+            DataSourceConfig.PropertyInfo property = new DataSourceConfig.PropertyInfo();
+            property.name = "maxPoolSize";
+            property.value = "3";
+            info.properties.add(property);
+            DataSourceConfig.setDataSource("", info);
+
+            DataSource ds = DataSourceManager.getDataSource("pooled_config_test");
+            assertTrue("默认应使用内置连接池", ds instanceof PooledDataSource);
+            assertEquals(3, ((PooledDataSource) ds).getMaxPoolSize());
+            ((PooledDataSource) ds).close();
+        } finally {
+            DataSourceManager.removeLocalDataSource("pooled_config_test");
+            DataSourceManager.setUseJNDI(true);
+        }
+    }
+
+    @Test
+    public void testStatementsAndAttributesResetOnReturn() throws Exception {
+        Statement leaked;
+        String schema;
+        Connection first;
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+            first = physical(conn);
+            schema = conn.getSchema();
+            stmt.execute("CREATE SCHEMA IF NOT EXISTS pool_other");
+            conn.setSchema("POOL_OTHER");
+            leaked = conn.createStatement();
+        }
+        assertTrue("归还时应关闭未关闭的语句", leaked.isClosed());
+        try (Connection conn = pool.getConnection()) {
+            assertSame(first, physical(conn));
+            assertEquals("归还时应恢复默认schema", schema, conn.getSchema());
+        }
+    }
+
+    @Test
+    public void testDataSourceConfigUsesSettersAndClosesReplacedPool() throws Exception {
+        DataSourceManager.setUseJNDI(false);
+        try {
+            DataSourceConfig.LocalDataSourceInfo info = new DataSourceConfig.LocalDataSourceInfo();
+            info.name = "pooled_replace_test";
+            info.url = URL;
+            info.userName = "sa";
+            info.password = "";
+            DataSourceConfig.PropertyInfo property = new DataSourceConfig.PropertyInfo();
+            property.name = "connectionTimeout";
+            property.value = "-5";
+            info.properties.add(property);
+            DataSourceConfig.setDataSource("", info);
+
+            PooledDataSource first = (PooledDataSource) DataSourceManager.getDataSource("pooled_replace_test");
+            assertEquals("属性应经过setter校验", 0, first.getConnectionTimeout());
+
+            DataSourceConfig.setDataSource("", info);
+            PooledDataSource second = (PooledDataSource) DataSourceManager.getDataSource("pooled_replace_test");
+            assertNotSame(first, second);
+            assertTrue("被替换的连接池应关闭", first.isClosed());
+            assertFalse(second.isClosed());
+        } finally {
+            DataSourceManager.removeLocalDataSource("pooled_replace_test");
+            DataSourceManager.setUseJNDI(true);
+        }
+    }
+}
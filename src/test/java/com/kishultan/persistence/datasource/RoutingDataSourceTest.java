@@ -0,0 +1,259 @@
+package com.kishultan.persistence.datasource;
+
+import com.kishultan.persistence.PersistenceManager;
+import com.kishultan.persistence.model.TestUser;
+import com.kishultan.persistence.orm.EntityManager;
+import com.kishultan.persistence.orm.query.QueryBuilder;
+import com.kishultan.persistence.orm.query.config.QueryBuilderConfigManager;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 读写分离路由数据源测试类
+ *
+ * @author Portal Team
+ */
+public class RoutingDataSourceTest {
+
+    private static final String DS_NAME = "routing_test";
+
+    private JdbcDataSource primary;
+    private JdbcDataSource replica1;
+    private JdbcDataSource replica2;
+    private RoutingDataSource routingDataSource;
+
+    @Before
+    public void setUp() throws Exception {
+        System.clearProperty("querybuilder.cache.enabled");
+        QueryBuilderConfigManager.reset();
+        DataSourceManager.setUseJNDI(false);
+
+        primary = createDatabase("routing_primary", "primary");
+        replica1 = createDatabase("routing_replica1", "replica1");
+        replica2 = createDatabase("routing_replica2", "replica2");
+
+        routingDataSource = DataSourceManager.addRoutingDataSource(DS_NAME, primary, replica1, replica2);
+        // 清理其他测试遗留在当前线程上的事务
+        PersistenceManager.getManager(DS_NAME).close();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        PersistenceManager.shutdown(DS_NAME);
+        DataSourceManager.removeLocalDataSource(DS_NAME);
+        DataSourceManager.setUseJNDI(true);
+        for (JdbcDataSource ds : new JdbcDataSource[]{primary, replica1, replica2}) {
+            try (Connection conn = ds.getConnection(); Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP TABLE IF EXISTS test_users");
+            }
+        }
+    }
+
+    private JdbcDataSource createDatabase(String dbName, String marker) throws SQLException {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + dbName + ";DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE");
+        ds.setUser("sa");
+        ds.setPassword("");
+        try (Connection conn = ds.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS test_users (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "name VARCHAR(50), email VARCHAR(100), status VARCHAR(20), age INT, " +
+                    "region_code VARCHAR(20), create_time TIMESTAMP)");
+            stmt.execute("INSERT INTO test_users (name, status) VALUES ('" + marker + "', 'ACTIVE')");
+        }
+        return ds;
+    }
+
+    private String readMarker(EntityManager em) {
+        QueryBuilder<TestUser> builder = em.createQueryBuilder(TestUser.class);
+        List<TestUser> users = builder.findList();
+        assertFalse("查询结果不应为空", users.isEmpty());
+        return users.get(0).getName();
+    }
+
+    @Test
+    public void testReadsGoToReplicas() {
+        EntityManager em = PersistenceManager.getManager(DS_NAME);
+        String marker = readMarker(em);
+        assertTrue("只读查询应路由到从库", marker.startsWith("replica"));
+
+        TestUser user = em.findById(TestUser.class, 1L);
+        assertNotNull(user);
+        assertTrue("事务外findById应路由到从库", user.getName().startsWith("replica"));
+
+        assertEquals("count应在从库执行", 1, em.createQueryBuilder(TestUser.class).count());
+        assertEquals(0, routingDataSource.getPrimaryConnectionCount());
+    }
+
+    @Test
+    public void testRoundRobin() {
+        routingDataSource.setReplicaSelection(RoutingDataSource.ReplicaSelection.ROUND_ROBIN);
+        EntityManager em = PersistenceManager.getManager(DS_NAME);
+        String first = readMarker(em);
+        String second = readMarker(em);
+        assertNotEquals("轮询应交替选择从库", first, second);
+    }
+
+    @Test
+    public void testLeastInFlight() throws Exception {
+        // 占用一个从库连接后，新的读取应选择另一个从库
+        try (Connection held = DataSourceRoutingContext.getReadConnection(routingDataSource)) {
+            int[] inFlight = routingDataSource.getReplicaInFlight();
+            assertEquals("应有一个在途从库连接", 1, inFlight[0] + inFlight[1]);
+            int busy = inFlight[0] == 1 ? 0 : 1;
+            String expected = busy == 0 ? "replica2" : "replica1";
+            for (int i = 0; i < 5; i++) {
+                assertEquals("最少在途策略应避开繁忙从库", expected, readMarker(PersistenceManager.getManager(DS_NAME)));
+            }
+        }
+        int[] inFlight = routingDataSource.getReplicaInFlight();
+        assertEquals("连接关闭后在途计数应归零", 0, inFlight[0] + inFlight[1]);
+    }
+
+    @Test
+    public void testWritesAndTransactionsUsePrimary() {
+        EntityManager em = PersistenceManager.getManager(DS_NAME);
+
+        TestUser user = new TestUser();
+        user.setName("written");
+        em.save(user);
+        assertNotNull(user.getId());
+        assertTrue("写操作应使用主库", routingDataSource.getPrimaryConnectionCount() > 0);
+
+        em.beginTransaction();
+        try {
+            assertEquals("事务内读取应固定在主库", "primary", readMarker(em));
+            assertEquals("primary", em.findById(TestUser.class, 1L).getName());
+        } finally {
+            em.rollbackTransaction();
+        }
+
+        assertTrue("事务结束后读取应回到从库", readMarker(em).startsWith("replica"));
+    }
+
+    @Test
+    public void testReadYourWritesWindow() {
+        routingDataSource.setReadYourWritesWindowMillis(60000);
+        EntityManager em = PersistenceManager.getManager(DS_NAME);
+
+        assertTrue(readMarker(em).startsWith("replica"));
+
+        TestUser user = new TestUser();
+        user.setName("written");
+        em.save(user);
+
+        assertEquals("写入后的窗口内应读取主库", "primary", readMarker(em));
+        routingDataSource.clearReadYourWrites();
+        assertTrue(readMarker(em).startsWith("replica"));
+    }
+
+    @Test
+    public void testReadYourWritesStartsOnWriteOrCommit() throws Exception {
+        routingDataSource.setReadYourWritesWindowMillis(60000);
+        EntityManager em = PersistenceManager.getManager(DS_NAME);
+
+        // 只获取主库连接不算写入
+        try (Connection conn = routingDataSource.getConnection()) {
+            assertNotNull(conn);
+        }
+        assertTrue("未写入时读取应使用从库", readMarker(em).startsWith("replica"));
+
+        // 回滚的写入不开启窗口
+        em.beginTransaction();
+        TestUser rolledBack = new TestUser();
+        rolledBack.setName("rolled-back");
+        em.save(rolledBack);
+        em.rollbackTransaction();
+        assertTrue("回滚的写入不应固定主库", readMarker(em).startsWith("replica"));
+
+        em.beginTransaction();
+        TestUser committed = new TestUser();
+        committed.setName("committed");
+        em.save(committed);
+        em.commitTransaction();
+        assertEquals("提交后的窗口内应读取主库", "primary", readMarker(em));
+    }
+
+    @Test
+    public void testReplicaFailover() throws Exception {
+        RoutingDataSource failing = new RoutingDataSource(primary, new BrokenDataSource(), replica1);
+        failing.setReplicaSelection(RoutingDataSource.ReplicaSelection.ROUND_ROBIN);
+        for (int i = 0; i < 4; i++) {
+            try (Connection conn = DataSourceRoutingContext.getReadConnection(failing);
+                 Statement stmt = conn.createStatement();
+                 java.sql.ResultSet rs = stmt.executeQuery("SELECT name FROM test_users")) {
+                assertTrue(rs.next());
+                assertEquals("故障从库应被跳过", "replica1", rs.getString(1));
+            }
+        }
+        assertEquals(0, failing.getReplicaFallbackCount());
+
+        RoutingDataSource allBroken = new RoutingDataSource(primary, new BrokenDataSource());
+        try (Connection conn = DataSourceRoutingContext.getReadConnection(allBroken);
+             Statement stmt = conn.createStatement();
+             java.sql.ResultSet rs = stmt.executeQuery("SELECT name FROM test_users")) {
+            assertTrue(rs.next());
+            assertEquals("没有可用从库时应回退主库", "primary", rs.getString(1));
+        }
+        assertEquals(1, allBroken.getReplicaFallbackCount());
+    }
+
+    /**
+     * 总是获取连接失败的数据源
+     */
+    private static class BrokenDataSource implements DataSource {
+        @Override
+        public Connection getConnection() throws SQLException {
+            throw new SQLException("replica down");
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLException("replica down");
+        }
+
+        @Override
+        public PrintWriter getLogWriter() {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) {
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) {
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return null;
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            throw new SQLException("not a wrapper");
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) {
+            return false;
+        }
+    }
+}
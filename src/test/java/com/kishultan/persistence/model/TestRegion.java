@@ -0,0 +1,57 @@
+package com.kishultan.persistence.model;
+
+import com.kishultan.persistence.orm.cache.SecondLevelCache;
+
+import javax.persistence.*;
+
+/**
+ * 测试地区实体类
+ * 启用二级缓存的参考数据
+ */
+@Entity
+@Table(name = "test_regions")
+@SecondLevelCache(ttl = 60000, maxSize = 100)
+public class TestRegion {
+    
+    @Id
+    @Column(name = "id")
+    private Long id;
+    
+    @Column(name = "name")
+    private String name;
+    
+    @Column(name = "update_time")
+    private java.util.Date updateTime;
+    
+    public TestRegion() {
+    }
+    
+    public TestRegion(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public java.util.Date getUpdateTime() {
+        return updateTime;
+    }
+    
+    public void setUpdateTime(java.util.Date updateTime) {
+        this.updateTime = updateTime;
+    }
+}
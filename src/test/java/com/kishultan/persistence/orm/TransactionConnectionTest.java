@@ -0,0 +1,232 @@
+package com.kishultan.persistence.orm;
+
+import com.kishultan.persistence.PersistenceManager;
+import com.kishultan.persistence.config.PersistenceDefaults;
+import com.kishultan.persistence.datasource.ConnectionContext;
+import com.kishultan.persistence.datasource.DataSourceManager;
+import com.kishultan.persistence.model.TestUser;
+import com.kishultan.persistence.orm.query.config.QueryBuilderConfigManager;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 事务连接传播测试类
+ *
+ * @author Portal Team
+ */
+public class TransactionConnectionTest {
+
+    private static final String DS_NAME = "tx_propagation_test";
+
+    private CountingDataSource dataSource;
+    private boolean previousUseJNDI;
+
+    @Before
+    public void setUp() throws Exception {
+        System.clearProperty("querybuilder.cache.enabled");
+        QueryBuilderConfigManager.reset();
+        previousUseJNDI = DataSourceManager.isUseJNDI();
+        DataSourceManager.setUseJNDI(false);
+
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:tx_propagation;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE");
+        h2.setUser("sa");
+        h2.setPassword("");
+        try (Connection conn = h2.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS test_users");
+            stmt.execute("CREATE TABLE test_users (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "name VARCHAR(50), email VARCHAR(100), status VARCHAR(20), age INT, " +
+                    "region_code VARCHAR(20), create_time TIMESTAMP)");
+        }
+        dataSource = new CountingDataSource(h2);
+        DataSourceManager.addLocalDataSource(DS_NAME, dataSource);
+        // 清理其他测试遗留在当前线程上的事务
+        PersistenceManager.getManager(DS_NAME).close();
+    }
+
+    @After
+    public void tearDown() {
+        PersistenceManager.getManager(DS_NAME).close();
+        PersistenceManager.shutdown(DS_NAME);
+        DataSourceManager.removeLocalDataSource(DS_NAME);
+        DataSourceManager.setUseJNDI(previousUseJNDI);
+        PersistenceDefaults.reset();
+    }
+
+    private TestUser newUser(String name) {
+        TestUser user = new TestUser();
+        user.setName(name);
+        user.setStatus("ACTIVE");
+        return user;
+    }
+
+    @Test
+    public void testUnitOfWorkUsesOneConnection() {
+        EntityManager em = PersistenceManager.getManager(DS_NAME);
+        em.beginTransaction();
+        try {
+            em.save(newUser("tx-user"));
+
+            List<TestUser> users = em.createQueryBuilder(TestUser.class).findList();
+            assertEquals("事务内查询应看到未提交的写入", 1, users.size());
+            assertEquals(1, em.createQueryBuilder(TestUser.class).count());
+            assertNotNull(em.findById(TestUser.class, users.get(0).getId()));
+
+            assertEquals("一个工作单元只应获取一个连接", 1, dataSource.acquired.get());
+        } finally {
+            em.rollbackTransaction();
+        }
+
+        assertFalse("事务结束后应解除绑定", ConnectionContext.isBound(dataSource));
+        assertEquals("事务结束后应归还事务连接", 0, dataSource.open.get());
+        assertEquals("回滚后数据不应存在", 0, em.createQueryBuilder(TestUser.class).count());
+    }
+
+    @Test
+    public void testStaticSqlExecutorJoinsTransaction() {
+        PersistenceDefaults.setDataSourceName(DS_NAME);
+        EntityManager em = PersistenceManager.getManager(DS_NAME);
+        em.beginTransaction();
+        try {
+            em.save(newUser("tx-static"));
+            List<Object[]> rows = SqlExecutor.executeQuery("SELECT name FROM test_users");
+            assertEquals("静态SqlExecutor应使用事务连接", 1, rows.size());
+
+            SqlExecutor.executeInTransaction(connection -> {
+                try (Statement stmt = connection.createStatement()) {
+                    return stmt.executeUpdate("UPDATE test_users SET status = 'JOINED'");
+                }
+            });
+            assertEquals(1, dataSource.acquired.get());
+        } finally {
+            em.rollbackTransaction();
+        }
+        assertEquals("外部事务回滚时加入的操作也应回滚", 0, SqlExecutor.executeQuery("SELECT name FROM test_users").size());
+    }
+
+    @Test
+    public void testCommitReleasesConnection() {
+        EntityManager em = PersistenceManager.getManager(DS_NAME);
+        em.beginTransaction();
+        em.save(newUser("committed"));
+        em.commitTransaction();
+
+        assertEquals(0, dataSource.open.get());
+        assertFalse(ConnectionContext.isBound(dataSource));
+        assertEquals(1, em.createQueryBuilder(TestUser.class).findList().size());
+    }
+
+    @Test
+    public void testCommitThroughEntityTransactionEndsUnitOfWork() throws SQLException {
+        EntityManager em = PersistenceManager.getManager(DS_NAME);
+        EntityTransaction transaction = em.beginTransaction();
+        em.save(newUser("tx-commit"));
+        transaction.commit();
+        assertFalse("直接提交事务后应解除绑定", ConnectionContext.isBound(dataSource));
+
+        em.save(newUser("after-commit"));
+        assertEquals("已提交事务的连接应被归还", 0, dataSource.open.get());
+        try (Connection conn = dataSource.delegate.getConnection(); Statement stmt = conn.createStatement();
+             java.sql.ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM test_users")) {
+            rs.next();
+            assertEquals("提交后的写入应自动提交", 2, rs.getInt(1));
+        }
+
+        em.beginTransaction();
+        try {
+            em.beginTransaction();
+            fail("同一线程上不能重复开始事务");
+        } catch (IllegalStateException expected) {
+            // 原事务保持不变
+        } finally {
+            em.rollbackTransaction();
+        }
+        assertEquals(0, dataSource.open.get());
+        assertFalse(ConnectionContext.isBound(dataSource));
+    }
+
+    /**
+     * 统计连接获取与关闭次数的数据源
+     */
+    private static class CountingDataSource implements DataSource {
+        private final DataSource delegate;
+        private final AtomicInteger acquired = new AtomicInteger();
+        private final AtomicInteger open = new AtomicInteger();
+
+        CountingDataSource(DataSource delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            acquired.incrementAndGet();
+            open.incrementAndGet();
+            Connection connection = delegate.getConnection();
+            AtomicInteger openCounter = open;
+            return (Connection) java.lang.reflect.Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        if ("close".equals(method.getName()) && !connection.isClosed()) {
+                            openCounter.decrementAndGet();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (java.lang.reflect.InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return getConnection();
+        }
+
+        @Override
+        public PrintWriter getLogWriter() throws SQLException {
+            return delegate.getLogWriter();
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) throws SQLException {
+            delegate.setLogWriter(out);
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) throws SQLException {
+            delegate.setLoginTimeout(seconds);
+        }
+
+        @Override
+        public int getLoginTimeout() throws SQLException {
+            return delegate.getLoginTimeout();
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return null;
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            return delegate.unwrap(iface);
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) throws SQLException {
+            return delegate.isWrapperFor(iface);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.kishultan.persistence.orm.cache;
+
+import com.kishultan.persistence.PersistenceManager;
+import com.kishultan.persistence.config.PersistenceDefaults;
+import com.kishultan.persistence.datasource.DataSourceManager;
+import com.kishultan.persistence.model.TestRegion;
+import com.kishultan.persistence.model.TestUser;
+import com.kishultan.persistence.orm.EntityManager;
+import com.kishultan.persistence.orm.query.cache.TableVersionTracker;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 实体二级缓存测试类
+ *
+ * @author Portal Team
+ */
+public class EntityCacheTest {
+
+    private static final String DS_NAME = "entity_cache_test";
+
+    private JdbcDataSource dataSource;
+    private boolean previousUseJNDI;
+    private EntityManager em;
+
+    @Before
+    public void setUp() throws Exception {
+        EntityCacheManager.reset();
+        TableVersionTracker.reset();
+        previousUseJNDI = DataSourceManager.isUseJNDI();
+        DataSourceManager.setUseJNDI(false);
+
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:entity_cache;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS test_regions");
+            stmt.execute("CREATE TABLE test_regions (id BIGINT PRIMARY KEY, name VARCHAR(50), update_time TIMESTAMP)");
+            stmt.execute("INSERT INTO test_regions (id, name) VALUES (1, 'north'), (2, 'south'), (3, 'east')");
+        }
+        DataSourceManager.addLocalDataSource(DS_NAME, dataSource);
+        em = PersistenceManager.getManager(DS_NAME);
+        em.close();
+    }
+
+    @After
+    public void tearDown() {
+        PersistenceManager.getManager(DS_NAME).close();
+        PersistenceManager.shutdown(DS_NAME);
+        DataSourceManager.removeLocalDataSource(DS_NAME);
+        DataSourceManager.setUseJNDI(previousUseJNDI);
+        PersistenceDefaults.reset();
+        EntityCacheManager.reset();
+        TableVersionTracker.reset();
+    }
+
+    /**
+     * 绕过ORM直接修改，不会使缓存失效，用于判断结果是否来自缓存
+     */
+    private void renameDirectly(long id, String name) throws Exception {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE test_regions SET name = '" + name + "' WHERE id = " + id);
+        }
+    }
+
+    @Test
+    public void testOnlyAnnotatedEntitiesHaveRegion() {
+        assertNotNull(EntityCacheManager.getRegion(TestRegion.class));
+        assertNull(EntityCacheManager.getRegion(TestUser.class));
+    }
+
+    @Test
+    public void testFindByIdServedFromCache() throws Exception {
+        TestRegion first = em.findById(TestRegion.class, 1L);
+        assertEquals("north", first.getName());
+
+        renameDirectly(1, "changed");
+        TestRegion second = em.findById(TestRegion.class, 1L);
+        assertEquals("第二次查询应命中缓存", "north", second.getName());
+        assertNotSame("每次读取应创建新实例", first, second);
+        assertEquals(1, EntityCacheManager.getRegion(TestRegion.class).getStatistics().getHitCount());
+
+        second.setName("mutated");
+        assertEquals("修改返回的实体不应影响缓存", "north", em.findById(TestRegion.class, 1L).getName());
+    }
+
+    @Test
+    public void testMutableFieldsAreCopied() {
+        TestRegion region = em.findById(TestRegion.class, 2L);
+        region.setUpdateTime(new Date(1000L));
+        em.update(region);
+
+        TestRegion cached = em.findById(TestRegion.class, 2L);
+        cached.getUpdateTime().setTime(2000L);
+        assertEquals(1000L, em.findById(TestRegion.class, 2L).getUpdateTime().getTime());
+    }
+
+    @Test
+    public void testUpdateAndDeleteEvict() throws Exception {
+        TestRegion region = em.findById(TestRegion.class, 1L);
+        region.setName("north-updated");
+        em.update(region);
+        assertEquals("更新后条目被移除", 0, EntityCacheManager.getRegion(TestRegion.class).size());
+
+        renameDirectly(1, "changed");
+        assertEquals("更新后从数据库重新加载", "changed", em.findById(TestRegion.class, 1L).getName());
+        renameDirectly(1, "north-updated");
+        assertEquals("重新加载的实体写入缓存", "changed", em.findById(TestRegion.class, 1L).getName());
+
+        em.delete(region);
+        assertNull(em.findById(TestRegion.class, 1L));
+
+        em.findById(TestRegion.class, 2L);
+        em.deleteById(TestRegion.class, 2L);
+        assertNull(em.findById(TestRegion.class, 2L));
+    }
+
+    @Test
+    public void testOnlyMappedColumnsAreCached() throws Exception {
+        TaggedRegion first = em.findById(TaggedRegion.class, 1L);
+        assertNotNull("非持久化的集合字段不影响启用缓存", EntityCacheManager.getRegion(TaggedRegion.class));
+        first.getTags().add("mutated");
+
+        renameDirectly(1, "changed");
+        TaggedRegion second = em.findById(TaggedRegion.class, 1L);
+        assertEquals("第二次查询应命中缓存", "north", second.getName());
+        assertTrue("修改返回实体的集合字段不影响缓存", second.getTags().isEmpty());
+
+        assertNull("映射列为可变集合时不启用缓存", EntityCacheManager.getRegion(ListRegion.class));
+    }
+
+    @Test
+    public void testFindByIds() throws Exception {
+        em.findById(TestRegion.class, 1L);
+        renameDirectly(1, "changed");
+
+        List<TestRegion> regions = em.findByIds(TestRegion.class, Arrays.asList(3L, 1L, 99L, 2L, 3L));
+        assertEquals(3, regions.size());
+        assertEquals("应按ID顺序返回", Long.valueOf(3L), regions.get(0).getId());
+        assertEquals("已缓存的实体应来自缓存", "north", regions.get(1).getName());
+        assertEquals(Long.valueOf(2L), regions.get(2).getId());
+
+        renameDirectly(2, "changed");
+        assertEquals("未命中的实体加载后应写入缓存", "south", em.findById(TestRegion.class, 2L).getName());
+        assertTrue(em.findByIds(TestRegion.class, Arrays.asList()).isEmpty());
+    }
+
+    @Test
+    public void testTransactionBypassesCacheUntilCommit() throws Exception {
+        assertEquals("north", em.findById(TestRegion.class, 1L).getName());
+
+        em.beginTransaction();
+        try {
+            TestRegion region = em.findById(TestRegion.class, 1L);
+            region.setName("tx-name");
+            em.update(region);
+            assertEquals("有未提交写入时应读取数据库", "tx-name", em.findById(TestRegion.class, 1L).getName());
+        } finally {
+            em.rollbackTransaction();
+        }
+        assertEquals("回滚后应读取到原值", "north", em.findById(TestRegion.class, 1L).getName());
+
+        em.beginTransaction();
+        try {
+            em.deleteById(TestRegion.class, 3L);
+            em.commitTransaction();
+        } catch (RuntimeException e) {
+            em.rollbackTransaction();
+            throw e;
+        }
+        assertNull(em.findById(TestRegion.class, 3L));
+    }
+
+    @javax.persistence.Entity
+    @javax.persistence.Table(name = "test_regions")
+    @SecondLevelCache(ttl = 60000, maxSize = 100)
+    public static class TaggedRegion {
+        @javax.persistence.Id
+        @javax.persistence.Column(name = "id")
+        private Long id;
+
+        @javax.persistence.Column(name = "name")
+        private String name;
+
+        @javax.persistence.Transient
+        private List<String> tags = new ArrayList<>();
+
+        public Long getId() { return id; }
+        public void setId(Long id) { this.id = id; }
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        public List<String> getTags() { return tags; }
+        public void setTags(List<String> tags) { this.tags = tags; }
+    }
+
+    @javax.persistence.Entity
+    @javax.persistence.Table(name = "test_regions")
+    @SecondLevelCache(ttl = 60000, maxSize = 100)
+    public static class ListRegion {
+        @javax.persistence.Id
+        @javax.persistence.Column(name = "id")
+        private Long id;
+
+        @javax.persistence.Column(name = "name")
+        private List<String> name;
+
+        public Long getId() { return id; }
+        public void setId(Long id) { this.id = id; }
+    }
+}
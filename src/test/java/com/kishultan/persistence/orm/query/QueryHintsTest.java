@@ -0,0 +1,172 @@
+package com.kishultan.persistence.orm.query;
+
+import com.kishultan.persistence.model.TestUser;
+import com.kishultan.persistence.orm.dialect.DialectFactory;
+import com.kishultan.persistence.orm.dialect.H2Dialect;
+import com.kishultan.persistence.orm.dialect.MySQLDialect;
+import com.kishultan.persistence.orm.query.config.QueryBuilderConfigManager;
+import com.kishultan.persistence.orm.query.impl.StandardQueryBuilder;
+import org.h2.engine.SessionLocal;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 查询提示测试类
+ *
+ * @author Portal Team
+ */
+public class QueryHintsTest {
+
+    private JdbcDataSource dataSource;
+
+    @Before
+    public void setUp() throws Exception {
+        // 关闭查询缓存，避免不同提示的查询互相命中
+        System.clearProperty("querybuilder.cache.enabled");
+        QueryBuilderConfigManager.reset();
+
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:query_hints;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS test_users (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "name VARCHAR(50), email VARCHAR(100), status VARCHAR(20), age INT, " +
+                    "region_code VARCHAR(20), create_time TIMESTAMP)");
+            for (int i = 1; i <= 20; i++) {
+                stmt.execute("INSERT INTO test_users (name, status, age) VALUES ('user" + i + "', 'ACTIVE', " + (20 + i) + ")");
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS test_users");
+        }
+    }
+
+    @Test
+    public void testDefaultHints() {
+        QueryHints hints = new QueryHints();
+        assertTrue("默认提示应为默认值", hints.isDefault());
+        assertFalse("未设置fetchSize时不应流式读取", hints.isStreaming());
+        assertEquals(ResultSet.TYPE_FORWARD_ONLY, hints.getResultSetType());
+        assertEquals(ResultSet.CONCUR_READ_ONLY, hints.getResultSetConcurrency());
+
+        hints.setFetchSize(100);
+        assertTrue("只进只读且设置fetchSize时应流式读取", hints.isStreaming());
+        hints.setForwardOnly(false);
+        assertFalse("可滚动结果集不应流式读取", hints.isStreaming());
+        assertEquals(ResultSet.TYPE_SCROLL_INSENSITIVE, hints.getResultSetType());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeFetchSize() {
+        new QueryHints().setFetchSize(-1);
+    }
+
+    @Test
+    public void testMaxRowsHint() {
+        QueryBuilder<TestUser> builder = new StandardQueryBuilder<>(TestUser.class, dataSource);
+        List<TestUser> users = builder.maxRows(5).findList();
+        assertEquals("maxRows应限制返回行数", 5, users.size());
+    }
+
+    @Test
+    public void testFetchSizeWithFindList() {
+        QueryBuilder<TestUser> builder = new StandardQueryBuilder<>(TestUser.class, dataSource);
+        List<TestUser> users = builder.fetchSize(3).findList();
+        assertEquals("流式读取应返回全部行", 20, users.size());
+        assertEquals(3, builder.getQueryHints().getFetchSize());
+    }
+
+    @Test
+    public void testFindEach() {
+        QueryBuilder<TestUser> builder = new StandardQueryBuilder<>(TestUser.class, dataSource);
+        List<String> names = new ArrayList<>();
+        builder.fetchSize(4).findEach(user -> names.add(user.getName()));
+        assertEquals("逐行处理应覆盖全部行", 20, names.size());
+        assertTrue(names.contains("user1"));
+        assertTrue(names.contains("user20"));
+    }
+
+    @Test
+    public void testFindEachRethrowsCallbackException() {
+        QueryBuilder<TestUser> builder = new StandardQueryBuilder<>(TestUser.class, dataSource);
+        IllegalStateException failure = new IllegalStateException("stop");
+        try {
+            builder.fetchSize(4).findEach(user -> {
+                throw failure;
+            });
+            fail("回调异常应抛出");
+        } catch (IllegalStateException e) {
+            assertSame("回调异常应原样抛出", failure, e);
+        }
+    }
+
+    @Test
+    public void testH2StreamingRestoresLazyExecution() throws Exception {
+        H2Dialect dialect = new H2Dialect();
+        try (Connection conn = dataSource.getConnection()) {
+            SessionLocal session = (SessionLocal) conn.unwrap(JdbcConnection.class).getSession();
+            assertTrue("默认关闭时应开启并需要恢复", dialect.beginStreaming(conn));
+            assertTrue(session.isLazyQueryExecution());
+            dialect.endStreaming(conn);
+            assertFalse(session.isLazyQueryExecution());
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SET LAZY_QUERY_EXECUTION TRUE");
+            }
+            assertFalse("会话已开启时不应修改", dialect.beginStreaming(conn));
+            assertTrue(session.isLazyQueryExecution());
+        }
+    }
+
+    @Test
+    public void testScrollableHints() {
+        QueryBuilder<TestUser> builder = new StandardQueryBuilder<>(TestUser.class, dataSource);
+        List<TestUser> users = builder.forwardOnly(false).fetchSize(10).findList();
+        assertEquals(20, users.size());
+    }
+
+    @Test
+    public void testDialectResolution() throws Exception {
+        try (Connection conn = dataSource.getConnection()) {
+            assertTrue("H2连接应解析为H2方言", DialectFactory.getDialect(conn) instanceof H2Dialect);
+        }
+    }
+
+    @Test
+    public void testMySqlStreamingFetchSize() throws Exception {
+        Connection connection = mock(Connection.class);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        Statement statement = mock(Statement.class);
+        when(connection.getMetaData()).thenReturn(metaData);
+
+        when(metaData.getURL()).thenReturn("jdbc:mysql://localhost:3306/test");
+        new MySQLDialect().configureStreaming(connection, statement, 500);
+        verify(statement).setFetchSize(Integer.MIN_VALUE);
+
+        Statement cursorStatement = mock(Statement.class);
+        when(metaData.getURL()).thenReturn("jdbc:mysql://localhost:3306/test?useCursorFetch=true");
+        new MySQLDialect().configureStreaming(connection, cursorStatement, 500);
+        verify(cursorStatement).setFetchSize(500);
+    }
+}
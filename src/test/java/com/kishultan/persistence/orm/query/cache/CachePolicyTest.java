@@ -0,0 +1,231 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import com.kishultan.persistence.PersistenceManager;
+import com.kishultan.persistence.config.PersistenceDefaults;
+import com.kishultan.persistence.datasource.DataSourceManager;
+import com.kishultan.persistence.model.TestUser;
+import com.kishultan.persistence.orm.EntityManager;
+import com.kishultan.persistence.orm.query.cache.impl.LRUCacheStrategy;
+import com.kishultan.persistence.orm.query.cache.impl.QueryCacheImpl;
+import com.kishultan.persistence.orm.query.config.QueryBuilderConfigManager;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * 查询级缓存策略（过期后重新验证）测试类
+ *
+ * @author Portal Team
+ */
+public class CachePolicyTest {
+
+    private static final String DS_NAME = "cache_policy_test";
+
+    private QueryCacheImpl cache;
+    private JdbcDataSource dataSource;
+    private boolean previousUseJNDI;
+
+    @After
+    public void tearDown() {
+        if (cache != null) {
+            cache.shutdown();
+        }
+        if (dataSource != null) {
+            PersistenceManager.getManager(DS_NAME).close();
+            PersistenceManager.shutdown(DS_NAME);
+            DataSourceManager.removeLocalDataSource(DS_NAME);
+            DataSourceManager.setUseJNDI(previousUseJNDI);
+            PersistenceDefaults.reset();
+            System.clearProperty("querybuilder.cache.enabled");
+            QueryBuilderConfigManager.reset();
+        }
+        TableVersionTracker.reset();
+    }
+
+    private QueryCacheImpl newCache(boolean async) {
+        CacheConfig config = new CacheConfig(true, 100, 60000);
+        config.setEnableAsync(async);
+        cache = new QueryCacheImpl(config, new LRUCacheStrategy());
+        return cache;
+    }
+
+    private static void waitFor(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("等待条件超时", condition.get());
+    }
+
+    @Test
+    public void testPolicyValidation() {
+        assertFalse(CachePolicy.ttl(1000).isRefreshAhead());
+        assertTrue(CachePolicy.staleWhileRevalidate(100, 1000).isRefreshAhead());
+        assertFalse("softTtl等于hardTtl时不会刷新", CachePolicy.staleWhileRevalidate(1000, 1000).isRefreshAhead());
+        try {
+            CachePolicy.staleWhileRevalidate(2000, 1000);
+            fail("softTtl大于hardTtl应报错");
+        } catch (IllegalArgumentException expected) {
+            // 预期异常
+        }
+    }
+
+    @Test
+    public void testSoftExpiredHitReturnsStaleAndRefreshesOnce() throws Exception {
+        QueryCacheImpl cache = newCache(true);
+        AtomicInteger refreshes = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        cache.put("key", "v0", CachePolicy.staleWhileRevalidate(50, 60000), null, () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "v" + refreshes.incrementAndGet();
+        });
+        assertEquals("v0", cache.get("key", String.class));
+        Thread.sleep(80);
+
+        // 刷新完成前的命中都返回旧结果，且只触发一次刷新
+        for (int i = 0; i < 10; i++) {
+            assertEquals("v0", cache.get("key", String.class));
+        }
+        release.countDown();
+        waitFor(() -> "v1".equals(cache.get("key", String.class)));
+        assertEquals(1, refreshes.get());
+        assertEquals(1, cache.getStatistics().getRefreshCount());
+
+        // 刷新后的条目保留策略，再次超过softTtl时继续刷新
+        Thread.sleep(80);
+        cache.get("key", String.class);
+        waitFor(() -> "v2".equals(cache.get("key", String.class)));
+    }
+
+    @Test
+    public void testHardExpiryAndFailedRefresh() throws Exception {
+        QueryCacheImpl cache = newCache(false);
+        AtomicInteger attempts = new AtomicInteger();
+        cache.put("key", "v0", CachePolicy.staleWhileRevalidate(30, 300), null, () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("数据库不可用");
+        });
+        Thread.sleep(50);
+        assertEquals("刷新失败时仍返回旧结果", "v0", cache.get("key", String.class));
+        waitFor(() -> cache.getStatistics().getRefreshFailureCount() == 1);
+        assertEquals("v0", cache.get("key", String.class));
+        waitFor(() -> attempts.get() == 2);
+
+        Thread.sleep(300);
+        assertNull("超过hardTtl后不再返回旧结果", cache.get("key", String.class));
+
+        cache.put("empty", "v0", CachePolicy.staleWhileRevalidate(30, 60000), null, () -> null);
+        Thread.sleep(50);
+        assertEquals("v0", cache.get("empty", String.class));
+        waitFor(() -> !cache.contains("empty"));
+    }
+
+    private EntityManager setUpDatabase() throws Exception {
+        System.setProperty("querybuilder.cache.enabled", "true");
+        QueryBuilderConfigManager.reset();
+        previousUseJNDI = DataSourceManager.isUseJNDI();
+        DataSourceManager.setUseJNDI(false);
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:cache_policy;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS test_users");
+            stmt.execute("CREATE TABLE test_users (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "name VARCHAR(50), email VARCHAR(100), status VARCHAR(20), age INT, " +
+                    "region_code VARCHAR(20), create_time TIMESTAMP)");
+            stmt.executeUpdate("INSERT INTO test_users (name, status) VALUES ('first', 'ACTIVE')");
+        }
+        DataSourceManager.addLocalDataSource(DS_NAME, dataSource);
+        return PersistenceManager.getManager(DS_NAME);
+    }
+
+    private void insertUser(String name) throws Exception {
+        // 绕过ORM写入，不递增表版本
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO test_users (name, status) VALUES ('" + name + "', 'ACTIVE')");
+        }
+    }
+
+    @Test
+    public void testQueryBuilderRefreshesFromCompiledQuery() throws Exception {
+        EntityManager em = setUpDatabase();
+
+        CachePolicy policy = CachePolicy.staleWhileRevalidate(50, 60000);
+        assertEquals(1, em.createQueryBuilder(TestUser.class).cachePolicy(policy).count());
+
+        // 绕过ORM写入，只能通过刷新看到
+        insertUser("second");
+        assertEquals("softTtl内返回缓存结果", 1, em.createQueryBuilder(TestUser.class).cachePolicy(policy).count());
+        Thread.sleep(80);
+        assertEquals("超过softTtl仍返回旧结果", 1, em.createQueryBuilder(TestUser.class).cachePolicy(policy).count());
+        waitFor(() -> em.createQueryBuilder(TestUser.class).cachePolicy(policy).count() == 2);
+    }
+
+    @Test
+    public void testPolicyOptions() {
+        CachePolicy policy = CachePolicy.ttl(10000).withRegion("users").withMaxResultSize(2).withNegativeTtl(500);
+        assertEquals("users", policy.getRegion());
+        assertTrue(policy.accepts(2));
+        assertFalse("超过最大行数不缓存", policy.accepts(3));
+        assertTrue(policy.accepts(0));
+        assertFalse(policy.withNegativeTtl(0).accepts(0));
+        assertEquals(500, policy.forNegativeResult().getHardTtl());
+        assertEquals("空结果TTL不超过hardTtl", 100, CachePolicy.ttl(100).forNegativeResult().getHardTtl());
+        assertFalse(CachePolicy.staleWhileRevalidate(50, 1000).forNegativeResult().isRefreshAhead());
+        assertFalse(CachePolicy.disabled().accepts(1));
+        assertEquals(CachePolicy.DEFAULT_REGION, CachePolicy.ttl(0).withRegion(null).getRegion());
+    }
+
+    @Test
+    public void testNegativeResultsAndRegionStatistics() throws Exception {
+        EntityManager em = setUpDatabase();
+        CachePolicy policy = CachePolicy.ttl(60000).withRegion("users").withNegativeTtl(100);
+
+        assertTrue(em.createQueryBuilder(TestUser.class).cachePolicy(policy)
+            .where(w -> w.eq(TestUser::getName, "missing")).findList().isEmpty());
+        assertEquals(0, em.createQueryBuilder(TestUser.class).cachePolicy(policy)
+            .where(w -> w.eq(TestUser::getName, "missing")).count());
+        insertUser("missing");
+        assertTrue("negativeTtl内返回缓存的空结果", em.createQueryBuilder(TestUser.class).cachePolicy(policy)
+            .where(w -> w.eq(TestUser::getName, "missing")).findList().isEmpty());
+        assertEquals(0, em.createQueryBuilder(TestUser.class).cachePolicy(policy)
+            .where(w -> w.eq(TestUser::getName, "missing")).count());
+
+        RegionStatistics users = QueryBuilderConfigManager.getQueryCache().getStatistics().getRegionStatistics("users");
+        assertEquals(2, users.getNegativePutCount());
+        assertEquals(2, users.getNegativeHitCount());
+        assertEquals(2, users.getMissCount());
+        assertEquals(2, users.getLoadCount());
+        assertEquals(2, QueryBuilderConfigManager.getQueryCache().getStatistics()
+            .getEntityStatistics(TestUser.class.getName()).getNegativeHitCount());
+
+        Thread.sleep(150);
+        assertEquals("空结果过期后重新查询", 1, em.createQueryBuilder(TestUser.class).cachePolicy(policy)
+            .where(w -> w.eq(TestUser::getName, "missing")).findList().size());
+
+        // 超过最大行数和禁用缓存的查询不存储
+        CachePolicy small = policy.withRegion("small").withMaxResultSize(1);
+        assertEquals(2, em.createQueryBuilder(TestUser.class).cachePolicy(small).findList().size());
+        insertUser("third");
+        assertEquals(3, em.createQueryBuilder(TestUser.class).cachePolicy(small).findList().size());
+        assertEquals(2, QueryBuilderConfigManager.getQueryCache().getStatistics()
+            .getRegionStatistics("small").getRejectedCount());
+        assertEquals(3, em.createQueryBuilder(TestUser.class).cachePolicy(CachePolicy.disabled()).count());
+        insertUser("fourth");
+        assertEquals(4, em.createQueryBuilder(TestUser.class).cachePolicy(CachePolicy.disabled()).count());
+    }
+}
@@ -0,0 +1,167 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import com.kishultan.persistence.PersistenceManager;
+import com.kishultan.persistence.config.PersistenceDefaults;
+import com.kishultan.persistence.datasource.DataSourceManager;
+import com.kishultan.persistence.model.TestUser;
+import com.kishultan.persistence.orm.EntityManager;
+import com.kishultan.persistence.orm.query.cache.impl.CacheRegionManager;
+import com.kishultan.persistence.orm.query.config.QueryBuilderConfigManager;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 查询缓存区域测试类
+ *
+ * @author Portal Team
+ */
+public class CacheRegionTest {
+
+    private static final String DS_NAME = "cache_region_test";
+
+    private JdbcDataSource dataSource;
+    private boolean previousUseJNDI;
+
+    @Entity
+    @Table(name = "test_users")
+    @CacheRegion(value = "reference", maxSize = 10, strategy = CacheStrategy.StrategyType.LFU, readOnly = true)
+    public static class ReferenceUser {
+        @Id
+        private Long id;
+
+        @Column(name = "name")
+        private String name;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (dataSource != null) {
+            PersistenceManager.getManager(DS_NAME).close();
+            PersistenceManager.shutdown(DS_NAME);
+            DataSourceManager.removeLocalDataSource(DS_NAME);
+            DataSourceManager.setUseJNDI(previousUseJNDI);
+            PersistenceDefaults.reset();
+        }
+        System.clearProperty("querybuilder.cache.enabled");
+        QueryBuilderConfigManager.reset();
+        TableVersionTracker.reset();
+    }
+
+    private EntityManager setUpDatabase() throws Exception {
+        System.setProperty("querybuilder.cache.enabled", "true");
+        QueryBuilderConfigManager.reset();
+        previousUseJNDI = DataSourceManager.isUseJNDI();
+        DataSourceManager.setUseJNDI(false);
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:cache_region;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS test_users");
+            stmt.execute("CREATE TABLE test_users (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "name VARCHAR(50), email VARCHAR(100), status VARCHAR(20), age INT, " +
+                    "region_code VARCHAR(20), create_time TIMESTAMP)");
+            for (int i = 0; i < 3; i++) {
+                stmt.executeUpdate("INSERT INTO test_users (name, status) VALUES ('user" + i + "', 'ACTIVE')");
+            }
+        }
+        DataSourceManager.addLocalDataSource(DS_NAME, dataSource);
+        return PersistenceManager.getManager(DS_NAME);
+    }
+
+    @Test
+    public void testAnnotatedEntityUsesOwnRegion() throws Exception {
+        EntityManager em = setUpDatabase();
+        assertEquals(3, em.createQueryBuilder(ReferenceUser.class).findList().size());
+        List<ReferenceUser> cached = em.createQueryBuilder(ReferenceUser.class).findList();
+        assertEquals(3, cached.size());
+        try {
+            cached.remove(0);
+            fail("只读区域返回只读视图");
+        } catch (UnsupportedOperationException expected) {
+            // 预期异常
+        }
+
+        CacheRegionManager regions = QueryBuilderConfigManager.getCacheRegionManager();
+        QueryCache region = regions.getCache("reference");
+        assertNotNull(region);
+        assertEquals(1, region.size());
+        assertEquals(1, region.getStatistics().getHitCount());
+        assertEquals(1, region.getStatistics().getRegionStatistics("reference").getHitCount());
+        assertEquals("全局缓存不受影响", 0, QueryBuilderConfigManager.getQueryCache().size());
+
+        // 查询设置的策略优先于实体注解
+        em.createQueryBuilder(ReferenceUser.class).cachePolicy(CachePolicy.ttl(60000)).count();
+        assertEquals(1, QueryBuilderConfigManager.getQueryCache().size());
+        assertEquals(1, region.size());
+    }
+
+    @Test
+    public void testRegionsDoNotEvictEachOther() throws Exception {
+        EntityManager em = setUpDatabase();
+        CacheConfig config = new CacheConfig(true, 1, 60000);
+        config.setEnableAsync(false);
+        QueryCache reports = QueryBuilderConfigManager.getCacheRegionManager().register("reports", config);
+        CachePolicy reportPolicy = CachePolicy.ttl(60000).withRegion("reports");
+
+        em.createQueryBuilder(TestUser.class).count();
+        for (int i = 0; i < 3; i++) {
+            String name = "user" + i;
+            assertEquals(1, em.createQueryBuilder(TestUser.class).cachePolicy(reportPolicy)
+                .where(w -> w.eq(TestUser::getName, name)).findList().size());
+        }
+        assertEquals(1, reports.size());
+        assertTrue(reports.getStatistics().getEvictionCount() > 0);
+        QueryCache global = QueryBuilderConfigManager.getQueryCache();
+        assertEquals("报表区域的淘汰不影响全局缓存", 1, global.size());
+        assertEquals(0, global.getStatistics().getEvictionCount());
+
+        // 未创建的区域使用全局缓存
+        em.createQueryBuilder(TestUser.class).cachePolicy(CachePolicy.ttl(60000).withRegion("missing")).findList();
+        assertEquals(2, global.size());
+    }
+
+    @Test
+    public void testStrategyTypes() {
+        CacheConfig config = new CacheConfig(true, 10, 1000);
+        config.setStrategyType(CacheStrategy.StrategyType.LFU);
+        assertEquals(CacheStrategy.StrategyType.W_TINY_LFU, CacheRegionManager.createStrategy(config).getStrategyType());
+        config.setStrategyType(CacheStrategy.StrategyType.TTL);
+        assertEquals(CacheStrategy.StrategyType.TTL, CacheRegionManager.createStrategy(config).getStrategyType());
+        config.setStrategyType(CacheStrategy.StrategyType.SIZE);
+        assertEquals(CacheStrategy.StrategyType.LRU, CacheRegionManager.createStrategy(config).getStrategyType());
+        try {
+            new CacheRegionManager().register(CachePolicy.DEFAULT_REGION, config);
+            fail("默认区域名称不能注册");
+        } catch (IllegalArgumentException expected) {
+            // 预期异常
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 缓存统计信息测试类
+ *
+ * @author Portal Team
+ */
+public class CacheStatisticsTest {
+
+    @Test
+    public void testConcurrentUpdatesAreNotLost() throws InterruptedException {
+        CacheStatistics statistics = new CacheStatistics();
+        StrategyStatistics strategyStatistics = new StrategyStatistics();
+        int threads = 8;
+        int iterations = 20000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                RegionStatistics region = statistics.getRegionStatistics("users");
+                for (int i = 0; i < iterations; i++) {
+                    statistics.recordHit();
+                    statistics.recordMiss();
+                    region.recordHit(i % 2 == 0);
+                    strategyStatistics.recordAccess(0);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long expected = (long) threads * iterations;
+        assertEquals(expected, statistics.getHitCount());
+        assertEquals(expected, statistics.getMissCount());
+        assertEquals(2 * expected, statistics.getTotalAccessCount());
+        assertEquals(0.5, statistics.getHitRate(), 0.0001);
+        assertEquals(expected, statistics.getRegionStatistics("users").getHitCount());
+        assertEquals(expected / 2, statistics.getRegionStatistics("users").getNegativeHitCount());
+        assertEquals(expected, strategyStatistics.getAccessCount());
+        assertNotNull(strategyStatistics.getLastAccessTime());
+
+        List<CacheStatistics.IntervalSnapshot> intervals = statistics.getIntervalSnapshots(60);
+        long intervalHits = 0;
+        for (CacheStatistics.IntervalSnapshot interval : intervals) {
+            intervalHits += interval.getHits();
+        }
+        assertEquals("区间计数之和等于总数", expected, intervalHits);
+    }
+
+    @Test
+    public void testLoadTimeHistogram() {
+        LoadTimeHistogram histogram = new LoadTimeHistogram();
+        assertEquals(0.0, histogram.getPercentileMillis(99), 0.0);
+        for (int i = 0; i < 99; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(500));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(100, histogram.getCount());
+        assertEquals(1.495, histogram.getMeanMillis(), 0.001);
+        // 500微秒落在(262, 524]微秒的桶中
+        assertEquals(0.524, histogram.getPercentileMillis(50), 0.001);
+        assertEquals(0.524, histogram.getPercentileMillis(99), 0.001);
+        assertTrue(histogram.getPercentileMillis(100) >= 100);
+
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-1);
+        assertEquals(102, histogram.getCount());
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void testLoadsAndReset() {
+        CacheStatistics statistics = new CacheStatistics();
+        statistics.recordLoad(TimeUnit.MILLISECONDS.toNanos(2), true);
+        statistics.recordLoad(TimeUnit.MILLISECONDS.toNanos(3), false);
+        statistics.recordPut(100);
+        statistics.recordEviction(150);
+        statistics.getEntityStatistics("com.example.User").recordLoad(1000, true);
+        assertEquals(1, statistics.getLoadCount());
+        assertEquals(1, statistics.getLoadFailureCount());
+        assertEquals("内存使用量不为负", 0, statistics.getTotalMemoryUsage());
+
+        CacheStatistics.IntervalSnapshot current = statistics.getIntervalSnapshots(1).get(0);
+        assertEquals(2, current.getLoads());
+        assertEquals(1, current.getEvictions());
+        assertEquals(1, statistics.getEntityStatistics().get("com.example.User").getLoadCount());
+
+        statistics.reset();
+        assertEquals(0, statistics.getLoadCount());
+        assertNull(statistics.getLastPutTime());
+        assertTrue(statistics.getEntityStatistics().isEmpty());
+        assertEquals(0, statistics.getIntervalSnapshots(60).get(0).getLoads());
+    }
+}
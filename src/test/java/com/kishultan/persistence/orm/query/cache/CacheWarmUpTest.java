@@ -0,0 +1,158 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import com.kishultan.persistence.PersistenceManager;
+import com.kishultan.persistence.config.PersistenceDefaults;
+import com.kishultan.persistence.datasource.DataSourceManager;
+import com.kishultan.persistence.model.TestUser;
+import com.kishultan.persistence.orm.EntityManager;
+import com.kishultan.persistence.orm.query.cache.impl.CacheWarmUp;
+import com.kishultan.persistence.orm.query.config.QueryBuilderConfigManager;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 查询缓存预热测试类
+ *
+ * @author Portal Team
+ */
+public class CacheWarmUpTest {
+
+    private static final String DS_NAME = "cache_warmup_test";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private JdbcDataSource dataSource;
+    private boolean previousUseJNDI;
+
+    @After
+    public void tearDown() {
+        if (dataSource != null) {
+            PersistenceManager.getManager(DS_NAME).close();
+            PersistenceManager.shutdown(DS_NAME);
+            DataSourceManager.removeLocalDataSource(DS_NAME);
+            DataSourceManager.setUseJNDI(previousUseJNDI);
+            PersistenceDefaults.reset();
+        }
+        System.clearProperty("querybuilder.cache.enabled");
+        System.clearProperty("querybuilder.cache.warmup.file");
+        QueryBuilderConfigManager.reset();
+        TableVersionTracker.reset();
+    }
+
+    private EntityManager setUpDatabase(Path file) throws Exception {
+        System.setProperty("querybuilder.cache.enabled", "true");
+        System.setProperty("querybuilder.cache.warmup.file", file.toString());
+        QueryBuilderConfigManager.reset();
+        previousUseJNDI = DataSourceManager.isUseJNDI();
+        DataSourceManager.setUseJNDI(false);
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:cache_warmup;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS test_users");
+            stmt.execute("CREATE TABLE test_users (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "name VARCHAR(50), email VARCHAR(100), status VARCHAR(20), age INT, " +
+                    "region_code VARCHAR(20), create_time TIMESTAMP)");
+            stmt.executeUpdate("INSERT INTO test_users (name, status) VALUES ('first', 'ACTIVE')");
+            stmt.executeUpdate("INSERT INTO test_users (name, status) VALUES ('second', 'ACTIVE')");
+        }
+        DataSourceManager.addLocalDataSource(DS_NAME, dataSource);
+        return PersistenceManager.getManager(DS_NAME);
+    }
+
+    @Test
+    public void testRecordTopQueries() {
+        CacheWarmUp warmUp = new CacheWarmUp(2);
+        WarmUpQuery frequent = new WarmUpQuery(TestUser.class, WarmUpQuery.FIND_LIST, "SELECT 1", null,
+            Collections.singletonList("a"), 0, Collections.singleton("test_users"), 1000, null);
+        WarmUpQuery rare = new WarmUpQuery(TestUser.class, WarmUpQuery.COUNT, "SELECT 1", "SELECT COUNT(*)",
+            Collections.emptyList(), 0, Collections.singleton("test_users"), 1000, null);
+        WarmUpQuery untracked = new WarmUpQuery(TestUser.class, WarmUpQuery.FIND_LIST, "SELECT 2", null,
+            null, 0, null, 1000, null);
+        warmUp.record(rare);
+        for (int i = 0; i < 3; i++) {
+            warmUp.record(new WarmUpQuery(TestUser.class, WarmUpQuery.FIND_LIST, "SELECT 1", null,
+                Collections.singletonList("a"), 0, Collections.singleton("test_users"), 1000, null));
+        }
+        warmUp.record(untracked);
+
+        assertEquals(3, warmUp.getFrequency(frequent));
+        assertEquals("超过跟踪上限的新查询不记录", 0, warmUp.getFrequency(untracked));
+        assertEquals(Arrays.asList(frequent, rare), warmUp.getTopQueries(10));
+        assertEquals(Collections.singletonList(frequent), warmUp.getTopQueries(1));
+        assertNotEquals(frequent.getCacheKey(), rare.getCacheKey());
+    }
+
+    @Test
+    public void testSaveAndReplayOnStartup() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("warmup.bin");
+        EntityManager em = setUpDatabase(file);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, em.createQueryBuilder(TestUser.class)
+                .where(w -> w.eq(TestUser::getName, "first")).findList().size());
+        }
+        assertEquals(2, em.createQueryBuilder(TestUser.class).count());
+
+        CacheWarmUp warmUp = QueryBuilderConfigManager.getCacheWarmUp();
+        assertNotNull(warmUp);
+        List<WarmUpQuery> top = warmUp.getTopQueries(10);
+        assertEquals(2, top.size());
+        assertEquals(WarmUpQuery.FIND_LIST, top.get(0).getOperation());
+        assertEquals(Collections.singletonList("first"), top.get(0).getParameters());
+        assertEquals(2, warmUp.save(file, 10));
+
+        // 模拟重启：新的缓存为空，读取文件后预热
+        QueryBuilderConfigManager.reset();
+        QueryBuilderConfigManager.initialize();
+        assertEquals(2, QueryBuilderConfigManager.warmUp(dataSource));
+        QueryCache cache = QueryBuilderConfigManager.getQueryCache();
+        assertEquals(2, cache.getStatistics().getLoadCount());
+
+        assertEquals(1, em.createQueryBuilder(TestUser.class)
+            .where(w -> w.eq(TestUser::getName, "first")).findList().size());
+        assertEquals(2, em.createQueryBuilder(TestUser.class).count());
+        assertEquals("预热后的查询全部命中", 2, cache.getStatistics().getHitCount());
+        assertEquals(0, cache.getStatistics().getMissCount());
+        assertEquals("读取的历史次数继续累加", 4,
+            QueryBuilderConfigManager.getCacheWarmUp().getFrequency(top.get(0)));
+    }
+
+    @Test
+    public void testReplayKeepsRecordedPolicy() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("policy.bin");
+        EntityManager em = setUpDatabase(file);
+        CachePolicy policy = CachePolicy.ttl(60000).withNegativeTtl(0).withMaxResultSize(1).withRegion("users");
+        assertEquals(2, em.createQueryBuilder(TestUser.class).cachePolicy(policy).findList().size());
+        assertEquals(0, em.createQueryBuilder(TestUser.class).cachePolicy(policy)
+            .where(w -> w.eq(TestUser::getName, "none")).findList().size());
+        assertEquals(1, em.createQueryBuilder(TestUser.class).cachePolicy(policy)
+            .where(w -> w.eq(TestUser::getName, "first")).findList().size());
+        assertEquals(3, QueryBuilderConfigManager.getCacheWarmUp().save(file, 10));
+
+        QueryBuilderConfigManager.reset();
+        QueryBuilderConfigManager.initialize();
+        List<WarmUpQuery> loaded = QueryBuilderConfigManager.getCacheWarmUp().load(file);
+        assertEquals(3, loaded.size());
+        for (WarmUpQuery query : loaded) {
+            assertEquals(0, query.getNegativeTtl());
+            assertEquals(1, query.getMaxResultSize());
+            assertEquals("users", query.getRegion());
+        }
+        assertEquals("超过最大行数和空结果按记录的策略不写入缓存", 1, QueryBuilderConfigManager.warmUp(dataSource));
+        assertEquals(1, QueryBuilderConfigManager.getQueryCache().size());
+    }
+}
@@ -0,0 +1,139 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import com.kishultan.persistence.model.TestUser;
+import com.kishultan.persistence.orm.query.cache.impl.EntityGraphWeigher;
+import com.kishultan.persistence.orm.query.cache.impl.LRUCacheStrategy;
+import com.kishultan.persistence.orm.query.cache.impl.QueryCacheImpl;
+import com.kishultan.persistence.orm.query.cache.impl.WTinyLfuCacheStrategy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 缓存权重计算与按内存淘汰测试类
+ *
+ * @author Portal Team
+ */
+public class EntityGraphWeigherTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final EntityGraphWeigher weigher = new EntityGraphWeigher();
+
+    private static List<TestUser> users(int count, int nameLength) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < nameLength; i++) {
+            name.append('x');
+        }
+        List<TestUser> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TestUser user = new TestUser();
+            user.setId((long) i);
+            user.setName(name.toString());
+            user.setStatus("ACTIVE");
+            user.setCreateTime(new Date());
+            users.add(user);
+        }
+        return users;
+    }
+
+    @Test
+    public void testWeightFollowsContent() {
+        long small = weigher.weigh(null, users(10, 10));
+        long longNames = weigher.weigh(null, users(10, 1000));
+        long manyRows = weigher.weigh(null, users(1000, 10));
+
+        assertTrue("字符串越长权重越大", longNames > small + 10 * 1900);
+        assertTrue("行数越多权重越大", manyRows > small * 50);
+        assertTrue("单个实体至少包含对象头和字段", weigher.weigh(null, users(1, 0)) > 100);
+        assertEquals(0, weigher.weigh(null, null));
+        assertTrue(weigher.weigh("key", 1L) > 0);
+    }
+
+    @Test
+    public void testLargeListsAreSampled() {
+        List<TestUser> large = users(100000, 20);
+        long perRow = weigher.weigh(null, users(32, 20)) / 32;
+        long weight = weigher.weigh(null, large);
+        assertTrue("抽样估算应与逐行计算接近", Math.abs(weight - perRow * 100000) < perRow * 100000 / 10);
+
+        List<Object[]> rows = new LinkedList<>();
+        for (int i = 0; i < 1000; i++) {
+            rows.add(new Object[]{(long) i, "name" + i});
+        }
+        assertTrue(weigher.weigh(null, rows) > 1000 * 50);
+    }
+
+    @Test
+    public void testLruCacheRespectsMemoryBudget() {
+        CacheConfig config = new CacheConfig(true, 10000, 60000);
+        config.setEnableAsync(false);
+        config.setMaxMemoryUsage(MB);
+        QueryCacheImpl cache = new QueryCacheImpl(config, new LRUCacheStrategy());
+        try {
+            for (int i = 0; i < 50; i++) {
+                cache.put("key" + i, users(500, 50), 0);
+                assertTrue("权重总和不应超过内存上限", cache.getWeightedSize() <= MB);
+            }
+            assertTrue("按内存淘汰后条目数应远小于条目数上限", cache.size() < 50);
+            assertTrue(cache.contains("key49"));
+
+            cache.put("huge", users(20000, 50), 0);
+            assertFalse("超过内存上限的单个结果不缓存", cache.contains("huge"));
+
+            cache.clear();
+            assertEquals(0, cache.getWeightedSize());
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    public void testWTinyLfuRespectsMemoryBudget() {
+        CacheConfig config = new CacheConfig(true, 10000, 60000);
+        config.setEnableAsync(false);
+        config.setMaxMemoryUsage(MB);
+        WTinyLfuCacheStrategy strategy = new WTinyLfuCacheStrategy();
+        QueryCacheImpl cache = new QueryCacheImpl(config, strategy);
+        try {
+            assertEquals(MB, strategy.getMaximumWeight());
+            for (int i = 0; i < 200; i++) {
+                cache.put("key" + i, users(100 + i % 7 * 50, 50), 0);
+            }
+            strategy.cleanUp();
+            assertTrue("策略跟踪的权重不应超过上限", strategy.getWeightedSize() <= MB);
+            assertTrue("缓存权重不应超过上限", cache.getWeightedSize() <= MB);
+            assertEquals(strategy.getTrackedSize(), cache.size());
+            assertTrue(strategy.getEvictionCount() > 0);
+
+            cache.remove("key199");
+            cache.clear();
+            assertEquals(0, strategy.getWeightedSize());
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    public void testCustomWeigher() {
+        CacheConfig config = new CacheConfig(true, 10000, 60000);
+        config.setEnableAsync(false);
+        config.setMaxMemoryUsage(MB);
+        config.setWeigher((key, value) -> 300 * 1024);
+        QueryCacheImpl cache = new QueryCacheImpl(config, new LRUCacheStrategy());
+        try {
+            for (int i = 0; i < 10; i++) {
+                cache.put("key" + i, "value", 0);
+            }
+            assertEquals("每个条目300KB，1MB只能容纳3个", 3, cache.size());
+            assertEquals(3 * 300 * 1024, cache.getWeightedSize());
+        } finally {
+            cache.shutdown();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import com.kishultan.persistence.PersistenceManager;
+import com.kishultan.persistence.config.PersistenceDefaults;
+import com.kishultan.persistence.datasource.DataSourceManager;
+import com.kishultan.persistence.orm.EntityManager;
+import com.kishultan.persistence.orm.query.WhereClause;
+import com.kishultan.persistence.orm.query.config.QueryBuilderConfigManager;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * 整表缓存内存查询测试类
+ *
+ * @author Portal Team
+ */
+public class FullTableCacheTest {
+
+    private static final String DS_NAME = "full_table_cache_test";
+
+    private JdbcDataSource dataSource;
+    private boolean previousUseJNDI;
+
+    @Entity
+    @Table(name = "test_users")
+    @CacheRegion(value = "users_table", fullTable = true, indexes = {"name"}, caseSensitiveStrings = true)
+    public static class TableUser {
+        @Id
+        private Long id;
+
+        @Column(name = "name")
+        private String name;
+
+        @Column(name = "status")
+        private String status;
+
+        @Column(name = "age")
+        private Integer age;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+
+        public Integer getAge() {
+            return age;
+        }
+
+        public void setAge(Integer age) {
+            this.age = age;
+        }
+    }
+
+    @Entity
+    @Table(name = "test_users")
+    @CacheRegion(value = "users_ci_table", fullTable = true, indexes = {"name"})
+    public static class CaseInsensitiveUser {
+        @Id
+        private Long id;
+
+        @Column(name = "name")
+        private String name;
+
+        @Column(name = "age")
+        private Integer age;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Integer getAge() {
+            return age;
+        }
+
+        public void setAge(Integer age) {
+            this.age = age;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (dataSource != null) {
+            PersistenceManager.getManager(DS_NAME).close();
+            PersistenceManager.shutdown(DS_NAME);
+            DataSourceManager.removeLocalDataSource(DS_NAME);
+            DataSourceManager.setUseJNDI(previousUseJNDI);
+            PersistenceDefaults.reset();
+        }
+        System.clearProperty("querybuilder.cache.enabled");
+        QueryBuilderConfigManager.reset();
+        TableVersionTracker.reset();
+    }
+
+    private EntityManager setUpDatabase() throws Exception {
+        System.setProperty("querybuilder.cache.enabled", "true");
+        QueryBuilderConfigManager.reset();
+        previousUseJNDI = DataSourceManager.isUseJNDI();
+        DataSourceManager.setUseJNDI(false);
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:full_table_cache;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS test_users");
+            stmt.execute("CREATE TABLE test_users (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "name VARCHAR(50), email VARCHAR(100), status VARCHAR(20), age INT, " +
+                    "region_code VARCHAR(20), create_time TIMESTAMP)");
+            for (int i = 0; i < 6; i++) {
+                stmt.executeUpdate("INSERT INTO test_users (name, status, age) VALUES ('user" + i + "', '"
+                    + (i % 2 == 0 ? "ACTIVE" : "INACTIVE") + "', " + (i == 5 ? "NULL" : String.valueOf(20 + i)) + ")");
+            }
+        }
+        DataSourceManager.addLocalDataSource(DS_NAME, dataSource);
+        return PersistenceManager.getManager(DS_NAME);
+    }
+
+    private static List<Long> ids(List<TableUser> users) {
+        List<Long> ids = new ArrayList<>();
+        for (TableUser user : users) {
+            ids.add(user.getId());
+        }
+        return ids;
+    }
+
+    private void assertSameAsDatabase(EntityManager em, Consumer<WhereClause<TableUser>> where) {
+        List<TableUser> expected = em.createQueryBuilder(TableUser.class).cachePolicy(CachePolicy.disabled())
+            .where(where).findList();
+        assertEquals(ids(expected), ids(em.createQueryBuilder(TableUser.class).where(where).findList()));
+        assertEquals(expected.size(), em.createQueryBuilder(TableUser.class).where(where).count());
+    }
+
+    @Test
+    public void testPredicatesMatchDatabase() throws Exception {
+        EntityManager em = setUpDatabase();
+        assertSameAsDatabase(em, w -> w.eq("name", "user1"));
+        assertSameAsDatabase(em, w -> w.in("name", "user1", "user3", "missing"));
+        assertSameAsDatabase(em, w -> w.notIn("name", "user1", "user3"));
+        assertSameAsDatabase(em, w -> w.between("age", 21, 23L));
+        assertSameAsDatabase(em, w -> w.like("name", "user_"));
+        assertSameAsDatabase(em, w -> w.like("name", "%3"));
+        assertSameAsDatabase(em, w -> w.isNull("age"));
+        assertSameAsDatabase(em, w -> w.isNotNull("age").ne("status", "ACTIVE"));
+        assertSameAsDatabase(em, w -> w.gt("age", 21).le("age", 24));
+        assertSameAsDatabase(em, w -> w.eq("status", "ACTIVE").or().eq("name", "user1"));
+        assertSameAsDatabase(em, w -> w.eq("status", "INACTIVE").or(g -> g.eq("name", "user0").isNull("age")));
+        assertSameAsDatabase(em, w -> w.eq("name", "user2").and(g -> g.eq("age", 22).eq("age", 30)));
+
+        QueryCache region = QueryBuilderConfigManager.getCacheRegionManager().getCache("users_table");
+        assertEquals("区域只缓存整表快照", 1, region.size());
+        assertEquals(24, region.getStatistics().getRegionStatistics("users_table").getHitCount());
+    }
+
+    @Test
+    public void testQueriesDoNotReachDatabase() throws Exception {
+        EntityManager em = setUpDatabase();
+        assertEquals(6, em.createQueryBuilder(TableUser.class).count());
+        assertEquals(2, em.createQueryBuilder(TableUser.class).limit(1, 2).findList().size());
+
+        // 绕过ORM写入，表版本不变，查询结果来自整表快照
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO test_users (name, status, age) VALUES ('user1', 'ACTIVE', 40)");
+        }
+        assertEquals(1, em.createQueryBuilder(TableUser.class).where(w -> w.eq("name", "user1")).findList().size());
+        assertEquals(2, em.createQueryBuilder(TableUser.class).cachePolicy(CachePolicy.disabled())
+            .where(w -> w.eq("name", "user1")).findList().size());
+
+        // 参数与字段类型不一致时由数据库执行
+        assertEquals(1, em.createQueryBuilder(TableUser.class).where(w -> w.eq("age", "21")).count());
+        // 表版本变化后重新装载整表
+        TableVersionTracker.bump(Collections.singleton("test_users"));
+        assertEquals(7, em.createQueryBuilder(TableUser.class).count());
+    }
+
+    @Test
+    public void testStringConditionsFallBackToDatabase() throws Exception {
+        EntityManager em = setUpDatabase();
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE test_users ALTER COLUMN name SET DATA TYPE VARCHAR_IGNORECASE(50)");
+        }
+        assertEquals(6, em.createQueryBuilder(CaseInsensitiveUser.class).count());
+
+        // 绕过ORM写入，表版本不变：数值条件来自整表快照，字符串条件由数据库按列的排序规则执行
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO test_users (name, status, age) VALUES ('user9', 'ACTIVE', 21)");
+        }
+        assertEquals(1, em.createQueryBuilder(CaseInsensitiveUser.class).where(w -> w.eq("age", 21)).count());
+        assertEquals(2, em.createQueryBuilder(CaseInsensitiveUser.class)
+            .where(w -> w.eq("name", "USER1").or().eq("name", "User9")).findList().size());
+        assertEquals(2, em.createQueryBuilder(CaseInsensitiveUser.class).where(w -> w.in("name", "USER1", "USER9")).count());
+        assertEquals(7, em.createQueryBuilder(CaseInsensitiveUser.class).where(w -> w.like("name", "USER%")).count());
+        assertEquals(1, em.createQueryBuilder(CaseInsensitiveUser.class).where(w -> w.gt("name", "USER8")).count());
+        assertEquals(1, em.createQueryBuilder(CaseInsensitiveUser.class).where(w -> w.isNull("age")).count());
+    }
+}
@@ -0,0 +1,191 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import com.kishultan.persistence.model.TestRegion;
+import com.kishultan.persistence.orm.cache.EntityCacheManager;
+import com.kishultan.persistence.orm.cache.EntityCacheRegion;
+import com.kishultan.persistence.orm.query.cache.impl.BatchingInvalidationBus;
+import com.kishultan.persistence.orm.query.cache.impl.LoopbackInvalidationTransport;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * 集群缓存失效总线测试类
+ *
+ * @author Portal Team
+ */
+public class InvalidationBusTest {
+
+    private final LoopbackInvalidationTransport.Hub hub = new LoopbackInvalidationTransport.Hub();
+    private final List<BatchingInvalidationBus> buses = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        ClusterInvalidation.uninstall();
+        for (BatchingInvalidationBus bus : buses) {
+            bus.close();
+        }
+        EntityCacheManager.reset();
+        TableVersionTracker.reset();
+    }
+
+    private BatchingInvalidationBus newBus(String nodeId, long flushInterval, int maxBatchSize) {
+        BatchingInvalidationBus bus = new BatchingInvalidationBus(hub.connect(), nodeId, flushInterval, maxBatchSize);
+        buses.add(bus);
+        return bus;
+    }
+
+    /**
+     * 记录收到的失效
+     */
+    private static class RecordingListener implements InvalidationListener {
+        private final List<Set<String>> tables = new ArrayList<>();
+        private final List<String> entityKeys = new ArrayList<>();
+
+        @Override
+        public synchronized void onTablesInvalidated(Set<String> invalidated) {
+            tables.add(new HashSet<>(invalidated));
+        }
+
+        @Override
+        public synchronized void onEntitiesEvicted(String region, Set<String> keys) {
+            for (String key : keys) {
+                entityKeys.add(region + "/" + key);
+            }
+        }
+    }
+
+    @Test
+    public void testBroadcastSkipsSender() {
+        BatchingInvalidationBus nodeA = newBus("a", 0, 100);
+        BatchingInvalidationBus nodeB = newBus("b", 0, 100);
+        RecordingListener listenerA = new RecordingListener();
+        RecordingListener listenerB = new RecordingListener();
+        nodeA.addListener(listenerA);
+        nodeB.addListener(listenerB);
+
+        nodeA.publishTables(Collections.singleton("`App`.`Orders`"));
+        nodeA.publishEntityEviction("com.example.Region", "ds:1");
+        assertEquals(Collections.singletonList(Collections.singleton("orders")), listenerB.tables);
+        assertEquals(Collections.singletonList("com.example.Region/ds:1"), listenerB.entityKeys);
+        assertTrue("发送者不应收到自己的消息", listenerA.tables.isEmpty());
+        assertEquals(2, nodeB.getReceivedCount());
+    }
+
+    @Test
+    public void testBatchesAreCoalesced() {
+        BatchingInvalidationBus nodeA = newBus("a", 3600000, 5);
+        BatchingInvalidationBus nodeB = newBus("b", 0, 100);
+        RecordingListener listener = new RecordingListener();
+        nodeB.addListener(listener);
+
+        nodeA.publishTables(Arrays.asList("orders", "users"));
+        nodeA.publishTables(Collections.singleton("ORDERS"));
+        nodeA.publishEntityEviction("region", "ds:1");
+        nodeA.publishEntityEviction("region", "ds:1");
+        assertTrue("批次未满时不发送", listener.tables.isEmpty());
+        nodeA.flush();
+        assertEquals(Collections.singletonList(new HashSet<>(Arrays.asList("orders", "users"))), listener.tables);
+        assertEquals(Collections.singletonList("region/ds:1"), listener.entityKeys);
+        assertEquals(1, nodeA.getSentCount());
+
+        // 所有表失效覆盖单表失效
+        nodeA.publishTables(Collections.singleton("orders"));
+        nodeA.publishTables(Collections.singleton("*"));
+        nodeA.publishTables(Collections.singleton("users"));
+        nodeA.flush();
+        assertEquals(Collections.singleton("*"), listener.tables.get(1));
+
+        // 积累到maxBatchSize时立即发送
+        for (int i = 0; i < 5; i++) {
+            nodeA.publishEntityEviction("region", "ds:" + i);
+        }
+        assertEquals(3, nodeA.getSentCount());
+    }
+
+    @Test
+    public void testSendFailureDoesNotReachPublisher() {
+        InvalidationTransport failing = new InvalidationTransport() {
+            @Override
+            public void send(byte[] message) {
+                throw new IllegalStateException("连接已断开");
+            }
+
+            @Override
+            public void setReceiver(Consumer<byte[]> receiver) {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        BatchingInvalidationBus immediate = new BatchingInvalidationBus(failing, "a", 0, 100);
+        BatchingInvalidationBus batched = new BatchingInvalidationBus(failing, "b", 3600000, 1);
+        buses.add(immediate);
+        buses.add(batched);
+
+        immediate.publishTables(Collections.singleton("orders"));
+        immediate.publishEntityEviction("region", "ds:1");
+        batched.publishTables(Collections.singleton("orders"));
+        batched.publishEntityEviction("region", "ds:1");
+        assertEquals(0, immediate.getSentCount());
+        assertEquals(0, batched.getSentCount());
+    }
+
+    @Test
+    public void testTableVersionBumpsPropagate() {
+        BatchingInvalidationBus local = newBus("local", 0, 100);
+        BatchingInvalidationBus remote = newBus("remote", 0, 100);
+        RecordingListener remoteListener = new RecordingListener();
+        remote.addListener(remoteListener);
+        ClusterInvalidation.install(local);
+
+        TableVersionTracker.recordWrite(null, "test_users");
+        assertEquals("本地写入应广播", Collections.singletonList(Collections.singleton("test_users")),
+            remoteListener.tables);
+
+        TableVersionTracker.Snapshot snapshot = TableVersionTracker.snapshot(Collections.singleton("orders"));
+        remote.publishTables(Collections.singleton("orders"));
+        assertFalse("其他节点的写入应使本地快照失效", snapshot.isCurrent());
+        assertEquals(1, TableVersionTracker.getVersion("orders"));
+        assertEquals("收到的失效不应再次广播", 1, remoteListener.tables.size());
+
+        TableVersionTracker.Snapshot any = TableVersionTracker.snapshot(Collections.singleton("audit_log"));
+        remote.publishTables(Collections.singleton("*"));
+        assertFalse(any.isCurrent());
+
+        ClusterInvalidation.uninstall();
+        TableVersionTracker.recordWrite(null, "test_users");
+        assertEquals("卸载后不再广播", 1, remoteListener.tables.size());
+    }
+
+    @Test
+    public void testEntityEvictionsPropagate() {
+        BatchingInvalidationBus local = newBus("local", 0, 100);
+        BatchingInvalidationBus remote = newBus("remote", 0, 100);
+        RecordingListener remoteListener = new RecordingListener();
+        remote.addListener(remoteListener);
+        ClusterInvalidation.install(local);
+
+        EntityCacheRegion<TestRegion> region = EntityCacheManager.getRegion(TestRegion.class);
+        region.put("ds", 1L, new TestRegion(1L, "华东"), null);
+        region.put("ds", 2L, new TestRegion(2L, "华南"), null);
+
+        remote.publishEntityEviction(TestRegion.class.getName(), "ds:1");
+        assertNull("其他节点移除的条目应在本地移除", region.get("ds", 1L));
+        assertNotNull(region.get("ds", 2L));
+        assertTrue("收到的移除不应再次广播", remoteListener.entityKeys.isEmpty());
+
+        region.evict("ds", 2L);
+        assertEquals(Collections.singletonList(TestRegion.class.getName() + "/ds:2"), remoteListener.entityKeys);
+    }
+}
@@ -0,0 +1,220 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import com.kishultan.persistence.model.TestUser;
+import com.kishultan.persistence.orm.query.cache.impl.LRUCacheStrategy;
+import com.kishultan.persistence.orm.query.cache.impl.MappedCacheSnapshot;
+import com.kishultan.persistence.orm.query.cache.impl.QueryCacheImpl;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 查询缓存持久化快照测试类
+ *
+ * @author Portal Team
+ */
+public class MappedCacheSnapshotTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<QueryCacheImpl> caches = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (QueryCacheImpl cache : caches) {
+            cache.shutdown();
+        }
+        TableVersionTracker.reset();
+    }
+
+    private QueryCacheImpl newCache() {
+        return newCache(null, 0);
+    }
+
+    private QueryCacheImpl newCache(Path file, long offHeapThreshold) {
+        CacheConfig config = new CacheConfig(true, 100, 60000);
+        config.setEnableAsync(false);
+        if (file != null) {
+            config.setPersistentPath(file.toString());
+        }
+        if (offHeapThreshold > 0) {
+            config.setOffHeapEnabled(true);
+            config.setOffHeapCapacity(16 * MB);
+            config.setOffHeapThreshold(offHeapThreshold);
+        }
+        QueryCacheImpl cache = new QueryCacheImpl(config, new LRUCacheStrategy());
+        caches.add(cache);
+        return cache;
+    }
+
+    private static List<TestUser> users(int count) {
+        List<TestUser> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TestUser user = new TestUser();
+            user.setId((long) i);
+            user.setName("用户" + i);
+            user.setAge(20 + i % 50);
+            user.setCreateTime(new Date(1700000000000L + i));
+            users.add(user);
+        }
+        return users;
+    }
+
+    @Test
+    public void testRestartReloadsValidEntries() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("cache/query-cache.snapshot");
+        QueryCacheImpl cache = newCache(file, 4096);
+        cache.put("small", users(3), 0, TableVersionTracker.snapshot(Collections.singleton("test_users")));
+        cache.put("large", users(500), 0);
+        cache.put("count", 42L, 0);
+        cache.put("unsupported", Collections.singleton("x"), 0);
+        assertEquals("大结果应在堆外", 1, cache.getOffHeapTier().size());
+        cache.shutdown();
+        assertTrue(Files.exists(file));
+        assertFalse("临时文件应已替换", Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+
+        // 模拟重启：表版本号从头开始
+        TableVersionTracker.reset();
+        QueryCacheImpl restarted = newCache(file, 0);
+        ResultSnapshot small = restarted.get("small", ResultSnapshot.class);
+        assertNotNull("列表结果应还原为快照", small);
+        List<TestUser> users = small.materialize();
+        assertEquals("用户2", users.get(2).getName());
+        users.get(2).setName("已修改");
+        assertEquals("修改返回的实体不影响缓存", "用户2",
+            restarted.get("small", ResultSnapshot.class).<TestUser>materialize().get(2).getName());
+        assertEquals(500, restarted.get("large", ResultSnapshot.class).size());
+        assertEquals(Long.valueOf(42L), restarted.get("count", Long.class));
+        assertNull("无法编码的结果不持久化", restarted.get("unsupported", Object.class));
+
+        // 装载的条目按当前版本重新记录依赖表
+        TableVersionTracker.bump(Collections.singleton("test_users"));
+        assertNull(restarted.get("small", ResultSnapshot.class));
+        assertNotNull(restarted.get("large", ResultSnapshot.class));
+    }
+
+    @Test
+    public void testExpiredAndStaleEntriesAreSkipped() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("expiry.snapshot");
+        QueryCacheImpl cache = newCache();
+        cache.put("short", users(1), 100);
+        cache.put("long", users(1), 60000);
+        cache.put("stale", users(1), 0, TableVersionTracker.snapshot(Collections.singleton("test_users")));
+        TableVersionTracker.bump(Collections.singleton("test_users"));
+
+        MappedCacheSnapshot snapshot = new MappedCacheSnapshot(file, MB);
+        assertEquals("依赖表已修改的条目不写入", 2, snapshot.save(cache));
+        Thread.sleep(150);
+
+        QueryCacheImpl restarted = newCache();
+        assertEquals(1, snapshot.load(restarted));
+        assertFalse(restarted.contains("short"));
+        assertTrue(restarted.contains("long"));
+    }
+
+    @Test
+    public void testEntriesWithoutTtlAreSkipped() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("no-ttl.snapshot");
+        CacheConfig config = new CacheConfig(true, 100, 0);
+        config.setEnableAsync(false);
+        QueryCacheImpl cache = new QueryCacheImpl(config, new LRUCacheStrategy());
+        caches.add(cache);
+        cache.put("forever", users(1), 0);
+        cache.put("timed", users(1), 60000);
+
+        MappedCacheSnapshot snapshot = new MappedCacheSnapshot(file, MB);
+        assertEquals(2, snapshot.save(cache));
+        QueryCacheImpl restarted = newCache();
+        assertEquals("没有有效期的条目不装载", 1, snapshot.load(restarted));
+        assertFalse(restarted.contains("forever"));
+        assertTrue(restarted.contains("timed"));
+    }
+
+    @Test
+    public void testEnumParametersProduceStableKeys() {
+        String sql = "SELECT * FROM test_users WHERE status = ?";
+        String key = WarmUpQuery.cacheKey(TestUser.class, "findList", sql,
+            Collections.<Object>singletonList(TimeUnit.SECONDS), 0);
+        int expected = 31 + (31 * TimeUnit.class.getName().hashCode() + "SECONDS".hashCode());
+        assertEquals("枚举参数按名称计算哈希，重启后缓存键不变",
+            "querybuilder:testuser:findList:" + sql.hashCode() + ":" + expected, key);
+        // IN列表中的枚举同样按名称计算，集合和数组得到相同的键
+        List<Object> inList = Collections.<Object>singletonList(Arrays.asList(TimeUnit.SECONDS, TimeUnit.MINUTES));
+        List<Object> inArray = Collections.<Object>singletonList(new Object[]{TimeUnit.SECONDS, TimeUnit.MINUTES});
+        assertEquals(WarmUpQuery.cacheKey(TestUser.class, "findList", sql, inList, 0),
+            WarmUpQuery.cacheKey(TestUser.class, "findList", sql, inArray, 0));
+    }
+
+    @Test
+    public void testCorruptedRecordStopsLoading() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("corrupt.snapshot");
+        QueryCacheImpl cache = newCache();
+        cache.put("first", users(1), 0);
+        MappedCacheSnapshot snapshot = new MappedCacheSnapshot(file, MB);
+        snapshot.save(cache);
+        long firstRecordEnd = Files.size(file);
+        cache.put("second", users(1), 0);
+        cache.put("third", users(1), 0);
+        assertEquals(3, snapshot.save(cache));
+
+        // 破坏最后一个字节（最后一条记录的CRC）
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 0xff);
+        }
+        QueryCacheImpl restarted = newCache();
+        assertEquals("校验失败的记录不装载", 2, snapshot.load(restarted));
+
+        // 截断文件，头部记录的数据长度不一致
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(firstRecordEnd);
+        }
+        assertEquals(0, snapshot.load(newCache()));
+
+        // 魔数不匹配
+        Files.write(file, new byte[64]);
+        assertEquals(0, snapshot.load(newCache()));
+    }
+
+    @Test
+    public void testSizeCap() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("capped.snapshot");
+        QueryCacheImpl cache = newCache();
+        for (int i = 0; i < 50; i++) {
+            cache.put("key" + i, users(200), 0);
+        }
+        MappedCacheSnapshot snapshot = new MappedCacheSnapshot(file, 64 * 1024);
+        int written = snapshot.save(cache);
+        assertTrue(written > 0 && written < 50);
+        assertTrue(Files.size(file) <= 64 * 1024);
+
+        QueryCacheImpl restarted = newCache();
+        assertEquals(written, snapshot.load(restarted));
+        assertEquals(written, restarted.size());
+    }
+
+    @Test
+    public void testMissingFileLoadsNothing() {
+        MappedCacheSnapshot snapshot = new MappedCacheSnapshot(folder.getRoot().toPath().resolve("none"), MB);
+        assertEquals(0, snapshot.load(newCache()));
+        assertEquals(0, newCache().saveSnapshot());
+    }
+}
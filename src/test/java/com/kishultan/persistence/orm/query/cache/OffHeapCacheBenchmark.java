@@ -0,0 +1,156 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import com.kishultan.persistence.model.TestUser;
+import com.kishultan.persistence.orm.query.cache.impl.LRUCacheStrategy;
+import com.kishultan.persistence.orm.query.cache.impl.QueryCacheImpl;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 堆内与堆外查询缓存对比基准
+ *
+ * 分别用堆内缓存和堆外缓存保存相同的大结果集，比较命中延迟（只取首行、遍历全部行）
+ * 以及在持续分配压力下的GC次数、GC耗时和老年代占用。
+ * 不是单元测试，手动运行：
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.kishultan.persistence.orm.query.cache.OffHeapCacheBenchmark
+ *
+ * @author Portal Team
+ */
+public class OffHeapCacheBenchmark {
+
+    private static final int RESULTS = Integer.getInteger("benchmark.results", 40);
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 20000);
+    private static final int HITS = Integer.getInteger("benchmark.hits", 2000);
+
+    public static void main(String[] args) {
+        System.out.printf("结果集: %d 个, 每个 %d 行, 命中次数: %d%n", RESULTS, ROWS, HITS);
+        run("heap", false);
+        run("off-heap", true);
+    }
+
+    private static void run(String name, boolean offHeap) {
+        CacheConfig config = new CacheConfig(true, RESULTS * 2, 0);
+        config.setEnableAsync(false);
+        config.setMaxMemoryUsage(4096L * 1024 * 1024);
+        config.setOffHeapEnabled(offHeap);
+        config.setOffHeapCapacity(2048L * 1024 * 1024);
+        config.setOffHeapThreshold(0);
+        QueryCacheImpl cache = new QueryCacheImpl(config, new LRUCacheStrategy());
+        try {
+            for (int i = 0; i < RESULTS; i++) {
+                cache.put("result" + i, users(ROWS), 0);
+            }
+            System.gc();
+            long oldGen = oldGenUsed();
+
+            // 预热
+            hitFirstRow(cache, HITS / 10);
+            hitAllRows(cache, HITS / 100 + 1);
+
+            long gcCount = gcCount();
+            long gcTime = gcTime();
+            long start = System.nanoTime();
+            long checksum = hitFirstRow(cache, HITS);
+            long firstRowNanos = (System.nanoTime() - start) / HITS;
+
+            int fullHits = Math.max(1, HITS / 20);
+            start = System.nanoTime();
+            checksum += hitAllRows(cache, fullHits);
+            long allRowsNanos = (System.nanoTime() - start) / fullHits;
+
+            // 模拟业务分配压力，观察缓存对GC的影响
+            start = System.nanoTime();
+            checksum += churn();
+            long churnMillis = (System.nanoTime() - start) / 1000000;
+
+            System.out.printf("%-8s 首行命中 %8d ns | 全量遍历命中 %10d ns | 分配压力 %5d ms | GC %4d 次 %5d ms"
+                    + " | 装载后老年代 %5d MB | 堆外 %5d MB (checksum %d)%n",
+                name, firstRowNanos, allRowsNanos, churnMillis, gcCount() - gcCount, gcTime() - gcTime,
+                oldGen / (1024 * 1024),
+                cache.getOffHeapTier() != null ? cache.getOffHeapTier().getUsedBytes() / (1024 * 1024) : 0,
+                checksum);
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long hitFirstRow(QueryCacheImpl cache, int hits) {
+        long checksum = 0;
+        for (int i = 0; i < hits; i++) {
+            List<TestUser> users = cache.get("result" + (i % RESULTS), List.class);
+            checksum += users.get(0).getId();
+        }
+        return checksum;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long hitAllRows(QueryCacheImpl cache, int hits) {
+        long checksum = 0;
+        for (int i = 0; i < hits; i++) {
+            List<TestUser> users = cache.get("result" + (i % RESULTS), List.class);
+            for (TestUser user : users) {
+                checksum += user.getAge();
+            }
+        }
+        return checksum;
+    }
+
+    private static long churn() {
+        long checksum = 0;
+        for (int round = 0; round < 200; round++) {
+            List<TestUser> garbage = users(5000);
+            checksum += garbage.get(round % garbage.size()).getName().length();
+        }
+        return checksum;
+    }
+
+    private static List<TestUser> users(int count) {
+        List<TestUser> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TestUser user = new TestUser();
+            user.setId((long) i);
+            user.setName("user-" + i);
+            user.setEmail("user" + i + "@example.com");
+            user.setStatus("ACTIVE");
+            user.setAge(20 + i % 50);
+            user.setRegionCode("R" + (i % 100));
+            user.setCreateTime(new Date());
+            users.add(user);
+        }
+        return users;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static long oldGenUsed() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            String poolName = pool.getName();
+            if (pool.getType() == MemoryType.HEAP && (poolName.contains("Old") || poolName.contains("Tenured"))) {
+                return pool.getUsage().getUsed();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,224 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import com.kishultan.persistence.model.TestUser;
+import com.kishultan.persistence.orm.query.cache.impl.BinaryResultCodec;
+import com.kishultan.persistence.orm.query.cache.impl.LRUCacheStrategy;
+import com.kishultan.persistence.orm.query.cache.impl.OffHeapCacheTier;
+import com.kishultan.persistence.orm.query.cache.impl.QueryCacheImpl;
+import org.junit.After;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 堆外缓存层测试类
+ *
+ * @author Portal Team
+ */
+public class OffHeapCacheTierTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final BinaryResultCodec codec = new BinaryResultCodec();
+    private QueryCacheImpl cache;
+
+    @After
+    public void tearDown() {
+        if (cache != null) {
+            cache.shutdown();
+        }
+        TableVersionTracker.reset();
+    }
+
+    private static List<TestUser> users(int count) {
+        List<TestUser> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TestUser user = new TestUser();
+            user.setId((long) i);
+            user.setName("用户" + i);
+            user.setStatus(i % 2 == 0 ? "ACTIVE" : null);
+            user.setAge(20 + i % 50);
+            user.setCreateTime(new Date(1700000000000L + i));
+            users.add(user);
+        }
+        return users;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCodecRoundTrip() {
+        List<TestUser> users = users(100);
+        List<TestUser> decoded = (List<TestUser>) codec.decode(codec.encode(users));
+        assertEquals(100, decoded.size());
+        for (int i = 0; i < users.size(); i++) {
+            TestUser expected = users.get(i);
+            TestUser actual = decoded.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getStatus(), actual.getStatus());
+            assertEquals(expected.getAge(), actual.getAge());
+            assertEquals(expected.getCreateTime(), actual.getCreateTime());
+        }
+        assertSame("已解码的元素应复用", decoded.get(3), decoded.get(3));
+
+        Timestamp timestamp = new Timestamp(1700000000123L);
+        timestamp.setNanos(123456789);
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("total", 3L);
+        Object[] row = {new BigDecimal("12345678901234567890.123"), timestamp, LocalDate.of(2024, 2, 29),
+            LocalDateTime.of(2024, 1, 1, 8, 30, 15, 500), TimeUnit.SECONDS, new byte[]{1, 2, 3}, map, null, 'c', true};
+        List<Object[]> rows = (List<Object[]>) codec.decode(codec.encode(Collections.singletonList(row)));
+        Object[] decodedRow = rows.get(0);
+        assertEquals(row[0], decodedRow[0]);
+        assertEquals(timestamp, decodedRow[1]);
+        assertEquals(row[2], decodedRow[2]);
+        assertEquals(row[3], decodedRow[3]);
+        assertSame(TimeUnit.SECONDS, decodedRow[4]);
+        assertArrayEquals((byte[]) row[5], (byte[]) decodedRow[5]);
+        assertEquals(map, decodedRow[6]);
+        assertNull(decodedRow[7]);
+        assertEquals('c', decodedRow[8]);
+        assertEquals(true, decodedRow[9]);
+
+        assertEquals(42L, codec.decode(codec.encode(42L)));
+        assertNull("不支持的类型不编码", codec.encode(new HashSet<>(Arrays.asList(1, 2))));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLazyListCopyOnWrite() {
+        byte[] data = codec.encode(users(10));
+        List<TestUser> first = (List<TestUser>) codec.decode(data);
+        first.remove(0);
+        first.add(new TestUser());
+        assertEquals(10, first.size());
+
+        List<TestUser> second = (List<TestUser>) codec.decode(data);
+        assertEquals("修改解码结果不应影响编码数据", Long.valueOf(0L), second.get(0).getId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTierStoresAndEvicts() {
+        OffHeapCacheTier tier = new OffHeapCacheTier(MB, 1024, 256 * 1024, codec);
+        assertTrue(tier.put("a", users(100), System.currentTimeMillis(), 0, null));
+        assertEquals(100, ((List<TestUser>) tier.get("a")).size());
+        assertTrue(tier.getUsedBytes() > 0);
+
+        // 超出容量时淘汰最久未访问的条目
+        for (int i = 0; i < 50; i++) {
+            assertTrue(tier.put("key" + i, users(500), System.currentTimeMillis(), 0, null));
+            assertTrue(tier.getUsedBytes() <= tier.getCapacity());
+        }
+        assertTrue(tier.getEvictionCount() > 0);
+        assertNull(tier.get("a"));
+        assertNotNull(tier.get("key49"));
+
+        assertTrue(tier.remove("key49"));
+        assertFalse(tier.contains("key49"));
+        tier.clear();
+        assertEquals(0, tier.getUsedBytes());
+        assertTrue("已申请的内存保留复用", tier.getReservedBytes() > 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCollectionFieldsAndUndecodableEntries() {
+        ListHolder holder = new ListHolder();
+        holder.names = new ArrayList<>(Arrays.asList("a", "b"));
+        List<ListHolder> decoded = (List<ListHolder>) codec.decode(codec.encode(Collections.singletonList(holder)));
+        assertEquals(Arrays.asList("a", "b"), decoded.get(0).names);
+        assertNull("解码结果无法赋值的集合字段不编码", codec.encode(new LinkedListHolder()));
+
+        BinaryResultCodec failing = new BinaryResultCodec() {
+            @Override
+            public Object decode(byte[] data) {
+                throw new IllegalStateException("Class layout changed since the result was cached");
+            }
+        };
+        OffHeapCacheTier tier = new OffHeapCacheTier(MB, 1024, 256 * 1024, failing);
+        assertTrue(tier.put("users", users(3), System.currentTimeMillis(), 0, null));
+        assertNull("无法解码时按未命中处理", tier.get("users"));
+        assertFalse("无法解码的条目应被丢弃", tier.contains("users"));
+        assertEquals(0, tier.getUsedBytes());
+    }
+
+    @Test
+    public void testTierHonoursTtlAndTableVersions() throws Exception {
+        OffHeapCacheTier tier = new OffHeapCacheTier(MB);
+        tier.put("expired", users(1), System.currentTimeMillis() - 1000, 500, null);
+        assertNull(tier.get("expired"));
+
+        TableVersionTracker.Snapshot snapshot = TableVersionTracker.snapshot(Collections.singleton("test_users"));
+        tier.put("users", users(1), System.currentTimeMillis(), 0, snapshot);
+        assertNotNull(tier.get("users"));
+        TableVersionTracker.bump(Collections.singleton("test_users"));
+        assertNull("依赖表修改后应失效", tier.get("users"));
+        assertEquals(0, tier.getUsedBytes());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLargeResultsGoOffHeap() {
+        CacheConfig config = new CacheConfig(true, 100, 60000);
+        config.setEnableAsync(false);
+        config.setOffHeapEnabled(true);
+        config.setOffHeapCapacity(16 * MB);
+        cache = new QueryCacheImpl(config, new LRUCacheStrategy());
+
+        cache.put("large", users(2000), 0);
+        cache.put("small", users(1), 0);
+        assertEquals("大结果不占用堆内缓存", 1, cache.size());
+        assertEquals(1, cache.getOffHeapTier().size());
+
+        List<TestUser> large = cache.get("large", List.class);
+        assertEquals(2000, large.size());
+        assertEquals("用户1999", large.get(1999).getName());
+        assertTrue(cache.contains("large"));
+        assertTrue(cache.remove("large"));
+        assertNull(cache.get("large", List.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testHeapEvictionDemotesToOffHeap() {
+        CacheConfig config = new CacheConfig(true, 10, 60000);
+        config.setEnableAsync(false);
+        config.setOffHeapEnabled(true);
+        config.setOffHeapCapacity(16 * MB);
+        cache = new QueryCacheImpl(config, new LRUCacheStrategy());
+
+        for (int i = 0; i < 30; i++) {
+            cache.put("key" + i, users(5), 0);
+        }
+        assertTrue(cache.size() <= 10);
+        assertTrue("堆内淘汰的条目应降级到堆外", cache.getOffHeapTier().size() > 0);
+        for (int i = 0; i < 30; i++) {
+            List<TestUser> result = cache.get("key" + i, List.class);
+            assertNotNull("条目应在堆内或堆外命中: key" + i, result);
+            assertEquals(5, result.size());
+        }
+    }
+
+    public static class ListHolder {
+        private List<String> names;
+    }
+
+    public static class LinkedListHolder {
+        private java.util.LinkedList<String> names = new java.util.LinkedList<>();
+    }
+}
@@ -0,0 +1,180 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import com.kishultan.persistence.PersistenceManager;
+import com.kishultan.persistence.config.PersistenceDefaults;
+import com.kishultan.persistence.datasource.DataSourceManager;
+import com.kishultan.persistence.model.TestUser;
+import com.kishultan.persistence.orm.EntityManager;
+import com.kishultan.persistence.orm.query.config.QueryBuilderConfigManager;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 不可变结果快照测试类
+ *
+ * @author Portal Team
+ */
+public class ResultSnapshotTest {
+
+    private static final String DS_NAME = "result_snapshot_test";
+
+    private JdbcDataSource dataSource;
+    private boolean previousUseJNDI;
+
+    @After
+    public void tearDown() {
+        if (dataSource != null) {
+            PersistenceManager.getManager(DS_NAME).close();
+            PersistenceManager.shutdown(DS_NAME);
+            DataSourceManager.removeLocalDataSource(DS_NAME);
+            DataSourceManager.setUseJNDI(previousUseJNDI);
+            PersistenceDefaults.reset();
+            System.clearProperty("querybuilder.cache.enabled");
+            QueryBuilderConfigManager.reset();
+        }
+        TableVersionTracker.reset();
+    }
+
+    private static TestUser user(long id, String name, String status) {
+        TestUser user = new TestUser();
+        user.setId(id);
+        user.setName(name);
+        user.setStatus(status);
+        user.setCreateTime(new Date(1000L * id));
+        return user;
+    }
+
+    @Test
+    public void testMaterializeCreatesIndependentEntities() {
+        List<TestUser> rows = new ArrayList<>(Arrays.asList(user(1, "alice", "ACTIVE"), user(2, "bob", "ACTIVE")));
+        ResultSnapshot snapshot = ResultSnapshot.of(rows);
+        assertNotNull(snapshot);
+        assertEquals(TestUser.class, snapshot.getRowType());
+
+        // 修改原始结果不影响快照
+        rows.get(0).setName("changed");
+        rows.get(0).getCreateTime().setTime(0);
+
+        List<TestUser> first = snapshot.materialize();
+        assertEquals("alice", first.get(0).getName());
+        assertEquals(1000L, first.get(0).getCreateTime().getTime());
+        first.get(1).setStatus("DELETED");
+        first.get(1).getCreateTime().setTime(0);
+        first.clear();
+
+        List<TestUser> second = snapshot.materialize();
+        assertEquals(2, second.size());
+        assertNotSame(second.get(1), snapshot.materialize().get(1));
+        assertEquals("ACTIVE", second.get(1).getStatus());
+        assertEquals(2000L, second.get(1).getCreateTime().getTime());
+        assertSame("相同字符串在快照内只保留一份", second.get(0).getStatus(), second.get(1).getStatus());
+    }
+
+    @Test
+    public void testReadOnlyViewAndRowKinds() {
+        ResultSnapshot snapshot = ResultSnapshot.of(Collections.singletonList(user(1, "alice", "ACTIVE")));
+        List<TestUser> view = snapshot.view();
+        assertEquals(1, view.size());
+        view.get(0).setName("changed");
+        assertEquals("每次访问重新创建实体", "alice", view.get(0).getName());
+        try {
+            view.add(new TestUser());
+            fail("只读视图不能修改");
+        } catch (UnsupportedOperationException expected) {
+            // 预期异常
+        }
+
+        List<Object[]> arrays = ResultSnapshot.of(Arrays.asList(new Object[]{1L, "a"}, new Object[]{2L, null})).materialize();
+        assertArrayEquals(new Object[]{2L, null}, arrays.get(1));
+        List<Long> counts = ResultSnapshot.of(Arrays.asList(1L, null, 3L)).materialize();
+        assertEquals(Arrays.asList(1L, null, 3L), counts);
+        assertEquals(0, ResultSnapshot.of(Collections.emptyList()).size());
+
+        // 包含可变嵌套对象或混合类型时不创建快照
+        assertNull(ResultSnapshot.of(Collections.singletonList(new HashMap<String, Object>())));
+        assertNull(ResultSnapshot.of(Collections.singletonList(new Object[]{new ArrayList<>()})));
+        assertNull(ResultSnapshot.of(Arrays.asList(user(1, "a", "b"), "text")));
+        assertNull("首行为null的数组结果", ResultSnapshot.of(Arrays.asList(null, new Object[]{1L})));
+        assertNull(ResultSnapshot.of(Arrays.asList(new Object[]{1L}, null)));
+    }
+
+    @Test
+    public void testQueryBuilderReturnsFreshEntitiesOnHit() throws Exception {
+        System.setProperty("querybuilder.cache.enabled", "true");
+        QueryBuilderConfigManager.reset();
+        EntityManager em = createManager();
+
+        List<TestUser> loaded = em.createQueryBuilder(TestUser.class).findList();
+        loaded.get(0).setName("modified");
+        loaded.add(new TestUser());
+
+        List<TestUser> cached = em.createQueryBuilder(TestUser.class).findList();
+        assertEquals("修改返回的结果不影响缓存", 1, cached.size());
+        assertEquals("first", cached.get(0).getName());
+        assertTrue(QueryBuilderConfigManager.getQueryCache().getStatistics().getHitCount() > 0);
+
+        List<TestUser> view = em.createQueryBuilder(TestUser.class).cachePolicy(CachePolicy.ttl(60000).readOnly()).findList();
+        assertEquals("first", view.get(0).getName());
+        try {
+            view.remove(0);
+            fail("只读策略返回只读视图");
+        } catch (UnsupportedOperationException expected) {
+            // 预期异常
+        }
+    }
+
+    @Test
+    public void testCoalescedQueriesReturnFreshEntities() throws Exception {
+        QueryBuilderConfigManager.reset();
+        QueryBuilderConfigManager.initialize();
+        assertNull("并发查询合并默认不启用", QueryBuilderConfigManager.getSingleFlight());
+
+        System.setProperty("querybuilder.singleflight.enabled", "true");
+        System.setProperty("querybuilder.singleflight.dedup.window.ms", "60000");
+        try {
+            QueryBuilderConfigManager.reset();
+            EntityManager em = createManager();
+            List<TestUser> loaded = em.createQueryBuilder(TestUser.class).findList();
+            loaded.get(0).setName("modified");
+
+            List<TestUser> shared = em.createQueryBuilder(TestUser.class).findList();
+            SingleFlight singleFlight = QueryBuilderConfigManager.getSingleFlight();
+            assertEquals("去重窗口内复用结果", 1, singleFlight.getLoadCount());
+            assertNotSame(loaded.get(0), shared.get(0));
+            assertEquals("first", shared.get(0).getName());
+        } finally {
+            System.clearProperty("querybuilder.singleflight.enabled");
+            System.clearProperty("querybuilder.singleflight.dedup.window.ms");
+        }
+    }
+
+    private EntityManager createManager() throws Exception {
+        previousUseJNDI = DataSourceManager.isUseJNDI();
+        DataSourceManager.setUseJNDI(false);
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:result_snapshot;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS test_users");
+            stmt.execute("CREATE TABLE test_users (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "name VARCHAR(50), email VARCHAR(100), status VARCHAR(20), age INT, " +
+                    "region_code VARCHAR(20), create_time TIMESTAMP)");
+            stmt.executeUpdate("INSERT INTO test_users (name, status) VALUES ('first', 'ACTIVE')");
+        }
+        DataSourceManager.addLocalDataSource(DS_NAME, dataSource);
+        return PersistenceManager.getManager(DS_NAME);
+    }
+}
@@ -0,0 +1,150 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 并发加载合并测试类
+ *
+ * @author Portal Team
+ */
+public class SingleFlightTest {
+
+    private static final Set<String> TABLES = Collections.singleton("test_users");
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(20);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        TableVersionTracker.reset();
+    }
+
+    private List<Future<Object>> submitAll(int count, Callable<Object> task) {
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(executor.submit(task));
+        }
+        return futures;
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        // 去重窗口保证启动较慢的线程也复用同一个结果
+        SingleFlight singleFlight = new SingleFlight(5000, 60000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Object> owner = executor.submit(() -> singleFlight.execute("key", TABLES, () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "result";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        List<Future<Object>> waiters = submitAll(19, () -> singleFlight.execute("key", TABLES, () -> {
+            loads.incrementAndGet();
+            return "other";
+        }));
+        Thread.sleep(100);
+        release.countDown();
+
+        assertEquals("result", owner.get(5, TimeUnit.SECONDS));
+        for (Future<Object> waiter : waiters) {
+            assertEquals("result", waiter.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals("相同键只加载一次", 1, loads.get());
+        assertEquals(19, singleFlight.getSharedCount());
+    }
+
+    @Test
+    public void testWaiterFallsBackAfterTimeout() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(50, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Object> owner = executor.submit(() -> singleFlight.execute("key", TABLES, () -> {
+            started.countDown();
+            await(release);
+            return "slow";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertEquals("超时后自行加载", "fallback", singleFlight.execute("key", TABLES, () -> "fallback"));
+        assertEquals(1, singleFlight.getTimeoutCount());
+        release.countDown();
+        assertEquals("slow", owner.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFailureIsSharedAndNotRemembered() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(5000, 60000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Object> owner = executor.submit(() -> singleFlight.execute("key", TABLES, () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("查询失败");
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<Object> waiter = executor.submit(() -> singleFlight.execute("key", TABLES, () -> "other"));
+        Thread.sleep(300);
+        release.countDown();
+
+        for (Future<Object> future : Arrays.asList(owner, waiter)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("应抛出加载异常");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+        assertEquals("失败的结果不复用", "retry", singleFlight.execute("key", TABLES, () -> "retry"));
+    }
+
+    @Test
+    public void testDedupWindowRespectsWrites() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(5000, 60000);
+        assertEquals("first", singleFlight.execute("key", TABLES, () -> "first"));
+        assertEquals("去重窗口内复用结果", "first", singleFlight.execute("key", TABLES, () -> "second"));
+        assertEquals("other", singleFlight.execute("other", TABLES, () -> "other"));
+
+        TableVersionTracker.bump(TABLES);
+        assertEquals("依赖表写入后重新加载", "third", singleFlight.execute("key", TABLES, () -> "third"));
+        assertEquals(3, singleFlight.getLoadCount());
+
+        SingleFlight inFlightOnly = new SingleFlight(5000, 0);
+        inFlightOnly.execute("key", TABLES, () -> "first");
+        assertEquals("未设置去重窗口时加载完成即移除", 0, inFlightOnly.size());
+        assertEquals("second", inFlightOnly.execute("key", TABLES, () -> "second"));
+
+        SingleFlight expiring = new SingleFlight(5000, 20);
+        expiring.execute("key", TABLES, () -> "first");
+        Thread.sleep(50);
+        assertEquals("超出去重窗口后重新加载", "second", expiring.execute("key", TABLES, () -> "second"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
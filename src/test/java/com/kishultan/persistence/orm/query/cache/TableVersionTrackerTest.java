@@ -0,0 +1,178 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import com.kishultan.persistence.PersistenceManager;
+import com.kishultan.persistence.config.PersistenceDefaults;
+import com.kishultan.persistence.datasource.DataSourceManager;
+import com.kishultan.persistence.model.TestUser;
+import com.kishultan.persistence.orm.EntityManager;
+import com.kishultan.persistence.orm.query.config.QueryBuilderConfigManager;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * 表版本跟踪与查询缓存失效测试类
+ *
+ * @author Portal Team
+ */
+public class TableVersionTrackerTest {
+
+    private static final String DS_NAME = "table_version_test";
+
+    private JdbcDataSource dataSource;
+    private boolean previousUseJNDI;
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty("querybuilder.cache.enabled", "true");
+        QueryBuilderConfigManager.reset();
+        TableVersionTracker.reset();
+        previousUseJNDI = DataSourceManager.isUseJNDI();
+        DataSourceManager.setUseJNDI(false);
+
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:table_version;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS test_users");
+            stmt.execute("CREATE TABLE test_users (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "name VARCHAR(50), email VARCHAR(100), status VARCHAR(20), age INT, " +
+                    "region_code VARCHAR(20), create_time TIMESTAMP)");
+        }
+        DataSourceManager.addLocalDataSource(DS_NAME, dataSource);
+        PersistenceManager.getManager(DS_NAME).close();
+    }
+
+    @After
+    public void tearDown() {
+        PersistenceManager.getManager(DS_NAME).close();
+        PersistenceManager.shutdown(DS_NAME);
+        DataSourceManager.removeLocalDataSource(DS_NAME);
+        DataSourceManager.setUseJNDI(previousUseJNDI);
+        PersistenceDefaults.reset();
+        QueryCache cache = QueryBuilderConfigManager.getQueryCache();
+        if (cache != null) {
+            cache.clear();
+        }
+        System.clearProperty("querybuilder.cache.enabled");
+        QueryBuilderConfigManager.reset();
+        TableVersionTracker.reset();
+    }
+
+    private TestUser newUser(String name) {
+        TestUser user = new TestUser();
+        user.setName(name);
+        user.setStatus("ACTIVE");
+        return user;
+    }
+
+    /**
+     * 绕过ORM直接写入，不会递增表版本，用于判断结果是否来自缓存
+     */
+    private void insertDirectly(String name) throws Exception {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO test_users (name, status) VALUES ('" + name + "', 'ACTIVE')");
+        }
+    }
+
+    @Test
+    public void testParseWrittenTables() {
+        assertEquals(Collections.singleton("test_users"),
+                TableVersionTracker.parseWrittenTables("INSERT INTO test_users (name) VALUES (?)"));
+        assertEquals(Collections.singleton("test_users"),
+                TableVersionTracker.parseWrittenTables("update `app`.`TEST_USERS` set name = ? where id = ?"));
+        assertEquals(Collections.singleton("orders"),
+                TableVersionTracker.parseWrittenTables("/* batch */ DELETE FROM orders WHERE id = ?"));
+        assertEquals(Collections.singleton("orders"),
+                TableVersionTracker.parseWrittenTables("TRUNCATE TABLE orders"));
+        assertEquals(Collections.singleton("orders"),
+                TableVersionTracker.parseWrittenTables("CREATE TABLE IF NOT EXISTS orders (id INT)"));
+        assertTrue("查询语句不修改任何表",
+                TableVersionTracker.parseWrittenTables("SELECT * FROM orders").isEmpty());
+        assertNull("多表UPDATE无法确定目标表",
+                TableVersionTracker.parseWrittenTables("UPDATE orders o JOIN users u ON o.uid = u.id SET o.x = 1"));
+        assertNull(TableVersionTracker.parseWrittenTables("DELETE FROM orders USING orders, users WHERE 1 = 1"));
+        assertNull(TableVersionTracker.parseWrittenTables("CALL refresh_all()"));
+    }
+
+    @Test
+    public void testSnapshotInvalidatedByBump() {
+        TableVersionTracker.Snapshot snapshot = TableVersionTracker.snapshot(Arrays.asList("orders", "users"));
+        assertTrue(snapshot.isCurrent());
+        assertEquals(new HashSet<>(Arrays.asList("orders", "users")), snapshot.getTables());
+
+        TableVersionTracker.recordWrite(null, "audit_log");
+        assertTrue("无关表的写入不应使快照失效", snapshot.isCurrent());
+
+        TableVersionTracker.recordWrite(null, "\"USERS\"");
+        assertFalse(snapshot.isCurrent());
+
+        TableVersionTracker.Snapshot other = TableVersionTracker.snapshot(Collections.singleton("audit_log"));
+        TableVersionTracker.recordSqlWrite(null, "CALL refresh_all()");
+        assertFalse("无法解析的写入应使所有快照失效", other.isCurrent());
+    }
+
+    @Test
+    public void testWriteInvalidatesCachedQueries() throws Exception {
+        EntityManager em = PersistenceManager.getManager(DS_NAME);
+        em.save(newUser("first"));
+        assertEquals(1, em.createQueryBuilder(TestUser.class).findList().size());
+        assertEquals(1, em.createQueryBuilder(TestUser.class).count());
+
+        insertDirectly("hidden");
+        assertEquals("结果应来自缓存", 1, em.createQueryBuilder(TestUser.class).findList().size());
+        assertEquals("结果应来自缓存", 1, em.createQueryBuilder(TestUser.class).count());
+
+        em.save(newUser("second"));
+        assertEquals("写入后依赖该表的缓存应失效", 3, em.createQueryBuilder(TestUser.class).findList().size());
+        assertEquals(3, em.createQueryBuilder(TestUser.class).count());
+    }
+
+    @Test
+    public void testTransactionalWriteInvalidatesOnCommit() throws Exception {
+        EntityManager em = PersistenceManager.getManager(DS_NAME);
+        assertEquals(0, em.createQueryBuilder(TestUser.class).count());
+        insertDirectly("hidden");
+
+        em.beginTransaction();
+        try {
+            em.save(newUser("tx-user"));
+            assertEquals("有未提交写入时应绕过缓存", 2, em.createQueryBuilder(TestUser.class).count());
+            assertEquals("提交前不应递增版本", 0, TableVersionTracker.getVersion("test_users"));
+            em.commitTransaction();
+        } catch (RuntimeException e) {
+            em.rollbackTransaction();
+            throw e;
+        }
+
+        assertEquals(1, TableVersionTracker.getVersion("test_users"));
+        assertEquals("提交后缓存应失效", 2, em.createQueryBuilder(TestUser.class).count());
+    }
+
+    @Test
+    public void testRollbackDoesNotInvalidate() throws Exception {
+        EntityManager em = PersistenceManager.getManager(DS_NAME);
+        assertEquals(0, em.createQueryBuilder(TestUser.class).count());
+        insertDirectly("hidden");
+
+        em.beginTransaction();
+        try {
+            em.save(newUser("tx-user"));
+        } finally {
+            em.rollbackTransaction();
+        }
+
+        assertEquals("回滚不应递增版本", 0, TableVersionTracker.getVersion("test_users"));
+        assertEquals("回滚后缓存仍然有效", 0, em.createQueryBuilder(TestUser.class).count());
+    }
+}
@@ -0,0 +1,177 @@
+package com.kishultan.persistence.orm.query.cache;
+
+import com.kishultan.persistence.orm.query.cache.impl.QueryCacheImpl;
+import com.kishultan.persistence.orm.query.cache.impl.WTinyLfuCacheStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * W-TinyLFU缓存策略测试类
+ *
+ * @author Portal Team
+ */
+public class WTinyLfuCacheStrategyTest {
+
+    private static final int MAX_SIZE = 100;
+
+    private WTinyLfuCacheStrategy strategy;
+    private QueryCacheImpl cache;
+
+    @Before
+    public void setUp() {
+        CacheConfig config = new CacheConfig(true, MAX_SIZE, 60000);
+        config.setEnableAsync(false);
+        strategy = new WTinyLfuCacheStrategy();
+        cache = new QueryCacheImpl(config, strategy);
+    }
+
+    @After
+    public void tearDown() {
+        cache.clear();
+        cache.shutdown();
+    }
+
+    @Test
+    public void testCapacityBound() {
+        assertEquals("绑定缓存后应使用缓存配置的容量", MAX_SIZE, strategy.getMaximum());
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, "value" + i, 0);
+            assertTrue("单线程写入后缓存大小不应超过容量", cache.size() <= MAX_SIZE);
+        }
+        assertEquals(MAX_SIZE, cache.size());
+        assertEquals(MAX_SIZE, strategy.getTrackedSize());
+        assertEquals(900, strategy.getEvictionCount());
+        assertEquals(900, cache.getStatistics().getEvictionCount());
+    }
+
+    @Test
+    public void testFrequentEntriesSurviveScan() {
+        for (int i = 0; i < 50; i++) {
+            cache.put("hot" + i, "value", 0);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertNotNull(cache.get("hot" + i, String.class));
+            }
+        }
+        strategy.cleanUp();
+
+        // 大量只访问一次的条目不应冲掉高频条目
+        for (int i = 0; i < 5000; i++) {
+            cache.put("scan" + i, "value", 0);
+        }
+        strategy.cleanUp();
+
+        int survivors = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.contains("hot" + i)) {
+                survivors++;
+            }
+        }
+        assertEquals("高频条目应全部保留", 50, survivors);
+        assertTrue("扫描条目应因频率低被拒绝准入", strategy.getRejectedCount() > 0);
+        assertTrue(cache.size() <= MAX_SIZE);
+    }
+
+    @Test
+    public void testRemoveIsNotEviction() {
+        cache.put("a", "1", 0);
+        cache.put("b", "2", 0);
+        assertTrue(cache.remove("a"));
+        assertEquals(1, strategy.getTrackedSize());
+        assertEquals("主动删除不应计为淘汰", 0, strategy.getEvictionCount());
+        assertTrue(cache.contains("b"));
+
+        cache.clear();
+        assertEquals(0, strategy.getTrackedSize());
+    }
+
+    @Test
+    public void testRemovalAndEvictionMatchEntryIdentity() {
+        WTinyLfuCacheStrategy standalone = new WTinyLfuCacheStrategy(2);
+        List<Object> evicted = new ArrayList<>();
+        List<Boolean> lockReleased = new ArrayList<>();
+        standalone.bindEntryEvictionListener((key, entry) -> {
+            evicted.add(entry);
+            // 其他线程能获取淘汰锁，说明回调不在淘汰锁内执行
+            Thread other = new Thread(standalone::cleanUp);
+            other.start();
+            try {
+                other.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            lockReleased.add(!other.isAlive());
+        });
+
+        Object first = new Object();
+        Object second = new Object();
+        standalone.recordStore("a", 0, 0, 0, first);
+        standalone.recordStore("a", 0, 0, 0, second);
+        standalone.recordRemoval("a", first);
+        assertEquals("移除已被替换的条目不应影响新条目", 1, standalone.getTrackedSize());
+
+        standalone.recordStore("b", 0, 0, 0, "b");
+        standalone.recordStore("c", 0, 0, 0, "c");
+        assertEquals(2, standalone.getTrackedSize());
+        assertEquals(1, evicted.size());
+        assertTrue("回调应带上被淘汰的条目", evicted.get(0) == second || "b".equals(evicted.get(0))
+                || "c".equals(evicted.get(0)));
+        assertEquals(Collections.singletonList(true), lockReleased);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20000; i++) {
+                        String key = "key" + random.nextInt(500);
+                        if (cache.get(key, String.class) == null) {
+                            cache.put(key, key, 0);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        strategy.cleanUp();
+        assertTrue("并发写入后缓存大小不应超过容量", cache.size() <= MAX_SIZE);
+        assertTrue(strategy.getTrackedSize() <= MAX_SIZE);
+        assertTrue(strategy.getAccessCount() > 0);
+    }
+
+    @Test
+    public void testStrategySelectedByConfig() {
+        CacheConfig config = CacheConfig.createHighPerformance();
+        assertEquals(CacheStrategy.StrategyType.W_TINY_LFU, config.getStrategyType());
+        assertTrue(strategy.isCapacityManaged());
+        assertTrue("容量由策略维护", strategy.canAddEntry(MAX_SIZE, MAX_SIZE));
+    }
+}
@@ -0,0 +1,101 @@
+package com.kishultan.persistence.orm.query.cache.impl;
+
+import com.kishultan.persistence.orm.query.cache.CacheConfig;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分层时间轮测试类
+ *
+ * @author Portal Team
+ */
+public class TimerWheelTest {
+
+    private static List<String> keys(List<TimerWheel.Node> nodes) {
+        List<String> keys = new ArrayList<>();
+        for (TimerWheel.Node node : nodes) {
+            keys.add(node.key);
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+    @Test
+    public void testExpiresOnlyDueNodesAcrossLevels() {
+        long start = 1_000_000L;
+        TimerWheel wheel = new TimerWheel(start);
+        long[] delays = {10, 100, 5_000, 300_000, 20_000_000, 2_000_000_000L};
+        for (long delay : delays) {
+            wheel.schedule(new TimerWheel.Node("d" + delay), start + delay);
+        }
+        assertEquals(6, wheel.size());
+
+        assertTrue(wheel.advance(start + 5).isEmpty());
+        assertEquals(Collections.singletonList("d10"), keys(wheel.advance(start + 50)));
+        assertEquals(Collections.singletonList("d100"), keys(wheel.advance(start + 4_999)));
+        assertEquals(Collections.singletonList("d5000"), keys(wheel.advance(start + 5_000)));
+
+        // 上层节点逐级下移，不会提前过期
+        for (long now = start + 5_000; now < start + 300_000; now += 997) {
+            assertTrue(wheel.advance(now).isEmpty());
+        }
+        assertEquals(Collections.singletonList("d300000"), keys(wheel.advance(start + 300_001)));
+        assertEquals(Collections.singletonList("d20000000"), keys(wheel.advance(start + 20_000_000)));
+
+        // 超出最高层范围的节点在多轮之后仍按时过期
+        assertTrue(wheel.advance(start + 1_999_999_999L).isEmpty());
+        assertEquals(Collections.singletonList("d2000000000"), keys(wheel.advance(start + 2_000_000_000L)));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testRescheduleAndDeschedule() {
+        TimerWheel wheel = new TimerWheel(0);
+        TimerWheel.Node a = new TimerWheel.Node("a");
+        TimerWheel.Node b = new TimerWheel.Node("b");
+        wheel.schedule(a, 100);
+        wheel.schedule(b, 100);
+        wheel.schedule(a, 10_000);
+        wheel.deschedule(b);
+        wheel.deschedule(b);
+        assertEquals(1, wheel.size());
+        assertTrue(wheel.advance(200).isEmpty());
+        assertEquals(Collections.singletonList("a"), keys(wheel.advance(10_000)));
+
+        // 已过期的节点在下次推进时取出
+        wheel.schedule(b, 5_000);
+        assertEquals(Collections.singletonList("b"), keys(wheel.advance(10_001)));
+    }
+
+    @Test
+    public void testCacheCleanupRemovesExpiredEntries() throws InterruptedException {
+        CacheConfig config = new CacheConfig(true, 1000, 60000);
+        config.setEnableAsync(true);
+        config.setCleanupInterval(20);
+        QueryCacheImpl cache = new QueryCacheImpl(config, new TTLCacheStrategy());
+        try {
+            for (int i = 0; i < 100; i++) {
+                cache.put("short" + i, "v" + i, 50);
+            }
+            cache.put("long", "v", 60000);
+            cache.put("replaced", "v", 50);
+            cache.put("replaced", "v2", 60000);
+            assertEquals(102, cache.size());
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (cache.size() > 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals("只清理到期的条目", 2, cache.size());
+            assertEquals("v2", cache.get("replaced", String.class));
+            assertTrue(cache.contains("long"));
+        } finally {
+            cache.shutdown();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.kishultan.persistence.orm.query.monitor;
+
+import com.kishultan.persistence.orm.query.monitor.impl.QueryMetricsImpl;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 查询耗时直方图测试类
+ *
+ * @author Portal Team
+ */
+public class LatencyHistogramTest {
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue("expected " + expected + " but was " + actual,
+            Math.abs(actual - expected) <= expected / 64 + 1);
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        assertEquals(10000, histogram.getCount());
+        assertWithinPrecision(TimeUnit.MICROSECONDS.toNanos(5000), histogram.getValueAtPercentile(50));
+        assertWithinPrecision(TimeUnit.MICROSECONDS.toNanos(9000), histogram.getValueAtPercentile(90));
+        assertWithinPrecision(TimeUnit.MICROSECONDS.toNanos(9900), histogram.getValueAtPercentile(99));
+        assertWithinPrecision(TimeUnit.MICROSECONDS.toNanos(9990), histogram.getValueAtPercentile(99.9));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(10000), histogram.getValueAtPercentile(100));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1), histogram.getMinNanos());
+        assertEquals(5.0005, histogram.getMeanNanos() / TimeUnit.MILLISECONDS.toNanos(1), 1e-9);
+
+        // 小于128纳秒的值精确记录
+        LatencyHistogram small = new LatencyHistogram();
+        small.record(7);
+        small.record(-1);
+        assertEquals(7, small.getValueAtPercentile(100));
+        assertEquals(0, small.getValueAtPercentile(50));
+
+        // 超出范围的值计入最后一个桶，最大值仍然准确
+        LatencyHistogram large = new LatencyHistogram();
+        large.record(Long.MAX_VALUE);
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_NANOS, large.getValueAtPercentile(99));
+        assertEquals(Long.MAX_VALUE, large.getMaxNanos());
+    }
+
+    @Test
+    public void testSlowQueryCountAndIntervals() {
+        QueryMetricsImpl metrics = new QueryMetricsImpl();
+        for (long millis : new long[]{1, 10, 50, 100, 500}) {
+            metrics.recordExecutionNanos(TimeUnit.MILLISECONDS.toNanos(millis), true, 1);
+        }
+        assertEquals(3, metrics.getSlowQueryCount(50));
+        assertEquals(1, metrics.getSlowQueryCount(101));
+        assertEquals(0.6, metrics.getSlowQueryRate(50), 1e-9);
+        assertEquals(100, metrics.getPercentileExecutionTime(80), 2);
+        assertEquals(500, metrics.getMaxExecutionTime());
+
+        LatencyHistogram first = metrics.getIntervalHistogram();
+        assertEquals(5, first.getCount());
+        metrics.recordExecutionNanos(TimeUnit.MILLISECONDS.toNanos(20), true, 1);
+        LatencyHistogram second = metrics.getIntervalHistogram();
+        assertEquals(1, second.getCount());
+        assertEquals(20, second.getPercentileMillis(50), 0.5);
+        assertEquals(0, metrics.getIntervalHistogram().getCount());
+
+        // 时间段可以合并
+        LatencyHistogram merged = first.copy();
+        merged.add(second);
+        assertEquals(6, merged.getCount());
+        assertEquals(metrics.getLatencyHistogram().getTotalNanos(), merged.getTotalNanos());
+        assertEquals(metrics.getLatencyHistogram().getValueAtPercentile(50), merged.getValueAtPercentile(50));
+    }
+}
@@ -0,0 +1,98 @@
+package com.kishultan.persistence.orm.query.monitor;
+
+import com.kishultan.persistence.orm.query.monitor.impl.QueryPerformanceMonitorImpl;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 查询阶段计时测试类
+ *
+ * @author Portal Team
+ */
+public class PhaseTimerTest {
+
+    @After
+    public void tearDown() {
+        while (PhaseTimer.current() != null) {
+            PhaseTimer.current().end();
+        }
+    }
+
+    @Test
+    public void testInactiveWithoutTimer() {
+        assertNull(PhaseTimer.current());
+        long start = PhaseTimer.start();
+        assertEquals(PhaseTimer.INACTIVE, start);
+        assertEquals(PhaseTimer.INACTIVE, PhaseTimer.stop(QueryPhase.EXECUTE, start));
+    }
+
+    @Test
+    public void testPhasesAccumulateAndNestedTimerAddsToOuter() throws InterruptedException {
+        PhaseTimer outer = PhaseTimer.begin();
+        long phase = PhaseTimer.start();
+        Thread.sleep(2);
+        phase = PhaseTimer.stop(QueryPhase.EXECUTE, phase);
+        Thread.sleep(1);
+        PhaseTimer.stop(QueryPhase.EXECUTE, phase);
+        long executeNanos = outer.getPhaseNanos(QueryPhase.EXECUTE);
+        assertTrue(executeNanos >= 3_000_000L);
+
+        PhaseTimer inner = PhaseTimer.begin();
+        assertSame(inner, PhaseTimer.current());
+        PhaseTimer.stop(QueryPhase.FETCH, PhaseTimer.start() - 1000);
+        assertEquals(0, outer.getPhaseNanos(QueryPhase.FETCH));
+        inner.end();
+
+        assertSame(outer, PhaseTimer.current());
+        assertTrue(outer.getPhaseNanos(QueryPhase.FETCH) >= 1000);
+        Map<QueryPhase, Long> breakdown = outer.getBreakdown();
+        assertEquals("只包含有耗时的阶段，按执行顺序排列",
+            Arrays.asList(QueryPhase.EXECUTE, QueryPhase.FETCH), new ArrayList<>(breakdown.keySet()));
+        outer.end();
+        assertNull(PhaseTimer.current());
+    }
+
+    @Test
+    public void testMonitorRecordsBreakdown() {
+        PerformanceConfig config = PerformanceConfig.createDevelopment();
+        config.setSlowQueryThreshold(0);
+        QueryPerformanceMonitor monitor = new QueryPerformanceMonitorImpl(config);
+
+        for (int i = 0; i < 2; i++) {
+            PhaseTimer timer = PhaseTimer.begin();
+            String contextId = monitor.startMonitoring("SELECT * FROM users WHERE id = " + i, null);
+            long phase = timer.getStartNanos();
+            PhaseTimer.stop(QueryPhase.CONNECTION_ACQUIRE, phase - 2_000_000L);
+            PhaseTimer.stop(QueryPhase.ROW_MAPPING, phase - 1_000_000L);
+            monitor.endMonitoring(contextId, true, 1);
+            timer.end();
+        }
+
+        Map<String, QueryStatistics> statistics = monitor.getQueryStatistics();
+        assertEquals("按查询形态聚合", 1, statistics.size());
+        QueryStatistics stats = statistics.values().iterator().next();
+        assertEquals(2, stats.getExecutionCount());
+        assertTrue(stats.getAveragePhaseTime(QueryPhase.CONNECTION_ACQUIRE) >= 2.0);
+        assertTrue(stats.getAveragePhaseTime(QueryPhase.ROW_MAPPING) >= 1.0);
+        assertEquals(0.0, stats.getAveragePhaseTime(QueryPhase.EXECUTE), 1e-9);
+        assertEquals(2, stats.getPhaseBreakdown().size());
+
+        List<SlowQueryInfo> slowQueries = monitor.getSlowQueries(0);
+        assertEquals(2, slowQueries.size());
+        Map<QueryPhase, Long> phases = slowQueries.get(0).getPhaseBreakdown();
+        assertTrue(phases.get(QueryPhase.CONNECTION_ACQUIRE) >= 2_000_000L);
+        assertTrue(slowQueries.get(0).toString().contains("CONNECTION_ACQUIRE="));
+
+        // 没有分阶段计时时照常记录，阶段耗时为空
+        String contextId = monitor.startMonitoring("SELECT 1", null);
+        monitor.endMonitoring(contextId, true, 1);
+        assertEquals(2, monitor.getQueryStatistics().size());
+    }
+}
@@ -0,0 +1,76 @@
+package com.kishultan.persistence.orm.query.monitor;
+
+import com.kishultan.persistence.orm.query.monitor.impl.QueryMetricsImpl;
+import com.kishultan.persistence.orm.query.monitor.impl.RollingMetrics;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 滚动查询指标测试类
+ *
+ * @author Portal Team
+ */
+public class RollingMetricsTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    private static long totalCount(List<PerformanceTrend> trend) {
+        long count = 0;
+        for (PerformanceTrend point : trend) {
+            count += point.getQueryCount();
+        }
+        return count;
+    }
+
+    @Test
+    public void testTrendAndRollOff() {
+        RollingMetrics metrics = new RollingMetrics(1000, 5);
+        for (int i = 0; i < 10; i++) {
+            metrics.record(START + 100, TimeUnit.MILLISECONDS.toNanos(10), i != 0, 2);
+        }
+        metrics.record(START + 2500, TimeUnit.MILLISECONDS.toNanos(40), true, 1);
+
+        List<PerformanceTrend> trend = metrics.getTrend(START + 2900, 3);
+        assertEquals(3, trend.size());
+        PerformanceTrend first = trend.get(0);
+        assertEquals(10, first.getQueryCount());
+        assertEquals(10.0, first.getQueriesPerSecond(), 1e-9);
+        assertEquals(0.9, first.getSuccessRate(), 1e-9);
+        assertEquals(20, first.getTotalResultCount());
+        assertEquals(10.0, first.getAverageExecutionTime(), 1e-9);
+        assertEquals(0, trend.get(1).getQueryCount());
+        assertEquals(1, trend.get(2).getQueryCount());
+        assertEquals(40, trend.get(2).getMaxExecutionTime());
+        assertTrue(trend.get(0).getTimestamp().isBefore(trend.get(2).getTimestamp()));
+        assertEquals(11, metrics.getCount(START + 2900, 5));
+
+        // 超过保留数量的时间段被淘汰，环上的位置被新的时间段复用
+        metrics.record(START + 5100, TimeUnit.MILLISECONDS.toNanos(5), true, 0);
+        assertEquals(2, metrics.getCount(START + 5100, 5));
+        assertEquals("请求数量不超过保留数量", 5, metrics.getTrend(START + 5100, 100).size());
+        assertEquals(0, metrics.getCount(START + 20000, 5));
+    }
+
+    @Test
+    public void testMetricsUseRetentionAndWindow() {
+        PerformanceConfig config = new PerformanceConfig();
+        config.setTrendWindow(15);
+        config.setMetricsRetentionHours(1);
+        QueryMetricsImpl metrics = new QueryMetricsImpl(config);
+        metrics.recordExecutionNanos(TimeUnit.MILLISECONDS.toNanos(3), true, 1);
+
+        List<PerformanceTrend> trend = metrics.getPerformanceTrend(0);
+        assertEquals(15, trend.size());
+        assertEquals(1, totalCount(trend));
+        assertEquals(60, metrics.getPerformanceTrend(600).size());
+        assertEquals(1, totalCount(metrics.getRecentTrend(10)));
+
+        metrics.reset();
+        assertEquals(0, totalCount(metrics.getRecentTrend(10)));
+        assertEquals(0.0, metrics.getQueriesPerSecond(), 1e-9);
+    }
+}
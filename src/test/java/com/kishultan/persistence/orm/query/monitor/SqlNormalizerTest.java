@@ -0,0 +1,35 @@
+package com.kishultan.persistence.orm.query.monitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * SQL规范化测试类
+ *
+ * @author Portal Team
+ */
+public class SqlNormalizerTest {
+
+    @Test
+    public void testLiteralsAndWhitespace() {
+        assertEquals("SELECT * FROM users WHERE id = ? AND name = ?",
+            SqlNormalizer.normalize("SELECT *\n  FROM users\tWHERE id = 42 AND name = 'O''Brien'  "));
+        assertEquals("SELECT price FROM t2 WHERE price > ? AND amount < -?",
+            SqlNormalizer.normalize("SELECT price FROM t2 WHERE price > 1.5e-3 AND amount < -10"));
+        assertEquals("SELECT \"col 1\" FROM t WHERE a = ?",
+            SqlNormalizer.normalize("SELECT \"col 1\" /* hint */ FROM t -- comment\nWHERE a = ?"));
+        assertEquals("", SqlNormalizer.normalize(null));
+    }
+
+    @Test
+    public void testInListsCollapse() {
+        String expected = "SELECT * FROM users WHERE id IN (?) AND status NOT IN (?)";
+        assertEquals(expected, SqlNormalizer.normalize("SELECT * FROM users WHERE id IN (?, ?, ?) AND status NOT IN ('A','B')"));
+        assertEquals("SELECT * FROM users WHERE id in(?)", SqlNormalizer.normalize("SELECT * FROM users WHERE id in(1, 2)"));
+        assertEquals("SELECT * FROM t WHERE id IN (SELECT user_id FROM orders WHERE total > ?)",
+            SqlNormalizer.normalize("SELECT * FROM t WHERE id IN (SELECT user_id FROM orders WHERE total > 100)"));
+        assertEquals("SELECT login FROM t WHERE login = ?",
+            SqlNormalizer.normalize("SELECT login FROM t WHERE login = 'x'"));
+    }
+}
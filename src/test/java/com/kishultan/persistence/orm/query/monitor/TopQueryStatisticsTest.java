@@ -0,0 +1,118 @@
+package com.kishultan.persistence.orm.query.monitor;
+
+import com.kishultan.persistence.orm.query.monitor.impl.QueryPerformanceMonitorImpl;
+import com.kishultan.persistence.orm.query.monitor.impl.TopQueryStatistics;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * 容量固定的查询统计表测试类
+ *
+ * @author Portal Team
+ */
+public class TopQueryStatisticsTest {
+
+    private static final Consumer<QueryStatistics> RECORD = statistics -> statistics.recordExecutionNanos(1000, true, 1);
+
+    @Test
+    public void testHeavyHittersSurvive() {
+        TopQueryStatistics table = new TopQueryStatistics(3);
+        for (int i = 0; i < 100; i++) {
+            table.record("hot", "SELECT hot", RECORD);
+        }
+        for (int i = 0; i < 50; i++) {
+            table.record("warm", "SELECT warm", RECORD);
+        }
+        for (int i = 0; i < 20; i++) {
+            table.record("rare" + i, "SELECT rare", RECORD);
+        }
+
+        Map<String, QueryStatistics> snapshot = table.snapshot();
+        assertEquals(3, table.size());
+        assertEquals(100, snapshot.get("hot").getExecutionCount());
+        assertEquals(50, snapshot.get("warm").getExecutionCount());
+        assertEquals(19, table.getEvictionCount());
+        assertEquals(19, table.getOther().getExecutionCount());
+        assertEquals("新条目继承被替换条目的计数", 19, table.getError("rare19"));
+        assertEquals(0, table.getError("hot"));
+        long total = 0;
+        for (QueryStatistics statistics : snapshot.values()) {
+            total += statistics.getExecutionCount();
+        }
+        assertEquals("淘汰后总执行次数不变", 170, total);
+
+        table.clear();
+        assertTrue(table.snapshot().isEmpty());
+    }
+
+    @Test
+    public void testConcurrentEvictionsKeepEveryRecord() throws Exception {
+        TopQueryStatistics table = new TopQueryStatistics(4);
+        int threads = 8;
+        int perThread = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        table.record("query" + ((i + offset) % 16), "SELECT ?", RECORD);
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(table.getEvictionCount() > 0);
+        long total = 0;
+        for (QueryStatistics statistics : table.snapshot().values()) {
+            total += statistics.getExecutionCount();
+        }
+        assertEquals("并发替换时记录不丢失", threads * perThread, total);
+    }
+
+    @Test
+    public void testMonitorGroupsByTemplate() {
+        PerformanceConfig config = PerformanceConfig.createDevelopment();
+        config.setEnableDetailedLogging(false);
+        config.setMaxQueryStatistics(2);
+        QueryPerformanceMonitor monitor = new QueryPerformanceMonitorImpl(config);
+        for (int i = 1; i <= 5; i++) {
+            StringBuilder sql = new StringBuilder("SELECT * FROM users WHERE id IN (");
+            for (int j = 0; j < i; j++) {
+                sql.append(j > 0 ? ", " : "").append(j);
+            }
+            String contextId = monitor.startMonitoring(sql.append(")").toString(), new Object[0]);
+            monitor.endMonitoring(contextId, true, i);
+        }
+        Map<String, QueryStatistics> statistics = monitor.getQueryStatistics();
+        assertEquals("不同长度的IN列表归为同一形态", 1, statistics.size());
+        QueryStatistics stats = statistics.values().iterator().next();
+        assertEquals(5, stats.getExecutionCount());
+        assertEquals("SELECT * FROM users WHERE id IN (?)", stats.getSql());
+
+        for (int i = 0; i < 3; i++) {
+            String contextId = monitor.startMonitoring("SELECT * FROM t" + i, new Object[0]);
+            monitor.endMonitoring(contextId, true, 0);
+        }
+        statistics = monitor.getQueryStatistics();
+        assertEquals(3, statistics.size());
+        assertTrue(statistics.containsKey(TopQueryStatistics.OTHER_KEY));
+        assertEquals(2, statistics.get(TopQueryStatistics.OTHER_KEY).getExecutionCount());
+    }
+}
@@ -0,0 +1,282 @@
+package com.kishultan.persistence.orm.shard;
+
+import com.kishultan.persistence.orm.query.QueryBuilder;
+import com.kishultan.persistence.orm.query.config.QueryBuilderConfigManager;
+import com.kishultan.persistence.orm.query.context.OrderInfo;
+import com.kishultan.persistence.orm.query.impl.StandardQueryBuilder;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分片数据源与跨分片查询测试类
+ *
+ * @author Portal Team
+ */
+public class ShardingTest {
+
+    private static final int SHARD_COUNT = 3;
+
+    private JdbcDataSource[] shards;
+    private ShardedDataSource shardedDataSource;
+    private ShardedEntityManager em;
+    private List<TenantOrder> allOrders;
+
+    @Before
+    public void setUp() throws Exception {
+        System.clearProperty("querybuilder.cache.enabled");
+        QueryBuilderConfigManager.reset();
+
+        shards = new JdbcDataSource[SHARD_COUNT];
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new JdbcDataSource();
+            shards[i].setURL("jdbc:h2:mem:shard_" + i + ";DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE");
+            shards[i].setUser("sa");
+            shards[i].setPassword("");
+            try (Connection conn = shards[i].getConnection(); Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP TABLE IF EXISTS tenant_orders");
+                stmt.execute("CREATE TABLE tenant_orders (id BIGINT PRIMARY KEY, tenant_id BIGINT, " +
+                        "amount INT, title VARCHAR(50))");
+            }
+        }
+        shardedDataSource = new ShardedDataSource(shards);
+        em = new ShardedEntityManager(shardedDataSource);
+
+        allOrders = new ArrayList<>();
+        for (long id = 1; id <= 30; id++) {
+            allOrders.add(new TenantOrder(id, id % 7, (int) ((id * 37) % 101), "order-" + id));
+        }
+        em.saveAll(allOrders);
+    }
+
+    @After
+    public void tearDown() {
+        shardedDataSource.shutdown();
+        System.clearProperty("querybuilder.cache.enabled");
+        QueryBuilderConfigManager.reset();
+    }
+
+    private int countRows(int shard) throws SQLException {
+        try (Connection conn = shards[shard].getConnection(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM tenant_orders")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void testWritesRouteByShardKey() throws Exception {
+        int total = 0;
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            int rows = countRows(i);
+            assertTrue("每个分片都应有数据", rows > 0);
+            total += rows;
+        }
+        assertEquals(30, total);
+
+        TenantOrder order = new TenantOrder(100L, 4L, 10, "routed");
+        em.save(order);
+        assertEquals("租户4应落在分片1", 1, shardedDataSource.shardOf(order));
+        try (Connection conn = shards[1].getConnection(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT title FROM tenant_orders WHERE id = 100")) {
+            assertTrue(rs.next());
+            assertEquals("routed", rs.getString(1));
+        }
+
+        order.setTitle("updated");
+        em.update(order);
+        assertEquals("updated", em.findById(TenantOrder.class, 100L, 4L).getTitle());
+
+        em.delete(order);
+        assertNull(em.findById(TenantOrder.class, 100L));
+    }
+
+    @Test
+    public void testFindById() {
+        TenantOrder order = em.findById(TenantOrder.class, 12L, 12L % 7);
+        assertNotNull("按分片键定位应找到实体", order);
+        assertEquals("order-12", order.getTitle());
+
+        TenantOrder scattered = em.findById(TenantOrder.class, 13L);
+        assertNotNull("分片键不是主键时应并行查询所有分片", scattered);
+        assertEquals(Long.valueOf(13L % 7), scattered.getTenantId());
+
+        assertNull("分片键路由到错误分片时查不到", em.findById(TenantOrder.class, 12L, 12L % 7 + 1));
+    }
+
+    @Test
+    public void testShardKeyByConfiguration() {
+        shardedDataSource.registerShardKey(TenantOrder.class, "id");
+        assertTrue(shardedDataSource.isShardKeyPrimaryKey(TenantOrder.class));
+        assertEquals(7 % SHARD_COUNT, shardedDataSource.shardOf(new TenantOrder(7L, 0L, 0, "x")));
+        int shard = new HashShardingStrategy().shardFor("tenant-a", SHARD_COUNT);
+        assertTrue("字符串分片键应落在有效分片内", shard >= 0 && shard < SHARD_COUNT);
+        assertEquals("相同的分片键应落在相同分片", shard, new HashShardingStrategy().shardFor("tenant-a", SHARD_COUNT));
+    }
+
+    @Test
+    public void testScatterGatherOrderedWithLimit() {
+        List<TenantOrder> expected = allOrders.stream()
+                .sorted(Comparator.comparing(TenantOrder::getAmount).reversed())
+                .collect(Collectors.toList());
+
+        QueryBuilder<TenantOrder> builder = em.createQueryBuilder(TenantOrder.class);
+        builder.createOrderClause().desc("amount");
+        List<TenantOrder> all = builder.findList();
+        assertEquals(30, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals("多路归并后应全局有序", expected.get(i).getAmount(), all.get(i).getAmount());
+        }
+
+        QueryBuilder<TenantOrder> page = em.createQueryBuilder(TenantOrder.class);
+        page.createOrderClause().desc("amount");
+        page.limit(5, 4);
+        List<TenantOrder> rows = page.findList();
+        assertEquals(4, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals("分页下推后应重新截取", expected.get(5 + i).getId(), rows.get(i).getId());
+        }
+
+        QueryBuilder<TenantOrder> unordered = em.createQueryBuilder(TenantOrder.class);
+        unordered.limit(0, 7);
+        assertEquals(7, unordered.findList().size());
+    }
+
+    @Test
+    public void testCountAndAggregates() {
+        assertEquals(30, em.createQueryBuilder(TenantOrder.class).count());
+
+        QueryBuilder<TenantOrder> builder = em.createQueryBuilder(TenantOrder.class);
+        builder.aggregate()
+                .count(TenantOrder::getId, "cnt")
+                .sum(TenantOrder::getAmount, "total")
+                .avg(TenantOrder::getAmount, "average")
+                .min(TenantOrder::getAmount, "lowest")
+                .max(TenantOrder::getAmount, "highest");
+        Map<String, Object> result = em.aggregate(builder);
+
+        int total = allOrders.stream().mapToInt(TenantOrder::getAmount).sum();
+        assertEquals(30L, result.get("cnt"));
+        assertEquals((long) total, ((Number) result.get("total")).longValue());
+        assertEquals(0, new BigDecimal(total).divide(new BigDecimal(30), java.math.MathContext.DECIMAL64)
+                .compareTo(new BigDecimal(result.get("average").toString())));
+        assertEquals(allOrders.stream().mapToInt(TenantOrder::getAmount).min().getAsInt(), ((Number) result.get("lowest")).intValue());
+        assertEquals(allOrders.stream().mapToInt(TenantOrder::getAmount).max().getAsInt(), ((Number) result.get("highest")).intValue());
+    }
+
+    @Test
+    public void testSingleShardQueryBuilder() {
+        List<TenantOrder> rows = em.createQueryBuilder(TenantOrder.class, 3L).findList();
+        assertFalse(rows.isEmpty());
+        for (TenantOrder row : rows) {
+            assertEquals("单分片查询只返回该分片的数据", 0, shardedDataSource.shardFor(row.getTenantId()));
+        }
+    }
+
+    @Test
+    public void testCachedQueriesAreScopedByShard() throws Exception {
+        System.setProperty("querybuilder.cache.enabled", "true");
+        QueryBuilderConfigManager.reset();
+
+        int shard0Rows = countRows(0);
+        int shard1Rows = countRows(1);
+        for (int round = 0; round < 2; round++) {
+            assertEquals("跨分片查询合并所有分片", 30, em.createQueryBuilder(TenantOrder.class).findList().size());
+            assertEquals(30, em.createQueryBuilder(TenantOrder.class).count());
+            assertEquals("路由查询只返回所在分片的数据", shard0Rows,
+                    em.createQueryBuilder(TenantOrder.class, 3L).findList().size());
+            assertEquals(shard1Rows, em.createQueryBuilder(TenantOrder.class, 4L).findList().size());
+            assertEquals("直接在分片0上的查询不与跨分片查询共享缓存", shard0Rows,
+                    new StandardQueryBuilder<>(TenantOrder.class, shards[0]).findList().size());
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnresolvedOrderColumnIsRejected() {
+        ShardResultMerger.orderComparator(Collections.singletonList(new OrderInfo("LENGTH(title)", "DESC")),
+                TenantOrder.class);
+    }
+
+    /**
+     * 按租户分片的订单实体
+     */
+    @Entity
+    @Table(name = "tenant_orders")
+    public static class TenantOrder {
+
+        @Id
+        @Column(name = "id")
+        private Long id;
+
+        @ShardKey
+        @Column(name = "tenant_id")
+        private Long tenantId;
+
+        @Column(name = "amount")
+        private Integer amount;
+
+        @Column(name = "title")
+        private String title;
+
+        public TenantOrder() {
+        }
+
+        public TenantOrder(Long id, Long tenantId, Integer amount, String title) {
+            this.id = id;
+            this.tenantId = tenantId;
+            this.amount = amount;
+            this.title = title;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public Long getTenantId() {
+            return tenantId;
+        }
+
+        public void setTenantId(Long tenantId) {
+            this.tenantId = tenantId;
+        }
+
+        public Integer getAmount() {
+            return amount;
+        }
+
+        public void setAmount(Integer amount) {
+            this.amount = amount;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+    }
+}